@@ -0,0 +1,103 @@
+package com.eugene.percent.benchmarks;
+
+import com.eugene.percent.factory.ProductRegistry;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic catalog and scan sequences shared by the benchmarks.
+ */
+final class BenchmarkCatalog {
+    static final String UNIFORM = "uniform";
+    static final String ZIPF = "zipf";
+
+    private static final double ZIPF_EXPONENT = 1.0;
+
+    private BenchmarkCatalog() {
+    }
+
+    /**
+     * Resets {@link ProductRegistry} and registers catalogSize products, every 4th with a volume discount.
+     * Product codes are EAN-13s with a valid check digit.
+     *
+     * @return registered {@link Product}s, most popular first.
+     */
+    static Product[] register(int catalogSize) {
+        ProductRegistry.reset();
+
+        Product[] products = new Product[catalogSize];
+        Map<Product, ProductPrice> productPrices = new HashMap<>();
+        for (int i = 0; i < catalogSize; ++i) {
+            products[i] = Product.builder().productCode(ean13(i)).build();
+            productPrices.put(products[i], price(i));
+        }
+        ProductRegistry.registerAll(productPrices);
+
+        return products;
+    }
+
+    /**
+     * @return EAN-13 of the i-th product of the catalog: i as 12 digits and a check digit.
+     */
+    static String ean13(int i) {
+        String digits = String.format("%012d", i);
+        int sum = 0;
+        for (int j = 0; j < digits.length(); ++j) {
+            sum += (digits.charAt(j) - '0') * (j % 2 == 0 ? 1 : 3);
+        }
+
+        return digits + (10 - sum % 10) % 10;
+    }
+
+    /**
+     * @return {@link ProductPrice} of the i-th product of the catalog.
+     */
+    static ProductPrice price(int i) {
+        long pricePerUnit = 50 + i % 1000;
+
+        return i % 4 == 0
+                ? new ProductPrice(pricePerUnit, 3, pricePerUnit * 5 / 2)
+                : new ProductPrice(pricePerUnit, 1, pricePerUnit);
+    }
+
+    /**
+     * @param catalogSize number of products
+     * @param skew {@value #UNIFORM} or {@value #ZIPF}
+     * @param length number of samples, power of 2
+     * @param seed random seed
+     * @return indexes into the catalog, distributed according to skew.
+     */
+    static int[] sequence(int catalogSize, String skew, int length, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] sequence = new int[length];
+
+        if (UNIFORM.equals(skew)) {
+            for (int i = 0; i < length; ++i) {
+                sequence[i] = random.nextInt(catalogSize);
+            }
+            return sequence;
+        }
+
+        if (!ZIPF.equals(skew)) {
+            throw new IllegalArgumentException("Unknown skew: " + skew);
+        }
+
+        double[] cumulative = new double[catalogSize];
+        double sum = 0.0;
+        for (int i = 0; i < catalogSize; ++i) {
+            sum += 1.0 / Math.pow(i + 1, ZIPF_EXPONENT);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < length; ++i) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            sequence[i] = Math.min(index < 0 ? -index - 1 : index, catalogSize - 1);
+        }
+
+        return sequence;
+    }
+}
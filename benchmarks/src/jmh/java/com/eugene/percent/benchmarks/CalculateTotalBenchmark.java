@@ -0,0 +1,57 @@
+package com.eugene.percent.benchmarks;
+
+import com.eugene.percent.exceptions.ScanProductException;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.pointofsaleterminal.PointOfSaleTerminal;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * {@link PointOfSaleTerminal#calculateTotal()} latency across cart sizes (number of scanned units).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CalculateTotalBenchmark {
+    private static final int CATALOG_SIZE = 10000;
+
+    @Param({"1", "10", "100", "1000"})
+    private int cartSize;
+
+    @Param({BenchmarkCatalog.UNIFORM, BenchmarkCatalog.ZIPF})
+    private String skew;
+
+    private PointOfSaleTerminal pointOfSaleTerminal;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ScanProductException {
+        Product[] products = BenchmarkCatalog.register(CATALOG_SIZE);
+        int[] sequence = BenchmarkCatalog.sequence(CATALOG_SIZE, skew, Integer.highestOneBit(cartSize) * 2, 7);
+
+        pointOfSaleTerminal = new PointOfSaleTerminal();
+        for (int i = 0; i < cartSize; ++i) {
+            pointOfSaleTerminal.scan(products[sequence[i]]);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal calculateTotal() {
+        return pointOfSaleTerminal.calculateTotal();
+    }
+
+    @Benchmark
+    public long calculateTotalInMinorUnits() {
+        return pointOfSaleTerminal.calculateTotalInMinorUnits();
+    }
+}
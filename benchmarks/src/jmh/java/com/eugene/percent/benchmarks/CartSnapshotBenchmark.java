@@ -0,0 +1,66 @@
+package com.eugene.percent.benchmarks;
+
+import com.eugene.percent.exceptions.ScanProductException;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.pointofsaleterminal.PointOfSaleTerminal;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * {@link PointOfSaleTerminal#checkpoint(ByteBuffer)} and {@link PointOfSaleTerminal#resume(ByteBuffer)} latency
+ * across cart sizes (number of distinct products).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CartSnapshotBenchmark {
+    private static final int CATALOG_SIZE = 10000;
+
+    @Param({"10", "100"})
+    private int cartSize;
+
+    private PointOfSaleTerminal pointOfSaleTerminal;
+    private PointOfSaleTerminal spareTerminal;
+    private ByteBuffer buffer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ScanProductException {
+        Product[] products = BenchmarkCatalog.register(CATALOG_SIZE);
+
+        pointOfSaleTerminal = new PointOfSaleTerminal();
+        for (int i = 0; i < cartSize; ++i) {
+            pointOfSaleTerminal.scan(products[i * 37 % CATALOG_SIZE], 1 + i % 5);
+        }
+        spareTerminal = new PointOfSaleTerminal();
+        buffer = ByteBuffer.allocate(pointOfSaleTerminal.snapshotSize());
+        pointOfSaleTerminal.checkpoint(buffer);
+    }
+
+    @Benchmark
+    public ByteBuffer checkpoint() {
+        buffer.clear();
+        pointOfSaleTerminal.checkpoint(buffer);
+
+        return buffer;
+    }
+
+    @Benchmark
+    public long resume() {
+        buffer.clear();
+        spareTerminal.clear();
+        spareTerminal.resume(buffer);
+
+        return spareTerminal.calculateTotalInMinorUnits();
+    }
+}
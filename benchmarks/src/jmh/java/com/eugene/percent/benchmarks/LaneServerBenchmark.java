@@ -0,0 +1,104 @@
+package com.eugene.percent.benchmarks;
+
+import com.eugene.percent.model.Product;
+import com.eugene.percent.server.LaneClient;
+import com.eugene.percent.server.LaneServer;
+import com.eugene.percent.server.LaneServerConfig;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * {@link LaneServer} scan throughput over loopback - a {@link LaneClient} sends pipelineDepth scans,
+ * spread over its sessions, then reads their responses. Scans per second are the score times pipelineDepth.
+ *
+ * Sessions are cleared every basketSize scans, so carts stay at the size of a basket.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LaneServerBenchmark {
+    private static final int SEQUENCE_LENGTH = 1 << 16;
+
+    @Param({"1000"})
+    private int catalogSize;
+
+    @Param({"1", "16", "256"})
+    private int pipelineDepth;
+
+    @Param({"64"})
+    private int sessions;
+
+    @Param({"20"})
+    private int basketSize;
+
+    private byte[][] barcodes;
+    private int[] sequence;
+    private LaneServer server;
+    private LaneClient client;
+    private int next;
+    private int session;
+    private int scansInBasket;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Product[] products = BenchmarkCatalog.register(catalogSize);
+        barcodes = new byte[catalogSize][];
+        for (int i = 0; i < catalogSize; ++i) {
+            barcodes[i] = products[i].getProductCode().getBytes(StandardCharsets.US_ASCII);
+        }
+        sequence = BenchmarkCatalog.sequence(catalogSize, BenchmarkCatalog.ZIPF, SEQUENCE_LENGTH, 42);
+
+        server = new LaneServer(LaneServerConfig.builder().eventLoops(1).build());
+        server.start();
+        client = new LaneClient(server.getAddress());
+        for (int i = 0; i < sessions; ++i) {
+            client.open(i);
+        }
+        for (int i = 0; i < sessions; ++i) {
+            client.receive();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    public long scan() throws IOException {
+        for (int i = 0; i < pipelineDepth; ++i) {
+            if (++session == sessions) {
+                session = 0;
+                if (++scansInBasket == basketSize) {
+                    scansInBasket = 0;
+                    for (int j = 0; j < sessions; ++j) {
+                        client.clear(j);
+                    }
+                }
+            }
+            next = (next + 1) & (SEQUENCE_LENGTH - 1);
+            client.scan(session, barcodes[sequence[next]]);
+        }
+
+        long result = 0;
+        while (client.getPending() > 0) {
+            result += client.receive();
+        }
+
+        return result;
+    }
+}
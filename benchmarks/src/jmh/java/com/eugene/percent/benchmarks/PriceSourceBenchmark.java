@@ -0,0 +1,79 @@
+package com.eugene.percent.benchmarks;
+
+import com.eugene.percent.factory.PriceSourceConfig;
+import com.eugene.percent.factory.ProductRegistry;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+import com.eugene.percent.simulator.SimulatedPriceSource;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * {@link ProductRegistry#getPrice(Product)} from several lanes for products registered locally,
+ * or priced by an in-memory {@link SimulatedPriceSource} through the registry's cache -
+ * with a cache that holds the whole catalog, or only the hot products of a skewed sequence.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PriceSourceBenchmark {
+    private static final int CATALOG_SIZE = 100_000;
+    private static final int SEQUENCE_LENGTH = 1 << 16;
+
+    @Param({"false", "true"})
+    private boolean sourced;
+
+    @Param({"1024", "131072"})
+    private int cacheSize;
+
+    @Param({BenchmarkCatalog.UNIFORM, BenchmarkCatalog.ZIPF})
+    private String skew;
+
+    private Product[] products;
+    private int[] sequence;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        products = BenchmarkCatalog.register(CATALOG_SIZE);
+        sequence = BenchmarkCatalog.sequence(CATALOG_SIZE, skew, SEQUENCE_LENGTH, 13);
+
+        if (sourced) {
+            SimulatedPriceSource source = new SimulatedPriceSource(0, 0, 0);
+            for (Product product : products) {
+                source.put(product, ProductRegistry.getPrice(product));
+            }
+            ProductRegistry.reset();
+            ProductRegistry.setPriceSource(source, PriceSourceConfig.builder().maximumSize(cacheSize).build());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ProductRegistry.reset();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public ProductPrice getPrice(Cursor cursor) {
+        cursor.next = (cursor.next + 1) & (SEQUENCE_LENGTH - 1);
+
+        return ProductRegistry.getPrice(products[sequence[cursor.next]]);
+    }
+}
@@ -0,0 +1,43 @@
+package com.eugene.percent.benchmarks;
+
+import com.eugene.percent.model.ProductPrice;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * {@link ProductPrice#calculatePrice(int)} and {@link ProductPrice#calculatePriceDelta(int, int)} latency.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProductPriceBenchmark {
+    @Param({"1", "5", "48"})
+    private int numberOfUnits;
+
+    private ProductPrice productPrice;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        productPrice = new ProductPrice(125, 3, 300);
+    }
+
+    @Benchmark
+    public long calculatePrice() {
+        return productPrice.calculatePrice(numberOfUnits);
+    }
+
+    @Benchmark
+    public long calculatePriceDelta() {
+        return productPrice.calculatePriceDelta(numberOfUnits, 1);
+    }
+}
@@ -0,0 +1,88 @@
+package com.eugene.percent.benchmarks;
+
+import com.eugene.percent.factory.ProductRegistry;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * {@link ProductRegistry#getPrice(Product)} from several lanes, alone and while a manager re-prices products,
+ * against the copy-on-write map or a {@link ProductRegistry#freeze() frozen} catalog.
+ *
+ * Thread counts per group can be changed with -tg, e.g. -tg 7,1.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RegistryContentionBenchmark {
+    private static final int SEQUENCE_LENGTH = 1 << 16;
+
+    @Param({"1000", "100000"})
+    private int catalogSize;
+
+    @Param({BenchmarkCatalog.UNIFORM, BenchmarkCatalog.ZIPF})
+    private String skew;
+
+    @Param({"false", "true"})
+    private boolean frozen;
+
+    private Product[] products;
+    private int[] sequence;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        products = BenchmarkCatalog.register(catalogSize);
+        sequence = BenchmarkCatalog.sequence(catalogSize, skew, SEQUENCE_LENGTH, 11);
+        if (frozen) {
+            ProductRegistry.freeze();
+        }
+    }
+
+    @Benchmark
+    @Group("readOnly")
+    @GroupThreads(4)
+    public ProductPrice readOnly_getPrice(Cursor cursor) {
+        return getPrice(cursor);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(4)
+    public ProductPrice readWrite_getPrice(Cursor cursor) {
+        return getPrice(cursor);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public void readWrite_register(Cursor cursor) {
+        cursor.next = (cursor.next + 1) & (SEQUENCE_LENGTH - 1);
+        int i = sequence[cursor.next];
+
+        ProductRegistry.register(products[i], BenchmarkCatalog.price(i + cursor.next));
+    }
+
+    private ProductPrice getPrice(Cursor cursor) {
+        cursor.next = (cursor.next + 1) & (SEQUENCE_LENGTH - 1);
+
+        return ProductRegistry.getPrice(products[sequence[cursor.next]]);
+    }
+}
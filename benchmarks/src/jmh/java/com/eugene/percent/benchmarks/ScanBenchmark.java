@@ -0,0 +1,107 @@
+package com.eugene.percent.benchmarks;
+
+import com.eugene.percent.exceptions.ScanProductException;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.pointofsaleterminal.PointOfSaleTerminal;
+import com.eugene.percent.pointofsaleterminal.ScanStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * {@link PointOfSaleTerminal#scan(Product)} throughput; the cart is cleared every basketSize scans.
+ *
+ * The unknown benchmarks scan products that are not registered, through the throwing and the status code API.
+ * scanBytes scans the same sequence from the US-ASCII barcodes, as a scanner driver would hand them over.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScanBenchmark {
+    private static final int SEQUENCE_LENGTH = 1 << 16;
+
+    @Param({"1000", "100000"})
+    private int catalogSize;
+
+    @Param({BenchmarkCatalog.UNIFORM, BenchmarkCatalog.ZIPF})
+    private String skew;
+
+    @Param({"20"})
+    private int basketSize;
+
+    private Product[] products;
+    private Product[] unknownProducts;
+    private byte[][] barcodes;
+    private int[] sequence;
+    private PointOfSaleTerminal pointOfSaleTerminal;
+    private int next;
+    private int scansInBasket;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        products = BenchmarkCatalog.register(catalogSize);
+        sequence = BenchmarkCatalog.sequence(catalogSize, skew, SEQUENCE_LENGTH, 42);
+        pointOfSaleTerminal = new PointOfSaleTerminal();
+
+        barcodes = new byte[catalogSize][];
+        for (int i = 0; i < catalogSize; ++i) {
+            barcodes[i] = products[i].getProductCode().getBytes(StandardCharsets.US_ASCII);
+        }
+
+        unknownProducts = new Product[SEQUENCE_LENGTH];
+        for (int i = 0; i < SEQUENCE_LENGTH; ++i) {
+            unknownProducts[i] = Product.builder().productCode(String.format("X%012d", i)).build();
+        }
+    }
+
+    @Benchmark
+    public int scan() throws ScanProductException {
+        if (++scansInBasket > basketSize) {
+            pointOfSaleTerminal.clear();
+            scansInBasket = 1;
+        }
+        next = (next + 1) & (SEQUENCE_LENGTH - 1);
+
+        return pointOfSaleTerminal.scan(products[sequence[next]]);
+    }
+
+    @Benchmark
+    public int scanBytes() {
+        if (++scansInBasket > basketSize) {
+            pointOfSaleTerminal.clear();
+            scansInBasket = 1;
+        }
+        next = (next + 1) & (SEQUENCE_LENGTH - 1);
+        byte[] barcode = barcodes[sequence[next]];
+
+        return pointOfSaleTerminal.tryScan(barcode, 0, barcode.length);
+    }
+
+    @Benchmark
+    public int scanUnknown() {
+        next = (next + 1) & (SEQUENCE_LENGTH - 1);
+
+        try {
+            return pointOfSaleTerminal.scan(unknownProducts[next]);
+        } catch (ScanProductException e) {
+            return ScanStatus.UNKNOWN_PRODUCT;
+        }
+    }
+
+    @Benchmark
+    public int tryScanUnknown() {
+        next = (next + 1) & (SEQUENCE_LENGTH - 1);
+
+        return pointOfSaleTerminal.tryScan(unknownProducts[next]);
+    }
+}
@@ -1,119 +1,111 @@
 package com.eugene.percent;
 
-import com.eugene.percent.exceptions.ScanProductException;
 import com.eugene.percent.factory.ProductRegistry;
+import com.eugene.percent.journal.TransactionJournal;
+import com.eugene.percent.metrics.Metrics;
+import com.eugene.percent.model.Money;
 import com.eugene.percent.model.Product;
 import com.eugene.percent.model.ProductPrice;
+import com.eugene.percent.model.Sale;
 import com.eugene.percent.pointofsaleterminal.PointOfSaleTerminal;
-
-import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
+import com.eugene.percent.receipt.ConsoleReceiptOutput;
+import com.eugene.percent.receipt.FileReceiptOutput;
+import com.eugene.percent.receipt.ReceiptFormatter;
+import com.eugene.percent.receipt.ReceiptOutput;
+import com.eugene.percent.receipt.ReceiptSink;
+import com.eugene.percent.report.SalesAggregator;
+import com.eugene.percent.simulator.ArrivalProcess;
+import com.eugene.percent.simulator.LaneSimulator;
+import com.eugene.percent.simulator.SimulationConfig;
+import com.eugene.percent.simulator.SimulationReport;
+
+import java.nio.file.Paths;
 
 /**
  * Crude demo of a store.
- * Starts {@value #NUM_TERMINALS} {@link PointOfSaleTerminal}s and runs them for {@value #DEMO_MILLIS}ms.
+ * Runs {@value #NUM_TERMINALS} {@link PointOfSaleTerminal} lanes on a {@link LaneSimulator} for {@value #DEMO_MILLIS}ms
+ * and prints the aggregated throughput and latency.
+ *
+ * The run can be scaled up to a store host's load with system properties:
+ * -D{@value #LANES_PROPERTY}=number of lanes, -D{@value #CUSTOMERS_PER_SECOND_PROPERTY}=arrival rate per lane,
+ * -D{@value #MILLIS_PROPERTY}=run time.
+ *
+ * With -D{@value #JOURNAL_PROPERTY}=path, completed {@link Sale}s are written to a {@link TransactionJournal}.
+ * The end-of-day {@link com.eugene.percent.report.SalesReport} is printed after the run.
+ *
+ * Hot-path metrics are published over JMX, and recorded with -D{@value Metrics#ENABLED_PROPERTY}=true
+ * or once enabled from a JMX console.
+ *
+ * Receipts are printed through a {@link ReceiptSink}, to the console by default.
+ * -D{@value #RECEIPTS_PROPERTY}=path writes them to a file instead, -D{@value #RECEIPTS_PROPERTY}={@value #NO_RECEIPTS} turns them off.
  */
 public class StoreDemo {
+    public static final String JOURNAL_PROPERTY = "storedemo.journal";
+    public static final String LANES_PROPERTY = "storedemo.lanes";
+    public static final String CUSTOMERS_PER_SECOND_PROPERTY = "storedemo.customersPerSecond";
+    public static final String MILLIS_PROPERTY = "storedemo.millis";
+    public static final String RECEIPTS_PROPERTY = "storedemo.receipts";
+    public static final String NO_RECEIPTS = "none";
+
     private static final int NUM_TERMINALS = 5;
     private static final int DEMO_MILLIS = 100;
-    private static final int POS_MAX_SLEEP_MILLIS = 80;
+    private static final double CUSTOMERS_PER_SECOND = 25;
 
-    private final List<Thread> terminals;
+    private final LaneSimulator simulator;
 
     public StoreDemo() {
-        this.terminals = new ArrayList<>();
-
-        for (int i = 1; i <= NUM_TERMINALS; ++i) {
-            this.terminals.add(new Thread("Terminal " + i) {
-                public void run() {
-                    runPos(getName());
-                }
-            });
-        }
+        this((TransactionJournal) null);
     }
 
     /**
-     * Runs store until closing.
+     * @param journal {@link TransactionJournal} for completed {@link Sale}s, null for none.
      */
-    public void start() {
-        terminals.forEach(Thread::start);
+    public StoreDemo(final TransactionJournal journal) {
+        this(journal, null);
     }
 
     /**
-     * Closes the store.
+     * @param journal {@link TransactionJournal} for completed {@link Sale}s, null for none.
+     * @param receiptSink {@link ReceiptSink} for receipts, null for none.
      */
-    public void stop() {
-        terminals.forEach(Thread::interrupt);
+    public StoreDemo(final TransactionJournal journal, final ReceiptSink receiptSink) {
+        this(SimulationConfig.builder()
+                .lanes(NUM_TERMINALS)
+                .arrivalProcess(ArrivalProcess.poisson(CUSTOMERS_PER_SECOND))
+                .journal(journal)
+                .receiptSink(receiptSink)
+                .build());
     }
 
     /**
-     * Waits for store to close.
+     * @param config {@link SimulationConfig} of the store's lanes.
      */
-    public void join() {
-        terminals.forEach(terminal -> {
-            try {
-                terminal.join();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        });
+    public StoreDemo(final SimulationConfig config) {
+        this.simulator = new LaneSimulator(config);
     }
 
     /**
+     * Runs store until closing.
+     */
+    public void start() {
+        simulator.start();
+    }
+
+    /**
+     * Closes the store. Customers already queued are still served.
+     */
+    public void stop() {
+        simulator.stop();
+    }
+
+    /**
+     * Waits for store to close.
      *
-     * Runs terminal in perpetuity.
-     *
-     * @param terminalName terminal id.
+     * @return {@link SimulationReport} of the day.
+     * @throws InterruptedException if interrupted while waiting
      */
-    private static void runPos(final String terminalName) {
-        PointOfSaleTerminal pointOfSaleTerminal = new PointOfSaleTerminal();
-
-        boolean isInterrupted = false;
-
-        System.out.println("Terminal: " + terminalName + " - starting...");
-
-        int numCustomersServed = 0;
-        BigDecimal total = BigDecimal.valueOf(0.0);
-
-        while (true) {
-            if (isInterrupted) {
-                System.out.println(
-                        "Terminal: " + terminalName + " - done. " +
-                        "Customers Served: " + numCustomersServed + ". " +
-                        "Total price: " + total
-                );
-                return;
-            }
-
-            pointOfSaleTerminal.clear();
-
-            List<Product> productList = ProductRegistry.generateRandomProductScan();
-            for (Product product : productList) {
-                try {
-                    pointOfSaleTerminal.scan(product);
-                } catch (ScanProductException e) {
-                    System.err.println("Terminal: " + terminalName + " cannot scan " + product);
-                    e.printStackTrace();
-                }
-            }
-
-            BigDecimal totalPrice = pointOfSaleTerminal.calculateTotal();
-
-            ++numCustomersServed;
-            total = total.add(totalPrice);
-            System.out.println("Terminal: " + terminalName + ", Total Price: " + totalPrice + ", Products: " + productList);
-
-            isInterrupted = Thread.currentThread().isInterrupted();
-            try {
-                if (!isInterrupted) {
-                    Thread.sleep(ThreadLocalRandom.current().nextInt(POS_MAX_SLEEP_MILLIS));
-                }
-            } catch (InterruptedException e) {
-                isInterrupted = true;
-            }
-        }
+    public SimulationReport join() throws InterruptedException {
+        return simulator.awaitTermination();
     }
 
     /**
@@ -125,10 +117,10 @@ public class StoreDemo {
         Product productC = Product.builder().productCode("C").build();
         Product productD = Product.builder().productCode("D").build();
 
-        ProductPrice productPriceA = new ProductPrice(1.25, 3, 3);
-        ProductPrice productPriceB = new ProductPrice(4.25, 1, 4.25);
-        ProductPrice productPriceC = new ProductPrice(1, 6, 5);
-        ProductPrice productPriceD = new ProductPrice(0.75, 1, 0.75);
+        ProductPrice productPriceA = new ProductPrice(Money.of("1.25"), 3, Money.of("3"));
+        ProductPrice productPriceB = new ProductPrice(Money.of("4.25"), 1, Money.of("4.25"));
+        ProductPrice productPriceC = new ProductPrice(Money.of("1"), 6, Money.of("5"));
+        ProductPrice productPriceD = new ProductPrice(Money.of("0.75"), 1, Money.of("0.75"));
 
         ProductRegistry.register(productA, productPriceA);
         ProductRegistry.register(productB, productPriceB);
@@ -146,11 +138,49 @@ public class StoreDemo {
     public static void main(final String[] args) throws Exception {
         StoreDemo.setPricing();
 
-        StoreDemo storeDemo = new StoreDemo();
+        Metrics.registerMBean();
+        ProductRegistry.registerMBean();
+
+        String journalPath = System.getProperty(JOURNAL_PROPERTY);
+        TransactionJournal journal = journalPath == null ? null : TransactionJournal.open(Paths.get(journalPath));
+
+        String receipts = System.getProperty(RECEIPTS_PROPERTY);
+        ReceiptOutput receiptOutput = receipts == null ? new ConsoleReceiptOutput()
+                : NO_RECEIPTS.equals(receipts) ? null
+                : new FileReceiptOutput(Paths.get(receipts));
+        //a slow console must not slow checkout down
+        ReceiptSink receiptSink = receiptOutput == null ? null : new ReceiptSink(receiptOutput,
+                ReceiptFormatter.DEFAULT, ReceiptSink.OverflowPolicy.DROP,
+                ReceiptSink.DEFAULT_CAPACITY, ReceiptSink.DEFAULT_BATCH_SIZE);
+
+        SalesAggregator salesAggregator = new SalesAggregator();
+
+        String customersPerSecond = System.getProperty(CUSTOMERS_PER_SECOND_PROPERTY);
+        StoreDemo storeDemo = new StoreDemo(SimulationConfig.builder()
+                .lanes(Integer.getInteger(LANES_PROPERTY, NUM_TERMINALS))
+                .arrivalProcess(ArrivalProcess.poisson(
+                        customersPerSecond == null ? CUSTOMERS_PER_SECOND : Double.parseDouble(customersPerSecond)))
+                .journal(journal)
+                .receiptSink(receiptSink)
+                .salesAggregator(salesAggregator)
+                .build());
 
         storeDemo.start();
-        Thread.sleep(DEMO_MILLIS);
+        Thread.sleep(Long.getLong(MILLIS_PROPERTY, DEMO_MILLIS));
         storeDemo.stop();
-        storeDemo.join();
+        SimulationReport report = storeDemo.join();
+
+        if (receiptSink != null) {
+            receiptSink.close();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+
+        System.out.println(report);
+        System.out.println(salesAggregator.report());
+        if (receiptSink != null && receiptSink.getDropped() > 0) {
+            System.out.println("Receipts dropped: " + receiptSink.getDropped());
+        }
     }
 }
@@ -0,0 +1,67 @@
+package com.eugene.percent.catalog;
+
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import lombok.NonNull;
+
+/**
+ * Read-only catalog of {@link Product}s and their {@link ProductPrice}s, addressed by record index
+ * from 0 to {@link #size()} - 1.
+ *
+ * Implementations are immutable and thread-safe.
+ */
+public interface Catalog {
+    /**
+     * @return number of products in the catalog.
+     */
+    int size();
+
+    /**
+     * @param productCode product code
+     * @return record index of a product code, -1 if it is not in the catalog.
+     */
+    int indexOf(@NonNull CharSequence productCode);
+
+    /**
+     * @param product {@link Product}
+     * @return record index of a {@link Product}, -1 if it is not in the catalog.
+     */
+    default int indexOf(@NonNull Product product) {
+        return indexOf(product.getProductCode());
+    }
+
+    /**
+     * @return product code of a record.
+     */
+    String productCodeAt(int index);
+
+    /**
+     * @return {@link Product} of a record.
+     */
+    default Product productAt(int index) {
+        return Product.builder().productCode(productCodeAt(index)).build();
+    }
+
+    /**
+     * @return price per unit of a record, in minor units.
+     */
+    long pricePerUnitAt(int index);
+
+    /**
+     * @return number of units in volume of a record.
+     */
+    int numberOfUnitsInVolumeAt(int index);
+
+    /**
+     * @return price per volume of a record, in minor units.
+     */
+    long pricePerVolumeAt(int index);
+
+    /**
+     * @return new {@link ProductPrice} of a record.
+     */
+    default ProductPrice priceAt(int index) {
+        return new ProductPrice(pricePerUnitAt(index), numberOfUnitsInVolumeAt(index), pricePerVolumeAt(index));
+    }
+}
@@ -0,0 +1,159 @@
+package com.eugene.percent.catalog;
+
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+
+/**
+ * Binary price catalog file format, served by {@link MappedCatalog}.
+ *
+ * Little-endian layout:
+ * <pre>
+ * header  (32 bytes)  : int magic, int format version, int record count, int table size, long codes length, long 0
+ * table   (4 * table size bytes)  : open-addressing hash table over product codes, record index + 1, 0 if free
+ * records (32 * record count bytes) : long price per unit, long price per volume, int units in volume,
+ *                                     int code offset, int code length, int code hash
+ * codes   (codes length bytes)    : US-ASCII product codes
+ * </pre>
+ *
+ * Prices are in minor units, see {@link com.eugene.percent.model.Money}.
+ * A catalog is mapped as a single region, so a file is limited to 2GB (roughly 30 million products).
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class CatalogFile {
+    static final int MAGIC = 0x43534F50; //"POSC"
+    static final int FORMAT_VERSION = 1;
+
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 32;
+    static final int SLOT_SIZE = 4;
+
+    static final int RECORD_PRICE_PER_UNIT = 0;
+    static final int RECORD_PRICE_PER_VOLUME = 8;
+    static final int RECORD_UNITS_IN_VOLUME = 16;
+    static final int RECORD_CODE_OFFSET = 20;
+    static final int RECORD_CODE_LENGTH = 24;
+    static final int RECORD_CODE_HASH = 28;
+
+    private static final int FNV_OFFSET_BASIS = 0x811C9DC5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    /**
+     * Writes a catalog file, replacing any existing file.
+     *
+     * @param path file to write
+     * @param productPrices {@link ProductPrice} per {@link Product}
+     * @throws IOException if the file cannot be written or the catalog does not fit the format
+     * @throws IllegalArgumentException if a product code is not US-ASCII or a price has {@link ProductPrice#getRules() rules}
+     */
+    public static void write(@NonNull Path path, @NonNull Map<Product, ProductPrice> productPrices) throws IOException {
+        int recordCount = productPrices.size();
+        int tableSize = tableSizeFor(recordCount);
+
+        long codesLength = 0;
+        for (Map.Entry<Product, ProductPrice> productPrice : productPrices.entrySet()) {
+            codesLength += checkedLength(productPrice.getKey().getProductCode());
+            if (productPrice.getValue().hasRules()) {
+                throw new IllegalArgumentException("Price of product (" + productPrice.getKey() + ") has rules");
+            }
+        }
+
+        long tableOffset = HEADER_SIZE;
+        long recordsOffset = tableOffset + (long) SLOT_SIZE * tableSize;
+        long codesOffset = recordsOffset + (long) RECORD_SIZE * recordCount;
+        long fileSize = codesOffset + codesLength;
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IOException("Catalog of " + recordCount + " products is too large: " + fileSize + " bytes");
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, FORMAT_VERSION);
+            buffer.putInt(8, recordCount);
+            buffer.putInt(12, tableSize);
+            buffer.putLong(16, codesLength);
+            buffer.putLong(24, 0L);
+
+            int mask = tableSize - 1;
+            int index = 0;
+            int codeOffset = 0;
+            for (Map.Entry<Product, ProductPrice> productPrice : productPrices.entrySet()) {
+                String productCode = productPrice.getKey().getProductCode();
+                ProductPrice price = productPrice.getValue();
+                int hash = hash(productCode);
+
+                int record = (int) recordsOffset + index * RECORD_SIZE;
+                buffer.putLong(record + RECORD_PRICE_PER_UNIT, price.getPricePerUnit());
+                buffer.putLong(record + RECORD_PRICE_PER_VOLUME, price.getPricePerVolume());
+                buffer.putInt(record + RECORD_UNITS_IN_VOLUME, price.getNumberOfUnitsInVolume());
+                buffer.putInt(record + RECORD_CODE_OFFSET, codeOffset);
+                buffer.putInt(record + RECORD_CODE_LENGTH, productCode.length());
+                buffer.putInt(record + RECORD_CODE_HASH, hash);
+
+                for (int i = 0; i < productCode.length(); ++i) {
+                    buffer.put((int) codesOffset + codeOffset + i, (byte) productCode.charAt(i));
+                }
+                codeOffset += productCode.length();
+
+                int slot = hash & mask;
+                while (buffer.getInt((int) tableOffset + slot * SLOT_SIZE) != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                buffer.putInt((int) tableOffset + slot * SLOT_SIZE, index + 1);
+
+                ++index;
+            }
+
+            buffer.force();
+        }
+    }
+
+    /**
+     * FNV-1a hash of a US-ASCII product code.
+     */
+    static int hash(CharSequence productCode) {
+        int hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < productCode.length(); ++i) {
+            hash = (hash ^ (productCode.charAt(i) & 0xFF)) * FNV_PRIME;
+        }
+
+        return hash;
+    }
+
+    /**
+     * @return table size - a power of 2 with at most 50% load.
+     */
+    static int tableSizeFor(int recordCount) {
+        int tableSize = 2;
+        while (tableSize < 2L * recordCount) {
+            tableSize *= 2;
+        }
+
+        return tableSize;
+    }
+
+    private static int checkedLength(String productCode) {
+        for (int i = 0; i < productCode.length(); ++i) {
+            if (productCode.charAt(i) > 0x7F) {
+                throw new IllegalArgumentException("Product code is not US-ASCII: " + productCode);
+            }
+        }
+
+        return productCode.length();
+    }
+}
@@ -0,0 +1,426 @@
+package com.eugene.percent.catalog;
+
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import lombok.NonNull;
+
+/**
+ * Immutable, read-optimized {@link Catalog} compiled from a set of {@link Product}s.
+ *
+ * Product codes are indexed by a minimal perfect hash (hash and displace): a code's bucket holds a displacement
+ * that maps every code of the bucket to its own record, so a lookup is one bucket read, one record probe
+ * and one code comparison, whatever the catalog size. Records are held in parallel primitive arrays
+ * and codes in a single char array - no per-product objects.
+ *
+ * The perfect hash is keyed on {@link String#hashCode()}, which a String caches, so a lookup does not rehash
+ * the code. The few codes whose {@link String#hashCode()} collides with another code's are kept in the last
+ * records, with their hash codes in a sorted overflow array that is binary searched only when the perfect hash
+ * probe misses - a miss compares hash codes and chars, it does not make a String of the code.
+ *
+ * Codes are split by hash into partitions of about {@value #PARTITION_SIZE}, each with its own perfect hash
+ * over its own range of records. Partitions are placed independently on all cores, and a small partition
+ * keeps the search for the last free records short.
+ *
+ * Building is O(n log n) and meant for off-hours, e.g. compiling the registry at store open.
+ */
+public final class FrozenCatalog implements Catalog {
+    private static final int KEYS_PER_BUCKET = 4;
+    private static final int PARTITION_SIZE = 1 << 14;
+    private static final int MAX_DISPLACEMENT = 1 << 20;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final int size;
+    private final long seed;
+    private final int[] partitionOffsets; //partition -> first record, numPartitions + 1 entries
+    private final int[] bucketOffsets;    //partition -> first bucket, numPartitions + 1 entries
+    private final int[] displacements;    //bucket -> displacement
+    private final int[] overflowHashCodes; //overflow record - first overflow record -> code hash code, sorted
+    private final int[] codeOffsets;   //record -> offset in codes, size + 1 entries
+    private final char[] codes;
+    private final long[] pricesPerUnit;
+    private final int[] numbersOfUnitsInVolume;
+    private final long[] pricesPerVolume;
+
+    private FrozenCatalog(int size, long seed, int[] partitionOffsets, int[] bucketOffsets, int[] displacements,
+                          int[] overflowHashCodes,
+                          int[] codeOffsets, char[] codes,
+                          long[] pricesPerUnit, int[] numbersOfUnitsInVolume, long[] pricesPerVolume) {
+        this.size = size;
+        this.seed = seed;
+        this.partitionOffsets = partitionOffsets;
+        this.bucketOffsets = bucketOffsets;
+        this.displacements = displacements;
+        this.overflowHashCodes = overflowHashCodes;
+        this.codeOffsets = codeOffsets;
+        this.codes = codes;
+        this.pricesPerUnit = pricesPerUnit;
+        this.numbersOfUnitsInVolume = numbersOfUnitsInVolume;
+        this.pricesPerVolume = pricesPerVolume;
+    }
+
+    /**
+     * Compiles a catalog.
+     *
+     * @param productPrices {@link ProductPrice} per {@link Product}
+     * @return {@link FrozenCatalog}
+     * @throws IllegalArgumentException if a price has {@link ProductPrice#getRules() rules}, which a catalog does not hold
+     */
+    public static FrozenCatalog build(@NonNull Map<Product, ProductPrice> productPrices) {
+        int size = productPrices.size();
+        String[] productCodes = new String[size];
+        long[] pricesPerUnit = new long[size];
+        int[] numbersOfUnitsInVolume = new int[size];
+        long[] pricesPerVolume = new long[size];
+
+        int i = 0;
+        for (Map.Entry<Product, ProductPrice> productPrice : productPrices.entrySet()) {
+            ProductPrice price = productPrice.getValue();
+            if (price.hasRules()) {
+                throw new IllegalArgumentException("Price of product (" + productPrice.getKey() + ") has rules");
+            }
+            productCodes[i] = productPrice.getKey().getProductCode();
+            pricesPerUnit[i] = price.getPricePerUnit();
+            numbersOfUnitsInVolume[i] = price.getNumberOfUnitsInVolume();
+            pricesPerVolume[i] = price.getPricePerVolume();
+            ++i;
+        }
+
+        return build(productCodes, pricesPerUnit, numbersOfUnitsInVolume, pricesPerVolume);
+    }
+
+    /**
+     * Compiles a catalog straight from columns of records, e.g. the rows of a {@link PriceFeed}.
+     * The columns are not kept.
+     *
+     * @param productCodes code of every record, all distinct
+     * @param pricesPerUnit price per unit of every record, in minor units
+     * @param numbersOfUnitsInVolume number of units in volume of every record
+     * @param pricesPerVolume price per volume of every record, in minor units
+     * @return {@link FrozenCatalog}
+     * @throws IllegalArgumentException if the codes are too long to hold
+     */
+    public static FrozenCatalog build(@NonNull String[] productCodes, @NonNull long[] pricesPerUnit,
+                                      @NonNull int[] numbersOfUnitsInVolume, @NonNull long[] pricesPerVolume) {
+        int size = productCodes.length;
+        assert pricesPerUnit.length == size && numbersOfUnitsInVolume.length == size && pricesPerVolume.length == size;
+
+        //codes sharing a String hash code with an earlier code cannot be told apart by the perfect hash
+        long[] byHashCode = new long[size];
+        Arrays.parallelSetAll(byHashCode, k -> ((long) productCodes[k].hashCode() << 32) | k);
+        Arrays.parallelSort(byHashCode);
+
+        int[] keys = new int[size];
+        int[] overflowKeys = new int[size];
+        int numKeys = 0;
+        int numOverflowKeys = 0;
+        for (int i = 0; i < size; ++i) {
+            boolean collides = i > 0 && (byHashCode[i] >>> 32) == (byHashCode[i - 1] >>> 32);
+            if (collides) {
+                overflowKeys[numOverflowKeys++] = (int) byHashCode[i];
+            } else {
+                keys[numKeys++] = (int) byHashCode[i];
+            }
+        }
+
+        int[] recordOf = new int[size]; //record -> input index
+        int numPartitions = Math.max(1, (numKeys + PARTITION_SIZE - 1) / PARTITION_SIZE);
+        int[] partitionOffsets = new int[numPartitions + 1];
+        int[] bucketOffsets = new int[numPartitions + 1];
+        int[] displacements = null;
+        long seed = GOLDEN_GAMMA;
+        while (displacements == null) {
+            displacements = place(keys, numKeys, productCodes, seed, partitionOffsets, bucketOffsets, recordOf);
+            if (displacements == null) {
+                seed += GOLDEN_GAMMA;
+            }
+        }
+
+        //overflow keys are in hash code order
+        int[] overflowHashCodes = new int[numOverflowKeys];
+        for (int k = 0; k < numOverflowKeys; ++k) {
+            recordOf[numKeys + k] = overflowKeys[k];
+            overflowHashCodes[k] = productCodes[overflowKeys[k]].hashCode();
+        }
+
+        //records are filled in parallel, each at its code's offset
+        long[] codeEnds = new long[size];
+        Arrays.parallelSetAll(codeEnds, record -> productCodes[recordOf[record]].length());
+        Arrays.parallelPrefix(codeEnds, Long::sum);
+        long codesLength = size == 0 ? 0 : codeEnds[size - 1];
+        if (codesLength > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Product codes are too long to freeze: " + codesLength + " chars");
+        }
+
+        int[] codeOffsets = new int[size + 1];
+        char[] codes = new char[(int) codesLength];
+        long[] recordPricesPerUnit = new long[size];
+        int[] recordNumbersOfUnitsInVolume = new int[size];
+        long[] recordPricesPerVolume = new long[size];
+
+        IntStream.range(0, size).parallel().forEach(record -> {
+            String productCode = productCodes[recordOf[record]];
+            int offset = (int) codeEnds[record] - productCode.length();
+
+            codeOffsets[record] = offset;
+            productCode.getChars(0, productCode.length(), codes, offset);
+
+            recordPricesPerUnit[record] = pricesPerUnit[recordOf[record]];
+            recordNumbersOfUnitsInVolume[record] = numbersOfUnitsInVolume[recordOf[record]];
+            recordPricesPerVolume[record] = pricesPerVolume[recordOf[record]];
+        });
+        codeOffsets[size] = (int) codesLength;
+
+        return new FrozenCatalog(size, seed, partitionOffsets, bucketOffsets, displacements, overflowHashCodes,
+                codeOffsets, codes, recordPricesPerUnit, recordNumbersOfUnitsInVolume, recordPricesPerVolume);
+    }
+
+    /**
+     * Places keys (input indexes of codes with distinct hash codes) into records 0 to numKeys - 1,
+     * partition by partition in parallel.
+     *
+     * @param partitionOffsets receives the first record of every partition
+     * @param bucketOffsets receives the first bucket of every partition
+     * @param recordOf receives the input index of every placed record
+     * @return displacement per bucket, or null if some bucket could not be placed with this seed.
+     */
+    private static int[] place(int[] keys, int numKeys, String[] productCodes, long seed,
+                               int[] partitionOffsets, int[] bucketOffsets, int[] recordOf) {
+        int numPartitions = partitionOffsets.length - 1;
+
+        long[] hashes = new long[numKeys];
+        Arrays.parallelSetAll(hashes, k -> hash(productCodes[keys[k]].hashCode(), seed));
+
+        //group keys by partition (counting sort)
+        Arrays.fill(partitionOffsets, 0);
+        for (int k = 0; k < numKeys; ++k) {
+            ++partitionOffsets[partitionOf(hashes[k], numPartitions) + 1];
+        }
+        for (int p = 0; p < numPartitions; ++p) {
+            bucketOffsets[p + 1] = bucketOffsets[p] + (partitionOffsets[p + 1] + KEYS_PER_BUCKET - 1) / KEYS_PER_BUCKET;
+            partitionOffsets[p + 1] += partitionOffsets[p];
+        }
+        int[] members = new int[numKeys];
+        int[] fill = Arrays.copyOf(partitionOffsets, numPartitions);
+        for (int k = 0; k < numKeys; ++k) {
+            members[fill[partitionOf(hashes[k], numPartitions)]++] = k;
+        }
+
+        int[] displacements = new int[bucketOffsets[numPartitions]];
+        boolean placed = IntStream.range(0, numPartitions).parallel().allMatch(p -> placePartition(
+                keys, hashes, members, partitionOffsets[p], partitionOffsets[p + 1],
+                displacements, bucketOffsets[p], bucketOffsets[p + 1], recordOf));
+
+        return placed ? displacements : null;
+    }
+
+    /**
+     * Places the keys of a partition - members start to end - into records start to end - 1.
+     *
+     * @return false if some bucket could not be placed with this seed.
+     */
+    private static boolean placePartition(int[] keys, long[] hashes, int[] partitionMembers, int start, int end,
+                                          int[] displacements, int bucketStart, int bucketEnd, int[] recordOf) {
+        int size = end - start;
+        int numBuckets = bucketEnd - bucketStart;
+        if (size == 0) {
+            return true;
+        }
+
+        int[] bucketStarts = new int[numBuckets + 1];
+        for (int m = start; m < end; ++m) {
+            ++bucketStarts[reduce(hashes[partitionMembers[m]] >>> 32, numBuckets) + 1];
+        }
+
+        //group keys by bucket (counting sort), then order buckets largest first,
+        //so they are placed while most records are still free
+        int maxBucketSize = 0;
+        for (int b = 0; b < numBuckets; ++b) {
+            maxBucketSize = Math.max(maxBucketSize, bucketStarts[b + 1]);
+            bucketStarts[b + 1] += bucketStarts[b];
+        }
+        int[] members = new int[size];
+        int[] fill = Arrays.copyOf(bucketStarts, numBuckets);
+        for (int m = start; m < end; ++m) {
+            int k = partitionMembers[m];
+            members[fill[reduce(hashes[k] >>> 32, numBuckets)]++] = k;
+        }
+
+        int[] sizeStarts = new int[maxBucketSize + 2];
+        for (int b = 0; b < numBuckets; ++b) {
+            ++sizeStarts[maxBucketSize - (bucketStarts[b + 1] - bucketStarts[b]) + 1];
+        }
+        for (int s = 0; s <= maxBucketSize; ++s) {
+            sizeStarts[s + 1] += sizeStarts[s];
+        }
+        int[] order = new int[numBuckets];
+        for (int b = 0; b < numBuckets; ++b) {
+            order[sizeStarts[maxBucketSize - (bucketStarts[b + 1] - bucketStarts[b])]++] = b;
+        }
+
+        boolean[] taken = new boolean[size];
+        int[] positions = new int[maxBucketSize];
+
+        for (int b : order) {
+            int bucketMembersStart = bucketStarts[b];
+            int bucketMembersEnd = bucketStarts[b + 1];
+            if (bucketMembersStart == bucketMembersEnd) {
+                break;
+            }
+
+            int displacement = 0;
+            while (!fits(members, bucketMembersStart, bucketMembersEnd, hashes, displacement, size, taken, positions)) {
+                if (++displacement == MAX_DISPLACEMENT) {
+                    return false;
+                }
+            }
+
+            displacements[bucketStart + b] = displacement;
+            for (int k = bucketMembersStart; k < bucketMembersEnd; ++k) {
+                taken[positions[k - bucketMembersStart]] = true;
+                recordOf[start + positions[k - bucketMembersStart]] = keys[members[k]];
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean fits(int[] members, int start, int end, long[] hashes, int displacement, int size,
+                                boolean[] taken, int[] positions) {
+        for (int k = start; k < end; ++k) {
+            int position = position(hashes[members[k]], displacement, size);
+            if (taken[position]) {
+                return false;
+            }
+            for (int j = 0; j < k - start; ++j) {
+                if (positions[j] == position) {
+                    return false;
+                }
+            }
+            positions[k - start] = position;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int indexOf(@NonNull CharSequence productCode) {
+        int hashCode = Product.codeHashCode(productCode);
+        long hash = hash(hashCode, seed);
+        int partition = partitionOf(hash, partitionOffsets.length - 1);
+        int start = partitionOffsets[partition];
+        int partitionSize = partitionOffsets[partition + 1] - start;
+
+        if (partitionSize > 0) {
+            int bucketStart = bucketOffsets[partition];
+            int bucket = bucketStart + reduce(hash >>> 32, bucketOffsets[partition + 1] - bucketStart);
+            int index = start + position(hash, displacements[bucket], partitionSize);
+
+            if (codeEquals(index, productCode)) {
+                return index;
+            }
+        }
+
+        return overflowHashCodes.length == 0 ? -1 : overflowIndexOf(productCode, hashCode);
+    }
+
+    private int overflowIndexOf(CharSequence productCode, int hashCode) {
+        //first overflow record of the hash code
+        int low = 0;
+        int high = overflowHashCodes.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (overflowHashCodes[middle] < hashCode) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        int overflowStart = size - overflowHashCodes.length;
+        for (int k = low; k < overflowHashCodes.length && overflowHashCodes[k] == hashCode; ++k) {
+            if (codeEquals(overflowStart + k, productCode)) {
+                return overflowStart + k;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public String productCodeAt(int index) {
+        return new String(codes, codeOffsets[index], codeOffsets[index + 1] - codeOffsets[index]);
+    }
+
+    @Override
+    public long pricePerUnitAt(int index) {
+        return pricesPerUnit[index];
+    }
+
+    @Override
+    public int numberOfUnitsInVolumeAt(int index) {
+        return numbersOfUnitsInVolume[index];
+    }
+
+    @Override
+    public long pricePerVolumeAt(int index) {
+        return pricesPerVolume[index];
+    }
+
+    private boolean codeEquals(int index, CharSequence productCode) {
+        int offset = codeOffsets[index];
+        int length = codeOffsets[index + 1] - offset;
+        if (length != productCode.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < length; ++i) {
+            if (codes[offset + i] != productCode.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static long hash(int hashCode, long seed) {
+        return mix(hashCode + seed);
+    }
+
+    /**
+     * Partitions use the low half of the hash, buckets the high half.
+     */
+    private static int partitionOf(long hash, int numPartitions) {
+        return reduce(hash & 0xFFFFFFFFL, numPartitions);
+    }
+
+    private static int position(long hash, int displacement, int size) {
+        return reduce(mix(hash + displacement * GOLDEN_GAMMA) >>> 32, size);
+    }
+
+    /**
+     * Maps a 32-bit value to [0, n) by multiply-shift, cheaper than a modulo.
+     */
+    private static int reduce(long value32, int n) {
+        return (int) ((value32 * n) >>> 32);
+    }
+
+    /**
+     * SplitMix64 finalizer.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,153 @@
+package com.eugene.percent.catalog;
+
+import static com.eugene.percent.catalog.CatalogFile.HEADER_SIZE;
+import static com.eugene.percent.catalog.CatalogFile.RECORD_CODE_HASH;
+import static com.eugene.percent.catalog.CatalogFile.RECORD_CODE_LENGTH;
+import static com.eugene.percent.catalog.CatalogFile.RECORD_CODE_OFFSET;
+import static com.eugene.percent.catalog.CatalogFile.RECORD_PRICE_PER_UNIT;
+import static com.eugene.percent.catalog.CatalogFile.RECORD_PRICE_PER_VOLUME;
+import static com.eugene.percent.catalog.CatalogFile.RECORD_SIZE;
+import static com.eugene.percent.catalog.CatalogFile.RECORD_UNITS_IN_VOLUME;
+import static com.eugene.percent.catalog.CatalogFile.SLOT_SIZE;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import lombok.NonNull;
+
+/**
+ * Read-only {@link CatalogFile} served directly from a memory-mapped, off-heap region.
+ *
+ * Opening a catalog only maps and validates the header, so lookups can be answered right after launch
+ * regardless of the number of products, and lookups do not allocate.
+ *
+ * Thread-safe - only absolute reads are done on the mapped buffer.
+ */
+public final class MappedCatalog implements Catalog {
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int mask;
+    private final int recordsOffset;
+    private final int codesOffset;
+
+    private MappedCatalog(ByteBuffer buffer, int size, int tableSize) {
+        this.buffer = buffer;
+        this.size = size;
+        this.mask = tableSize - 1;
+        this.recordsOffset = HEADER_SIZE + SLOT_SIZE * tableSize;
+        this.codesOffset = recordsOffset + RECORD_SIZE * size;
+    }
+
+    /**
+     * Maps a catalog file.
+     *
+     * @param path {@link CatalogFile}
+     * @return {@link MappedCatalog}
+     * @throws IOException if the file cannot be read or is not a valid catalog file
+     */
+    public static MappedCatalog open(@NonNull Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE || fileSize > Integer.MAX_VALUE) {
+                throw new IOException("Not a catalog file: " + path);
+            }
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize).order(ByteOrder.LITTLE_ENDIAN);
+
+            int magic = buffer.getInt(0);
+            int formatVersion = buffer.getInt(4);
+            int size = buffer.getInt(8);
+            int tableSize = buffer.getInt(12);
+            long codesLength = buffer.getLong(16);
+
+            if (magic != CatalogFile.MAGIC || formatVersion != CatalogFile.FORMAT_VERSION) {
+                throw new IOException("Not a catalog file: " + path);
+            }
+            if (size < 0 || tableSize != CatalogFile.tableSizeFor(size)
+                    || HEADER_SIZE + (long) SLOT_SIZE * tableSize + (long) RECORD_SIZE * size + codesLength != fileSize) {
+                throw new IOException("Corrupt catalog file: " + path);
+            }
+
+            return new MappedCatalog(buffer, size, tableSize);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int indexOf(@NonNull CharSequence productCode) {
+        int hash = CatalogFile.hash(productCode);
+
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int index = buffer.getInt(HEADER_SIZE + slot * SLOT_SIZE) - 1;
+            if (index < 0) {
+                return -1;
+            }
+
+            int record = recordsOffset + index * RECORD_SIZE;
+            if (buffer.getInt(record + RECORD_CODE_HASH) == hash && codeEquals(record, productCode)) {
+                return index;
+            }
+        }
+    }
+
+    @Override
+    public String productCodeAt(int index) {
+        int record = record(index);
+        int codeOffset = codesOffset + buffer.getInt(record + RECORD_CODE_OFFSET);
+        int codeLength = buffer.getInt(record + RECORD_CODE_LENGTH);
+
+        char[] productCode = new char[codeLength];
+        for (int i = 0; i < codeLength; ++i) {
+            productCode[i] = (char) (buffer.get(codeOffset + i) & 0xFF);
+        }
+
+        return new String(productCode);
+    }
+
+    @Override
+    public long pricePerUnitAt(int index) {
+        return buffer.getLong(record(index) + RECORD_PRICE_PER_UNIT);
+    }
+
+    @Override
+    public int numberOfUnitsInVolumeAt(int index) {
+        return buffer.getInt(record(index) + RECORD_UNITS_IN_VOLUME);
+    }
+
+    @Override
+    public long pricePerVolumeAt(int index) {
+        return buffer.getLong(record(index) + RECORD_PRICE_PER_VOLUME);
+    }
+
+    private int record(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Record " + index + " of " + size);
+        }
+
+        return recordsOffset + index * RECORD_SIZE;
+    }
+
+    private boolean codeEquals(int record, CharSequence productCode) {
+        int codeLength = buffer.getInt(record + RECORD_CODE_LENGTH);
+        if (codeLength != productCode.length()) {
+            return false;
+        }
+
+        int codeOffset = codesOffset + buffer.getInt(record + RECORD_CODE_OFFSET);
+        for (int i = 0; i < codeLength; ++i) {
+            if ((buffer.get(codeOffset + i) & 0xFF) != productCode.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
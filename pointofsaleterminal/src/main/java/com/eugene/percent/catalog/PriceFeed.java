@@ -0,0 +1,418 @@
+package com.eugene.percent.catalog;
+
+import com.eugene.percent.exceptions.PriceFeedException;
+import com.eugene.percent.model.Money;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+
+/**
+ * Validated bulk price feed - the nightly repricing file, parsed in parallel.
+ *
+ * CSV, one product per line, amounts in major units:
+ * <pre>
+ * productCode,pricePerUnit,numberOfUnitsInVolume,pricePerVolume
+ * A,1.25,3,3.00
+ * </pre>
+ * The header line is optional; blank lines are skipped. Lines end with LF or CRLF.
+ *
+ * The file is not read into the heap. It is cut into {@value #CHUNK_SIZE}-byte chunks that are memory-mapped
+ * and parsed on all cores, a chunk owning the lines that start in it. Every value is validated explicitly -
+ * the {@link ProductPrice} asserts only run with -ea - and a feed with any error is rejected as a whole.
+ *
+ * Rows are held in columns - a code String and three primitives per row, no {@link Product} or {@link ProductPrice} -
+ * and duplicate codes are found by sorting the rows by code hash rather than through a set of the whole feed.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class PriceFeed {
+    public static final String HEADER = "productCode,pricePerUnit,numberOfUnitsInVolume,pricePerVolume";
+
+    static final int CHUNK_SIZE = 8 << 20;
+    static final int MAX_LINE_LENGTH = 4096;
+    static final int MAX_REPORTED_ERRORS = 100;
+
+    private final String[] productCodes;
+    private final long[] pricesPerUnit;
+    private final int[] numbersOfUnitsInVolume;
+    private final long[] pricesPerVolume;
+
+    /**
+     * Chunk of the feed - rows of the lines that start in it.
+     */
+    private static final class Chunk {
+        private final List<String> productCodes = new ArrayList<>();
+        private long[] pricesPerUnit = new long[16];
+        private int[] numbersOfUnitsInVolume = new int[16];
+        private long[] pricesPerVolume = new long[16];
+        private int[] rowLines = new int[16];  //line of every row, counted from the chunk's first line
+        private final List<String> errors = new ArrayList<>();
+        private final List<Integer> errorLines = new ArrayList<>();
+        private int errorCount;
+        private int lines;
+        private final int[] commas = new int[3];
+
+        private void add(String productCode, long pricePerUnit, int numberOfUnitsInVolume, long pricePerVolume) {
+            int row = productCodes.size();
+            if (row == rowLines.length) {
+                pricesPerUnit = Arrays.copyOf(pricesPerUnit, row * 2);
+                numbersOfUnitsInVolume = Arrays.copyOf(numbersOfUnitsInVolume, row * 2);
+                pricesPerVolume = Arrays.copyOf(pricesPerVolume, row * 2);
+                rowLines = Arrays.copyOf(rowLines, row * 2);
+            }
+            pricesPerUnit[row] = pricePerUnit;
+            numbersOfUnitsInVolume[row] = numberOfUnitsInVolume;
+            pricesPerVolume[row] = pricePerVolume;
+            rowLines[row] = lines;
+            productCodes.add(productCode);
+        }
+
+        private void error(String message) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(message);
+                errorLines.add(lines);
+            }
+            ++errorCount;
+        }
+    }
+
+    /**
+     * Parses and validates a feed.
+     *
+     * @param path feed file
+     * @return {@link PriceFeed}
+     * @throws IOException if the feed cannot be read
+     * @throws PriceFeedException if the feed is malformed, has invalid prices or lists a product twice
+     */
+    public static PriceFeed read(@NonNull Path path) throws IOException, PriceFeedException {
+        return read(path, CHUNK_SIZE);
+    }
+
+    static PriceFeed read(Path path, int chunkSize) throws IOException, PriceFeedException {
+        List<Chunk> chunks;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            int numberOfChunks = (int) ((fileSize + chunkSize - 1) / chunkSize);
+
+            chunks = IntStream.range(0, numberOfChunks).parallel()
+                    .mapToObj(i -> parseChunk(channel, fileSize, (long) i * chunkSize, chunkSize))
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        int size = 0;
+        for (Chunk chunk : chunks) {
+            size += chunk.productCodes.size();
+        }
+
+        String[] productCodes = new String[size];
+        long[] pricesPerUnit = new long[size];
+        int[] numbersOfUnitsInVolume = new int[size];
+        long[] pricesPerVolume = new long[size];
+        int row = 0;
+        for (Chunk chunk : chunks) {
+            int rows = chunk.productCodes.size();
+            for (int i = 0; i < rows; ++i) {
+                productCodes[row + i] = chunk.productCodes.get(i);
+            }
+            System.arraycopy(chunk.pricesPerUnit, 0, pricesPerUnit, row, rows);
+            System.arraycopy(chunk.numbersOfUnitsInVolume, 0, numbersOfUnitsInVolume, row, rows);
+            System.arraycopy(chunk.pricesPerVolume, 0, pricesPerVolume, row, rows);
+            row += rows;
+        }
+
+        BitSet duplicates = duplicates(productCodes);
+        List<String> errors = new ArrayList<>();
+        long errorCount = 0;
+
+        row = 0;
+        int firstLine = 1;
+        for (Chunk chunk : chunks) {
+            for (int i = 0; i < chunk.errors.size() && errors.size() < MAX_REPORTED_ERRORS; ++i) {
+                errors.add("line " + (firstLine + chunk.errorLines.get(i)) + ": " + chunk.errors.get(i));
+            }
+            errorCount += chunk.errorCount;
+
+            for (int i = 0; i < chunk.productCodes.size(); ++i, ++row) {
+                if (duplicates.get(row)) {
+                    if (errors.size() < MAX_REPORTED_ERRORS) {
+                        errors.add("line " + (firstLine + chunk.rowLines[i]) + ": product "
+                                + productCodes[row] + " is listed more than once");
+                    }
+                    ++errorCount;
+                }
+            }
+            firstLine += chunk.lines;
+        }
+
+        if (errorCount > 0) {
+            throw new PriceFeedException("Price feed " + path + " has " + errorCount + " errors, first: " + errors.get(0),
+                    errors);
+        }
+
+        return new PriceFeed(productCodes, pricesPerUnit, numbersOfUnitsInVolume, pricesPerVolume);
+    }
+
+    /**
+     * @return rows whose code is listed on an earlier row.
+     */
+    private static BitSet duplicates(String[] productCodes) {
+        long[] rowsByHash = new long[productCodes.length]; //hash << 32 | row
+        for (int row = 0; row < productCodes.length; ++row) {
+            rowsByHash[row] = (long) productCodes[row].hashCode() << 32 | row;
+        }
+        Arrays.parallelSort(rowsByHash);
+
+        BitSet duplicates = new BitSet(productCodes.length);
+        for (int start = 0, end; start < rowsByHash.length; start = end) {
+            //rows of equal hash, in row order
+            for (end = start + 1; end < rowsByHash.length && rowsByHash[end] >>> 32 == rowsByHash[start] >>> 32; ++end) {
+                int row = (int) rowsByHash[end];
+                for (int i = start; i < end; ++i) {
+                    if (productCodes[(int) rowsByHash[i]].equals(productCodes[row])) {
+                        duplicates.set(row);
+                        break;
+                    }
+                }
+            }
+        }
+
+        return duplicates;
+    }
+
+    private static Chunk parseChunk(FileChannel channel, long fileSize, long start, int chunkSize) {
+        Chunk chunk = new Chunk();
+
+        long mapStart = Math.max(0, start - 1);
+        long mapEnd = Math.min(fileSize, start + chunkSize + MAX_LINE_LENGTH);
+        MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        int position = (int) (start - mapStart);
+        int limit = (int) (Math.min(fileSize, start + chunkSize) - mapStart); //lines starting before limit
+        if (start > 0 && buffer.get(position - 1) != '\n') {
+            //the line started in the previous chunk
+            position = endOfLine(buffer, position) + 1;
+        }
+
+        byte[] line = new byte[MAX_LINE_LENGTH];
+        while (position < limit) {
+            int end = endOfLine(buffer, position);
+            if (end == buffer.limit() && mapEnd < fileSize) {
+                chunk.error("line is longer than " + MAX_LINE_LENGTH + " bytes");
+                ++chunk.lines;
+                break;
+            }
+
+            int length = end - position;
+            if (length > 0 && buffer.get(end - 1) == '\r') {
+                --length;
+            }
+            if (length > MAX_LINE_LENGTH) {
+                chunk.error("line is longer than " + MAX_LINE_LENGTH + " bytes");
+                ++chunk.lines;
+                position = end + 1;
+                continue;
+            }
+            for (int i = 0; i < length; ++i) {
+                line[i] = buffer.get(position + i);
+            }
+
+            boolean header = start == 0 && chunk.lines == 0 && length == HEADER.length()
+                    && HEADER.equals(new String(line, 0, length, StandardCharsets.US_ASCII));
+            if (length > 0 && !header) {
+                parseLine(line, length, chunk);
+            }
+
+            ++chunk.lines;
+            position = end + 1;
+        }
+
+        return chunk;
+    }
+
+    /**
+     * @return index of the LF ending the line at position, the buffer's limit if there is none.
+     */
+    private static int endOfLine(MappedByteBuffer buffer, int position) {
+        while (position < buffer.limit() && buffer.get(position) != '\n') {
+            ++position;
+        }
+
+        return position;
+    }
+
+    private static void parseLine(byte[] line, int length, Chunk chunk) {
+        int[] commas = chunk.commas;
+        int numberOfCommas = 0;
+        for (int i = 0; i < length; ++i) {
+            if (line[i] == ',') {
+                if (numberOfCommas == commas.length) {
+                    numberOfCommas = -1;
+                    break;
+                }
+                commas[numberOfCommas++] = i;
+            }
+        }
+        if (numberOfCommas != commas.length) {
+            chunk.error("expected 4 fields: " + new String(line, 0, length, StandardCharsets.UTF_8));
+            return;
+        }
+
+        if (commas[0] == 0) {
+            chunk.error("productCode is empty");
+            return;
+        }
+        String productCode = new String(line, 0, commas[0], StandardCharsets.UTF_8);
+
+        long pricePerUnit = parseAmount(line, commas[0] + 1, commas[1]);
+        int numberOfUnitsInVolume = parseCount(line, commas[1] + 1, commas[2]);
+        long pricePerVolume = parseAmount(line, commas[2] + 1, length);
+
+        if (pricePerUnit <= 0) {
+            chunk.error("pricePerUnit of " + productCode + " must be a positive amount");
+        } else if (numberOfUnitsInVolume <= 0) {
+            chunk.error("numberOfUnitsInVolume of " + productCode + " must be a positive int");
+        } else if (pricePerVolume <= 0) {
+            chunk.error("pricePerVolume of " + productCode + " must be a positive amount");
+        } else {
+            chunk.add(productCode, pricePerUnit, numberOfUnitsInVolume, pricePerVolume);
+        }
+    }
+
+    /**
+     * @return non-negative int, -1 if the field is not one.
+     */
+    static int parseCount(byte[] line, int from, int to) {
+        int result = 0;
+
+        for (int i = from; i < to; ++i) {
+            byte b = line[i];
+            if (b < '0' || b > '9' || result > (Integer.MAX_VALUE - (b - '0')) / 10) {
+                return -1;
+            }
+            result = result * 10 + (b - '0');
+        }
+
+        return from == to ? -1 : result;
+    }
+
+    /**
+     * Parses an amount in major units with up to {@value Money#SCALE} decimal places.
+     *
+     * @return amount in minor units, -1 if the field is not a valid non-negative amount.
+     */
+    static long parseAmount(byte[] line, int from, int to) {
+        long result = 0;
+        int decimals = -1;
+
+        for (int i = from; i < to; ++i) {
+            byte b = line[i];
+            if (b == '.' && decimals < 0 && i > from) {
+                decimals = 0;
+            } else if (b >= '0' && b <= '9' && decimals < Money.SCALE) {
+                if (result > (Long.MAX_VALUE - (b - '0')) / 10) {
+                    return -1;
+                }
+                result = result * 10 + (b - '0');
+                if (decimals >= 0) {
+                    ++decimals;
+                }
+            } else {
+                return -1;
+            }
+        }
+        if (from == to || decimals == 0) {
+            return -1;
+        }
+
+        for (int i = Math.max(decimals, 0); i < Money.SCALE; ++i) {
+            if (result > Long.MAX_VALUE / 10) {
+                return -1;
+            }
+            result *= 10;
+        }
+
+        return result;
+    }
+
+    /**
+     * @return number of products in the feed.
+     */
+    public int size() {
+        return productCodes.length;
+    }
+
+    /**
+     * @return product code of a row.
+     */
+    public String productCodeAt(int row) {
+        return productCodes[row];
+    }
+
+    /**
+     * @return price per unit of a row, in minor units.
+     */
+    public long pricePerUnitAt(int row) {
+        return pricesPerUnit[row];
+    }
+
+    /**
+     * @return number of units in volume of a row.
+     */
+    public int numberOfUnitsInVolumeAt(int row) {
+        return numbersOfUnitsInVolume[row];
+    }
+
+    /**
+     * @return price per volume of a row, in minor units.
+     */
+    public long pricePerVolumeAt(int row) {
+        return pricesPerVolume[row];
+    }
+
+    /**
+     * Compiles the rows into a {@link FrozenCatalog} straight from the columns, in parallel.
+     *
+     * @return {@link FrozenCatalog} of the feed
+     */
+    public FrozenCatalog toCatalog() {
+        return FrozenCatalog.build(productCodes, pricesPerUnit, numbersOfUnitsInVolume, pricesPerVolume);
+    }
+
+    /**
+     * @return {@link Product} of a row, created on every call.
+     */
+    public Product productAt(int row) {
+        return Product.builder().productCode(productCodes[row]).build();
+    }
+
+    /**
+     * @return {@link ProductPrice} of a row, created on every call.
+     */
+    public ProductPrice priceAt(int row) {
+        return new ProductPrice(pricesPerUnit[row], numbersOfUnitsInVolume[row], pricesPerVolume[row]);
+    }
+}
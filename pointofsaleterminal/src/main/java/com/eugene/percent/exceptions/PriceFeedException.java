@@ -0,0 +1,27 @@
+package com.eugene.percent.exceptions;
+
+import java.util.Collections;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * Exception when a price feed is malformed or fails validation. Nothing of the feed is imported.
+ */
+public class PriceFeedException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * First errors of the feed, each prefixed with its line number.
+     */
+    @Getter private final List<String> errors;
+
+    public PriceFeedException(String message) {
+        this(message, Collections.emptyList());
+    }
+
+    public PriceFeedException(String message, List<String> errors) {
+        super(message);
+        this.errors = Collections.unmodifiableList(errors);
+    }
+}
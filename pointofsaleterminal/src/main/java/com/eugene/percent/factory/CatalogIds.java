@@ -0,0 +1,80 @@
+package com.eugene.percent.factory;
+
+import java.util.Arrays;
+
+/**
+ * Immutable ids of the records of a {@link com.eugene.percent.catalog.Catalog} - the ids the {@link ProductRegistry}
+ * gave their {@link com.eugene.percent.model.Product}s.
+ *
+ * A catalog of products the registry has not seen before gets a contiguous range of fresh ids and holds no column.
+ * Otherwise products keep the ids they already had, held in a column, and a copy sorted by id finds the record of an id.
+ */
+final class CatalogIds {
+    private final int baseProductId;
+    private final int size;
+    private final int[] productIds;   //id per record, null if the ids are baseProductId + record index
+    private final long[] recordsById; //id << 32 | record index, sorted
+
+    private CatalogIds(int baseProductId, int size, int[] productIds, long[] recordsById) {
+        this.baseProductId = baseProductId;
+        this.size = size;
+        this.productIds = productIds;
+        this.recordsById = recordsById;
+    }
+
+    /**
+     * @return ids baseProductId + record index of size records.
+     */
+    static CatalogIds range(int baseProductId, int size) {
+        assert baseProductId >= 0 && size >= 0;
+
+        return new CatalogIds(baseProductId, size, null, null);
+    }
+
+    /**
+     * @param productIds distinct id per record
+     * @return ids of the records.
+     */
+    static CatalogIds of(int[] productIds) {
+        long[] recordsById = new long[productIds.length];
+        for (int index = 0; index < productIds.length; ++index) {
+            assert productIds[index] >= 0;
+            recordsById[index] = (long) productIds[index] << 32 | index;
+        }
+        Arrays.sort(recordsById);
+
+        return new CatalogIds(0, productIds.length, productIds, recordsById);
+    }
+
+    /**
+     * @return id of the record at index.
+     */
+    int productIdAt(int index) {
+        return productIds == null ? baseProductId + index : productIds[index];
+    }
+
+    /**
+     * @return index of the record with an id, -1 if no record has it.
+     */
+    int indexOf(int productId) {
+        if (productIds == null) {
+            return productId >= baseProductId && productId - baseProductId < size ? productId - baseProductId : -1;
+        }
+
+        int low = 0;
+        int high = recordsById.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleId = (int) (recordsById[middle] >>> 32);
+            if (middleId < productId) {
+                low = middle + 1;
+            } else if (middleId > productId) {
+                high = middle - 1;
+            } else {
+                return (int) recordsById[middle];
+            }
+        }
+
+        return -1;
+    }
+}
@@ -0,0 +1,42 @@
+package com.eugene.percent.factory;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Ordered feed of {@link RegistryChange}s of a {@link ProductRegistry}, read by replicas.
+ *
+ * A feed retains a tail of recent changes. A replica that fell behind the tail, or starts from nothing,
+ * catches up from a {@link #snapshot()} and then reads the changes after it.
+ *
+ * Sequence numbers are only comparable within one {@link #getEpoch()}: a primary that restarted numbers
+ * a history of its own, which may be shorter or longer than the one a replica applied.
+ */
+public interface ChangeFeed {
+    /**
+     * @return id of this feed's history, different for every registry instance.
+     * @throws IOException if a remote feed cannot be read
+     */
+    long getEpoch() throws IOException;
+
+    /**
+     * @return sequence number of the latest change.
+     * @throws IOException if a remote feed cannot be read
+     */
+    long getSequence() throws IOException;
+
+    /**
+     * @param sequence sequence number of the last change the reader applied
+     * @param maxChanges most changes to return
+     * @return changes after sequence, oldest first - empty if there are none yet,
+     *         null if some are no longer retained and the reader has to start from a snapshot.
+     * @throws IOException if a remote feed cannot be read
+     */
+    List<RegistryChange> changesSince(long sequence, int maxChanges) throws IOException;
+
+    /**
+     * @return compacted {@link RegistryChange.Type#SNAPSHOT} of the whole registry, as of its sequence number.
+     * @throws IOException if a remote feed cannot be read
+     */
+    RegistryChange snapshot() throws IOException;
+}
@@ -0,0 +1,147 @@
+package com.eugene.percent.factory;
+
+import java.util.Collection;
+
+/**
+ * Immutable index of overlay {@link PriceBook.Entry}s by product code, for lookups of codes that are not Strings -
+ * e.g. barcode bytes - without creating a String or {@link com.eugene.percent.model.Product}.
+ *
+ * Open addressing (linear probing) keyed on the {@link String#hashCode()} of the code; a probe compares
+ * the stored hash before the characters.
+ * A new snapshot's index is a copy of the table with only the changed codes probed,
+ * the table is rebuilt from the whole overlay only when it has to grow.
+ */
+final class CodeIndex {
+    static final CodeIndex EMPTY = new CodeIndex(new PriceBook.Entry[1], new int[1]);
+
+    private final PriceBook.Entry[] entries;
+    private final int[] hashes;
+    private final int mask;
+
+    private CodeIndex(PriceBook.Entry[] entries, int[] hashes) {
+        this.entries = entries;
+        this.hashes = hashes;
+        this.mask = entries.length - 1;
+    }
+
+    /**
+     * @return index of the entries, at most half full.
+     */
+    static CodeIndex of(Collection<PriceBook.Entry> overlay) {
+        if (overlay.isEmpty()) {
+            return EMPTY;
+        }
+
+        int tableSize = Integer.highestOneBit(Math.max(1, overlay.size() * 2 - 1)) * 2;
+        PriceBook.Entry[] entries = new PriceBook.Entry[tableSize];
+        int[] hashes = new int[tableSize];
+        int mask = tableSize - 1;
+
+        for (PriceBook.Entry entry : overlay) {
+            int hash = entry.getProduct().getProductCode().hashCode();
+            int slot = mix(hash) & mask;
+            while (entries[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            entries[slot] = entry;
+            hashes[slot] = hash;
+        }
+
+        return new CodeIndex(entries, hashes);
+    }
+
+    /**
+     * @param added entries to add, replacing the entries of the same codes
+     * @param overlay overlay of the new snapshot, including the added entries
+     * @return copy of this index with the entries added.
+     */
+    CodeIndex with(Collection<PriceBook.Entry> added, Collection<PriceBook.Entry> overlay) {
+        if (overlay.size() * 2 > entries.length) {
+            return of(overlay);
+        }
+
+        CodeIndex copy = new CodeIndex(entries.clone(), hashes.clone());
+        for (PriceBook.Entry entry : added) {
+            copy.put(entry);
+        }
+
+        return copy;
+    }
+
+    /**
+     * @param removed entry in this index
+     * @return copy of this index without the entry.
+     */
+    CodeIndex without(PriceBook.Entry removed) {
+        String productCode = removed.getProduct().getProductCode();
+        int hash = productCode.hashCode();
+        int slot = slotOf(productCode, hash);
+        if (slot < 0) {
+            return this;
+        }
+
+        CodeIndex copy = new CodeIndex(entries.clone(), hashes.clone());
+        copy.remove(slot);
+
+        return copy;
+    }
+
+    /**
+     * @param productCode product code
+     * @param hash {@link String#hashCode()} of the code
+     * @return overlay entry of the code, a de-registration tombstone included, null if there is none.
+     */
+    PriceBook.Entry get(CharSequence productCode, int hash) {
+        int slot = slotOf(productCode, hash);
+
+        return slot < 0 ? null : entries[slot];
+    }
+
+    private int slotOf(CharSequence productCode, int hash) {
+        for (int slot = mix(hash) & mask; entries[slot] != null; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && entries[slot].getProduct().getProductCode().contentEquals(productCode)) {
+                return slot;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Only for a copy that is not published yet.
+     */
+    private void put(PriceBook.Entry entry) {
+        String productCode = entry.getProduct().getProductCode();
+        int hash = productCode.hashCode();
+        int slot = mix(hash) & mask;
+        while (entries[slot] != null
+                && !(hashes[slot] == hash && entries[slot].getProduct().getProductCode().equals(productCode))) {
+            slot = (slot + 1) & mask;
+        }
+        entries[slot] = entry;
+        hashes[slot] = hash;
+    }
+
+    /**
+     * Empties a slot, shifting back the entries of the probe run behind it. Only for a copy that is not published yet.
+     */
+    private void remove(int slot) {
+        int hole = slot;
+        for (int next = (hole + 1) & mask; entries[next] != null; next = (next + 1) & mask) {
+            int home = mix(hashes[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                entries[hole] = entries[next];
+                hashes[hole] = hashes[next];
+                hole = next;
+            }
+        }
+        entries[hole] = null;
+        hashes[hole] = 0;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,35 @@
+package com.eugene.percent.factory;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Diff summary of a bulk price import, see {@link ProductRegistry#importPrices(java.nio.file.Path, ProductRegistry.ImportMode)}.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public class ImportReport {
+    private final long version;       //of the imported PriceBook
+    private final int added;
+    private final int changed;
+    private final int unchanged;
+    private final int removed;
+    private final long parseNanos;
+    private final long buildNanos;    //merge, compile and swap, including retries
+
+    /**
+     * @return number of {@link com.eugene.percent.model.Product}s in the feed.
+     */
+    public int getImported() {
+        return added + changed + unchanged;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "Imported %d products as version %d: %d added, %d changed, %d unchanged, %d removed%n" +
+                "Parsed in %.3fs, built in %.3fs",
+                getImported(), version, added, changed, unchanged, removed, parseNanos / 1e9, buildNanos / 1e9);
+    }
+}
@@ -0,0 +1,379 @@
+package com.eugene.percent.factory;
+
+import com.eugene.percent.catalog.Catalog;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Immutable, versioned snapshot of the {@link ProductRegistry} prices.
+ *
+ * A snapshot is never modified after it is published - every change produces a new {@link PriceBook}
+ * with a higher version, so readers holding a snapshot see a consistent catalog without locking.
+ *
+ * Each {@link Product} is identified by a dense int id assigned by the {@link ProductRegistry} at registration,
+ * so carts can key on primitives instead of {@link Product} objects.
+ *
+ * A snapshot may be layered on top of a read-only {@link Catalog} - a memory-mapped catalog file
+ * or a frozen index - installed at store open.
+ * Catalog records carry the ids the registry gave their products (see {@link CatalogIds}), so a product keeps its id
+ * when a catalog is swapped in; registrations and de-registrations made since the catalog was loaded are kept
+ * in a small copy-on-write overlay that takes precedence over the catalog.
+ * Entries of catalog records are created per lookup and not held, so the heap does not grow with the catalog;
+ * a lane's near-cache keeps the entries of its hot codes.
+ *
+ * A {@link ProductCodeFilter} over the overlay's codes lets lookups of unknown codes skip the overlay map.
+ * Codes that are not Strings are looked up in the overlay through a {@link CodeIndex}, see {@link #getEntry(CharSequence)}.
+ * Ids are looked up in the overlay through a {@link ProductIdIndex}, sized by the overlay rather than by the ids issued.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class PriceBook {
+    static final PriceBook EMPTY = new PriceBook(0, Collections.emptyMap(), new ProductCodeFilter(0), CodeIndex.EMPTY,
+            ProductIdIndex.EMPTY, null, null, 0);
+
+    @Getter private final long version;
+    private final Map<Product, Entry> productMap; //overlay, an entry without price marks a de-registered product
+    private final ProductCodeFilter filter;       //codes of the overlay, shared by versions until full
+    private final CodeIndex codeIndex;            //overlay by code, for lookups of codes that are not Strings
+    private final ProductIdIndex idIndex;         //overlay by id
+    @Getter(AccessLevel.PACKAGE) private final Catalog catalog; //null if none
+    private final CatalogIds catalogIds;
+    private final int size;
+
+    /**
+     * Registered {@link Product}, its id and {@link ProductPrice}.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class Entry {
+        private final int productId;
+        private final Product product;
+        private final ProductPrice productPrice;
+    }
+
+    /**
+     * @return empty snapshot on top of a catalog, with the ids of its records.
+     */
+    static PriceBook ofCatalog(long version, Catalog catalog, CatalogIds catalogIds) {
+        return new PriceBook(version, Collections.emptyMap(), new ProductCodeFilter(0), CodeIndex.EMPTY,
+                ProductIdIndex.EMPTY, catalog, catalogIds, catalog.size());
+    }
+
+    /**
+     * @param product {@link Product}
+     * @return {@link ProductPrice} for a {@link Product} or null if it is not in this snapshot.
+     */
+    public ProductPrice getPrice(@NonNull Product product) {
+        Entry entry = getEntry(product);
+
+        return entry == null ? null : entry.productPrice;
+    }
+
+    /**
+     * @param productId id assigned at registration
+     * @return {@link ProductPrice} for a {@link Product} id or null if it is not in this snapshot.
+     */
+    public ProductPrice getPrice(int productId) {
+        Entry entry = getEntry(productId);
+
+        return entry == null ? null : entry.productPrice;
+    }
+
+    /**
+     * @param product {@link Product}
+     * @return {@link Entry} for a {@link Product} or null if it is not in this snapshot.
+     */
+    public Entry getEntry(@NonNull Product product) {
+        Entry entry = filter.mightContain(product.getProductCode()) ? productMap.get(product) : null;
+        if (entry != null) {
+            return entry.productPrice == null ? null : entry;
+        }
+
+        if (catalog == null) {
+            return null;
+        }
+
+        int index = catalog.indexOf(product);
+
+        return index < 0 ? null : catalogEntry(index, product);
+    }
+
+    /**
+     * Looks a product code up without creating a {@link Product} - e.g. a view of barcode bytes.
+     * A catalog record's {@link Entry} is created by every lookup.
+     *
+     * @param productCode product code
+     * @return {@link Entry} for a product code or null if it is not in this snapshot.
+     */
+    public Entry getEntry(@NonNull CharSequence productCode) {
+        int hash = Product.codeHashCode(productCode);
+        Entry entry = filter.mightContain(hash) ? codeIndex.get(productCode, hash) : null;
+        if (entry != null) {
+            return entry.productPrice == null ? null : entry;
+        }
+
+        if (catalog == null) {
+            return null;
+        }
+
+        int index = catalog.indexOf(productCode);
+
+        return index < 0 ? null : catalogEntry(index, catalog.productAt(index));
+    }
+
+    /**
+     * @param productId id assigned at registration
+     * @return {@link Entry} for a {@link Product} id or null if it is not in this snapshot.
+     */
+    public Entry getEntry(int productId) {
+        Entry entry = idIndex.get(productId);
+        if (entry != null) {
+            return entry.productPrice == null ? null : entry;
+        }
+
+        int index = catalog == null ? -1 : catalogIds.indexOf(productId);
+
+        return index < 0 ? null : catalogEntry(index, catalog.productAt(index));
+    }
+
+    /**
+     * @return unmodifiable set of {@link Product}s in this snapshot.
+     *         Catalog {@link Product}s are created while iterating, not held in memory.
+     */
+    public Set<Product> getProducts() {
+        if (catalog == null) {
+            return productMap.keySet();
+        }
+
+        return new AbstractSet<Product>() {
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Product && getEntry((Product) o) != null;
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public Iterator<Product> iterator() {
+                return new ProductIterator();
+            }
+        };
+    }
+
+    /**
+     * @return number of {@link Product}s in this snapshot.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return entries of the overlay, de-registration tombstones included.
+     */
+    Collection<Entry> overlay() {
+        return productMap.values();
+    }
+
+    /**
+     * @return overlay entry of a code, a de-registration tombstone included, null if the overlay does not have it.
+     */
+    Entry overlayEntry(CharSequence productCode) {
+        int hash = Product.codeHashCode(productCode);
+
+        return filter.mightContain(hash) ? codeIndex.get(productCode, hash) : null;
+    }
+
+    /**
+     * @return id of a {@link Product} in this snapshot's overlay or catalog, including de-registered ones,
+     *         -1 if it is in neither.
+     */
+    int productIdOf(Product product) {
+        Entry entry = productMap.get(product);
+        if (entry != null) {
+            return entry.productId;
+        }
+
+        int index = catalog == null ? -1 : catalog.indexOf(product);
+
+        return index < 0 ? -1 : catalogIds.productIdAt(index);
+    }
+
+    /**
+     * Gives the records of another catalog the ids their products have in this snapshot,
+     * de-registered products included. Records that already have an id are skipped.
+     *
+     * @param records catalog replacing this snapshot's
+     * @param productIds id per record of records, -1 for none yet
+     * @return number of records given an id.
+     */
+    int copyProductIds(Catalog records, int[] productIds) {
+        int copied = 0;
+        for (Entry entry : productMap.values()) {
+            copied += copyProductId(records.indexOf(entry.product), entry.productId, productIds);
+        }
+
+        int catalogSize = catalog == null ? 0 : catalog.size();
+        for (int index = 0; index < catalogSize && copied < productIds.length; ++index) {
+            copied += copyProductId(records.indexOf(catalog.productCodeAt(index)), catalogIds.productIdAt(index),
+                    productIds);
+        }
+
+        return copied;
+    }
+
+    private static int copyProductId(int index, int productId, int[] productIds) {
+        if (index < 0 || productIds[index] >= 0) {
+            return 0;
+        }
+        productIds[index] = productId;
+
+        return 1;
+    }
+
+    /**
+     * @return copy of this snapshot with {@link Product} priced at {@link ProductPrice}.
+     */
+    PriceBook withPrice(int productId, Product product, ProductPrice productPrice) {
+        return withEntries(Collections.singletonList(new Entry(productId, product, productPrice)));
+    }
+
+    /**
+     * @return copy of this snapshot with all entries added or replaced.
+     */
+    PriceBook withEntries(Collection<Entry> entries) {
+        Map<Product, Entry> copy = new HashMap<>(productMap);
+
+        int updatedSize = size;
+        for (Entry entry : entries) {
+            if (getEntry(entry.product) == null) {
+                ++updatedSize;
+            }
+            Entry replaced = copy.put(entry.product, entry);
+            assert replaced == null || replaced.productId == entry.productId;
+        }
+
+        return new PriceBook(version + 1, Collections.unmodifiableMap(copy), withCodes(entries, copy),
+                codeIndex.with(entries, copy.values()), idIndex.with(entries, copy.values()), catalog, catalogIds,
+                updatedSize);
+    }
+
+    /**
+     * @return copy of this snapshot without {@link Product}, or this snapshot if it is not present.
+     */
+    PriceBook withoutProduct(Product product) {
+        Entry entry = getEntry(product);
+        if (entry == null) {
+            return this;
+        }
+
+        Map<Product, Entry> copy = new HashMap<>(productMap);
+        ProductCodeFilter updatedFilter = filter;
+        CodeIndex updatedCodeIndex;
+        ProductIdIndex updatedIdIndex;
+
+        if (isCatalogProductId(entry.productId)) {
+            List<Entry> tombstone = Collections.singletonList(new Entry(entry.productId, product, null));
+            copy.put(product, tombstone.get(0));
+            updatedFilter = withCodes(tombstone, copy);
+            updatedCodeIndex = codeIndex.with(tombstone, copy.values());
+            updatedIdIndex = idIndex.with(tombstone, copy.values());
+        } else {
+            copy.remove(product);
+            updatedCodeIndex = codeIndex.without(entry);
+            updatedIdIndex = idIndex.without(entry);
+        }
+
+        return new PriceBook(version + 1, Collections.unmodifiableMap(copy), updatedFilter,
+                updatedCodeIndex, updatedIdIndex, catalog, catalogIds, size - 1);
+    }
+
+    /**
+     * @return empty snapshot that supersedes this one.
+     */
+    PriceBook cleared() {
+        return new PriceBook(version + 1, Collections.emptyMap(), new ProductCodeFilter(0), CodeIndex.EMPTY,
+                ProductIdIndex.EMPTY, null, null, 0);
+    }
+
+    /**
+     * Adds the codes of entries to the filter, or builds a bigger filter over the whole overlay if it is full.
+     *
+     * @param overlay overlay of the new snapshot, including the entries
+     * @return filter of the new snapshot.
+     */
+    private ProductCodeFilter withCodes(Collection<Entry> entries, Map<Product, Entry> overlay) {
+        for (Entry entry : entries) {
+            if (!filter.add(entry.product.getProductCode())) {
+                ProductCodeFilter biggerFilter = new ProductCodeFilter(overlay.size() * 2);
+                overlay.keySet().forEach(product -> biggerFilter.add(product.getProductCode()));
+
+                return biggerFilter;
+            }
+        }
+
+        return filter;
+    }
+
+    private boolean isCatalogProductId(int productId) {
+        return catalog != null && catalogIds.indexOf(productId) >= 0;
+    }
+
+    private Entry catalogEntry(int index, Product product) {
+        return new Entry(catalogIds.productIdAt(index), product, catalog.priceAt(index));
+    }
+
+    /**
+     * Iterates overlay {@link Product}s, then catalog {@link Product}s that are not in the overlay.
+     */
+    private final class ProductIterator implements Iterator<Product> {
+        private final Iterator<Entry> overlay = productMap.values().iterator();
+        private int index;
+        private Product next;
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (overlay.hasNext()) {
+                    Entry entry = overlay.next();
+                    next = entry.productPrice == null ? null : entry.product;
+                } else if (index < catalog.size()) {
+                    Product product = catalog.productAt(index++);
+                    next = productMap.containsKey(product) ? null : product;
+                } else {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public Product next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            Product result = next;
+            next = null;
+
+            return result;
+        }
+    }
+}
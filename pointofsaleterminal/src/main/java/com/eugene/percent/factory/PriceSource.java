@@ -0,0 +1,23 @@
+package com.eugene.percent.factory;
+
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import java.io.IOException;
+
+/**
+ * Slow source of prices of {@link Product}s that are not kept in the {@link ProductRegistry},
+ * e.g. a back-office pricing service for long-tail and marketplace items.
+ *
+ * The registry reads it through a {@link SourcedPriceCache}, see {@link ProductRegistry#setPriceSource(PriceSource, PriceSourceConfig)}.
+ * Fetches run on the cache's fetch threads, so a source is called concurrently for different {@link Product}s.
+ */
+@FunctionalInterface
+public interface PriceSource {
+    /**
+     * @param product {@link Product}
+     * @return {@link ProductPrice} of the {@link Product}, null if the source does not price it.
+     * @throws IOException if the source cannot be reached
+     */
+    ProductPrice fetchPrice(Product product) throws IOException;
+}
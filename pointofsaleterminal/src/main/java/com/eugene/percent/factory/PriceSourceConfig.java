@@ -0,0 +1,42 @@
+package com.eugene.percent.factory;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Configuration of a {@link SourcedPriceCache}.
+ */
+@Value
+@Builder
+public class PriceSourceConfig {
+    /**
+     * Prices the cache holds; beyond it the least recently used ones are evicted.
+     */
+    @Builder.Default int maximumSize = 1 << 16;
+
+    /**
+     * Time a fetched price is served for before it has to be fetched again.
+     */
+    @Builder.Default long ttlMillis = 300_000;
+
+    /**
+     * Time before expiry from which a lookup refreshes its price in the background, 0 for no refresh-ahead.
+     * Hot prices are refreshed before they expire, so their lookups never wait for the source.
+     */
+    @Builder.Default long refreshAheadMillis = 60_000;
+
+    /**
+     * Time a {@link com.eugene.percent.model.Product} the source does not price is remembered as unknown.
+     */
+    @Builder.Default long negativeTtlMillis = 10_000;
+
+    /**
+     * Longest a lookup waits for its fetch; a lookup that times out finds no price, the fetch goes on.
+     */
+    @Builder.Default long fetchTimeoutMillis = 2_000;
+
+    /**
+     * Threads fetching from the source - fetches of different {@link com.eugene.percent.model.Product}s in parallel.
+     */
+    @Builder.Default int fetchThreads = 8;
+}
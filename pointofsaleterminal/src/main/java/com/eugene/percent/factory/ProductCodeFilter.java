@@ -0,0 +1,102 @@
+package com.eugene.percent.factory;
+
+import com.eugene.percent.model.Product;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Blocked Bloom filter over product codes - answers "certainly not registered" without probing the registry map.
+ *
+ * All {@value #BITS_PER_CODE} bits of a code are in one 64-bit word, so a test is a single memory read.
+ * The filter is keyed on {@link String#hashCode()}, which a String caches, so a test does not rehash the code.
+ *
+ * Codes are only ever added, so one filter is shared by successive {@link PriceBook} versions:
+ * a snapshot may see bits of codes registered after it (a false positive), never miss its own codes.
+ * Codes that are de-registered stay in the filter until the book is rebuilt.
+ * Once it holds its capacity, {@link #add(String)} refuses more codes and the book builds a bigger filter.
+ */
+final class ProductCodeFilter {
+    private static final int BITS_PER_CODE = 4;
+    private static final int CODES_PER_WORD = 4; //~1-2% false positives
+    private static final int MIN_WORDS = 16;
+
+    private final AtomicLongArray words;
+    private final int mask;
+    private final int capacity;
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @param expectedCodes codes the filter should hold before it is full
+     */
+    ProductCodeFilter(int expectedCodes) {
+        int numWords = MIN_WORDS;
+        while (numWords < (long) expectedCodes * 2 / CODES_PER_WORD && numWords < 1 << 30) {
+            numWords <<= 1;
+        }
+
+        this.words = new AtomicLongArray(numWords);
+        this.mask = numWords - 1;
+        this.capacity = numWords * CODES_PER_WORD;
+    }
+
+    /**
+     * @return false if the code is certainly not in the filter.
+     */
+    boolean mightContain(String productCode) {
+        return mightContain(productCode.hashCode());
+    }
+
+    /**
+     * @param codeHashCode {@link Product#codeHashCode(CharSequence)} of the code
+     * @return false if the code is certainly not in the filter.
+     */
+    boolean mightContain(int codeHashCode) {
+        long hash = mix(codeHashCode);
+        long bits = bits(hash);
+
+        return (words.get((int) hash & mask) & bits) == bits;
+    }
+
+    /**
+     * Adds a code. Any thread.
+     *
+     * @return false if the filter is full and the code was not added.
+     */
+    boolean add(String productCode) {
+        if (size.incrementAndGet() > capacity) {
+            size.decrementAndGet();
+            return false;
+        }
+
+        long hash = mix(productCode.hashCode());
+        long bits = bits(hash);
+        int index = (int) hash & mask;
+
+        long word;
+        while (((word = words.get(index)) & bits) != bits && !words.compareAndSet(index, word, word | bits)) {
+            //lost a race with another code of the same word, retry
+        }
+
+        return true;
+    }
+
+    private static long bits(long hash) {
+        long bits = 0;
+        for (int i = 0; i < BITS_PER_CODE; ++i) {
+            bits |= 1L << (hash >>> (32 + 6 * i));
+        }
+
+        return bits;
+    }
+
+    /**
+     * SplitMix64 finalizer.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+
+        return z ^ (z >>> 31);
+    }
+}
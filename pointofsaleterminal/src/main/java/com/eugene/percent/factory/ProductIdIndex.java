@@ -0,0 +1,132 @@
+package com.eugene.percent.factory;
+
+import java.util.Collection;
+
+/**
+ * Immutable index of overlay {@link PriceBook.Entry}s by product id.
+ *
+ * Sized by the overlay rather than by the ids issued so far, so a registration on top of a big catalog
+ * costs O(overlay). Open addressing (linear probing) keyed on the id.
+ * A new snapshot's index is a copy of the table with only the changed ids probed,
+ * the table is rebuilt from the whole overlay only when it has to grow.
+ */
+final class ProductIdIndex {
+    static final ProductIdIndex EMPTY = new ProductIdIndex(new PriceBook.Entry[1]);
+
+    private final PriceBook.Entry[] entries;
+    private final int mask;
+
+    private ProductIdIndex(PriceBook.Entry[] entries) {
+        this.entries = entries;
+        this.mask = entries.length - 1;
+    }
+
+    /**
+     * @return index of the entries, at most half full.
+     */
+    static ProductIdIndex of(Collection<PriceBook.Entry> overlay) {
+        if (overlay.isEmpty()) {
+            return EMPTY;
+        }
+
+        int tableSize = Integer.highestOneBit(Math.max(1, overlay.size() * 2 - 1)) * 2;
+        PriceBook.Entry[] entries = new PriceBook.Entry[tableSize];
+        int mask = tableSize - 1;
+
+        for (PriceBook.Entry entry : overlay) {
+            int slot = mix(entry.getProductId()) & mask;
+            while (entries[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            entries[slot] = entry;
+        }
+
+        return new ProductIdIndex(entries);
+    }
+
+    /**
+     * @param added entries to add, replacing the entries of the same ids
+     * @param overlay overlay of the new snapshot, including the added entries
+     * @return copy of this index with the entries added.
+     */
+    ProductIdIndex with(Collection<PriceBook.Entry> added, Collection<PriceBook.Entry> overlay) {
+        if (overlay.size() * 2 > entries.length) {
+            return of(overlay);
+        }
+
+        ProductIdIndex copy = new ProductIdIndex(entries.clone());
+        for (PriceBook.Entry entry : added) {
+            copy.put(entry);
+        }
+
+        return copy;
+    }
+
+    /**
+     * @param removed entry in this index
+     * @return copy of this index without the entry.
+     */
+    ProductIdIndex without(PriceBook.Entry removed) {
+        int slot = slotOf(removed.getProductId());
+        if (slot < 0) {
+            return this;
+        }
+
+        ProductIdIndex copy = new ProductIdIndex(entries.clone());
+        copy.remove(slot);
+
+        return copy;
+    }
+
+    /**
+     * @param productId product id
+     * @return overlay entry of the id, a de-registration tombstone included, null if there is none.
+     */
+    PriceBook.Entry get(int productId) {
+        int slot = slotOf(productId);
+
+        return slot < 0 ? null : entries[slot];
+    }
+
+    private int slotOf(int productId) {
+        for (int slot = mix(productId) & mask; entries[slot] != null; slot = (slot + 1) & mask) {
+            if (entries[slot].getProductId() == productId) {
+                return slot;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Only for a copy that is not published yet.
+     */
+    private void put(PriceBook.Entry entry) {
+        int slot = mix(entry.getProductId()) & mask;
+        while (entries[slot] != null && entries[slot].getProductId() != entry.getProductId()) {
+            slot = (slot + 1) & mask;
+        }
+        entries[slot] = entry;
+    }
+
+    /**
+     * Empties a slot, shifting back the entries of the probe run behind it. Only for a copy that is not published yet.
+     */
+    private void remove(int slot) {
+        int hole = slot;
+        for (int next = (hole + 1) & mask; entries[next] != null; next = (next + 1) & mask) {
+            int home = mix(entries[next].getProductId()) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                entries[hole] = entries[next];
+                hole = next;
+            }
+        }
+        entries[hole] = null;
+    }
+
+    private static int mix(int productId) {
+        int h = productId * 0x9E3779B9;
+
+        return h ^ (h >>> 16);
+    }
+}
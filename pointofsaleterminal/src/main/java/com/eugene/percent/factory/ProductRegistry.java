@@ -1,15 +1,32 @@
 package com.eugene.percent.factory;
 
+import com.eugene.percent.catalog.Catalog;
+import com.eugene.percent.catalog.CatalogFile;
+import com.eugene.percent.catalog.FrozenCatalog;
+import com.eugene.percent.catalog.MappedCatalog;
+import com.eugene.percent.catalog.PriceFeed;
+import com.eugene.percent.exceptions.PriceFeedException;
+import com.eugene.percent.metrics.Metrics;
 import com.eugene.percent.model.Product;
 import com.eugene.percent.model.ProductPrice;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
 
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
@@ -19,26 +36,76 @@ import lombok.NonNull;
  * Registry of {@link Product}s and their {@link ProductPrice}s.
  *
  * Prices are assumed to be static and updated off-hours when the store is closed.
- * Prices are assumed to be in the same currency.
+ * Prices are assumed to be in the same currency, in minor units (see {@link com.eugene.percent.model.Money}).
  *
  * New products can be registered by a manager intra-day.
  *
  * This registry models a singleton - "one per store".
+ *
+ * Prices are published as immutable, versioned {@link PriceBook} snapshots.
+ * Lookups read the current snapshot without locking; changes copy the snapshot
+ * and publish the new version atomically, so terminals never observe a half-applied change.
+ *
+ * Every {@link Product} is interned to a dense int id the first time it is registered.
+ * Ids are never reused, so a {@link Product} keeps its id across price changes and re-registration,
+ * and when a catalog with it is loaded, frozen or imported.
+ *
+ * At store open a whole catalog can be loaded from a {@link CatalogFile}. It is memory-mapped and served
+ * off-heap, so lookups are answered right after launch with millions of products, without creating them on heap.
+ * Alternatively {@link #freeze()} compiles the registry into a read-optimized {@link FrozenCatalog}.
+ * Either way, intra-day changes go to a small overlay on top of the catalog.
+ * Catalogs only hold single-tier prices - products priced with {@link com.eugene.percent.model.PricingRule}s
+ * stay in the overlay when the registry is frozen, and cannot be saved to a {@link CatalogFile}.
+ *
+ * Nightly repricing is imported in bulk from a {@link PriceFeed} with {@link #importPrices(Path, ImportMode)}:
+ * the feed is parsed and validated on all cores, compiled into a new catalog and swapped in as one version.
+ *
+ * Every published version is appended to an ordered {@link ChangeFeed} (see {@link #getChangeFeed()}), so registries
+ * of other JVMs can replicate this one: intra-day registrations and de-registrations are shipped as deltas,
+ * catalogs as snapshots, and replicas apply them with {@link #apply(RegistryChange)}.
+ * Versions are still built without locking; only publishing one and appending its change is serialized.
+ *
+ * Products that are not kept locally, e.g. long-tail items priced by a back-office service, can be priced by a
+ * {@link PriceSource} set with {@link #setPriceSource(PriceSource, PriceSourceConfig)}. Lookups that miss the
+ * {@link PriceBook} read it through a bounded {@link SourcedPriceCache}; registered prices take precedence.
+ *
+ * Size, version and lookup misses can be watched over JMX, see {@link #registerMBean()}.
  */
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class ProductRegistry {
-    private final static int MAX_SCANS_PER_PRODUCT = 3;
+    public static final String CHANGE_FEED_CAPACITY_PROPERTY = "pointofsaleterminal.changeFeedCapacity";
 
-    private final static Map<Product, ProductPrice> productMap = new HashMap<>();
+    private final static AtomicReference<PriceBook> priceBook = new AtomicReference<>(PriceBook.EMPTY);
+    private final static RegistryChangeLog changeLog = new RegistryChangeLog(
+            Integer.getInteger(CHANGE_FEED_CAPACITY_PROPERTY, 1 << 16), priceBook::get);
+
+    private final static Map<Product, Integer> productIds = new ConcurrentHashMap<>();
+    private final static AtomicInteger nextProductId = new AtomicInteger();
+
+    private static volatile SourcedPriceCache priceSourceCache;
+
+    /**
+     * How a bulk import treats {@link Product}s that are registered but not in the feed.
+     */
+    public enum ImportMode {
+        /**
+         * Keep them - the feed only adds and re-prices {@link Product}s.
+         */
+        MERGE,
+        /**
+         * De-register them - the feed is the whole catalog.
+         */
+        REPLACE
+    }
 
     /**
      * Registers new {@link Product} and its pricePerUnit.
      * No-volume discount is used.
      *
      * @param product {@link Product}
-     * @param pricePerUnit
+     * @param pricePerUnit price in minor units
      */
-    public static void register(@NonNull Product product, double pricePerUnit)  {
+    public static void register(@NonNull Product product, long pricePerUnit)  {
         ProductPrice productPrice = new ProductPrice(pricePerUnit, 1, pricePerUnit);
 
         register(product, productPrice);
@@ -54,7 +121,436 @@ public class ProductRegistry {
      * @param productPrice {@link ProductPrice}
      */
     public static void register(@NonNull Product product, @NonNull ProductPrice productPrice)  {
-        productMap.put(product, productPrice);
+        update(book -> book.withPrice(productId(book, product), product, productPrice),
+                RegistryChange.Type.DELTA, Collections.singletonMap(product, productPrice));
+    }
+
+    /**
+     * Registers {@link Product}s and their {@link ProductPrice}s as a single new {@link PriceBook} version.
+     *
+     * Cheaper than registering one by one, as the snapshot is copied once.
+     *
+     * @param productPrices {@link ProductPrice} per {@link Product}
+     */
+    public static void registerAll(@NonNull Map<Product, ProductPrice> productPrices) {
+        productPrices.forEach((product, productPrice) -> {
+            Objects.requireNonNull(product, "product");
+            Objects.requireNonNull(productPrice, "productPrice");
+        });
+
+        Map<Product, ProductPrice> registered = Collections.unmodifiableMap(new HashMap<>(productPrices));
+        update(book -> withChanges(book, registered), RegistryChange.Type.DELTA, registered);
+    }
+
+    /**
+     * Replaces the whole registry with a memory-mapped {@link CatalogFile}, as a single new {@link PriceBook} version.
+     * Meant for store open - products registered before are dropped.
+     *
+     * @param catalogFile {@link CatalogFile}
+     * @throws IOException if the catalog cannot be read
+     */
+    public static void load(@NonNull Path catalogFile) throws IOException {
+        install(MappedCatalog.open(catalogFile));
+    }
+
+    /**
+     * Compiles the current {@link PriceBook} into a {@link FrozenCatalog} and swaps it in atomically
+     * as a new {@link PriceBook} version with an empty overlay. Meant for store open.
+     *
+     * {@link Product}s keep their ids, so carts already in progress keep adding to their lines.
+     * {@link Product}s priced with rules are kept in the overlay of the new version.
+     * Changes made while the catalog is being compiled are retried on top of the new catalog.
+     */
+    public static void freeze() {
+        while (true) {
+            PriceBook book = priceBook.get();
+
+            //same content, nothing for replicas to apply
+            if (publish(book, frozen(book, toMap(book)), RegistryChange.Type.DELTA, Collections.emptyMap())) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Imports a bulk price feed as a single new {@link PriceBook} version, compiled like {@link #freeze()}.
+     * Terminals see either all of the feed or none of it. A feed with any invalid line is rejected as a whole.
+     *
+     * Meant for off-hours updates; changes made while the catalog is being compiled are retried on top of it.
+     *
+     * @param priceFeed {@link PriceFeed} file
+     * @param mode {@link ImportMode}
+     * @return {@link ImportReport} of what changed
+     * @throws IOException if the feed cannot be read
+     * @throws PriceFeedException if the feed is rejected, nothing is imported
+     */
+    public static ImportReport importPrices(@NonNull Path priceFeed, @NonNull ImportMode mode)
+            throws IOException, PriceFeedException {
+        long startNanos = System.nanoTime();
+        PriceFeed feed = PriceFeed.read(priceFeed);
+        long parsedNanos = System.nanoTime();
+
+        while (true) {
+            PriceBook book = priceBook.get();
+            Catalog catalog = book.getCatalog();
+            //catalog records the new catalog gets from the feed or the overlay, rather than from the old catalog
+            boolean[] covered = mode == ImportMode.MERGE && catalog != null ? new boolean[catalog.size()] : null;
+            Set<PriceBook.Entry> listedEntries = ConcurrentHashMap.newKeySet(); //overlay entries the feed reprices
+            if (covered != null) {
+                for (PriceBook.Entry entry : book.overlay()) {
+                    int index = catalog.indexOf(entry.getProduct());
+                    if (index >= 0) {
+                        covered[index] = true;
+                    }
+                }
+            }
+
+            //added in the high half, changed in the low half
+            long diff = IntStream.range(0, feed.size()).parallel()
+                    .mapToLong(row -> diff(book, feed, row, covered, listedEntries))
+                    .sum();
+            int added = (int) (diff >>> 32);
+            int changed = (int) diff;
+
+            PriceBook importedBook = mode == ImportMode.MERGE
+                    ? merged(book, feed, covered, listedEntries)
+                    : catalogBook(book, feed.toCatalog(), Collections.emptyList());
+            if (publish(book, importedBook, RegistryChange.Type.CATALOG, Collections.emptyMap())) {
+                int unchanged = feed.size() - added - changed;
+                int removed = mode == ImportMode.MERGE ? 0 : book.size() - changed - unchanged;
+
+                return new ImportReport(importedBook.getVersion(), added, changed, unchanged, removed,
+                        parsedNanos - startNanos, System.nanoTime() - parsedNanos);
+            }
+        }
+    }
+
+    /**
+     * Compares a feed row with the book without creating entries of catalog records,
+     * and marks what of the book the row reprices.
+     *
+     * @return 1 &lt;&lt; 32 if the row adds a product, 1 if it changes a price, 0 if the price is unchanged.
+     */
+    private static long diff(PriceBook book, PriceFeed feed, int row, boolean[] covered,
+                             Set<PriceBook.Entry> listedEntries) {
+        String productCode = feed.productCodeAt(row);
+
+        PriceBook.Entry entry = book.overlayEntry(productCode);
+        if (entry != null) {
+            listedEntries.add(entry);
+            ProductPrice productPrice = entry.getProductPrice();
+            if (productPrice == null) {
+                return 1L << 32;
+            }
+
+            return !productPrice.hasRules() && isPricedAt(feed, row, productPrice.getPricePerUnit(),
+                    productPrice.getNumberOfUnitsInVolume(), productPrice.getPricePerVolume()) ? 0 : 1;
+        }
+
+        Catalog catalog = book.getCatalog();
+        int index = catalog == null ? -1 : catalog.indexOf(productCode);
+        if (index < 0) {
+            return 1L << 32;
+        }
+        if (covered != null) {
+            covered[index] = true; //rows have distinct codes, so distinct records
+        }
+
+        return isPricedAt(feed, row, catalog.pricePerUnitAt(index), catalog.numberOfUnitsInVolumeAt(index),
+                catalog.pricePerVolumeAt(index)) ? 0 : 1;
+    }
+
+    private static boolean isPricedAt(PriceFeed feed, int row, long pricePerUnit, int numberOfUnitsInVolume,
+                                      long pricePerVolume) {
+        return feed.pricePerUnitAt(row) == pricePerUnit && feed.numberOfUnitsInVolumeAt(row) == numberOfUnitsInVolume
+                && feed.pricePerVolumeAt(row) == pricePerVolume;
+    }
+
+    /**
+     * @return book with a catalog of the feed and of the book's products the feed does not list;
+     *         products priced with rules stay in the overlay, as their entries.
+     */
+    private static PriceBook merged(PriceBook book, PriceFeed feed, boolean[] covered,
+                                    Set<PriceBook.Entry> listedEntries) {
+        Catalog catalog = book.getCatalog();
+        List<PriceBook.Entry> ruleEntries = new ArrayList<>();
+        List<PriceBook.Entry> keptEntries = new ArrayList<>();
+        for (PriceBook.Entry entry : book.overlay()) {
+            if (entry.getProductPrice() == null || listedEntries.contains(entry)) {
+                continue;
+            }
+            if (entry.getProductPrice().hasRules()) {
+                ruleEntries.add(entry);
+            } else {
+                keptEntries.add(entry);
+            }
+        }
+
+        int keptRecords = 0;
+        for (int index = 0; covered != null && index < covered.length; ++index) {
+            if (!covered[index]) {
+                ++keptRecords;
+            }
+        }
+        if (keptRecords == 0 && keptEntries.isEmpty()) {
+            return catalogBook(book, feed.toCatalog(), ruleEntries);
+        }
+
+        int size = feed.size() + keptRecords + keptEntries.size();
+        String[] productCodes = new String[size];
+        long[] pricesPerUnit = new long[size];
+        int[] numbersOfUnitsInVolume = new int[size];
+        long[] pricesPerVolume = new long[size];
+        IntStream.range(0, feed.size()).parallel().forEach(row -> {
+            productCodes[row] = feed.productCodeAt(row);
+            pricesPerUnit[row] = feed.pricePerUnitAt(row);
+            numbersOfUnitsInVolume[row] = feed.numberOfUnitsInVolumeAt(row);
+            pricesPerVolume[row] = feed.pricePerVolumeAt(row);
+        });
+
+        int record = feed.size();
+        for (int index = 0; covered != null && index < covered.length; ++index) {
+            if (!covered[index]) {
+                productCodes[record] = catalog.productCodeAt(index);
+                pricesPerUnit[record] = catalog.pricePerUnitAt(index);
+                numbersOfUnitsInVolume[record] = catalog.numberOfUnitsInVolumeAt(index);
+                pricesPerVolume[record] = catalog.pricePerVolumeAt(index);
+                ++record;
+            }
+        }
+        for (PriceBook.Entry entry : keptEntries) {
+            productCodes[record] = entry.getProduct().getProductCode();
+            pricesPerUnit[record] = entry.getProductPrice().getPricePerUnit();
+            numbersOfUnitsInVolume[record] = entry.getProductPrice().getNumberOfUnitsInVolume();
+            pricesPerVolume[record] = entry.getProductPrice().getPricePerVolume();
+            ++record;
+        }
+
+        return catalogBook(book, FrozenCatalog.build(productCodes, pricesPerUnit, numbersOfUnitsInVolume,
+                pricesPerVolume), ruleEntries);
+    }
+
+    /**
+     * @return new version of the book over a catalog, with the products ids they have in book
+     *         and entries in its overlay.
+     */
+    private static PriceBook catalogBook(PriceBook book, Catalog catalog, Collection<PriceBook.Entry> entries) {
+        long version = entries.isEmpty() ? book.getVersion() + 1 : book.getVersion(); //withEntries increments it
+        PriceBook catalogBook = PriceBook.ofCatalog(version, catalog, catalogIds(book, catalog));
+
+        return entries.isEmpty() ? catalogBook : catalogBook.withEntries(entries);
+    }
+
+    /**
+     * @return new version of the book with the prices compiled into a {@link FrozenCatalog},
+     *         and {@link Product}s priced with rules in its overlay.
+     */
+    private static PriceBook frozen(PriceBook book, Map<Product, ProductPrice> productPrices) {
+        Map<Product, ProductPrice> rulePrices = new HashMap<>();
+        productPrices.forEach((product, productPrice) -> {
+            if (productPrice.hasRules()) {
+                rulePrices.put(product, productPrice);
+            }
+        });
+        productPrices.keySet().removeAll(rulePrices.keySet());
+
+        List<PriceBook.Entry> entries = new ArrayList<>(rulePrices.size());
+        rulePrices.forEach((product, productPrice) ->
+                entries.add(new PriceBook.Entry(productId(book, product), product, productPrice)));
+
+        return catalogBook(book, FrozenCatalog.build(productPrices), entries);
+    }
+
+    private static void install(Catalog catalog) {
+        update(book -> PriceBook.ofCatalog(book.getVersion() + 1, catalog, catalogIds(book, catalog)),
+                RegistryChange.Type.CATALOG, Collections.emptyMap());
+    }
+
+    /**
+     * @return ids of the records of a catalog replacing book - the ids of their products in book, or their interned ids,
+     *         and fresh ids for products the registry has not seen.
+     */
+    private static CatalogIds catalogIds(PriceBook book, Catalog catalog) {
+        int[] ids = new int[catalog.size()];
+        Arrays.fill(ids, -1);
+
+        int known = book.copyProductIds(catalog, ids);
+        for (Iterator<Map.Entry<Product, Integer>> interned = productIds.entrySet().iterator();
+             interned.hasNext() && known < ids.length; ) {
+            Map.Entry<Product, Integer> productId = interned.next();
+            int index = catalog.indexOf(productId.getKey());
+            if (index >= 0 && ids[index] < 0) {
+                ids[index] = productId.getValue();
+                ++known;
+            }
+        }
+
+        if (known == 0) {
+            return CatalogIds.range(nextProductId.getAndAdd(ids.length), ids.length);
+        }
+
+        int nextId = nextProductId.getAndAdd(ids.length - known);
+        for (int index = 0; index < ids.length; ++index) {
+            if (ids[index] < 0) {
+                ids[index] = nextId++;
+            }
+        }
+
+        return CatalogIds.of(ids);
+    }
+
+    /**
+     * Applies a change read from the {@link ChangeFeed} of another registry, as a single new {@link PriceBook} version.
+     * Meant for replicas - the change is in turn published on this registry's feed.
+     *
+     * A {@link RegistryChange.Type#SNAPSHOT} replaces the whole registry and is compiled like {@link #freeze()}.
+     *
+     * @param change {@link RegistryChange}
+     * @throws IllegalArgumentException if the change is a {@link RegistryChange.Type#CATALOG} swap,
+     *                                  whose content has to be read from a snapshot
+     */
+    public static void apply(@NonNull RegistryChange change) {
+        Map<Product, ProductPrice> productPrices = change.getProductPrices();
+
+        switch (change.getType()) {
+            case DELTA:
+                if (!productPrices.isEmpty()) {
+                    update(book -> withChanges(book, productPrices), RegistryChange.Type.DELTA, productPrices);
+                }
+                break;
+            case SNAPSHOT:
+                while (true) {
+                    PriceBook book = priceBook.get();
+                    if (publish(book, frozen(book, new HashMap<>(productPrices)), RegistryChange.Type.SNAPSHOT,
+                            productPrices)) {
+                        break;
+                    }
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Catalog change " + change.getSequence() + " carries no prices");
+        }
+    }
+
+    /**
+     * @return ordered feed of the changes of this registry, for replicas.
+     */
+    public static ChangeFeed getChangeFeed() {
+        return changeLog;
+    }
+
+    /**
+     * @return copy of the book with products registered at their prices, and products without price de-registered.
+     */
+    private static PriceBook withChanges(PriceBook book, Map<Product, ProductPrice> productPrices) {
+        PriceBook updatedBook = book;
+        List<PriceBook.Entry> entries = new ArrayList<>(productPrices.size());
+        for (Map.Entry<Product, ProductPrice> productPrice : productPrices.entrySet()) {
+            if (productPrice.getValue() == null) {
+                updatedBook = updatedBook.withoutProduct(productPrice.getKey());
+            } else {
+                entries.add(new PriceBook.Entry(productId(book, productPrice.getKey()), productPrice.getKey(),
+                        productPrice.getValue()));
+            }
+        }
+
+        return entries.isEmpty() ? updatedBook : updatedBook.withEntries(entries);
+    }
+
+    private static void update(UnaryOperator<PriceBook> update, RegistryChange.Type type,
+                               Map<Product, ProductPrice> productPrices) {
+        while (true) {
+            PriceBook book = priceBook.get();
+
+            if (publish(book, update.apply(book), type, productPrices)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Publishes a new version, unless another one was published since book, and appends its change to the feed.
+     *
+     * @return false if book is no longer current, and the version has to be rebuilt.
+     */
+    private static boolean publish(PriceBook book, PriceBook updatedBook, RegistryChange.Type type,
+                                   Map<Product, ProductPrice> productPrices) {
+        if (updatedBook == book) {
+            return priceBook.get() == book; //nothing changed
+        }
+
+        synchronized (changeLog) {
+            if (!priceBook.compareAndSet(book, updatedBook)) {
+                return false;
+            }
+
+            changeLog.append(new RegistryChange(updatedBook.getVersion(), System.currentTimeMillis(), type,
+                    productPrices));
+            return true;
+        }
+    }
+
+    private static Map<Product, ProductPrice> toMap(PriceBook book) {
+        Map<Product, ProductPrice> productPrices = new HashMap<>(book.size() * 2);
+        for (Product product : book.getProducts()) {
+            productPrices.put(product, book.getPrice(product));
+        }
+
+        return productPrices;
+    }
+
+    /**
+     * Writes the current {@link PriceBook} to a {@link CatalogFile}.
+     *
+     * @param catalogFile file to write
+     * @throws IOException if the catalog cannot be written
+     * @throws IllegalArgumentException if a {@link Product} is priced with rules
+     */
+    public static void save(@NonNull Path catalogFile) throws IOException {
+        CatalogFile.write(catalogFile, toMap(priceBook.get()));
+    }
+
+    /**
+     * @return id of a {@link Product} - its id in the {@link PriceBook} if it has one, otherwise its interned id.
+     *         A {@link Product} interned while its price is cached from the {@link PriceSource} keeps the cached id.
+     */
+    private static int productId(PriceBook book, Product product) {
+        int productId = book.productIdOf(product);
+
+        return productId >= 0 ? productId : productIds.computeIfAbsent(product, p -> {
+            SourcedPriceCache cache = priceSourceCache;
+            int sourcedProductId = cache == null ? -1 : cache.productIdOf(p);
+
+            return sourcedProductId >= 0 ? sourcedProductId : nextProductId.getAndIncrement();
+        });
+    }
+
+    /**
+     * Ids of fetched {@link Product}s are not interned, so the {@link SourcedPriceCache} holds them no longer
+     * than their prices - a {@link Product} fetched again after its price was evicted gets a new id.
+     * Lines of resumed sessions whose {@link Product}s were de-registered are given ids the same way.
+     *
+     * @return id for a {@link Product} fetched from the {@link PriceSource} or resumed unregistered -
+     *         the id the registry gave it, if any, otherwise a fresh one.
+     */
+    public static int sourcedProductId(@NonNull Product product) {
+        int productId = priceBook.get().productIdOf(product);
+        if (productId >= 0) {
+            return productId;
+        }
+
+        Integer internedId = productIds.get(product);
+
+        return internedId != null ? internedId : nextProductId.getAndIncrement();
+    }
+
+    /**
+     * @param product {@link Product}, registered or not - e.g. one priced by the {@link PriceSource},
+     *                or one de-registered while it was in a suspended cart
+     * @return id of a {@link Product}, the id it has or will have once registered.
+     */
+    public static int productId(@NonNull Product product) {
+        return productId(priceBook.get(), product);
     }
 
     /**
@@ -64,53 +560,141 @@ public class ProductRegistry {
      * @return last registered {@link ProductPrice}
      */
     public static ProductPrice deregister(@NonNull Product product) {
-        return productMap.remove(product);
+        while (true) {
+            PriceBook book = priceBook.get();
+            PriceBook updatedBook = book.withoutProduct(product);
+
+            if (publish(book, updatedBook, RegistryChange.Type.DELTA, Collections.singletonMap(product, null))) {
+                return book.getPrice(product);
+            }
+        }
     }
 
     /**
      * @param product {@link Product}
-     * @return {@link ProductPrice} for a {@link Product}.
+     * @return {@link ProductPrice} for a {@link Product}, from the {@link PriceSource} if it is not registered.
      */
     public static ProductPrice getPrice(@NonNull Product product) {
-        return productMap.get(product);
+        ProductPrice productPrice = priceBook.get().getPrice(product);
+        if (productPrice == null) {
+            PriceBook.Entry entry = getSourcedEntry(product);
+            productPrice = entry == null ? null : entry.getProductPrice();
+        }
+        Metrics.recordRegistryLookup(productPrice != null);
+
+        return productPrice;
     }
 
     /**
-     * @return set of registered {@link Product}s.
+     * Products priced by the {@link PriceSource} are not looked up by id.
+     *
+     * @param productId id assigned at registration
+     * @return {@link ProductPrice} for a {@link Product} id.
      */
-    public static Set<Product> getProducts() {
-        return productMap.keySet();
-    }
+    public static ProductPrice getPrice(int productId) {
+        ProductPrice productPrice = priceBook.get().getPrice(productId);
+        Metrics.recordRegistryLookup(productPrice != null);
 
+        return productPrice;
+    }
 
     /**
-     * Resets registry.
+     * Prices a {@link Product} that is not in the {@link PriceBook} by the {@link PriceSource}, through its cache.
+     * May wait for the source up to {@link PriceSourceConfig#getFetchTimeoutMillis()}.
+     *
+     * @param product {@link Product}
+     * @return {@link PriceBook.Entry} of the {@link Product}, null if there is no {@link PriceSource} or it has no price.
      */
-    public static void reset() {
-        productMap.clear();
+    public static PriceBook.Entry getSourcedEntry(@NonNull Product product) {
+        SourcedPriceCache cache = priceSourceCache;
+
+        return cache == null ? null : cache.getEntry(product);
     }
 
     /**
-     * USED for testing only.
+     * Prices a product code that is not in the {@link PriceBook} by the {@link PriceSource}, through its cache.
+     * May wait for the source up to {@link PriceSourceConfig#getFetchTimeoutMillis()}.
      *
-     * Produces a random list of {@link Product} to scan.
-     * Each {@link Product} can be randomly chosen up to {@value #MAX_SCANS_PER_PRODUCT} times.
+     * @param productCode product code, e.g. a view of barcode bytes
+     * @return {@link PriceBook.Entry} of the code, null if there is no {@link PriceSource} or it has no price.
+     */
+    public static PriceBook.Entry getSourcedEntry(@NonNull CharSequence productCode) {
+        SourcedPriceCache cache = priceSourceCache;
+
+        return cache == null ? null : cache.getEntry(productCode);
+    }
+
+    /**
+     * Prices products missing from the {@link PriceBook} by a {@link PriceSource} from now on,
+     * replacing the previous source and dropping its cache.
      *
-     * @return list of {@link Product}s.
+     * @param priceSource {@link PriceSource}
+     * @param config {@link PriceSourceConfig} of its cache
+     * @return {@link SourcedPriceCache} the source is read through.
      */
-    public static List<Product> generateRandomProductScan() {
-        List<Product> result = new ArrayList<>();
+    public static SourcedPriceCache setPriceSource(@NonNull PriceSource priceSource, @NonNull PriceSourceConfig config) {
+        SourcedPriceCache cache = new SourcedPriceCache(priceSource, config);
+        swapPriceSource(cache);
+
+        return cache;
+    }
 
-        Set<Product> productSet = ProductRegistry.getProducts();
+    /**
+     * Stops pricing products by a {@link PriceSource}, if one was set.
+     */
+    public static void removePriceSource() {
+        swapPriceSource(null);
+    }
 
-        for (Product product : productSet) {
-            List<Product> productList =
-                    Collections.nCopies(ThreadLocalRandom.current().nextInt(MAX_SCANS_PER_PRODUCT), product);
-            result.addAll(productList);
+    /**
+     * @return {@link SourcedPriceCache} of the {@link PriceSource}, null if none is set.
+     */
+    public static SourcedPriceCache getPriceSourceCache() {
+        return priceSourceCache;
+    }
+
+    private static synchronized void swapPriceSource(SourcedPriceCache replacement) {
+        SourcedPriceCache cache = priceSourceCache;
+        priceSourceCache = replacement;
+        if (cache != null) {
+            cache.close();
         }
+    }
+
+    /**
+     * @return unmodifiable set of {@link Product}s registered in the current {@link PriceBook}.
+     */
+    public static Set<Product> getProducts() {
+        return priceBook.get().getProducts();
+    }
+
+    /**
+     * @return current {@link PriceBook} snapshot.
+     */
+    public static PriceBook getPriceBook() {
+        return priceBook.get();
+    }
+
+    /**
+     * @return version of the current {@link PriceBook}, incremented on every change.
+     */
+    public static long getVersion() {
+        return priceBook.get().getVersion();
+    }
 
-        Collections.shuffle(result);
+    /**
+     * Publishes registry size, version and lookup counters as the {@value ProductRegistryMetrics#OBJECT_NAME} MBean,
+     * if not published yet. Lookups are only counted while {@link Metrics} are enabled.
+     */
+    public static void registerMBean() {
+        Metrics.registerMBean(ProductRegistryMetrics.OBJECT_NAME, new ProductRegistryMetrics());
+    }
 
-        return result;
+    /**
+     * Resets registry, and removes its {@link PriceSource}.
+     */
+    public static void reset() {
+        removePriceSource();
+        update(PriceBook::cleared, RegistryChange.Type.SNAPSHOT, Collections.emptyMap());
     }
 }
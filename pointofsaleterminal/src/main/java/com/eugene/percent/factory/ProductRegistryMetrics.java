@@ -0,0 +1,37 @@
+package com.eugene.percent.factory;
+
+import com.eugene.percent.metrics.Metrics;
+
+/**
+ * {@link ProductRegistryMetricsMBean} backed by the {@link ProductRegistry} and {@link Metrics}.
+ */
+class ProductRegistryMetrics implements ProductRegistryMetricsMBean {
+    static final String OBJECT_NAME = Metrics.DOMAIN + ":type=ProductRegistry";
+
+    @Override
+    public int getSize() {
+        return ProductRegistry.getPriceBook().size();
+    }
+
+    @Override
+    public long getVersion() {
+        return ProductRegistry.getVersion();
+    }
+
+    @Override
+    public long getLookups() {
+        return Metrics.getRegistryLookups();
+    }
+
+    @Override
+    public long getMisses() {
+        return Metrics.getRegistryMisses();
+    }
+
+    @Override
+    public double getMissRatio() {
+        long lookups = getLookups();
+
+        return lookups == 0 ? 0 : (double) getMisses() / lookups;
+    }
+}
@@ -0,0 +1,20 @@
+package com.eugene.percent.factory;
+
+/**
+ * JMX view of the {@link ProductRegistry}: size and version gauges of the current {@link PriceBook},
+ * and lookup counters (see {@link com.eugene.percent.metrics.Metrics}).
+ */
+public interface ProductRegistryMetricsMBean {
+    int getSize();
+
+    long getVersion();
+
+    long getLookups();
+
+    long getMisses();
+
+    /**
+     * @return misses per lookup, 0 if there were no lookups.
+     */
+    double getMissRatio();
+}
@@ -0,0 +1,48 @@
+package com.eugene.percent.factory;
+
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import java.util.Map;
+
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * A change of the {@link ProductRegistry}, as published on its {@link ChangeFeed}.
+ *
+ * The sequence number of a change is the version of the {@link PriceBook} it produced, so changes are ordered
+ * like the versions; sequence numbers increase, but not necessarily by 1.
+ */
+@Value
+public class RegistryChange {
+    /**
+     * What a change carries.
+     */
+    public enum Type {
+        /**
+         * Registrations and de-registrations, the rest of the registry is unchanged.
+         */
+        DELTA,
+        /**
+         * Whole content of the registry, which replaces everything registered before.
+         */
+        SNAPSHOT,
+        /**
+         * A catalog was loaded or imported; its content is not part of the feed and is read from a snapshot.
+         */
+        CATALOG
+    }
+
+    long sequence;
+    long timestampMillis; //when the change was published
+    @NonNull Type type;
+    @NonNull Map<Product, ProductPrice> productPrices; //a product without price is de-registered
+
+    /**
+     * @return number of registrations and de-registrations carried.
+     */
+    public int size() {
+        return productPrices.size();
+    }
+}
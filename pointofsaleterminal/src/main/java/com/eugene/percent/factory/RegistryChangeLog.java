@@ -0,0 +1,113 @@
+package com.eugene.percent.factory;
+
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * {@link ChangeFeed} of the local {@link ProductRegistry} - the tail of its recent changes.
+ * The registry publishes every version under the lock of its log and appends the change right away,
+ * so the tail is in version order and a snapshot is always followed by the tail after it.
+ *
+ * The tail holds changes carrying up to capacity registrations and de-registrations in total, always at least
+ * the latest change. Older changes are dropped; readers behind them start from a snapshot instead.
+ */
+final class RegistryChangeLog implements ChangeFeed {
+    private final long epoch = UUID.randomUUID().getLeastSignificantBits();
+    private final int capacity;
+    private final Supplier<PriceBook> priceBook;
+    private final ArrayDeque<RegistryChange> changes = new ArrayDeque<>();
+    private int retainedSize;
+    private long sequence; //of the latest change
+    private long truncatedSequence; //of the latest change no longer retained
+
+    /**
+     * @param capacity registrations and de-registrations to retain
+     * @param priceBook current {@link PriceBook}, snapshots are taken of
+     */
+    RegistryChangeLog(int capacity, Supplier<PriceBook> priceBook) {
+        assert capacity > 0;
+
+        this.capacity = capacity;
+        this.priceBook = priceBook;
+        this.sequence = priceBook.get().getVersion();
+        this.truncatedSequence = sequence;
+    }
+
+    /**
+     * Appends the change that produced the current {@link PriceBook}.
+     * Called in the order the versions are published.
+     */
+    synchronized void append(RegistryChange change) {
+        assert change.getSequence() > sequence;
+
+        changes.addLast(change);
+        retainedSize += change.size();
+        sequence = change.getSequence();
+
+        while (retainedSize > capacity && changes.size() > 1) {
+            RegistryChange dropped = changes.removeFirst();
+            retainedSize -= dropped.size();
+            truncatedSequence = dropped.getSequence();
+        }
+    }
+
+    @Override
+    public long getEpoch() {
+        return epoch;
+    }
+
+    @Override
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    @Override
+    public synchronized List<RegistryChange> changesSince(long sequence, int maxChanges) {
+        assert maxChanges > 0;
+
+        if (sequence < truncatedSequence || sequence > this.sequence) {
+            return null;
+        }
+        if (sequence == this.sequence) {
+            return Collections.emptyList();
+        }
+
+        List<RegistryChange> tail = new ArrayList<>(Math.min(maxChanges, changes.size()));
+        for (RegistryChange change : changes) {
+            if (change.getSequence() > sequence) {
+                tail.add(change);
+                if (tail.size() == maxChanges) {
+                    break;
+                }
+            }
+        }
+
+        return tail;
+    }
+
+    @Override
+    public RegistryChange snapshot() {
+        PriceBook book;
+        synchronized (this) {
+            //versions are published under this lock, so the tail continues right after the snapshot's version
+            book = priceBook.get();
+        }
+
+        Map<Product, ProductPrice> productPrices = new HashMap<>(book.size() * 2);
+        for (Product product : book.getProducts()) {
+            productPrices.put(product, book.getPrice(product));
+        }
+
+        return new RegistryChange(book.getVersion(), System.currentTimeMillis(), RegistryChange.Type.SNAPSHOT,
+                Collections.unmodifiableMap(productPrices));
+    }
+}
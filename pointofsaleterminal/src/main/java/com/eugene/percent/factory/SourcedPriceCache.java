@@ -0,0 +1,395 @@
+package com.eugene.percent.factory;
+
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import lombok.NonNull;
+
+/**
+ * Bounded read-through cache of the prices of a {@link PriceSource}, shared by all terminals of the store.
+ *
+ * A price is served for {@link PriceSourceConfig#getTtlMillis()} after it was fetched; {@link Product}s the source
+ * does not price are remembered for {@link PriceSourceConfig#getNegativeTtlMillis()}, so repeated scans of an unknown
+ * code do not reach the source either. A lookup within {@link PriceSourceConfig#getRefreshAheadMillis()} of expiry
+ * is served the cached price and refreshes it in the background - hot prices never expire while they are scanned.
+ *
+ * Fetches are single-flight: concurrent misses and refreshes of a product code share one fetch, so a hundred lanes
+ * missing on the same SKU cost the source one call. Fetches run on the cache's own threads; a lookup waits at most
+ * {@link PriceSourceConfig#getFetchTimeoutMillis()} for its fetch, and finds no price if it times out or the fetch fails.
+ * Failed fetches are not cached - the next lookup tries again.
+ *
+ * Beyond {@link PriceSourceConfig#getMaximumSize()} prices, expired prices and then the least recently used ones
+ * are evicted, in batches of an eighth of the size so that eviction is amortized over many fetches.
+ *
+ * Fetched {@link Product}s get ids of the {@link ProductRegistry}, so they go to carts like registered ones.
+ * An id is kept while the price is cached and refreshed, and is not interned by the registry until the
+ * {@link Product} is registered - the ids of evicted prices leave nothing behind.
+ * A {@link Product} fetched again after its price was evicted gets a new id, so a cart still holding a line
+ * of it starts a second line; the least recently used prices are evicted, rarely those of carts in progress.
+ */
+public final class SourcedPriceCache implements Closeable {
+    private final PriceSource source;
+    private final int maximumSize;
+    private final long ttlNanos;
+    private final long refreshAheadNanos;
+    private final long negativeTtlNanos;
+    private final long fetchTimeoutNanos;
+    private final LongSupplier nanoClock;
+
+    private final Map<String, CachedPrice> prices = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<CachedPrice>> fetches = new ConcurrentHashMap<>();
+    private final ExecutorService fetcher;
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder fetchCount = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Price fetched from the source, or the absence of one.
+     */
+    private static final class CachedPrice {
+        private final PriceBook.Entry entry; //null if the source does not price the product
+        private final long refreshNanos;
+        private final long expiryNanos;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile long accessNanos;
+
+        private CachedPrice(PriceBook.Entry entry, long refreshNanos, long expiryNanos, long accessNanos) {
+            this.entry = entry;
+            this.refreshNanos = refreshNanos;
+            this.expiryNanos = expiryNanos;
+            this.accessNanos = accessNanos;
+        }
+
+        private boolean isExpired(long nowNanos) {
+            return nowNanos - expiryNanos >= 0;
+        }
+    }
+
+    /**
+     * @param source {@link PriceSource}
+     * @param config {@link PriceSourceConfig}
+     */
+    public SourcedPriceCache(@NonNull PriceSource source, @NonNull PriceSourceConfig config) {
+        this(source, config, System::nanoTime);
+    }
+
+    SourcedPriceCache(PriceSource source, PriceSourceConfig config, LongSupplier nanoClock) {
+        assert config.getMaximumSize() > 0;
+        assert config.getTtlMillis() > 0;
+        assert config.getRefreshAheadMillis() >= 0 && config.getRefreshAheadMillis() < config.getTtlMillis();
+        assert config.getNegativeTtlMillis() >= 0;
+        assert config.getFetchTimeoutMillis() > 0;
+        assert config.getFetchThreads() > 0;
+
+        this.source = source;
+        this.maximumSize = config.getMaximumSize();
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(config.getTtlMillis());
+        this.refreshAheadNanos = TimeUnit.MILLISECONDS.toNanos(config.getRefreshAheadMillis());
+        this.negativeTtlNanos = TimeUnit.MILLISECONDS.toNanos(config.getNegativeTtlMillis());
+        this.fetchTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getFetchTimeoutMillis());
+        this.nanoClock = nanoClock;
+
+        AtomicInteger threads = new AtomicInteger();
+        this.fetcher = Executors.newFixedThreadPool(config.getFetchThreads(), task -> {
+            Thread thread = new Thread(task, "Price source fetcher " + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Looks a {@link Product} up, fetching its price from the source on a miss.
+     *
+     * @param product {@link Product}
+     * @return {@link PriceBook.Entry} of the {@link Product}, null if the source does not price it,
+     *         or the fetch failed or timed out.
+     */
+    public PriceBook.Entry getEntry(@NonNull Product product) {
+        return lookup(product.getProductCode(), product);
+    }
+
+    /**
+     * Looks a product code up, fetching its price from the source on a miss.
+     *
+     * @param productCode product code, e.g. a view of barcode bytes
+     * @return {@link PriceBook.Entry} of the code, null if the source does not price it,
+     *         or the fetch failed or timed out.
+     */
+    public PriceBook.Entry getEntry(@NonNull CharSequence productCode) {
+        return lookup(productCode.toString(), null);
+    }
+
+    private PriceBook.Entry lookup(String productCode, Product product) {
+        long nowNanos = nanoClock.getAsLong();
+        CachedPrice cached = prices.get(productCode);
+
+        if (cached != null && !cached.isExpired(nowNanos)) {
+            hits.increment();
+            cached.accessNanos = nowNanos;
+            //refreshed once - if the refresh fails, the price expires
+            if (cached.entry != null && nowNanos - cached.refreshNanos >= 0
+                    && cached.refreshing.compareAndSet(false, true)) {
+                refreshes.increment();
+                fetch(productCode, cached.entry.getProduct(), cached);
+            }
+
+            return cached.entry;
+        }
+
+        misses.increment();
+        CompletableFuture<CachedPrice> fetch = fetch(productCode,
+                product != null ? product : Product.builder().productCode(productCode).build(), cached);
+        try {
+            cached = fetch.get(fetchTimeoutNanos, TimeUnit.NANOSECONDS);
+
+            return cached == null ? null : cached.entry;
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause()); //fetches complete normally
+        }
+    }
+
+    /**
+     * Starts a fetch of a product code, or joins the one in flight.
+     *
+     * @param seen cached price the caller found stale, null if none
+     * @return fetched price, null if the fetch failed.
+     */
+    private CompletableFuture<CachedPrice> fetch(String productCode, Product product, CachedPrice seen) {
+        CompletableFuture<CachedPrice> fetch = new CompletableFuture<>();
+        CompletableFuture<CachedPrice> inFlight = fetches.putIfAbsent(productCode, fetch);
+        if (inFlight != null) {
+            coalesced.increment();
+            return inFlight;
+        }
+
+        //a fetch may have completed since the caller looked
+        CachedPrice cached = prices.get(productCode);
+        if (cached != seen && cached != null && !cached.isExpired(nanoClock.getAsLong())) {
+            fetches.remove(productCode, fetch);
+            fetch.complete(cached);
+            return fetch;
+        }
+
+        fetchCount.increment();
+        try {
+            fetcher.execute(() -> complete(productCode, product, fetch));
+        } catch (RejectedExecutionException e) {
+            failures.increment();
+            fetches.remove(productCode, fetch);
+            fetch.complete(null);
+        }
+
+        return fetch;
+    }
+
+    private void complete(String productCode, Product product, CompletableFuture<CachedPrice> fetch) {
+        CachedPrice cached = null;
+        try {
+            ProductPrice productPrice = source.fetchPrice(product);
+            long nowNanos = nanoClock.getAsLong();
+
+            cached = productPrice == null
+                    ? new CachedPrice(null, nowNanos + negativeTtlNanos, nowNanos + negativeTtlNanos, nowNanos)
+                    : new CachedPrice(new PriceBook.Entry(productIdOf(productCode, product), product, productPrice),
+                            nowNanos + ttlNanos - refreshAheadNanos, nowNanos + ttlNanos, nowNanos);
+            prices.put(productCode, cached);
+            if (prices.size() > maximumSize) {
+                evict();
+            }
+        } catch (IOException | RuntimeException e) {
+            failures.increment();
+        } finally {
+            //cached first, so a lookup that no longer finds the fetch finds its price
+            fetches.remove(productCode, fetch);
+            fetch.complete(cached);
+        }
+    }
+
+    /**
+     * @return id of a fetched {@link Product} - the id of its price being refreshed or replaced, if it is still cached.
+     */
+    private int productIdOf(String productCode, Product product) {
+        CachedPrice cached = prices.get(productCode);
+
+        return cached != null && cached.entry != null ? cached.entry.getProductId()
+                : ProductRegistry.sourcedProductId(product);
+    }
+
+    /**
+     * @return id of a {@link Product} whose price is cached, -1 if there is none.
+     */
+    int productIdOf(Product product) {
+        CachedPrice cached = prices.get(product.getProductCode());
+
+        return cached != null && cached.entry != null ? cached.entry.getProductId() : -1;
+    }
+
+    /**
+     * Evicts expired prices, then the least recently used ones, down to 7/8 of the maximum size.
+     * One thread evicts at a time; others carry on while it does.
+     */
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            long nowNanos = nanoClock.getAsLong();
+            List<Map.Entry<String, CachedPrice>> candidates = new ArrayList<>(prices.size());
+            for (Map.Entry<String, CachedPrice> price : prices.entrySet()) {
+                if (!price.getValue().isExpired(nowNanos)) {
+                    candidates.add(price);
+                } else if (prices.remove(price.getKey(), price.getValue())) {
+                    evictions.increment();
+                }
+            }
+
+            int excess = prices.size() - (maximumSize - maximumSize / 8);
+            if (excess <= 0 || candidates.isEmpty()) {
+                return;
+            }
+
+            //access times keep changing, so the cut-off is chosen on a copy of them
+            long[] accessNanos = new long[candidates.size()];
+            for (int i = 0; i < accessNanos.length; ++i) {
+                accessNanos[i] = candidates.get(i).getValue().accessNanos - nowNanos;
+            }
+            long[] sortedAccessNanos = accessNanos.clone();
+            Arrays.sort(sortedAccessNanos);
+            long cutOff = sortedAccessNanos[Math.min(excess, sortedAccessNanos.length) - 1];
+
+            for (int i = 0; i < accessNanos.length && excess > 0; ++i) {
+                Map.Entry<String, CachedPrice> price = candidates.get(i);
+                if (accessNanos[i] <= cutOff && prices.remove(price.getKey(), price.getValue())) {
+                    evictions.increment();
+                    --excess;
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * Drops the cached price of a {@link Product}, e.g. when the source re-priced it. The next lookup fetches it.
+     *
+     * @param product {@link Product}
+     */
+    public void invalidate(@NonNull Product product) {
+        prices.remove(product.getProductCode());
+    }
+
+    /**
+     * Drops all cached prices.
+     */
+    public void invalidateAll() {
+        prices.clear();
+    }
+
+    /**
+     * @return number of cached prices and absences of one, including expired ones not evicted yet.
+     */
+    public int size() {
+        return prices.size();
+    }
+
+    /**
+     * @return number of lookups served from the cache.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of lookups that waited for a fetch.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return number of calls to the source.
+     */
+    public long getFetches() {
+        return fetchCount.sum();
+    }
+
+    /**
+     * @return number of misses and refreshes that joined a fetch in flight instead of calling the source.
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return number of refresh-ahead fetches started by lookups of prices about to expire.
+     */
+    public long getRefreshes() {
+        return refreshes.sum();
+    }
+
+    /**
+     * @return number of fetches that failed.
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * @return number of lookups that gave up waiting for their fetch.
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * @return number of prices evicted to keep the cache within its maximum size.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Stops the fetch threads. Cached prices are still served; misses find no price.
+     */
+    @Override
+    public void close() {
+        fetcher.shutdownNow();
+        fetches.forEach((productCode, fetch) -> {
+            fetches.remove(productCode, fetch);
+            fetch.complete(null);
+        });
+    }
+}
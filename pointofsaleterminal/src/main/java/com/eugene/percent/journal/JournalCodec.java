@@ -0,0 +1,144 @@
+package com.eugene.percent.journal;
+
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+import com.eugene.percent.model.Sale;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Binary encoding of {@link Sale} records in a {@link TransactionJournal}.
+ *
+ * A record is an int payload length, an int CRC32C of the payload, and the payload:
+ * <pre>
+ * long timestamp, string terminal id, long total, int line count,
+ * per line: string product code, int quantity, long price per unit, int units in volume, long price per volume, long price
+ * </pre>
+ * Strings are an int length and UTF-8 bytes. Amounts are in minor units.
+ * Of a price with {@link com.eugene.percent.model.PricingRule}s only its headline tier is recorded;
+ * the line price is recorded as charged.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class JournalCodec {
+    static final int RECORD_HEADER_SIZE = 8;
+
+    private static final int LINE_FIXED_SIZE = 4 + 4 + 8 + 4 + 8 + 8;
+    private static final int SALE_FIXED_SIZE = 8 + 4 + 8 + 4;
+
+    /**
+     * @return size of an encoded record, header included.
+     */
+    static int recordSize(Sale sale) {
+        long size = RECORD_HEADER_SIZE + SALE_FIXED_SIZE + utf8Length(sale.getTerminalId());
+        for (Sale.Line line : sale.getLines()) {
+            size += LINE_FIXED_SIZE + utf8Length(line.getProduct().getProductCode());
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Sale is too large to journal: " + size + " bytes");
+        }
+
+        return (int) size;
+    }
+
+    /**
+     * Encodes a record at the buffer's position, which must have {@link #recordSize(Sale)} bytes remaining.
+     */
+    static void encode(Sale sale, ByteBuffer buffer, CRC32C crc) {
+        int start = buffer.position();
+        buffer.position(start + RECORD_HEADER_SIZE);
+
+        buffer.putLong(sale.getTimestamp());
+        putString(buffer, sale.getTerminalId());
+        buffer.putLong(sale.getTotal());
+        buffer.putInt(sale.getLines().size());
+        for (Sale.Line line : sale.getLines()) {
+            ProductPrice productPrice = line.getProductPrice();
+
+            putString(buffer, line.getProduct().getProductCode());
+            buffer.putInt(line.getQuantity());
+            buffer.putLong(productPrice.getPricePerUnit());
+            buffer.putInt(productPrice.getNumberOfUnitsInVolume());
+            buffer.putLong(productPrice.getPricePerVolume());
+            buffer.putLong(line.getPrice());
+        }
+
+        int end = buffer.position();
+        buffer.putInt(start, end - start - RECORD_HEADER_SIZE);
+        buffer.putInt(start + 4, checksum(buffer, start + RECORD_HEADER_SIZE, end, crc));
+    }
+
+    /**
+     * @return CRC32C of the buffer's bytes from start (inclusive) to end (exclusive).
+     */
+    static int checksum(ByteBuffer buffer, int start, int end, CRC32C crc) {
+        ByteBuffer payload = buffer.duplicate();
+        payload.limit(end).position(start);
+
+        crc.reset();
+        crc.update(payload);
+
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Decodes a payload, from the buffer's position to its limit.
+     */
+    static Sale decode(ByteBuffer payload) {
+        long timestamp = payload.getLong();
+        String terminalId = getString(payload);
+        long total = payload.getLong();
+        int lineCount = payload.getInt();
+
+        List<Sale.Line> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; ++i) {
+            Product product = Product.builder().productCode(getString(payload)).build();
+            int quantity = payload.getInt();
+            ProductPrice productPrice = new ProductPrice(payload.getLong(), payload.getInt(), payload.getLong());
+
+            lines.add(new Sale.Line(product, quantity, productPrice, payload.getLong()));
+        }
+
+        return new Sale(terminalId, timestamp, Collections.unmodifiableList(lines), total);
+    }
+
+    private static int utf8Length(String s) {
+        for (int i = 0; i < s.length(); ++i) {
+            if (s.charAt(i) > 0x7F) {
+                return 4 + s.getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+
+        return 4 + s.length();
+    }
+
+    private static void putString(ByteBuffer buffer, String s) {
+        for (int i = 0; i < s.length(); ++i) {
+            if (s.charAt(i) > 0x7F) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                buffer.putInt(bytes.length);
+                buffer.put(bytes);
+                return;
+            }
+        }
+
+        buffer.putInt(s.length());
+        for (int i = 0; i < s.length(); ++i) {
+            buffer.put((byte) s.charAt(i));
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
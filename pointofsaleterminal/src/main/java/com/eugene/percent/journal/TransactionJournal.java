@@ -0,0 +1,365 @@
+package com.eugene.percent.journal;
+
+import com.eugene.percent.model.Sale;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+import lombok.NonNull;
+
+/**
+ * Append-only journal of completed {@link Sale}s, shared by all terminals of a store.
+ *
+ * {@link #append(Sale)} only queues the sale and returns a future that completes once it is durable.
+ * A single writer thread group-commits - it drains everything queued while the previous fsync was running,
+ * writes it through a reusable direct buffer and fsyncs once for the whole batch - so checkout latency
+ * does not depend on the cost of an fsync per sale.
+ *
+ * Opening a journal recovers it: a record torn by a crash is truncated, so the journal always ends
+ * with the last complete record. See {@link #replay(Path, Consumer)}.
+ */
+public class TransactionJournal implements Closeable {
+    private static final int DEFAULT_QUEUE_CAPACITY = 4096;
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final Pending CLOSE = new Pending(null);
+
+    private final FileChannel channel;
+    private final BlockingQueue<Pending> queue;
+    private final Thread writer;
+    private final CRC32C crc = new CRC32C();
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    private static final class Pending {
+        private final Sale sale;
+        private final CompletableFuture<Void> durable = new CompletableFuture<>();
+
+        private Pending(Sale sale) {
+            this.sale = sale;
+        }
+    }
+
+    private TransactionJournal(FileChannel channel, int queueCapacity) {
+        this.channel = channel;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.writer = new Thread(this::runWriter, "TransactionJournal writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Opens (creating if needed) and recovers a journal for appending.
+     *
+     * @param path journal file
+     * @return {@link TransactionJournal}
+     * @throws IOException if the journal cannot be opened
+     */
+    public static TransactionJournal open(@NonNull Path path) throws IOException {
+        return open(path, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param path journal file
+     * @param queueCapacity sales that can wait to be written before {@link #append(Sale)} blocks
+     * @return {@link TransactionJournal}
+     * @throws IOException if the journal cannot be opened
+     */
+    public static TransactionJournal open(@NonNull Path path, int queueCapacity) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long end = scan(channel, null);
+            if (end < channel.size()) {
+                channel.truncate(end);
+                channel.force(true);
+            }
+            channel.position(end);
+
+            return new TransactionJournal(channel, queueCapacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Replays a journal up to its last complete record.
+     *
+     * @param path journal file
+     * @param consumer receives every {@link Sale}, in journal order
+     * @return number of {@link Sale}s replayed.
+     * @throws IOException if the journal cannot be read
+     */
+    public static long replay(@NonNull Path path, @NonNull Consumer<Sale> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] count = new long[1];
+            scan(channel, sale -> {
+                ++count[0];
+                consumer.accept(sale);
+            });
+
+            return count[0];
+        }
+    }
+
+    /**
+     * Queues a {@link Sale}. Blocks only if the writer is more than the queue capacity behind.
+     *
+     * @param sale completed {@link Sale}
+     * @return future that completes when the {@link Sale} is durable, or exceptionally if it cannot be written.
+     * @throws IllegalStateException if the journal is closed
+     */
+    public CompletableFuture<Void> append(@NonNull Sale sale) {
+        CompletableFuture<Void> failed = failedAppend();
+        if (failed != null) {
+            return failed;
+        }
+
+        Pending pending = new Pending(sale);
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.durable.completeExceptionally(e);
+        }
+
+        return pending.durable;
+    }
+
+    /**
+     * Queues a {@link Sale} unless the writer is more than the queue capacity behind. Never blocks, so an event
+     * loop can hold the {@link Sale} and offer it again later rather than stall or lose it.
+     *
+     * @param sale completed {@link Sale}
+     * @return future that completes when the {@link Sale} is durable, or exceptionally if it cannot be written;
+     * null if the queue is full and the {@link Sale} was not queued.
+     * @throws IllegalStateException if the journal is closed
+     */
+    public CompletableFuture<Void> tryAppend(@NonNull Sale sale) {
+        CompletableFuture<Void> failed = failedAppend();
+        if (failed != null) {
+            return failed;
+        }
+
+        Pending pending = new Pending(sale);
+
+        return queue.offer(pending) ? pending.durable : null;
+    }
+
+    /**
+     * @return future failed with the last write failure, null if appends can be queued.
+     * @throws IllegalStateException if the journal is closed
+     */
+    private CompletableFuture<Void> failedAppend() {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+
+        IOException lastFailure = failure;
+        if (lastFailure != null) {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            result.completeExceptionally(lastFailure);
+            return result;
+        }
+
+        return null;
+    }
+
+    /**
+     * Writes and fsyncs every queued {@link Sale}, then closes the journal.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(CLOSE);
+                writer.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        channel.close();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runWriter() {
+        List<Pending> batch = new ArrayList<>();
+
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue; //only close() stops the writer
+            }
+            queue.drainTo(batch);
+
+            boolean closing = batch.remove(CLOSE);
+            commit(batch);
+            batch.clear();
+
+            if (closing) {
+                //appends racing with close() may still have been queued
+                queue.drainTo(batch);
+                batch.remove(CLOSE);
+                commit(batch);
+                return;
+            }
+        }
+    }
+
+    private void commit(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        long start = -1;
+        try {
+            if (failure != null) {
+                throw failure;
+            }
+
+            start = channel.position();
+            for (Pending pending : batch) {
+                int recordSize = JournalCodec.recordSize(pending.sale);
+                if (recordSize > buffer.remaining()) {
+                    flush();
+                    if (recordSize > buffer.capacity()) {
+                        buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(recordSize) << 1);
+                    }
+                }
+                JournalCodec.encode(pending.sale, buffer, crc);
+            }
+            flush();
+            channel.force(false);
+
+            batch.forEach(pending -> pending.durable.complete(null));
+        } catch (IOException e) {
+            failure = e;
+            batch.forEach(pending -> pending.durable.completeExceptionally(e));
+        } catch (RuntimeException e) {
+            //drops the batch: the encoded part and whatever of it was already flushed
+            buffer.clear();
+            try {
+                channel.truncate(start);
+                channel.position(start);
+            } catch (IOException rollbackFailure) {
+                failure = rollbackFailure;
+            }
+            batch.forEach(pending -> pending.durable.completeExceptionally(e));
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Reads records from the start of the channel until the end or the first incomplete or corrupt record.
+     *
+     * @param consumer receives decoded {@link Sale}s, null to only validate
+     * @return position after the last complete record.
+     */
+    private static long scan(FileChannel channel, Consumer<Sale> consumer) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.limit(0);
+
+        long position = 0;
+        long size = channel.size();
+
+        while (true) {
+            if (!fill(channel, buffer, position, JournalCodec.RECORD_HEADER_SIZE, size)) {
+                return position;
+            }
+
+            int start = buffer.position();
+            int payloadLength = buffer.getInt(start);
+            int checksum = buffer.getInt(start + 4);
+            if (payloadLength < 0 || position + JournalCodec.RECORD_HEADER_SIZE + payloadLength > size) {
+                return position;
+            }
+
+            int recordSize = JournalCodec.RECORD_HEADER_SIZE + payloadLength;
+            if (recordSize > buffer.capacity()) {
+                buffer = ByteBuffer.allocateDirect(Integer.highestOneBit(recordSize) << 1);
+                buffer.limit(0);
+            }
+            if (!fill(channel, buffer, position, recordSize, size)) {
+                return position;
+            }
+
+            start = buffer.position();
+            int payloadStart = start + JournalCodec.RECORD_HEADER_SIZE;
+            int payloadEnd = payloadStart + payloadLength;
+            if (JournalCodec.checksum(buffer, payloadStart, payloadEnd, crc) != checksum) {
+                return position;
+            }
+
+            if (consumer != null) {
+                ByteBuffer payload = buffer.duplicate();
+                payload.limit(payloadEnd).position(payloadStart);
+                consumer.accept(JournalCodec.decode(payload));
+            }
+
+            buffer.position(payloadEnd);
+            position += recordSize;
+        }
+    }
+
+    /**
+     * Makes sure the buffer has at least n bytes of the channel from position on, buffer position pointing at them.
+     *
+     * @return false if the channel ends first.
+     */
+    private static boolean fill(FileChannel channel, ByteBuffer buffer, long position, int n, long size)
+            throws IOException {
+        if (buffer.remaining() >= n) {
+            return true;
+        }
+        if (position + n > size) {
+            return false;
+        }
+
+        buffer.compact();
+        long readPosition = position + buffer.position();
+        while (buffer.position() < n) {
+            int read = channel.read(buffer, readPosition);
+            if (read < 0) {
+                buffer.flip();
+                return false;
+            }
+            readPosition += read;
+        }
+        buffer.flip();
+
+        return true;
+    }
+}
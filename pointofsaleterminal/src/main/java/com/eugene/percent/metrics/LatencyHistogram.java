@@ -0,0 +1,151 @@
+package com.eugene.percent.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Log-linear histogram of latencies in nanoseconds.
+ *
+ * Every power of two is split into {@value #SUB_BUCKETS} buckets, so a recorded value is known to within ~3%
+ * whatever its magnitude. The buckets of a power of two are only allocated once a value falls into it,
+ * so a histogram of latencies that span a few orders of magnitude takes a few hundred bytes.
+ * Recording does not allocate once those rows exist.
+ *
+ * Not thread-safe - record into one histogram per thread and {@link #add(LatencyHistogram)} them.
+ * Reading a histogram while its owner records into it is safe, but may see a slightly inconsistent view.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int ROWS = Long.SIZE - SUB_BUCKET_BITS;
+
+    private final long[][] rows = new long[ROWS][]; //power of two -> counts of its sub-buckets, null if none
+    private long count;
+    private double sum;
+    private long max;
+
+    /**
+     * @param nanos latency, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+
+        int index = indexOf(value);
+        long[] row = rows[index >>> SUB_BUCKET_BITS];
+        if (row == null) {
+            row = new long[SUB_BUCKETS];
+            rows[index >>> SUB_BUCKET_BITS] = row;
+        }
+        ++row[index & (SUB_BUCKETS - 1)];
+
+        ++count;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds all values recorded by another histogram.
+     */
+    public void add(LatencyHistogram other) {
+        for (int r = 0; r < ROWS; ++r) {
+            long[] otherRow = other.rows[r];
+            if (otherRow == null) {
+                continue;
+            }
+            if (rows[r] == null) {
+                rows[r] = new long[SUB_BUCKETS];
+            }
+            for (int i = 0; i < SUB_BUCKETS; ++i) {
+                rows[r][i] += otherRow[i];
+            }
+        }
+        count += other.count;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Forgets all recorded values.
+     */
+    public void reset() {
+        for (long[] row : rows) {
+            if (row != null) {
+                Arrays.fill(row, 0);
+            }
+        }
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    /**
+     * @return number of recorded values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return largest recorded value, 0 if none.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return mean of the recorded values, 0 if none.
+     */
+    public double getMean() {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * @param percentile 0 to 100
+     * @return value at or below which the percentile of recorded values lie, to bucket precision.
+     */
+    public long getValueAtPercentile(double percentile) {
+        assert percentile >= 0 && percentile <= 100;
+
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int r = 0; r < ROWS; ++r) {
+            long[] row = rows[r];
+            if (row == null) {
+                continue;
+            }
+            for (int i = 0; i < SUB_BUCKETS; ++i) {
+                seen += row[i];
+                if (seen >= rank) {
+                    return Math.min(max, highestValueAt((r << SUB_BUCKET_BITS) + i));
+                }
+            }
+        }
+
+        return max;
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long highestValueAt(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+
+        return lowest + (1L << shift) - 1;
+    }
+}
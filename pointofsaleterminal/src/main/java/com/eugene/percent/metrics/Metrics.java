@@ -0,0 +1,170 @@
+package com.eugene.percent.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Store-wide switch and counters of the hot-path instrumentation, published through JMX.
+ *
+ * Instrumentation is off unless enabled with -D{@value #ENABLED_PROPERTY}=true, {@link #setEnabled(boolean)}
+ * or the Enabled attribute of the {@value #OBJECT_NAME} MBean. Instrumented code checks {@link #isEnabled()} first,
+ * so when it is off the cost is a single read of a flag that is not written to.
+ *
+ * Counters are striped ({@link LongAdder}) - every terminal thread increments its own cell,
+ * so lanes do not contend on a shared cache line.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class Metrics {
+    public static final String ENABLED_PROPERTY = "pointofsaleterminal.metrics";
+    public static final String DOMAIN = "com.eugene.percent";
+    public static final String OBJECT_NAME = DOMAIN + ":type=Metrics";
+
+    private static volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+
+    private static final LongAdder scans = new LongAdder();
+    private static final LongAdder scanErrors = new LongAdder();
+    private static final LongAdder sessions = new LongAdder();
+    private static final LongAdder registryLookups = new LongAdder();
+    private static final LongAdder registryMisses = new LongAdder();
+
+    /**
+     * @return true if instrumentation is on.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns instrumentation on or off, effective immediately for all terminals.
+     */
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    /**
+     * Counts a scan of a terminal. Callers check {@link #isEnabled()}.
+     */
+    public static void recordScan(boolean success) {
+        scans.increment();
+        if (!success) {
+            scanErrors.increment();
+        }
+    }
+
+    /**
+     * Counts a completed pos session. Callers check {@link #isEnabled()}.
+     */
+    public static void recordSession() {
+        sessions.increment();
+    }
+
+    /**
+     * Counts a {@link com.eugene.percent.model.Product} lookup in the registry, if instrumentation is on.
+     */
+    public static void recordRegistryLookup(boolean hit) {
+        if (enabled) {
+            registryLookups.increment();
+            if (!hit) {
+                registryMisses.increment();
+            }
+        }
+    }
+
+    /**
+     * @return number of scans since the last {@link #reset()}, including failed ones.
+     */
+    public static long getScans() {
+        return scans.sum();
+    }
+
+    /**
+     * @return number of failed scans since the last {@link #reset()}.
+     */
+    public static long getScanErrors() {
+        return scanErrors.sum();
+    }
+
+    /**
+     * @return number of completed pos sessions since the last {@link #reset()}.
+     */
+    public static long getSessions() {
+        return sessions.sum();
+    }
+
+    /**
+     * @return number of registry lookups since the last {@link #reset()}.
+     */
+    public static long getRegistryLookups() {
+        return registryLookups.sum();
+    }
+
+    /**
+     * @return number of registry lookups of unregistered products since the last {@link #reset()}.
+     */
+    public static long getRegistryMisses() {
+        return registryMisses.sum();
+    }
+
+    /**
+     * Zeroes all store-wide counters.
+     */
+    public static void reset() {
+        scans.reset();
+        scanErrors.reset();
+        sessions.reset();
+        registryLookups.reset();
+        registryMisses.reset();
+    }
+
+    /**
+     * Registers the {@value #OBJECT_NAME} MBean with the platform MBean server, if it is not registered yet.
+     */
+    public static void registerMBean() {
+        registerMBean(OBJECT_NAME, new MetricsControl());
+    }
+
+    /**
+     * Registers an MBean with the platform MBean server.
+     *
+     * @param name object name
+     * @param mbean standard MBean
+     * @return false if an MBean of that name is already registered.
+     * @throws IllegalStateException if the MBean cannot be registered
+     */
+    public static boolean registerMBean(String name, Object mbean) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(mbean, new ObjectName(name));
+            return true;
+        } catch (InstanceAlreadyExistsException e) {
+            return false;
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register MBean " + name, e);
+        }
+    }
+
+    /**
+     * Unregisters an MBean from the platform MBean server, if registered.
+     *
+     * @param name object name
+     */
+    public static void unregisterMBean(String name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(name);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister MBean " + name, e);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.eugene.percent.metrics;
+
+/**
+ * {@link MetricsControlMBean} backed by {@link Metrics}.
+ */
+class MetricsControl implements MetricsControlMBean {
+    @Override
+    public boolean isEnabled() {
+        return Metrics.isEnabled();
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        Metrics.setEnabled(enabled);
+    }
+
+    @Override
+    public long getScans() {
+        return Metrics.getScans();
+    }
+
+    @Override
+    public long getScanErrors() {
+        return Metrics.getScanErrors();
+    }
+
+    @Override
+    public long getSessions() {
+        return Metrics.getSessions();
+    }
+
+    @Override
+    public void reset() {
+        Metrics.reset();
+    }
+}
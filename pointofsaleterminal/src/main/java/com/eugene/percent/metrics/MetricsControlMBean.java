@@ -0,0 +1,18 @@
+package com.eugene.percent.metrics;
+
+/**
+ * JMX view of {@link Metrics}.
+ */
+public interface MetricsControlMBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getScans();
+
+    long getScanErrors();
+
+    long getSessions();
+
+    void reset();
+}
@@ -0,0 +1,80 @@
+package com.eugene.percent.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+
+/**
+ * Fixed-point money arithmetic.
+ *
+ * Amounts are longs in minor units (cents) of the store currency, with {@value #SCALE} decimal places.
+ * Arithmetic is exact and throws {@link ArithmeticException} on overflow.
+ * {@link BigDecimal} is only used to parse and display amounts.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class Money {
+    public static final int SCALE = 2;
+
+    public static final long ZERO = 0L;
+
+    /**
+     * @param amount amount in major units, e.g. "1.25"
+     * @return amount in minor units.
+     * @throws ArithmeticException if amount has more than {@value #SCALE} decimal places or does not fit.
+     */
+    public static long of(@NonNull String amount) {
+        return of(new BigDecimal(amount));
+    }
+
+    /**
+     * @param amount amount in major units
+     * @return amount in minor units.
+     * @throws ArithmeticException if amount has more than {@value #SCALE} decimal places or does not fit.
+     */
+    public static long of(@NonNull BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    /**
+     * @return a + b.
+     * @throws ArithmeticException on overflow
+     */
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    /**
+     * @return a - b.
+     * @throws ArithmeticException on overflow
+     */
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    /**
+     * @return amount * quantity.
+     * @throws ArithmeticException on overflow
+     */
+    public static long multiply(long amount, long quantity) {
+        return Math.multiplyExact(amount, quantity);
+    }
+
+    /**
+     * @param amount amount in minor units
+     * @return amount in major units, for display and export.
+     */
+    public static BigDecimal toBigDecimal(long amount) {
+        return BigDecimal.valueOf(amount, SCALE);
+    }
+
+    /**
+     * @param amount amount in minor units
+     * @return amount in major units, e.g. "1.25".
+     */
+    public static String toString(long amount) {
+        return toBigDecimal(amount).toPlainString();
+    }
+}
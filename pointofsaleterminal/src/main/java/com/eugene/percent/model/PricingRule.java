@@ -0,0 +1,54 @@
+package com.eugene.percent.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+/**
+ * Promotion of a {@link ProductPrice} - a bundle of units sold together for one price.
+ *
+ * Rules are combined to the customer's advantage: a line is charged the cheapest mix of bundles and single units
+ * that adds up to its quantity, see {@link ProductPrice#of(long, int, PricingRule...)}.
+ */
+@Value
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class PricingRule {
+    int numberOfUnits;
+    int numberOfPaidUnits;  //buy-get-free: units charged at the unit price, 0 for a fixed bundle price
+    long pricePerVolume;    //fixed bundle price, 0 for buy-get-free
+
+    /**
+     * "numberOfUnits for pricePerVolume", e.g. 3 for 3.00.
+     *
+     * @param numberOfUnits units in the bundle, positive
+     * @param pricePerVolume price of the bundle in minor units, positive
+     */
+    public static PricingRule volume(int numberOfUnits, long pricePerVolume) {
+        assert numberOfUnits > 0;
+        assert pricePerVolume > 0;
+
+        return new PricingRule(numberOfUnits, 0, pricePerVolume);
+    }
+
+    /**
+     * "Buy numberOfPaidUnits, get numberOfFreeUnits free", e.g. buy 2 get 1 free.
+     *
+     * @param numberOfPaidUnits units charged at the unit price, positive
+     * @param numberOfFreeUnits units given away, positive
+     */
+    public static PricingRule buyGetFree(int numberOfPaidUnits, int numberOfFreeUnits) {
+        assert numberOfPaidUnits > 0;
+        assert numberOfFreeUnits > 0;
+
+        return new PricingRule(Math.addExact(numberOfPaidUnits, numberOfFreeUnits), numberOfPaidUnits, 0);
+    }
+
+    /**
+     * @param pricePerUnit price of a single unit in minor units
+     * @return price of the bundle in minor units.
+     * @throws ArithmeticException on overflow
+     */
+    long priceOfVolume(long pricePerUnit) {
+        return numberOfPaidUnits > 0 ? Money.multiply(pricePerUnit, numberOfPaidUnits) : pricePerVolume;
+    }
+}
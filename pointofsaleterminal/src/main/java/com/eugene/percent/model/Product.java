@@ -16,4 +16,23 @@ import lombok.NonNull;
 @Data
 public class Product {
     @NonNull private String productCode;
+
+    /**
+     * Hash of a product code in any {@link CharSequence} form - a String, a scanned barcode view, etc -
+     * so every code index agrees with the others.
+     *
+     * @return {@link String#hashCode()} of the code, cached if it is a String.
+     */
+    public static int codeHashCode(@NonNull CharSequence productCode) {
+        if (productCode instanceof String) {
+            return productCode.hashCode();
+        }
+
+        int hash = 0;
+        for (int i = 0; i < productCode.length(); ++i) {
+            hash = 31 * hash + productCode.charAt(i);
+        }
+
+        return hash;
+    }
 }
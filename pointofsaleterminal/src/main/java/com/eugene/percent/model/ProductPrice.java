@@ -1,41 +1,152 @@
 package com.eugene.percent.model;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import lombok.AccessLevel;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
 
 /**
  * Product pricing logic.
+ *
+ * Prices are in minor units, see {@link Money}.
+ *
+ * A price is either a unit price with a single "numberOfUnitsInVolume for pricePerVolume" tier,
+ * or a unit price with any number of {@link PricingRule}s (see {@link #of(long, int, PricingRule...)}).
+ * Rules are compiled into a quantity table once, when the price is created,
+ * so calculating the price of a line is O(1) however many rules apply.
  */
-@Data
-@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@Getter
+@EqualsAndHashCode
+@ToString
 public class ProductPrice {
-    private double pricePerUnit;
-    private int numberOfUnitsInVolume;
-    private double pricePerVolume;
+    /**
+     * Promotion limit of prices whose rules apply to any quantity.
+     */
+    public static final int NO_LIMIT = Integer.MAX_VALUE;
+
+    private final long pricePerUnit;
+    private final int numberOfUnitsInVolume;
+    private final long pricePerVolume;
+    private final List<PricingRule> rules;
+    private final int promotionLimit;
 
-    public ProductPrice(double pricePerUnit, int numberOfUnitsInVolume, double pricePerVolume) {
-        assert pricePerUnit > 0.0;
+    @EqualsAndHashCode.Exclude @ToString.Exclude @Getter(AccessLevel.NONE)
+    private final QuantityPriceTable table; //null without rules
+
+    public ProductPrice(long pricePerUnit, int numberOfUnitsInVolume, long pricePerVolume) {
+        assert pricePerUnit > 0;
         assert numberOfUnitsInVolume > 0;
-        assert pricePerVolume > 0.0;
+        assert pricePerVolume > 0;
 
         this.pricePerUnit = pricePerUnit;
         this.numberOfUnitsInVolume = numberOfUnitsInVolume;
         this.pricePerVolume = pricePerVolume;
+        this.rules = Collections.emptyList();
+        this.promotionLimit = NO_LIMIT;
+        this.table = null;
+    }
+
+    private ProductPrice(long pricePerUnit, List<PricingRule> rules, int promotionLimit, QuantityPriceTable table) {
+        this.pricePerUnit = pricePerUnit;
+        this.numberOfUnitsInVolume = table.getBestNumberOfUnits();
+        this.pricePerVolume = table.getBestPricePerVolume();
+        this.rules = rules;
+        this.promotionLimit = promotionLimit;
+        this.table = table;
+    }
+
+    /**
+     * Unit price with promotions, e.g. 1.25 each, 3 for 3.00, 10 for 9.00 and buy 10 get 1 free.
+     * A line is charged the cheapest mix of bundles and single units adding up to its quantity.
+     *
+     * numberOfUnitsInVolume and pricePerVolume of the result are those of the bundle with the lowest price per unit.
+     *
+     * @param pricePerUnit price in minor units, positive
+     * @param rules bundles
+     * @return {@link ProductPrice}
+     * @throws IllegalArgumentException if the rules are too large to compile
+     */
+    public static ProductPrice of(long pricePerUnit, @NonNull PricingRule... rules) {
+        return of(pricePerUnit, NO_LIMIT, rules);
+    }
+
+    /**
+     * Unit price with promotions limited to promotionLimit units per line, e.g. "limit 6 per customer" -
+     * units over the limit are charged at the unit price.
+     *
+     * @param pricePerUnit price in minor units, positive
+     * @param promotionLimit units of a line that may be sold in bundles, non-negative
+     * @param rules bundles
+     * @return {@link ProductPrice}
+     * @throws IllegalArgumentException if the rules are too large to compile
+     */
+    public static ProductPrice of(long pricePerUnit, int promotionLimit, @NonNull PricingRule... rules) {
+        assert pricePerUnit > 0;
+        assert promotionLimit >= 0;
+
+        List<PricingRule> ruleList = Collections.unmodifiableList(Arrays.asList(rules.clone()));
+        ruleList.forEach(rule -> {
+            if (rule == null) {
+                throw new NullPointerException("rules contains null");
+            }
+        });
+
+        return new ProductPrice(pricePerUnit, ruleList, promotionLimit,
+                new QuantityPriceTable(pricePerUnit, ruleList, promotionLimit));
+    }
+
+    /**
+     * @return true if this price has {@link PricingRule}s, rather than a single volume tier.
+     */
+    public boolean hasRules() {
+        return table != null;
     }
 
     /**
      * @param numberOfUnits
-     * @return price of numberOfUnits of Product, taking into account any volume discounts
+     * @return price of numberOfUnits of Product in minor units, taking into account any volume discounts
+     * @throws ArithmeticException on overflow
      */
-    public double calculatePrice(int numberOfUnits) {
+    public long calculatePrice(int numberOfUnits) {
+        if (table != null) {
+            return table.price(numberOfUnits);
+        }
+
         if (numberOfUnits <= 0) {
-            return 0.0;
+            return Money.ZERO;
         }
 
-        int numberOfVolumeUnits = (int)(numberOfUnits/this.numberOfUnitsInVolume);
+        int numberOfVolumeUnits = numberOfUnits / this.numberOfUnitsInVolume;
         int numberOfNonVolumeUnits = numberOfUnits % this.numberOfUnitsInVolume;
 
-        return numberOfVolumeUnits * this.pricePerVolume + numberOfNonVolumeUnits * this.pricePerUnit;
+        return Money.add(
+                Money.multiply(this.pricePerVolume, numberOfVolumeUnits),
+                Money.multiply(this.pricePerUnit, numberOfNonVolumeUnits));
+    }
+
+    /**
+     * Marginal price of adding units to a line that already has numberOfUnits,
+     * i.e. calculatePrice(numberOfUnits + additionalUnits) - calculatePrice(numberOfUnits).
+     *
+     * @param numberOfUnits units already in the line
+     * @param additionalUnits units being added
+     * @return price change of the line in minor units, taking into account any volume discounts
+     * @throws ArithmeticException on overflow
+     */
+    public long calculatePriceDelta(int numberOfUnits, int additionalUnits) {
+        if (table == null && additionalUnits == 1 && numberOfUnits >= 0) {
+            //the unit either completes a volume or is charged at the unit price
+            return (numberOfUnits + 1) % this.numberOfUnitsInVolume == 0
+                    ? Money.subtract(this.pricePerVolume, Money.multiply(this.pricePerUnit, this.numberOfUnitsInVolume - 1))
+                    : this.pricePerUnit;
+        }
+
+        return Money.subtract(
+                calculatePrice(Math.addExact(numberOfUnits, additionalUnits)), calculatePrice(numberOfUnits));
     }
 }
@@ -0,0 +1,134 @@
+package com.eugene.percent.model;
+
+import java.util.List;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * {@link PricingRule}s of a {@link ProductPrice} compiled for O(1) evaluation.
+ *
+ * The cheapest price of every quantity up to a threshold is precomputed by dynamic programming over the bundles
+ * (an unbounded knapsack where a single unit is a bundle too). Above the threshold the optimum is periodic:
+ * some optimal mix uses fewer than s other bundles, where s is the size of the bundle with the lowest price per unit,
+ * so once the quantity exceeds (s - 1) * largest bundle + s, adding s units adds exactly one best bundle.
+ * Large quantities are therefore reduced into the table with one division.
+ *
+ * Units over the promotion limit are charged at the unit price, so the table then stops at the limit.
+ */
+final class QuantityPriceTable {
+    static final int MAX_LENGTH = 1 << 16;
+
+    private static final long OVERFLOW = Long.MAX_VALUE; //price does not fit a long
+
+    private final long pricePerUnit;
+    private final int promotionLimit;
+    private final long[] prices;
+    private final int periodStart;
+    @Getter(AccessLevel.PACKAGE) private final int bestNumberOfUnits;
+    @Getter(AccessLevel.PACKAGE) private final long bestPricePerVolume;
+
+    /**
+     * @param pricePerUnit price of a single unit in minor units
+     * @param rules bundles
+     * @param promotionLimit units of a line that may be sold in bundles
+     * @throws IllegalArgumentException if the bundles need a table longer than {@value #MAX_LENGTH}
+     * @throws ArithmeticException if a bundle price overflows
+     */
+    QuantityPriceTable(long pricePerUnit, List<PricingRule> rules, int promotionLimit) {
+        int[] numbersOfUnits = new int[rules.size() + 1];
+        long[] pricesPerVolume = new long[rules.size() + 1];
+        numbersOfUnits[0] = 1;
+        pricesPerVolume[0] = pricePerUnit;
+
+        int best = 0;
+        int maxNumberOfUnits = 1;
+        for (int i = 1; i < numbersOfUnits.length; ++i) {
+            PricingRule rule = rules.get(i - 1);
+            numbersOfUnits[i] = rule.getNumberOfUnits();
+            pricesPerVolume[i] = rule.priceOfVolume(pricePerUnit);
+            maxNumberOfUnits = Math.max(maxNumberOfUnits, numbersOfUnits[i]);
+
+            if (compareUnitPrices(pricesPerVolume[i], numbersOfUnits[i], pricesPerVolume[best], numbersOfUnits[best]) < 0) {
+                best = i;
+            }
+        }
+
+        long periodStart = (long) (numbersOfUnits[best] - 1) * maxNumberOfUnits + numbersOfUnits[best];
+        long length = Math.min(periodStart + numbersOfUnits[best], (long) promotionLimit + 1);
+        if (length > MAX_LENGTH) {
+            throw new IllegalArgumentException("Pricing rules " + rules + " need a table of " + length + " quantities");
+        }
+
+        this.pricePerUnit = pricePerUnit;
+        this.promotionLimit = promotionLimit;
+        this.prices = cheapestPrices((int) length, numbersOfUnits, pricesPerVolume);
+        this.periodStart = (int) periodStart;
+        this.bestNumberOfUnits = numbersOfUnits[best];
+        this.bestPricePerVolume = pricesPerVolume[best];
+    }
+
+    private static long[] cheapestPrices(int length, int[] numbersOfUnits, long[] pricesPerVolume) {
+        long[] prices = new long[length];
+
+        for (int n = 1; n < length; ++n) {
+            long cheapest = OVERFLOW;
+            for (int i = 0; i < numbersOfUnits.length; ++i) {
+                if (numbersOfUnits[i] <= n) {
+                    long rest = prices[n - numbersOfUnits[i]];
+                    if (rest < OVERFLOW - pricesPerVolume[i]) {
+                        cheapest = Math.min(cheapest, rest + pricesPerVolume[i]);
+                    }
+                }
+            }
+            prices[n] = cheapest;
+        }
+
+        return prices;
+    }
+
+    /**
+     * Compares price1 / numberOfUnits1 to price2 / numberOfUnits2 without overflow or rounding.
+     */
+    private static int compareUnitPrices(long price1, int numberOfUnits1, long price2, int numberOfUnits2) {
+        long high1 = Math.multiplyHigh(price1, numberOfUnits2);
+        long high2 = Math.multiplyHigh(price2, numberOfUnits1);
+
+        return high1 != high2
+                ? Long.compare(high1, high2)
+                : Long.compareUnsigned(price1 * numberOfUnits2, price2 * numberOfUnits1);
+    }
+
+    /**
+     * @return cheapest price of numberOfUnits in minor units.
+     * @throws ArithmeticException on overflow
+     */
+    long price(int numberOfUnits) {
+        if (numberOfUnits <= 0) {
+            return Money.ZERO;
+        }
+
+        int promotionalUnits = Math.min(numberOfUnits, promotionLimit);
+        long result;
+        if (promotionalUnits < prices.length) {
+            result = checked(prices[promotionalUnits]);
+        } else {
+            int numberOfPeriods = (promotionalUnits - periodStart) / bestNumberOfUnits;
+            result = Money.add(
+                    checked(prices[promotionalUnits - numberOfPeriods * bestNumberOfUnits]),
+                    Money.multiply(bestPricePerVolume, numberOfPeriods));
+        }
+
+        return promotionalUnits == numberOfUnits
+                ? result
+                : Money.add(result, Money.multiply(pricePerUnit, numberOfUnits - promotionalUnits));
+    }
+
+    private static long checked(long price) {
+        if (price == OVERFLOW) {
+            throw new ArithmeticException("long overflow");
+        }
+
+        return price;
+    }
+}
@@ -0,0 +1,31 @@
+package com.eugene.percent.model;
+
+import java.util.List;
+
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Completed pos session - what a customer bought at a terminal.
+ *
+ * Amounts are in minor units, see {@link Money}.
+ * The total includes promotion discounts, so it may be less than the sum of the line prices.
+ */
+@Value
+public class Sale {
+    @NonNull String terminalId;
+    long timestamp; //epoch millis
+    @NonNull List<Line> lines;
+    long total;
+
+    /**
+     * Units of one {@link Product} and the {@link ProductPrice} they were sold at.
+     */
+    @Value
+    public static class Line {
+        @NonNull Product product;
+        int quantity;
+        @NonNull ProductPrice productPrice;
+        long price;
+    }
+}
@@ -0,0 +1,125 @@
+package com.eugene.percent.pointofsaleterminal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reusable {@link CharSequence} view of the US-ASCII bytes of a scanned barcode - a range of a byte array
+ * or the remaining bytes of a {@link ByteBuffer} - so a code can be validated and looked up without copying it
+ * into a String.
+ *
+ * Not thread-safe - a view belongs to one {@link PointOfSaleTerminal}.
+ */
+final class BarcodeView implements CharSequence {
+    private byte[] array;     //backing array, null for a buffer without an accessible one
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+
+    /**
+     * Views length bytes of an array from offset.
+     *
+     * @throws IndexOutOfBoundsException if the range is not within the array
+     */
+    BarcodeView wrap(byte[] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > bytes.length - length) {
+            throw new IndexOutOfBoundsException(
+                    "Range [" + offset + ", " + offset + " + " + length + ") out of bounds for length " + bytes.length);
+        }
+
+        this.array = bytes;
+        this.buffer = null;
+        this.offset = offset;
+        this.length = length;
+
+        return this;
+    }
+
+    /**
+     * Views the bytes of a buffer from its position to its limit. The buffer is not changed.
+     */
+    BarcodeView wrap(ByteBuffer bytes) {
+        if (bytes.hasArray()) {
+            return wrap(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        }
+
+        this.array = null;
+        this.buffer = bytes;
+        this.offset = bytes.position();
+        this.length = bytes.remaining();
+
+        return this;
+    }
+
+    /**
+     * Drops the reference to the viewed bytes.
+     */
+    void release() {
+        array = null;
+        buffer = null;
+        length = 0;
+    }
+
+    /**
+     * @return true if the viewed code is an EAN-8, UPC-A, EAN-13 or GTIN-14 with a valid check digit.
+     */
+    boolean isValidGtin() {
+        return isValidGtin(this);
+    }
+
+    /**
+     * GTIN check digit: digits are weighted 3, 1, 3, ... from the right, check digit excluded,
+     * and the check digit brings the weighted sum to a multiple of 10.
+     *
+     * @return true if the code is an EAN-8, UPC-A, EAN-13 or GTIN-14 with a valid check digit.
+     */
+    static boolean isValidGtin(CharSequence code) {
+        int length = code.length();
+        if (length != 8 && length != 12 && length != 13 && length != 14) {
+            return false;
+        }
+
+        int sum = 0;
+        for (int i = 0; i < length; ++i) {
+            int digit = code.charAt(length - 1 - i) - '0';
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            sum += (i & 1) == 0 ? digit : 3 * digit;
+        }
+
+        return sum % 10 == 0;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        }
+
+        return (char) ((array != null ? array[offset + index] : buffer.get(offset + index)) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    /**
+     * @return copy of the viewed code, for error messages - allocates.
+     */
+    @Override
+    public String toString() {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            bytes[i] = (byte) charAt(i);
+        }
+
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
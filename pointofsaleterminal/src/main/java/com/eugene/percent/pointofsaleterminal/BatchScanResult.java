@@ -0,0 +1,37 @@
+package com.eugene.percent.pointofsaleterminal;
+
+import com.eugene.percent.model.Product;
+
+import java.util.Set;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Result of {@link PointOfSaleTerminal#scanAll(java.util.Collection)}.
+ *
+ * A batch is applied to the cart either entirely or not at all.
+ */
+@Getter
+@ToString
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public class BatchScanResult {
+    /**
+     * Units added to the cart, 0 if the batch was rejected.
+     */
+    private final int numberOfUnitsScanned;
+
+    /**
+     * Distinct {@link Product}s of the batch that are not in the registry.
+     */
+    private final Set<Product> unknownProducts;
+
+    /**
+     * @return true if the batch was added to the cart.
+     */
+    public boolean isSuccess() {
+        return unknownProducts.isEmpty();
+    }
+}
@@ -0,0 +1,226 @@
+package com.eugene.percent.pointofsaleterminal;
+
+import com.eugene.percent.factory.PriceBook;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import java.util.Arrays;
+
+/**
+ * Cart of a single pos session - number of units scanned per product id,
+ * and the {@link PriceBook.Entry} (so the {@link ProductPrice}) each line was bound to when its product was first scanned.
+ *
+ * Backed by a primitive open-addressing (linear probing) table keyed by product id, so adding units does not box
+ * or allocate once the table has grown to fit the cart. {@link #clear()} keeps the capacity for the next customer.
+ *
+ * Lines are kept in insertion order and can be iterated by line index, from 0 to {@link #size()} - 1.
+ *
+ * Not thread-safe - a cart belongs to one {@link PointOfSaleTerminal}.
+ */
+final class Cart {
+    private static final int NO_PRODUCT = -1;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] productIds;   //slot -> product id, NO_PRODUCT if free
+    private int[] lineIndexes;  //slot -> line index
+    private int[] lineSlots;    //line index -> slot
+    private int[] quantities;   //line index -> number of units
+    private PriceBook.Entry[] entries; //line index -> bound entry
+    private int size;
+    private int mask;
+
+    Cart() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedLines number of distinct products the cart should hold without growing.
+     */
+    Cart(int expectedLines) {
+        allocate(tableSizeFor(expectedLines));
+    }
+
+    /**
+     * Adds units of a product. A new line is bound to the entry,
+     * an existing line keeps the entry it was bound to.
+     *
+     * @param entry {@link PriceBook.Entry} of the product
+     * @param numberOfUnits units to add
+     * @return number of units of the product in the cart after the addition.
+     */
+    int add(PriceBook.Entry entry, int numberOfUnits) {
+        int lineIndex = lineOf(entry.getProductId());
+        if (lineIndex >= 0) {
+            return addUnits(lineIndex, numberOfUnits);
+        }
+
+        addLine(entry, numberOfUnits);
+
+        return numberOfUnits;
+    }
+
+    /**
+     * @return line index of a product, -1 if it was not scanned.
+     */
+    int lineOf(int productId) {
+        int slot = findSlot(productId);
+
+        return productIds[slot] == productId ? lineIndexes[slot] : -1;
+    }
+
+    /**
+     * Adds a line for a product that is not in the cart.
+     *
+     * @return line index.
+     */
+    int addLine(PriceBook.Entry entry, int numberOfUnits) {
+        int productId = entry.getProductId();
+        assert productId >= 0;
+
+        if (2 * (size + 1) > productIds.length) {
+            grow();
+        }
+
+        int slot = findSlot(productId);
+        assert productIds[slot] == NO_PRODUCT;
+
+        productIds[slot] = productId;
+        lineIndexes[slot] = size;
+        lineSlots[size] = slot;
+        quantities[size] = numberOfUnits;
+        entries[size] = entry;
+
+        return size++;
+    }
+
+    /**
+     * Adds units to an existing line.
+     *
+     * @return number of units of the line after the addition.
+     * @throws ArithmeticException if the number of units overflows, the line is left unchanged
+     */
+    int addUnits(int lineIndex, int numberOfUnits) {
+        assert lineIndex < size;
+
+        return quantities[lineIndex] = Math.addExact(quantities[lineIndex], numberOfUnits);
+    }
+
+    /**
+     * @return number of units of a product in the cart, 0 if it was not scanned.
+     */
+    int getQuantity(int productId) {
+        int lineIndex = lineOf(productId);
+
+        return lineIndex >= 0 ? quantities[lineIndex] : 0;
+    }
+
+    /**
+     * @return number of distinct products (lines) in the cart.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return product id of a line.
+     */
+    int productIdAt(int lineIndex) {
+        assert lineIndex < size;
+
+        return productIds[lineSlots[lineIndex]];
+    }
+
+    /**
+     * @return number of units of a line.
+     */
+    int quantityAt(int lineIndex) {
+        assert lineIndex < size;
+
+        return quantities[lineIndex];
+    }
+
+    /**
+     * @return {@link ProductPrice} a line is bound to.
+     */
+    ProductPrice priceAt(int lineIndex) {
+        assert lineIndex < size;
+
+        return entries[lineIndex].getProductPrice();
+    }
+
+    /**
+     * @return {@link Product} of a line.
+     */
+    Product productAt(int lineIndex) {
+        assert lineIndex < size;
+
+        return entries[lineIndex].getProduct();
+    }
+
+    /**
+     * Empties the cart, keeping its capacity. Only the occupied slots are touched.
+     */
+    void clear() {
+        for (int i = 0; i < size; ++i) {
+            productIds[lineSlots[i]] = NO_PRODUCT;
+            entries[i] = null;
+        }
+        size = 0;
+    }
+
+    private int findSlot(int productId) {
+        int slot = mix(productId) & mask;
+        while (productIds[slot] != NO_PRODUCT && productIds[slot] != productId) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldProductIds = productIds;
+        int[] oldLineSlots = lineSlots;
+        int[] oldQuantities = quantities;
+        PriceBook.Entry[] oldEntries = entries;
+        int oldSize = size;
+
+        allocate(oldProductIds.length * 2);
+
+        for (int i = 0; i < oldSize; ++i) {
+            int productId = oldProductIds[oldLineSlots[i]];
+            int slot = findSlot(productId);
+            productIds[slot] = productId;
+            lineIndexes[slot] = i;
+            lineSlots[i] = slot;
+        }
+        System.arraycopy(oldQuantities, 0, quantities, 0, oldSize);
+        System.arraycopy(oldEntries, 0, entries, 0, oldSize);
+        size = oldSize;
+    }
+
+    private void allocate(int tableSize) {
+        productIds = new int[tableSize];
+        Arrays.fill(productIds, NO_PRODUCT);
+        lineIndexes = new int[tableSize];
+        lineSlots = new int[tableSize / 2];
+        quantities = new int[tableSize / 2];
+        entries = new PriceBook.Entry[tableSize / 2];
+        mask = tableSize - 1;
+        size = 0;
+    }
+
+    private static int tableSizeFor(int expectedLines) {
+        int tableSize = DEFAULT_CAPACITY;
+        while (tableSize / 2 < expectedLines) {
+            tableSize *= 2;
+        }
+
+        return tableSize;
+    }
+
+    private static int mix(int productId) {
+        int h = productId * 0x9E3779B9;
+
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,288 @@
+package com.eugene.percent.pointofsaleterminal;
+
+import com.eugene.percent.factory.PriceBook;
+import com.eugene.percent.factory.ProductRegistry;
+import com.eugene.percent.model.PricingRule;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Binary encoding of a {@link Cart} - the snapshot of a suspended pos session.
+ *
+ * All numbers are unsigned LEB128 varints, so a typical line takes the product code and 4-7 bytes:
+ * <pre>
+ * byte format, line count,
+ * per line: string product code, quantity &lt;&lt; 1 | unregistered, price per unit, rule count,
+ *           rule count 0: units in volume, price per volume,
+ *           otherwise: promotion limit, per rule: units, paid units, price per volume
+ * </pre>
+ * Strings are a varint length and UTF-8 bytes. Amounts are in minor units.
+ * The unregistered flag is informational: any line the registry does not have is resumed the same way.
+ *
+ * Lines refer to {@link Product}s by code: ids are local to the {@link ProductRegistry} of one JVM,
+ * so a snapshot is resumed on another lane or after a restart by resolving its codes again.
+ * A line of a {@link Product} the registry does not have when the snapshot is resumed - de-registered
+ * mid-session or after the snapshot, or priced by a {@link com.eugene.percent.factory.PriceSource} -
+ * is resumed without it, under an id that is not interned.
+ * Bound prices are written in full, so a session resumes at the prices the customer saw
+ * even if the registry was changed in the meantime.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class CartCodec {
+    static final byte FORMAT = 2;
+
+    /**
+     * @return size of the encoded cart in bytes.
+     */
+    static int encodedSize(Cart cart) {
+        long size = 1 + varintSize(cart.size());
+        for (int i = 0; i < cart.size(); ++i) {
+            size += stringSize(cart.productAt(i).getProductCode()) + varintSize(cart.quantityAt(i) * 2L)
+                    + priceSize(cart.priceAt(i));
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cart is too large to encode: " + size + " bytes");
+        }
+
+        return (int) size;
+    }
+
+    /**
+     * Encodes a cart at the buffer's position, which must have {@link #encodedSize(Cart)} bytes remaining.
+     *
+     * @param priceBook snapshot the lines' {@link Product}s are looked up in
+     */
+    static void encode(Cart cart, PriceBook priceBook, ByteBuffer buffer) {
+        buffer.put(FORMAT);
+        putVarint(buffer, cart.size());
+        for (int i = 0; i < cart.size(); ++i) {
+            Product product = cart.productAt(i);
+            boolean unregistered = priceBook.getEntry(product) == null;
+
+            putString(buffer, product.getProductCode());
+            putVarint(buffer, cart.quantityAt(i) * 2L + (unregistered ? 1 : 0));
+            putPrice(buffer, cart.priceAt(i));
+        }
+    }
+
+    /**
+     * Decodes a cart, from the buffer's position, adding its lines to an empty cart.
+     * Lines whose price is the one in the price book share its {@link PriceBook.Entry}.
+     * On failure the cart may be left with some of the lines.
+     *
+     * @param priceBook snapshot the codes are resolved against
+     * @throws IllegalArgumentException if the snapshot is malformed
+     */
+    static void decode(ByteBuffer buffer, PriceBook priceBook, Cart cart) {
+        assert cart.size() == 0;
+
+        try {
+            byte format = buffer.get();
+            if (format != FORMAT) {
+                throw new IllegalArgumentException("Unknown cart snapshot format " + format);
+            }
+
+            int lineCount = getInt(buffer);
+            for (int i = 0; i < lineCount; ++i) {
+                String productCode = getString(buffer);
+                long header = getVarint(buffer);
+                int quantity = toInt(header >>> 1);
+                if (quantity == 0) {
+                    throw new IllegalArgumentException("Line of product " + productCode + " has no units");
+                }
+
+                PriceBook.Entry entry = priceBook.getEntry(productCode);
+                ProductPrice productPrice = getPrice(buffer, entry == null ? null : entry.getProductPrice());
+                if (entry == null) {
+                    Product product = Product.builder().productCode(productCode).build();
+                    entry = new PriceBook.Entry(ProductRegistry.sourcedProductId(product), product, productPrice);
+                } else if (productPrice != entry.getProductPrice()) {
+                    entry = new PriceBook.Entry(entry.getProductId(), entry.getProduct(), productPrice);
+                }
+
+                if (cart.lineOf(entry.getProductId()) >= 0) {
+                    throw new IllegalArgumentException("Product " + productCode + " has more than one line");
+                }
+                cart.addLine(entry, quantity);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Cart snapshot is truncated", e);
+        }
+    }
+
+    private static int priceSize(ProductPrice productPrice) {
+        int size = varintSize(productPrice.getPricePerUnit()) + varintSize(productPrice.getRules().size());
+        if (!productPrice.hasRules()) {
+            return size + varintSize(productPrice.getNumberOfUnitsInVolume())
+                    + varintSize(productPrice.getPricePerVolume());
+        }
+
+        size += varintSize(productPrice.getPromotionLimit());
+        for (PricingRule rule : productPrice.getRules()) {
+            size += varintSize(rule.getNumberOfUnits()) + varintSize(rule.getNumberOfPaidUnits())
+                    + varintSize(rule.getPricePerVolume());
+        }
+
+        return size;
+    }
+
+    private static void putPrice(ByteBuffer buffer, ProductPrice productPrice) {
+        putVarint(buffer, productPrice.getPricePerUnit());
+        putVarint(buffer, productPrice.getRules().size());
+        if (!productPrice.hasRules()) {
+            putVarint(buffer, productPrice.getNumberOfUnitsInVolume());
+            putVarint(buffer, productPrice.getPricePerVolume());
+            return;
+        }
+
+        putVarint(buffer, productPrice.getPromotionLimit());
+        for (PricingRule rule : productPrice.getRules()) {
+            putVarint(buffer, rule.getNumberOfUnits());
+            putVarint(buffer, rule.getNumberOfPaidUnits());
+            putVarint(buffer, rule.getPricePerVolume());
+        }
+    }
+
+    /**
+     * @param bookPrice price of the product in the price book, returned instead of a copy if it is the decoded one
+     */
+    private static ProductPrice getPrice(ByteBuffer buffer, ProductPrice bookPrice) {
+        long pricePerUnit = getPositiveAmount(buffer);
+        int ruleCount = getInt(buffer);
+
+        if (ruleCount == 0) {
+            int numberOfUnitsInVolume = getInt(buffer);
+            long pricePerVolume = getPositiveAmount(buffer);
+            if (numberOfUnitsInVolume == 0) {
+                throw new IllegalArgumentException("Volume price of 0 units");
+            }
+
+            if (bookPrice != null && !bookPrice.hasRules() && bookPrice.getPricePerUnit() == pricePerUnit
+                    && bookPrice.getNumberOfUnitsInVolume() == numberOfUnitsInVolume
+                    && bookPrice.getPricePerVolume() == pricePerVolume) {
+                return bookPrice;
+            }
+            return new ProductPrice(pricePerUnit, numberOfUnitsInVolume, pricePerVolume);
+        }
+
+        int promotionLimit = getInt(buffer);
+        PricingRule[] rules = new PricingRule[Math.min(ruleCount, buffer.remaining())];
+        if (ruleCount > rules.length) {
+            throw new BufferUnderflowException();
+        }
+        for (int i = 0; i < ruleCount; ++i) {
+            int numberOfUnits = getInt(buffer);
+            int numberOfPaidUnits = getInt(buffer);
+            long pricePerVolume = getVarint(buffer);
+            if (numberOfPaidUnits == 0 && numberOfUnits > 0 && pricePerVolume > 0) {
+                rules[i] = PricingRule.volume(numberOfUnits, pricePerVolume);
+            } else if (numberOfPaidUnits > 0 && numberOfUnits > numberOfPaidUnits && pricePerVolume == 0) {
+                rules[i] = PricingRule.buyGetFree(numberOfPaidUnits, numberOfUnits - numberOfPaidUnits);
+            } else {
+                throw new IllegalArgumentException("Malformed pricing rule " + numberOfUnits + "/"
+                        + numberOfPaidUnits + "/" + pricePerVolume);
+            }
+        }
+
+        if (bookPrice != null && bookPrice.getPricePerUnit() == pricePerUnit
+                && bookPrice.getPromotionLimit() == promotionLimit && rulesEqual(bookPrice.getRules(), rules)) {
+            return bookPrice;
+        }
+        return ProductPrice.of(pricePerUnit, promotionLimit, rules);
+    }
+
+    private static boolean rulesEqual(List<PricingRule> rules, PricingRule[] decoded) {
+        if (rules.size() != decoded.length) {
+            return false;
+        }
+        for (int i = 0; i < decoded.length; ++i) {
+            if (!rules.get(i).equals(decoded[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int stringSize(String s) {
+        int length = s.getBytes(StandardCharsets.UTF_8).length;
+
+        return varintSize(length) + length;
+    }
+
+    private static void putString(ByteBuffer buffer, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        putVarint(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = getInt(buffer);
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static int varintSize(long value) {
+        assert value >= 0;
+
+        return (63 - Long.numberOfLeadingZeros(value | 1)) / 7 + 1;
+    }
+
+    static void putVarint(ByteBuffer buffer, long value) {
+        assert value >= 0;
+
+        while (value >= 0x80) {
+            buffer.put((byte) (value | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long getVarint(ByteBuffer buffer) {
+        long result = 0;
+        for (int shift = 0; shift < 63; shift += 7) {
+            byte b = buffer.get();
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+
+        throw new IllegalArgumentException("Varint is too long");
+    }
+
+    private static int getInt(ByteBuffer buffer) {
+        return toInt(getVarint(buffer));
+    }
+
+    private static long getPositiveAmount(ByteBuffer buffer) {
+        long amount = getVarint(buffer);
+        if (amount == 0) {
+            throw new IllegalArgumentException("Price must be positive");
+        }
+
+        return amount;
+    }
+
+    private static int toInt(long value) {
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Value " + value + " is out of range");
+        }
+
+        return (int) value;
+    }
+}
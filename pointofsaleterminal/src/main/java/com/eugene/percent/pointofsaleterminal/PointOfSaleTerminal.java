@@ -1,27 +1,118 @@
 package com.eugene.percent.pointofsaleterminal;
 
 import com.eugene.percent.exceptions.ScanProductException;
+import com.eugene.percent.factory.PriceBook;
 import com.eugene.percent.factory.ProductRegistry;
+import com.eugene.percent.metrics.Metrics;
+import com.eugene.percent.model.Money;
 import com.eugene.percent.model.Product;
 import com.eugene.percent.model.ProductPrice;
+import com.eugene.percent.model.Sale;
+import com.eugene.percent.promotion.PromotionEngine;
 
 import java.math.BigDecimal;
-import java.util.HashMap;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
 
 /**
  * Point of sale system representing a session for a single customer at 1 register.
  *
  * Assumptions:
  * - {@link Product}s are only scanned for addition to the cart
+ *
+ * The cart is keyed by {@link Product} ids and reused across sessions,
+ * so in the steady state {@link #scan(Product)} and {@link #calculateTotal()} do not allocate per item.
+ *
+ * Each cart line is bound to the {@link ProductPrice} in the {@link ProductRegistry} when its {@link Product}
+ * is first scanned, and keeps that price for the rest of the session - the total matches what the customer saw
+ * even if a manager re-prices or de-registers the {@link Product} mid-session, and totals need no registry lookups.
+ *
+ * The total is maintained incrementally - every scan adds the marginal price of the unit
+ * according to {@link ProductPrice#calculatePriceDelta(int, int)} - so {@link #calculateTotal()} is O(1).
+ * With verifyTotal enabled (or -D{@value #VERIFY_TOTAL_PROPERTY}=true) every {@link #calculateTotal()}
+ * also recalculates the total from the cart and fails if they differ.
+ *
+ * Amounts are kept in minor units (see {@link Money}); {@link BigDecimal} is only produced for display.
+ *
+ * Cross-product {@link com.eugene.percent.promotion.MixedBundle} promotions of a {@link PromotionEngine} are applied on top of the line prices.
+ * A scan re-solves only the promotion its {@link Product} takes part in, so the total stays O(1) to read.
+ *
+ * A session can be suspended to a compact binary snapshot (see {@link #suspend()}, {@link #checkpoint(ByteBuffer)})
+ * and resumed on any terminal of the store with {@link #resume(ByteBuffer)}, keeping its bound prices.
+ *
+ * Prices of recently scanned {@link Product}s are looked up in a small near-cache of the terminal
+ * ({@value #PRICE_CACHE_SIZE_PROPERTY} entries, 256 by default) that any registry change invalidates,
+ * so scans of hot products do not read the shared registry.
+ * Products missing from the registry are priced by its {@link com.eugene.percent.factory.PriceSource}, if one is set;
+ * their prices expire, so they are served from the registry's shared cache instead of the near-cache.
+ *
+ * {@link #tryScan(Product)} reports unknown products with a {@link ScanStatus} code instead of an exception,
+ * {@link #scan(Product)} is a throwing wrapper around it.
+ * {@link #tryScan(byte[], int, int)} scans the raw bytes of a barcode without creating a {@link Product}.
+ *
+ * While {@link Metrics} are enabled, scan and calculateTotal latencies and scan, error and session counts are recorded
+ * and published as an MBean per terminal. {@link #close()} unregisters it.
  */
 public class PointOfSaleTerminal {
-    private final Map<Product, Integer> productsScanned; //aka cart
+    public static final String VERIFY_TOTAL_PROPERTY = "pointofsaleterminal.verifyTotal";
+    public static final String PRICE_CACHE_SIZE_PROPERTY = "pointofsaleterminal.priceCacheSize";
+
+    private static final int PRICE_CACHE_SIZE = Integer.highestOneBit(
+            Math.max(2, Integer.getInteger(PRICE_CACHE_SIZE_PROPERTY, 256)));
+
+    private final Cart cart;
+    private final PriceCache priceCache = new PriceCache(PRICE_CACHE_SIZE);
+    private final BarcodeView barcodeView = new BarcodeView();
+    private long total; //of the lines, before promotions
+    private Promotions promotions = new Promotions(PromotionEngine.NONE);
+    private TerminalMetrics metrics; //created when instrumentation is first enabled
+
+    @Getter private final String terminalId;
+    @Getter @Setter private boolean verifyTotal = Boolean.getBoolean(VERIFY_TOTAL_PROPERTY);
 
     public PointOfSaleTerminal() {
-        this.productsScanned = new HashMap<>();
+        this("");
+    }
+
+    /**
+     * @param terminalId id of the register, recorded in completed {@link Sale}s.
+     */
+    public PointOfSaleTerminal(@NonNull String terminalId) {
+        this.terminalId = terminalId;
+        this.cart = new Cart();
+    }
+
+    /**
+     * @return {@link PromotionEngine} applied to this pos session.
+     */
+    public PromotionEngine getPromotionEngine() {
+        return promotions.getEngine();
+    }
+
+    /**
+     * Applies promotions to this pos session, re-solving them over the products already scanned.
+     *
+     * @param promotionEngine {@link PromotionEngine}, {@link PromotionEngine#NONE} for none
+     */
+    public void setPromotionEngine(@NonNull PromotionEngine promotionEngine) {
+        Promotions updatedPromotions = new Promotions(promotionEngine);
+        for (int i = 0; i < cart.size(); ++i) {
+            updatedPromotions.update(cart, i);
+        }
+
+        promotions = updatedPromotions;
     }
 
     /**
@@ -32,45 +123,425 @@ public class PointOfSaleTerminal {
      * @throws ScanProductException if {@link Product} is not in the {@link ProductRegistry}
      */
     public int scan(@NonNull Product product) throws ScanProductException {
-        ProductPrice productPrice = ProductRegistry.getPrice(product);
+        return scan(product, 1);
+    }
+
+    /**
+     * Adds a quantity of product to this pos session with a single registry lookup,
+     * e.g. a weighed crate of identical items.
+     *
+     * @param product {@link Product}
+     * @param quantity number of units, positive
+     * @return number of units of {@link Product} scanned so far.
+     * @throws ScanProductException if {@link Product} is not in the {@link ProductRegistry},
+     *                              or quantity is not positive or overflows the cart
+     */
+    public int scan(@NonNull Product product, int quantity) throws ScanProductException {
+        int result = tryScan(product, quantity);
 
-        if (productPrice == null) {
+        if (result == ScanStatus.INVALID_QUANTITY) {
+            throw new ScanProductException("Quantity (" + quantity + ") of product (" + product
+                    + ") must be positive and fit the cart.");
+        }
+        if (result == ScanStatus.UNKNOWN_PRODUCT) {
             throw new ScanProductException("Product (" + product + ") is not in the registry. Get manager to help.");
         }
 
-        int numOfUnits = productsScanned.getOrDefault(product, 0) + 1;
+        return result;
+    }
 
-        productsScanned.put(product, numOfUnits);
+    /**
+     * Adds product to this pos session without throwing on failure -
+     * for lanes where damaged barcodes and unregistered items are routine.
+     *
+     * @param product {@link Product}
+     * @return number of units of {@link Product} scanned so far, or a negative {@link ScanStatus} code.
+     */
+    public int tryScan(@NonNull Product product) {
+        return tryScan(product, 1);
+    }
 
-        return numOfUnits;
+    /**
+     * Adds a quantity of product to this pos session without throwing on failure.
+     *
+     * @param product {@link Product}
+     * @param quantity number of units, positive
+     * @return number of units of {@link Product} scanned so far, or a negative {@link ScanStatus} code.
+     */
+    public int tryScan(@NonNull Product product, int quantity) {
+        if (!Metrics.isEnabled()) {
+            return addScan(product, quantity);
+        }
+
+        long startNanos = System.nanoTime();
+        int result = addScan(product, quantity);
+        metrics().recordScan(System.nanoTime() - startNanos, ScanStatus.isScanned(result));
+
+        return result;
+    }
+
+    /**
+     * Adds the product of a barcode straight from the scanner's bytes: the GTIN check digit is validated and the code
+     * is looked up without creating a String or {@link Product}.
+     *
+     * @param barcode buffer holding the US-ASCII digits of an EAN-8, UPC-A, EAN-13 or GTIN-14
+     * @param offset index of the first digit
+     * @param length number of digits
+     * @return number of units of the {@link Product} scanned so far, or a negative {@link ScanStatus} code.
+     * @throws IndexOutOfBoundsException if the range is not within the buffer
+     */
+    public int tryScan(@NonNull byte[] barcode, int offset, int length) {
+        return tryScan(barcodeView.wrap(barcode, offset, length), 1);
+    }
+
+    /**
+     * Adds the product of a barcode straight from the scanner's bytes, see {@link #tryScan(byte[], int, int)}.
+     *
+     * @param barcode buffer holding the US-ASCII digits of a GTIN from its position to its limit, left unchanged
+     * @return number of units of the {@link Product} scanned so far, or a negative {@link ScanStatus} code.
+     */
+    public int tryScan(@NonNull ByteBuffer barcode) {
+        return tryScan(barcodeView.wrap(barcode), 1);
+    }
+
+    /**
+     * Adds a quantity of the product of a barcode straight from the scanner's bytes,
+     * see {@link #tryScan(byte[], int, int)}.
+     *
+     * @param barcode buffer holding the US-ASCII digits of a GTIN from its position to its limit, left unchanged
+     * @param quantity number of units, positive
+     * @return number of units of the {@link Product} scanned so far, or a negative {@link ScanStatus} code.
+     */
+    public int tryScan(@NonNull ByteBuffer barcode, int quantity) {
+        return tryScan(barcodeView.wrap(barcode), quantity);
+    }
+
+    private int tryScan(BarcodeView barcode, int quantity) {
+        try {
+            if (!Metrics.isEnabled()) {
+                return addScan(barcode, quantity);
+            }
+
+            long startNanos = System.nanoTime();
+            int result = addScan(barcode, quantity);
+            metrics().recordScan(System.nanoTime() - startNanos, ScanStatus.isScanned(result));
+
+            return result;
+        } finally {
+            barcode.release();
+        }
+    }
+
+    private int addScan(BarcodeView barcode, int quantity) {
+        if (quantity <= 0) {
+            return ScanStatus.INVALID_QUANTITY;
+        }
+        if (!barcode.isValidGtin()) {
+            return ScanStatus.INVALID_BARCODE;
+        }
+
+        PriceBook.Entry entry = priceCache.getEntry(ProductRegistry.getPriceBook(), barcode, Product.codeHashCode(barcode));
+        if (entry == null) {
+            entry = ProductRegistry.getSourcedEntry(barcode);
+        }
+        if (entry == null) {
+            return ScanStatus.UNKNOWN_PRODUCT;
+        }
+
+        return addToCart(entry, quantity);
     }
 
+    private int addScan(Product product, int quantity) {
+        if (quantity <= 0) {
+            return ScanStatus.INVALID_QUANTITY;
+        }
+
+        PriceBook.Entry entry = priceCache.getEntry(ProductRegistry.getPriceBook(), product);
+        if (entry == null) {
+            entry = ProductRegistry.getSourcedEntry(product);
+        }
+        if (entry == null) {
+            return ScanStatus.UNKNOWN_PRODUCT;
+        }
+
+        return addToCart(entry, quantity);
+    }
 
     /**
-     * Assumes all scanned {@link Product}s are registered.
+     * Adds a batch of products (e.g. a basket read by an RFID gate) to this pos session.
+     * Products are grouped first, so each distinct {@link Product} is looked up and added to the cart once.
      *
+     * The batch is atomic - if any {@link Product} is not in the {@link ProductRegistry}, nothing is added
+     * and all unknown {@link Product}s are reported in the result.
+     *
+     * @param products {@link Product}s, one element per unit
+     * @return {@link BatchScanResult}
+     */
+    public BatchScanResult scanAll(@NonNull Collection<Product> products) {
+        Map<Product, int[]> quantities = new LinkedHashMap<>();
+        for (Product product : products) {
+            if (product == null) {
+                throw new NullPointerException("products contains null");
+            }
+            quantities.computeIfAbsent(product, p -> new int[1])[0]++;
+        }
+
+        PriceBook priceBook = ProductRegistry.getPriceBook();
+        PriceBook.Entry[] entries = new PriceBook.Entry[quantities.size()];
+        int[] entryQuantities = new int[quantities.size()];
+        Set<Product> unknownProducts = null;
+
+        int i = 0;
+        for (Map.Entry<Product, int[]> quantity : quantities.entrySet()) {
+            PriceBook.Entry entry = priceCache.getEntry(priceBook, quantity.getKey());
+            if (entry == null) {
+                entry = ProductRegistry.getSourcedEntry(quantity.getKey());
+            }
+            if (entry == null) {
+                if (unknownProducts == null) {
+                    unknownProducts = new LinkedHashSet<>();
+                }
+                unknownProducts.add(quantity.getKey());
+            }
+            entries[i] = entry;
+            entryQuantities[i] = quantity.getValue()[0];
+            ++i;
+        }
+
+        if (unknownProducts != null) {
+            return new BatchScanResult(0, Collections.unmodifiableSet(unknownProducts));
+        }
+
+        //price the whole batch before touching the cart, so an overflow leaves the session unchanged
+        long updatedTotal = total;
+        for (i = 0; i < entries.length; ++i) {
+            int lineIndex = cart.lineOf(entries[i].getProductId());
+            ProductPrice productPrice = lineIndex >= 0 ? cart.priceAt(lineIndex) : entries[i].getProductPrice();
+            int numOfUnits = lineIndex >= 0 ? cart.quantityAt(lineIndex) : 0;
+
+            updatedTotal = Money.add(updatedTotal, productPrice.calculatePriceDelta(numOfUnits, entryQuantities[i]));
+        }
+
+        for (i = 0; i < entries.length; ++i) {
+            cart.add(entries[i], entryQuantities[i]);
+        }
+        total = updatedTotal;
+
+        for (i = 0; i < entries.length; ++i) {
+            promotions.update(cart, cart.lineOf(entries[i].getProductId()));
+        }
+
+        return new BatchScanResult(products.size(), Collections.emptySet());
+    }
+
+    private int addToCart(PriceBook.Entry entry, int quantity) {
+        int lineIndex = cart.lineOf(entry.getProductId());
+        int numOfUnits = lineIndex >= 0 ? cart.quantityAt(lineIndex) : 0;
+        ProductPrice productPrice = lineIndex >= 0 ? cart.priceAt(lineIndex) : entry.getProductPrice();
+
+        //price the units before touching the cart, so an overflow leaves the session unchanged
+        if (numOfUnits > Integer.MAX_VALUE - quantity) {
+            return ScanStatus.INVALID_QUANTITY;
+        }
+        long updatedTotal;
+        try {
+            updatedTotal = Money.add(total, productPrice.calculatePriceDelta(numOfUnits, quantity));
+        } catch (ArithmeticException e) {
+            return ScanStatus.INVALID_QUANTITY;
+        }
+
+        int result;
+        if (lineIndex < 0) {
+            lineIndex = cart.addLine(entry, quantity);
+            result = quantity;
+        } else {
+            result = cart.addUnits(lineIndex, quantity);
+        }
+        total = updatedTotal;
+
+        promotions.update(cart, lineIndex);
+
+        return result;
+    }
+
+    /**
      * @return total price of this pos session.
+     * @throws IllegalStateException if verifyTotal is enabled and the running total does not match the cart.
      */
     public BigDecimal calculateTotal() {
-        BigDecimal result = BigDecimal.valueOf(0.0);
+        return Money.toBigDecimal(calculateTotalInMinorUnits());
+    }
 
-        for (Map.Entry<Product, Integer> entry : productsScanned.entrySet()) {
-            Product product = entry.getKey();
-            Integer numUnits = entry.getValue();
+    /**
+     * @return total price of this pos session in minor units.
+     * @throws IllegalStateException if verifyTotal is enabled and the running total does not match the cart.
+     */
+    public long calculateTotalInMinorUnits() {
+        if (!Metrics.isEnabled()) {
+            return verifiedTotal();
+        }
 
-            ProductPrice productPrice = ProductRegistry.getPrice(product);
-            assert productPrice != null;
+        long startNanos = System.nanoTime();
+        try {
+            return verifiedTotal();
+        } finally {
+            metrics().recordCalculateTotal(System.nanoTime() - startNanos);
+        }
+    }
+
+    private long verifiedTotal() {
+        long result = Money.add(total, promotions.getAdjustment());
 
-            result = result.add(BigDecimal.valueOf(productPrice.calculatePrice(numUnits)));
+        if (verifyTotal) {
+            long recalculatedTotal = recalculateTotal();
+            if (recalculatedTotal != result) {
+                throw new IllegalStateException(
+                        "Running total " + Money.toString(result) +
+                        " does not match recalculated total " + Money.toString(recalculatedTotal));
+            }
         }
 
         return result;
     }
 
+    /**
+     * @return total price of this pos session in minor units, recalculated line by line from the bound prices
+     *         and with all promotions solved from scratch.
+     */
+    long recalculateTotal() {
+        long result = Money.ZERO;
+
+        for (int i = 0; i < cart.size(); ++i) {
+            result = Money.add(result, cart.priceAt(i).calculatePrice(cart.quantityAt(i)));
+        }
+
+        return Money.add(result, promotions.recalculateAdjustment(cart));
+    }
+
+    /**
+     * Completes this pos session - records what was bought and empties the cart for the next customer.
+     *
+     * @return completed {@link Sale}.
+     * @throws IllegalStateException if verifyTotal is enabled and the running total does not match the cart.
+     */
+    public Sale checkout() {
+        long saleTotal = calculateTotalInMinorUnits();
+
+        List<Sale.Line> lines = new ArrayList<>(cart.size());
+        for (int i = 0; i < cart.size(); ++i) {
+            ProductPrice productPrice = cart.priceAt(i);
+            int quantity = cart.quantityAt(i);
+
+            lines.add(new Sale.Line(cart.productAt(i), quantity, productPrice, productPrice.calculatePrice(quantity)));
+        }
+
+        Sale sale = new Sale(terminalId, System.currentTimeMillis(), Collections.unmodifiableList(lines), saleTotal);
+        clear();
+
+        if (Metrics.isEnabled()) {
+            metrics().recordSession();
+        }
+
+        return sale;
+    }
+
+    /**
+     * @return size in bytes of a snapshot of this pos session, see {@link #checkpoint(ByteBuffer)}.
+     */
+    public int snapshotSize() {
+        return CartCodec.encodedSize(cart);
+    }
+
+    /**
+     * Writes a snapshot of this pos session at the buffer's position, e.g. to checkpoint a lane periodically.
+     * The session goes on.
+     *
+     * @param buffer buffer with at least {@link #snapshotSize()} bytes remaining
+     * @throws BufferOverflowException if the snapshot does not fit; the buffer's position is left unchanged
+     */
+    public void checkpoint(@NonNull ByteBuffer buffer) {
+        int position = buffer.position();
+        try {
+            CartCodec.encode(cart, ProductRegistry.getPriceBook(), buffer);
+        } catch (BufferOverflowException e) {
+            buffer.position(position);
+            throw e;
+        }
+    }
+
+    /**
+     * Suspends this pos session - takes its snapshot and empties the cart for the next customer.
+     *
+     * @return snapshot to {@link #resume(ByteBuffer)} on this or another terminal.
+     */
+    public byte[] suspend() {
+        ByteBuffer buffer = ByteBuffer.allocate(CartCodec.encodedSize(cart));
+        CartCodec.encode(cart, ProductRegistry.getPriceBook(), buffer);
+        clear();
+
+        return buffer.array();
+    }
+
+    /**
+     * Resumes a suspended or checkpointed pos session, reading its snapshot from the buffer's position.
+     * Lines keep the prices they were bound to, also of {@link Product}s de-registered since;
+     * promotions are re-solved with this terminal's {@link PromotionEngine}.
+     *
+     * @param snapshot snapshot written by {@link #suspend()} or {@link #checkpoint(ByteBuffer)}
+     * @throws IllegalStateException if this pos session is not empty
+     * @throws IllegalArgumentException if the snapshot is malformed; the session is left empty
+     */
+    public void resume(@NonNull ByteBuffer snapshot) {
+        if (cart.size() > 0) {
+            throw new IllegalStateException("Cannot resume a session on terminal " + terminalId + " while scanning");
+        }
+
+        try {
+            CartCodec.decode(snapshot, ProductRegistry.getPriceBook(), cart);
+
+            long resumedTotal = Money.ZERO;
+            for (int i = 0; i < cart.size(); ++i) {
+                resumedTotal = Money.add(resumedTotal, cart.priceAt(i).calculatePrice(cart.quantityAt(i)));
+                promotions.update(cart, i);
+            }
+            total = resumedTotal;
+        } catch (RuntimeException e) {
+            clear();
+            throw e;
+        }
+    }
+
+    /**
+     * @see #resume(ByteBuffer)
+     */
+    public void resume(@NonNull byte[] snapshot) {
+        resume(ByteBuffer.wrap(snapshot));
+    }
+
     /**
      * Removes all scanned {@link Product}s from the cart.
      */
     public void clear() {
-        productsScanned.clear();
+        cart.clear();
+        promotions.clear();
+        total = Money.ZERO;
+    }
+
+    /**
+     * Unregisters this terminal's MBean, if instrumentation created one.
+     */
+    public void close() {
+        if (metrics != null) {
+            metrics.unregister();
+            metrics = null;
+        }
+    }
+
+    private TerminalMetrics metrics() {
+        if (metrics == null) {
+            metrics = TerminalMetrics.register(this);
+        }
+
+        return metrics;
     }
 }
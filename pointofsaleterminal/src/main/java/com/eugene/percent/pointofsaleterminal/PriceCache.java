@@ -0,0 +1,138 @@
+package com.eugene.percent.pointofsaleterminal;
+
+import com.eugene.percent.factory.PriceBook;
+import com.eugene.percent.metrics.Metrics;
+import com.eugene.percent.model.Product;
+
+/**
+ * Terminal-local near-cache of the {@link PriceBook.Entry}s of recently scanned {@link Product}s,
+ * so the hot products of a lane are served from its own memory instead of the shared registry.
+ *
+ * Two-way set associative, indexed by the hash of the product code; a miss replaces the less recently used way of its set.
+ * Every way remembers the {@link PriceBook} version it was filled from and only hits for that version -
+ * any registry change invalidates the whole cache without touching it.
+ *
+ * Unknown {@link Product}s are not cached, the registry's filter already answers them cheaply.
+ * Only misses are counted as registry lookups in {@link Metrics}.
+ *
+ * Not thread-safe - a cache belongs to one {@link PointOfSaleTerminal}.
+ */
+final class PriceCache {
+    private static final int WAYS = 2;
+
+    private final Product[] products;
+    private final PriceBook.Entry[] entries;
+    private final long[] versions;
+    private final boolean[] secondWayOlder; //per set, true if way 1 was used less recently than way 0
+    private final int setMask;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * @param capacity number of entries, a power of 2 of at least {@value #WAYS}
+     */
+    PriceCache(int capacity) {
+        assert capacity >= WAYS && Integer.bitCount(capacity) == 1;
+
+        this.products = new Product[capacity];
+        this.entries = new PriceBook.Entry[capacity];
+        this.versions = new long[capacity];
+        this.secondWayOlder = new boolean[capacity / WAYS];
+        this.setMask = capacity / WAYS - 1;
+    }
+
+    /**
+     * @param priceBook current registry snapshot, consulted on a miss
+     * @param product {@link Product}
+     * @return {@link PriceBook.Entry} of the product in the price book, null if it is not registered.
+     */
+    PriceBook.Entry getEntry(PriceBook priceBook, Product product) {
+        String productCode = product.getProductCode();
+        int set = setOf(productCode.hashCode());
+        int way = find(priceBook.getVersion(), set, productCode);
+
+        return way >= 0 ? entries[way] : fill(priceBook, set, priceBook.getEntry(product));
+    }
+
+    /**
+     * Looks a product code up without creating a String or {@link Product}.
+     *
+     * @param priceBook current registry snapshot, consulted on a miss
+     * @param productCode product code, e.g. a view of barcode bytes
+     * @param hash {@link Product#codeHashCode(CharSequence)} of the code
+     * @return {@link PriceBook.Entry} of the code in the price book, null if it is not registered.
+     */
+    PriceBook.Entry getEntry(PriceBook priceBook, CharSequence productCode, int hash) {
+        int set = setOf(hash);
+        int way = find(priceBook.getVersion(), set, productCode);
+
+        return way >= 0 ? entries[way] : fill(priceBook, set, priceBook.getEntry(productCode));
+    }
+
+    /**
+     * @return way of a set holding a code for the version, -1 on a miss.
+     */
+    private int find(long version, int set, CharSequence productCode) {
+        int way0 = set * WAYS;
+        int way1 = way0 + 1;
+
+        if (versions[way0] == version && products[way0] != null
+                && products[way0].getProductCode().contentEquals(productCode)) {
+            ++hits;
+            secondWayOlder[set] = true;
+            return way0;
+        }
+        if (versions[way1] == version && products[way1] != null
+                && products[way1].getProductCode().contentEquals(productCode)) {
+            ++hits;
+            secondWayOlder[set] = false;
+            return way1;
+        }
+
+        ++misses;
+        return -1;
+    }
+
+    /**
+     * Caches the entry looked up on a miss, if the product is registered.
+     */
+    private PriceBook.Entry fill(PriceBook priceBook, int set, PriceBook.Entry entry) {
+        Metrics.recordRegistryLookup(entry != null);
+        if (entry == null) {
+            return null;
+        }
+
+        long version = priceBook.getVersion();
+        int way0 = set * WAYS;
+        int way1 = way0 + 1;
+
+        //replace a way of an older version, else the less recently used one
+        int way = versions[way0] != version ? way0
+                : versions[way1] != version || secondWayOlder[set] ? way1 : way0;
+        products[way] = entry.getProduct();
+        entries[way] = entry;
+        versions[way] = version;
+        secondWayOlder[set] = way == way0;
+
+        return entry;
+    }
+
+    /**
+     * @return number of lookups served from the cache.
+     */
+    long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of lookups that went to the registry.
+     */
+    long getMisses() {
+        return misses;
+    }
+
+    private int setOf(int hash) {
+        return (hash ^ (hash >>> 16)) & setMask;
+    }
+}
@@ -0,0 +1,150 @@
+package com.eugene.percent.pointofsaleterminal;
+
+import com.eugene.percent.model.Money;
+import com.eugene.percent.model.ProductPrice;
+import com.eugene.percent.promotion.PromotionEngine;
+
+import java.util.Arrays;
+
+/**
+ * {@link PromotionEngine} state of a single pos session - the cart lines of every promotion and its adjustment.
+ *
+ * A line keeps the price it was bound to, so it is placed in its promotion's solving order once, when it is created.
+ * A scan re-solves only the promotion of the scanned product.
+ *
+ * Not thread-safe - belongs to one {@link PointOfSaleTerminal}.
+ */
+final class Promotions {
+    private static final int DEFAULT_CAPACITY = 4;
+
+    private final PromotionEngine engine;
+    private final BundleLines[] bundleLines; //bundle index -> lines, created on first scan
+    private long adjustment;
+
+    /**
+     * Cart lines of one promotion, by group and unit price, most expensive first.
+     */
+    private static final class BundleLines {
+        private int size;
+        private int[] lineIndexes = new int[DEFAULT_CAPACITY];
+        private int[] groups = new int[DEFAULT_CAPACITY];
+        private ProductPrice[] prices = new ProductPrice[DEFAULT_CAPACITY];
+        private int[] quantities = new int[DEFAULT_CAPACITY];
+        private long adjustment;
+    }
+
+    Promotions(PromotionEngine engine) {
+        this.engine = engine;
+        this.bundleLines = new BundleLines[engine.getBundles().size()];
+    }
+
+    /**
+     * @return {@link PromotionEngine}
+     */
+    PromotionEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * @return change of the total in minor units by all promotions, zero or negative.
+     */
+    long getAdjustment() {
+        return adjustment;
+    }
+
+    /**
+     * Re-solves the promotion of a cart line after units were added to it.
+     *
+     * @throws ArithmeticException on overflow
+     */
+    void update(Cart cart, int lineIndex) {
+        if (engine.isEmpty()) {
+            return;
+        }
+
+        int bundleIndex = engine.bundleOf(cart.productAt(lineIndex));
+        if (bundleIndex < 0) {
+            return;
+        }
+
+        BundleLines lines = bundleLines[bundleIndex];
+        if (lines == null) {
+            lines = bundleLines[bundleIndex] = new BundleLines();
+        }
+
+        int position = positionOf(lines, lineIndex);
+        if (position < 0) {
+            position = insert(lines, lineIndex, engine.groupOf(cart.productAt(lineIndex)), cart.priceAt(lineIndex));
+        }
+        lines.quantities[position] = cart.quantityAt(lineIndex);
+
+        long bundleAdjustment =
+                engine.calculateAdjustment(bundleIndex, lines.size, lines.groups, lines.prices, lines.quantities);
+        adjustment = Money.add(adjustment, bundleAdjustment - lines.adjustment);
+        lines.adjustment = bundleAdjustment;
+    }
+
+    private static int positionOf(BundleLines lines, int lineIndex) {
+        for (int i = 0; i < lines.size; ++i) {
+            if (lines.lineIndexes[i] == lineIndex) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static int insert(BundleLines lines, int lineIndex, int group, ProductPrice price) {
+        if (lines.size == lines.lineIndexes.length) {
+            int capacity = lines.size * 2;
+            lines.lineIndexes = Arrays.copyOf(lines.lineIndexes, capacity);
+            lines.groups = Arrays.copyOf(lines.groups, capacity);
+            lines.prices = Arrays.copyOf(lines.prices, capacity);
+            lines.quantities = Arrays.copyOf(lines.quantities, capacity);
+        }
+
+        int position = lines.size;
+        while (position > 0 && (lines.groups[position - 1] > group
+                || lines.groups[position - 1] == group
+                        && lines.prices[position - 1].getPricePerUnit() < price.getPricePerUnit())) {
+            lines.lineIndexes[position] = lines.lineIndexes[position - 1];
+            lines.groups[position] = lines.groups[position - 1];
+            lines.prices[position] = lines.prices[position - 1];
+            lines.quantities[position] = lines.quantities[position - 1];
+            --position;
+        }
+
+        lines.lineIndexes[position] = lineIndex;
+        lines.groups[position] = group;
+        lines.prices[position] = price;
+        ++lines.size;
+
+        return position;
+    }
+
+    /**
+     * @return change of the total in minor units by all promotions, solved from scratch over the cart.
+     */
+    long recalculateAdjustment(Cart cart) {
+        Promotions promotions = new Promotions(engine);
+        for (int i = 0; i < cart.size(); ++i) {
+            promotions.update(cart, i);
+        }
+
+        return promotions.adjustment;
+    }
+
+    /**
+     * Forgets all lines, keeping the capacity for the next customer.
+     */
+    void clear() {
+        for (BundleLines lines : bundleLines) {
+            if (lines != null) {
+                Arrays.fill(lines.prices, 0, lines.size, null);
+                lines.size = 0;
+                lines.adjustment = 0;
+            }
+        }
+        adjustment = Money.ZERO;
+    }
+}
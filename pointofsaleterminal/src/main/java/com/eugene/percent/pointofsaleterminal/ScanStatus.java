@@ -0,0 +1,36 @@
+package com.eugene.percent.pointofsaleterminal;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Result codes of {@link PointOfSaleTerminal#tryScan(com.eugene.percent.model.Product, int)}.
+ *
+ * A positive result is the number of units of the product scanned so far; failures are negative codes,
+ * so a failed scan neither allocates nor unwinds the stack.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ScanStatus {
+    /**
+     * Product is not in the registry, e.g. an unregistered item or a damaged barcode.
+     */
+    public static final int UNKNOWN_PRODUCT = -1;
+
+    /**
+     * Quantity is not positive, or the units or the total of the cart would overflow.
+     */
+    public static final int INVALID_QUANTITY = -2;
+
+    /**
+     * Barcode is not a GTIN or its check digit is wrong - a misread, see {@link PointOfSaleTerminal#tryScan(byte[], int, int)}.
+     */
+    public static final int INVALID_BARCODE = -3;
+
+    /**
+     * @param result result of a scan
+     * @return true if the product was added to the cart.
+     */
+    public static boolean isScanned(int result) {
+        return result > 0;
+    }
+}
@@ -0,0 +1,152 @@
+package com.eugene.percent.pointofsaleterminal;
+
+import com.eugene.percent.metrics.LatencyHistogram;
+import com.eugene.percent.metrics.Metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ObjectName;
+
+/**
+ * Instrumentation of one {@link PointOfSaleTerminal}: scan and calculateTotal latency histograms
+ * and counters, recorded by the terminal's thread and read over JMX.
+ *
+ * Also feeds the store-wide {@link Metrics} counters.
+ */
+final class TerminalMetrics implements TerminalMetricsMBean {
+    private static final AtomicLong nextInstance = new AtomicLong(1);
+
+    private final String objectName;
+    private final LatencyHistogram scanLatency = new LatencyHistogram();
+    private final LatencyHistogram calculateTotalLatency = new LatencyHistogram();
+    private long scans;
+    private long scanErrors;
+    private long sessions;
+    private volatile boolean resetRequested;
+
+    /**
+     * @return {@link TerminalMetrics} of a terminal, published as an MBean.
+     *         Terminals sharing an id get distinct MBean names, numbered by a sequence.
+     */
+    static TerminalMetrics register(PointOfSaleTerminal terminal) {
+        String prefix = Metrics.DOMAIN + ":type=PointOfSaleTerminal,name=" + ObjectName.quote(terminal.getTerminalId());
+
+        TerminalMetrics metrics = new TerminalMetrics(prefix);
+        while (!Metrics.registerMBean(metrics.objectName, metrics)) {
+            metrics = new TerminalMetrics(prefix + ",instance=" + nextInstance.getAndIncrement());
+        }
+
+        return metrics;
+    }
+
+    private TerminalMetrics(String objectName) {
+        this.objectName = objectName;
+    }
+
+    void recordScan(long nanos, boolean success) {
+        resetIfRequested();
+
+        scanLatency.record(nanos);
+        ++scans;
+        if (!success) {
+            ++scanErrors;
+        }
+        Metrics.recordScan(success);
+    }
+
+    void recordCalculateTotal(long nanos) {
+        resetIfRequested();
+
+        calculateTotalLatency.record(nanos);
+    }
+
+    void recordSession() {
+        resetIfRequested();
+
+        ++sessions;
+        Metrics.recordSession();
+    }
+
+    void unregister() {
+        Metrics.unregisterMBean(objectName);
+    }
+
+    /**
+     * Reset is requested over JMX and applied by the recording thread, so it does not race with recording.
+     */
+    private void resetIfRequested() {
+        if (resetRequested) {
+            resetRequested = false;
+            scanLatency.reset();
+            calculateTotalLatency.reset();
+            scans = 0;
+            scanErrors = 0;
+            sessions = 0;
+        }
+    }
+
+    @Override
+    public long getScans() {
+        return scans;
+    }
+
+    @Override
+    public long getScanErrors() {
+        return scanErrors;
+    }
+
+    @Override
+    public long getSessions() {
+        return sessions;
+    }
+
+    @Override
+    public double getScanLatencyMean() {
+        return scanLatency.getMean();
+    }
+
+    @Override
+    public long getScanLatencyP50() {
+        return scanLatency.getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getScanLatencyP99() {
+        return scanLatency.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getScanLatencyP999() {
+        return scanLatency.getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getScanLatencyMax() {
+        return scanLatency.getMax();
+    }
+
+    @Override
+    public double getCalculateTotalLatencyMean() {
+        return calculateTotalLatency.getMean();
+    }
+
+    @Override
+    public long getCalculateTotalLatencyP50() {
+        return calculateTotalLatency.getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getCalculateTotalLatencyP99() {
+        return calculateTotalLatency.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getCalculateTotalLatencyMax() {
+        return calculateTotalLatency.getMax();
+    }
+
+    @Override
+    public void reset() {
+        resetRequested = true;
+    }
+}
@@ -0,0 +1,35 @@
+package com.eugene.percent.pointofsaleterminal;
+
+/**
+ * JMX view of one {@link PointOfSaleTerminal}'s instrumentation. Latencies are in nanoseconds.
+ */
+public interface TerminalMetricsMBean {
+    long getScans();
+
+    long getScanErrors();
+
+    long getSessions();
+
+    double getScanLatencyMean();
+
+    long getScanLatencyP50();
+
+    long getScanLatencyP99();
+
+    long getScanLatencyP999();
+
+    long getScanLatencyMax();
+
+    double getCalculateTotalLatencyMean();
+
+    long getCalculateTotalLatencyP50();
+
+    long getCalculateTotalLatencyP99();
+
+    long getCalculateTotalLatencyMax();
+
+    /**
+     * Zeroes this terminal's counters and histograms.
+     */
+    void reset();
+}
@@ -0,0 +1,80 @@
+package com.eugene.percent.promotion;
+
+import com.eugene.percent.model.Product;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Cross-product promotion - a bundle of units of different {@link Product}s sold together for one price,
+ * e.g. "any 3 of A, C, D for 3.50" or a meal deal of one main, one side and one drink.
+ *
+ * A bundle takes numberOfUnits units from each of its {@link Group}s.
+ * Prices are in minor units, see {@link com.eugene.percent.model.Money}.
+ */
+@Value
+public class MixedBundle {
+    @NonNull String name;
+    @NonNull List<Group> groups;
+    long price;
+
+    /**
+     * Interchangeable {@link Product}s, numberOfUnits of which go into every bundle.
+     */
+    @Value
+    public static class Group {
+        int numberOfUnits;
+        @NonNull Set<Product> products;
+    }
+
+    /**
+     * "Any numberOfUnits of products for price".
+     *
+     * @param name name printed for the promotion
+     * @param numberOfUnits units in the bundle, positive
+     * @param price price of the bundle in minor units, positive
+     * @param products interchangeable {@link Product}s
+     * @return {@link MixedBundle}
+     */
+    public static MixedBundle anyOf(@NonNull String name, int numberOfUnits, long price, @NonNull Product... products) {
+        return of(name, price, group(numberOfUnits, products));
+    }
+
+    /**
+     * Bundle of several groups, e.g. a meal deal.
+     *
+     * @param name name printed for the promotion
+     * @param price price of the bundle in minor units, positive
+     * @param groups {@link Group}s, see {@link #group(int, Product...)}
+     * @return {@link MixedBundle}
+     */
+    public static MixedBundle of(@NonNull String name, long price, @NonNull Group... groups) {
+        assert price > 0;
+        assert groups.length > 0;
+
+        return new MixedBundle(name, Collections.unmodifiableList(Arrays.asList(groups.clone())), price);
+    }
+
+    /**
+     * @param numberOfUnits units of the group in every bundle, positive
+     * @param products interchangeable {@link Product}s
+     * @return {@link Group}
+     */
+    public static Group group(int numberOfUnits, @NonNull Product... products) {
+        assert numberOfUnits > 0;
+        assert products.length > 0;
+        for (Product product : products) {
+            if (product == null) {
+                throw new NullPointerException("products contains null");
+            }
+        }
+
+        return new Group(numberOfUnits, Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(products))));
+    }
+}
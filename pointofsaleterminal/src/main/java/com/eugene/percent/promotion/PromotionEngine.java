@@ -0,0 +1,311 @@
+package com.eugene.percent.promotion;
+
+import com.eugene.percent.model.Money;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * {@link MixedBundle} promotions of a store, indexed by participating {@link Product}.
+ *
+ * A {@link Product} takes part in at most one promotion, so promotions are independent - the best assignment
+ * of cart units to bundles is solved promotion by promotion, and a scan only re-solves the promotion of its product.
+ *
+ * A promotion whose lines are all priced per unit is solved greedily: every group fills bundles with its most
+ * expensive units first, so each further bundle saves no more than the one before, and bundles are made while they
+ * save money (found by binary search). This is optimal and costs O(p log q) for p lines and q units.
+ *
+ * A volume-priced line may save less by giving up a unit than its unit price, so with such lines units are chosen
+ * by what the line actually saves under its own price: every group is searched exactly for the best savings of
+ * each number of bundled units - a DP over the volume-priced lines, merged with the per-unit lines' most expensive
+ * units - and the best number of bundles is taken. The search costs O(k j) for k bundled and j volume-priced units;
+ * past {@value #MAX_SEARCH_STEPS} steps a scan falls back to the greedy solver, never raising the total.
+ */
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class PromotionEngine {
+    static final long MAX_SEARCH_STEPS = 1 << 20;
+
+    public static final PromotionEngine NONE = new PromotionEngine(Collections.emptyList(), Collections.emptyMap());
+
+    @Getter private final List<MixedBundle> bundles;
+    private final Map<Product, Slot> slots;
+
+    @AllArgsConstructor
+    private static final class Slot {
+        private final int bundleIndex;
+        private final int groupIndex;
+    }
+
+    /**
+     * @param bundles promotions
+     * @return {@link PromotionEngine}
+     * @throws IllegalArgumentException if a {@link Product} is in more than one promotion or group
+     */
+    public static PromotionEngine of(@NonNull MixedBundle... bundles) {
+        Map<Product, Slot> slots = new HashMap<>();
+
+        for (int bundleIndex = 0; bundleIndex < bundles.length; ++bundleIndex) {
+            List<MixedBundle.Group> groups = bundles[bundleIndex].getGroups();
+            for (int groupIndex = 0; groupIndex < groups.size(); ++groupIndex) {
+                for (Product product : groups.get(groupIndex).getProducts()) {
+                    if (slots.put(product, new Slot(bundleIndex, groupIndex)) != null) {
+                        throw new IllegalArgumentException("Product (" + product + ") is in more than one promotion");
+                    }
+                }
+            }
+        }
+
+        return new PromotionEngine(Collections.unmodifiableList(Arrays.asList(bundles.clone())), slots);
+    }
+
+    /**
+     * @return true if there are no promotions.
+     */
+    public boolean isEmpty() {
+        return bundles.isEmpty();
+    }
+
+    /**
+     * @return index of the promotion a {@link Product} takes part in, -1 if none.
+     */
+    public int bundleOf(@NonNull Product product) {
+        Slot slot = slots.get(product);
+
+        return slot == null ? -1 : slot.bundleIndex;
+    }
+
+    /**
+     * @return index of a {@link Product}'s group within its promotion, -1 if it is in none.
+     */
+    public int groupOf(@NonNull Product product) {
+        Slot slot = slots.get(product);
+
+        return slot == null ? -1 : slot.groupIndex;
+    }
+
+    /**
+     * Solves a promotion over the cart lines of its products.
+     *
+     * Lines must be ordered by group, and within a group by unit price, most expensive first.
+     *
+     * @param bundleIndex index of the promotion
+     * @param numberOfLines number of lines
+     * @param groups group index of every line
+     * @param prices {@link ProductPrice} of every line
+     * @param quantities units of every line
+     * @return change of the total in minor units, zero or negative.
+     * @throws ArithmeticException on overflow
+     */
+    public long calculateAdjustment(int bundleIndex, int numberOfLines, int[] groups, ProductPrice[] prices,
+                                    int[] quantities) {
+        MixedBundle bundle = bundles.get(bundleIndex);
+
+        long maxBundles = Long.MAX_VALUE;
+        int numberOfGroups = 0;
+        for (int start = 0, end; start < numberOfLines; start = end) {
+            long units = 0;
+            for (end = start; end < numberOfLines && groups[end] == groups[start]; ++end) {
+                units += quantities[end];
+            }
+            maxBundles = Math.min(maxBundles, units / bundle.getGroups().get(groups[start]).getNumberOfUnits());
+            ++numberOfGroups;
+        }
+        if (numberOfGroups < bundle.getGroups().size() || maxBundles == 0) {
+            return Money.ZERO;
+        }
+
+        if (!isPerUnit(numberOfLines, prices) && searchSteps(bundle, maxBundles, numberOfLines, groups, prices,
+                quantities) <= MAX_SEARCH_STEPS) {
+            return searchAdjustment(bundle, (int) maxBundles, numberOfLines, groups, prices, quantities);
+        }
+
+        return greedyAdjustment(bundle, maxBundles, numberOfLines, groups, prices, quantities);
+    }
+
+    private static long greedyAdjustment(MixedBundle bundle, long maxBundles, int numberOfLines, int[] groups,
+                                         ProductPrice[] prices, int[] quantities) {
+        //largest number of bundles whose last bundle still saves money
+        long low = 0;
+        long high = maxBundles;
+        while (low < high) {
+            long mid = (low + high + 1) >>> 1;
+            if (savingsOfBundle(bundle, mid, numberOfLines, groups, prices, quantities) > 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (low == 0) {
+            return Money.ZERO;
+        }
+
+        long adjustment = Money.multiply(bundle.getPrice(), low);
+        for (int start = 0, end; start < numberOfLines; start = end) {
+            long bundledUnits = low * bundle.getGroups().get(groups[start]).getNumberOfUnits();
+            for (end = start; end < numberOfLines && groups[end] == groups[start]; ++end) {
+                int units = (int) Math.min(bundledUnits, quantities[end]);
+                bundledUnits -= units;
+
+                adjustment = Money.add(adjustment, Money.subtract(
+                        prices[end].calculatePrice(quantities[end] - units), prices[end].calculatePrice(quantities[end])));
+            }
+        }
+
+        return Math.min(adjustment, Money.ZERO);
+    }
+
+    /**
+     * Exact search: the best savings of every number of bundles, from the best savings of every group.
+     */
+    private static long searchAdjustment(MixedBundle bundle, int maxBundles, int numberOfLines, int[] groups,
+                                         ProductPrice[] prices, int[] quantities) {
+        long[] savings = new long[maxBundles + 1];
+        for (int bundles = 1; bundles <= maxBundles; ++bundles) {
+            savings[bundles] = -Money.multiply(bundle.getPrice(), bundles);
+        }
+
+        for (int start = 0, end = 0; start < numberOfLines; start = end) {
+            while (end < numberOfLines && groups[end] == groups[start]) {
+                ++end;
+            }
+            int numberOfUnits = bundle.getGroups().get(groups[start]).getNumberOfUnits();
+            long[] groupSavings = savingsOfUnits(start, end, maxBundles * numberOfUnits, prices, quantities);
+            for (int bundles = 1; bundles <= maxBundles; ++bundles) {
+                savings[bundles] = Money.add(savings[bundles], groupSavings[bundles * numberOfUnits]);
+            }
+        }
+
+        long best = 0;
+        for (long bundleSavings : savings) {
+            best = Math.max(best, bundleSavings);
+        }
+
+        return -best;
+    }
+
+    /**
+     * @return best savings of the lines of a group by bundling exactly k of their units, for k up to maxUnits.
+     */
+    private static long[] savingsOfUnits(int start, int end, int maxUnits, ProductPrice[] prices, int[] quantities) {
+        //volume-priced lines: any split of the units between them
+        long[] volumeSavings = {0};
+        int perUnitUnits = 0;
+        for (int i = start; i < end; ++i) {
+            if (isPerUnit(prices[i])) {
+                perUnitUnits = (int) Math.min(maxUnits, (long) perUnitUnits + quantities[i]);
+                continue;
+            }
+
+            int lineUnits = Math.min(quantities[i], maxUnits);
+            long linePrice = prices[i].calculatePrice(quantities[i]);
+            long[] next = new long[Math.min(maxUnits, volumeSavings.length - 1 + lineUnits) + 1];
+            Arrays.fill(next, Long.MIN_VALUE);
+            for (int units = 0; units <= lineUnits; ++units) {
+                long lineSavings = Money.subtract(linePrice, prices[i].calculatePrice(quantities[i] - units));
+                for (int j = 0; j < volumeSavings.length && j + units < next.length; ++j) {
+                    next[j + units] = Math.max(next[j + units], Money.add(volumeSavings[j], lineSavings));
+                }
+            }
+            volumeSavings = next;
+        }
+
+        //per-unit lines: their most expensive units, lines being ordered by unit price
+        long[] perUnitSavings = new long[perUnitUnits + 1];
+        int k = 0;
+        for (int i = start; i < end && k < perUnitUnits; ++i) {
+            if (isPerUnit(prices[i])) {
+                for (int units = 0; units < quantities[i] && k < perUnitUnits; ++units, ++k) {
+                    perUnitSavings[k + 1] = Money.add(perUnitSavings[k], prices[i].getPricePerUnit());
+                }
+            }
+        }
+
+        long[] savings = new long[maxUnits + 1];
+        Arrays.fill(savings, Long.MIN_VALUE);
+        for (int j = 0; j < volumeSavings.length; ++j) {
+            for (int units = 0; units <= perUnitUnits && j + units <= maxUnits; ++units) {
+                savings[j + units] = Math.max(savings[j + units], Money.add(volumeSavings[j], perUnitSavings[units]));
+            }
+        }
+
+        return savings;
+    }
+
+    /**
+     * @return steps of {@link #searchAdjustment}, roughly.
+     */
+    private static long searchSteps(MixedBundle bundle, long maxBundles, int numberOfLines, int[] groups,
+                                    ProductPrice[] prices, int[] quantities) {
+        long steps = maxBundles;
+        for (int start = 0, end; start < numberOfLines; start = end) {
+            long maxUnits = maxBundles * bundle.getGroups().get(groups[start]).getNumberOfUnits();
+            long volumeUnits = 0;
+            for (end = start; end < numberOfLines && groups[end] == groups[start]; ++end) {
+                if (!isPerUnit(prices[end])) {
+                    long lineUnits = Math.min(quantities[end], maxUnits);
+                    steps += (Math.min(volumeUnits, maxUnits) + 1) * (lineUnits + 1);
+                    volumeUnits += lineUnits;
+                }
+            }
+            steps += (Math.min(volumeUnits, maxUnits) + 1) * (maxUnits + 1);
+            if (steps > MAX_SEARCH_STEPS) {
+                return steps; //before the sum of more groups can overflow
+            }
+        }
+
+        return steps;
+    }
+
+    private static boolean isPerUnit(int numberOfLines, ProductPrice[] prices) {
+        for (int i = 0; i < numberOfLines; ++i) {
+            if (!isPerUnit(prices[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return true if every unit of the line costs its unit price, whatever the quantity.
+     */
+    private static boolean isPerUnit(ProductPrice price) {
+        return !price.hasRules() && price.getPricePerVolume() % price.getNumberOfUnitsInVolume() == 0
+                && price.getPricePerVolume() / price.getNumberOfUnitsInVolume() == price.getPricePerUnit();
+    }
+
+    /**
+     * @return unit prices of the units in the bundleNumber-th bundle, less the bundle price.
+     */
+    private static long savingsOfBundle(MixedBundle bundle, long bundleNumber, int numberOfLines, int[] groups,
+                                        ProductPrice[] prices, int[] quantities) {
+        long savings = -bundle.getPrice();
+
+        for (int start = 0, end; start < numberOfLines; start = end) {
+            int numberOfUnits = bundle.getGroups().get(groups[start]).getNumberOfUnits();
+            long from = (bundleNumber - 1) * numberOfUnits;
+            long to = from + numberOfUnits;
+
+            long position = 0;
+            for (end = start; end < numberOfLines && groups[end] == groups[start]; ++end) {
+                long units = Math.min(to, position + quantities[end]) - Math.max(from, position);
+                if (units > 0) {
+                    savings = Money.add(savings, Money.multiply(prices[end].getPricePerUnit(), units));
+                }
+                position += quantities[end];
+            }
+        }
+
+        return savings;
+    }
+}
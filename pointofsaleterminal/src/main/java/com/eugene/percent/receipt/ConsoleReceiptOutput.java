@@ -0,0 +1,29 @@
+package com.eugene.percent.receipt;
+
+import java.io.PrintStream;
+
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+
+/**
+ * Writes receipts to a {@link PrintStream}, {@link System#out} by default.
+ * The stream is not closed.
+ */
+@AllArgsConstructor
+public class ConsoleReceiptOutput implements ReceiptOutput {
+    @NonNull private final PrintStream printStream;
+
+    public ConsoleReceiptOutput() {
+        this(System.out);
+    }
+
+    @Override
+    public void write(CharSequence receipts) {
+        printStream.append(receipts);
+    }
+
+    @Override
+    public void flush() {
+        printStream.flush();
+    }
+}
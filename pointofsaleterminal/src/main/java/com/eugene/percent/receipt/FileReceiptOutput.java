@@ -0,0 +1,41 @@
+package com.eugene.percent.receipt;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import lombok.NonNull;
+
+/**
+ * Appends receipts to a UTF-8 text file.
+ */
+public class FileReceiptOutput implements ReceiptOutput {
+    private final Writer writer;
+
+    /**
+     * @param path receipt file, created if needed
+     * @throws IOException if the file cannot be opened
+     */
+    public FileReceiptOutput(@NonNull Path path) throws IOException {
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void write(CharSequence receipts) throws IOException {
+        writer.append(receipts);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,20 @@
+package com.eugene.percent.receipt;
+
+/**
+ * Keeps receipts in memory, e.g. for tests.
+ */
+public class InMemoryReceiptOutput implements ReceiptOutput {
+    private final StringBuilder text = new StringBuilder();
+
+    @Override
+    public synchronized void write(CharSequence receipts) {
+        text.append(receipts);
+    }
+
+    /**
+     * @return all receipts written so far.
+     */
+    public synchronized String getText() {
+        return text.toString();
+    }
+}
@@ -0,0 +1,113 @@
+package com.eugene.percent.receipt;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer.
+ *
+ * Every slot carries a sequence number: a producer claims a slot by advancing the tail with a CAS
+ * and publishes its element by bumping the slot's sequence, the consumer frees the slot by bumping it again.
+ * Neither side ever blocks the other - a full buffer is reported to the producer instead.
+ */
+final class MpscRingBuffer<E> {
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head; //consumer only
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    MpscRingBuffer(int capacity) {
+        assert capacity > 0 && capacity <= 1 << 30;
+
+        int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.elements = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; ++i) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return number of slots.
+     */
+    int capacity() {
+        return elements.length;
+    }
+
+    /**
+     * Any thread.
+     *
+     * @return false if the buffer is full.
+     */
+    boolean offer(E element) {
+        long position;
+        while (true) {
+            position = tail.get();
+            long sequence = sequences.get((int) position & mask);
+
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+            } else if (sequence < position) {
+                return false; //slot not freed by the consumer yet
+            }
+            //else another producer claimed the slot, retry at the new tail
+        }
+
+        int index = (int) position & mask;
+        elements[index] = element;
+        sequences.lazySet(index, position + 1);
+
+        return true;
+    }
+
+    /**
+     * Consumer thread only.
+     *
+     * @return oldest element, null if the buffer is empty.
+     */
+    @SuppressWarnings("unchecked")
+    E poll() {
+        int index = (int) head & mask;
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+
+        E element = (E) elements[index];
+        elements[index] = null;
+        sequences.lazySet(index, head + elements.length);
+        ++head;
+
+        return element;
+    }
+
+    /**
+     * Consumer thread only.
+     *
+     * @return number of elements moved to the list, at most maxElements.
+     */
+    int drainTo(List<? super E> list, int maxElements) {
+        int n = 0;
+        E element;
+        while (n < maxElements && (element = poll()) != null) {
+            list.add(element);
+            ++n;
+        }
+
+        return n;
+    }
+
+    /**
+     * Consumer thread only.
+     */
+    boolean isEmpty() {
+        return sequences.get((int) head & mask) != head + 1;
+    }
+}
@@ -0,0 +1,34 @@
+package com.eugene.percent.receipt;
+
+import com.eugene.percent.model.Money;
+import com.eugene.percent.model.Sale;
+
+/**
+ * Formats a {@link Sale} as a receipt, on the {@link ReceiptSink} consumer thread.
+ */
+@FunctionalInterface
+public interface ReceiptFormatter {
+    /**
+     * One line per sale: terminal, total and the units and price of every line.
+     */
+    ReceiptFormatter DEFAULT = (sale, receipt) -> {
+        receipt.append("Terminal: ").append(sale.getTerminalId())
+                .append(", Total Price: ").append(Money.toString(sale.getTotal()))
+                .append(", Products: [");
+        for (int i = 0; i < sale.getLines().size(); ++i) {
+            Sale.Line line = sale.getLines().get(i);
+            if (i > 0) {
+                receipt.append(", ");
+            }
+            receipt.append(line.getProduct().getProductCode())
+                    .append(" x").append(line.getQuantity())
+                    .append(' ').append(Money.toString(line.getPrice()));
+        }
+        receipt.append(']').append(System.lineSeparator());
+    };
+
+    /**
+     * Appends the receipt of a {@link Sale}, including its line separator.
+     */
+    void format(Sale sale, StringBuilder receipt);
+}
@@ -0,0 +1,29 @@
+package com.eugene.percent.receipt;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination of formatted receipts, written to by the {@link ReceiptSink} consumer thread only.
+ */
+public interface ReceiptOutput extends Closeable {
+    /**
+     * Writes a batch of receipts.
+     *
+     * @param receipts formatted receipts, only valid during the call
+     * @throws IOException if the receipts cannot be written
+     */
+    void write(CharSequence receipts) throws IOException;
+
+    /**
+     * Called after every batch.
+     *
+     * @throws IOException if buffered receipts cannot be written
+     */
+    default void flush() throws IOException {
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,216 @@
+package com.eugene.percent.receipt;
+
+import com.eugene.percent.model.Sale;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import lombok.NonNull;
+
+/**
+ * Prints receipts of completed {@link Sale}s off the checkout path.
+ *
+ * Terminals {@link #publish(Sale)} into a bounded lock-free ring buffer; a single consumer thread drains it,
+ * formats up to {@value #DEFAULT_BATCH_SIZE} receipts into one reusable buffer and hands them to the
+ * {@link ReceiptOutput} in one write and one flush. Terminals never touch the output or its locks.
+ *
+ * What happens when the buffer is full is the {@link OverflowPolicy}.
+ */
+public class ReceiptSink implements Closeable {
+    public static final int DEFAULT_CAPACITY = 8192;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final MpscRingBuffer<Sale> buffer;
+    private final ReceiptOutput output;
+    private final ReceiptFormatter formatter;
+    private final OverflowPolicy overflowPolicy;
+    private final int batchSize;
+    private final Thread consumer;
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile boolean consumerParked;
+    private volatile boolean closed;
+    private volatile IOException failure;
+    private boolean outputFailed; //consumer thread only
+
+    /**
+     * What {@link #publish(Sale)} does when the buffer is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Wait for the consumer to free a slot. No receipt is lost, checkout slows to the output's pace.
+         */
+        BLOCK,
+
+        /**
+         * Drop the receipt and count it in {@link #getDropped()}. Checkout never waits for the output.
+         */
+        DROP
+    }
+
+    public ReceiptSink(@NonNull ReceiptOutput output) {
+        this(output, ReceiptFormatter.DEFAULT, OverflowPolicy.BLOCK, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param output {@link ReceiptOutput}, closed with the sink
+     * @param formatter {@link ReceiptFormatter}
+     * @param overflowPolicy {@link OverflowPolicy}
+     * @param capacity receipts that can wait to be written, rounded up to a power of two
+     * @param batchSize receipts written at most per write
+     */
+    public ReceiptSink(@NonNull ReceiptOutput output, @NonNull ReceiptFormatter formatter,
+                       @NonNull OverflowPolicy overflowPolicy, int capacity, int batchSize) {
+        assert batchSize > 0;
+
+        this.buffer = new MpscRingBuffer<>(capacity);
+        this.output = output;
+        this.formatter = formatter;
+        this.overflowPolicy = overflowPolicy;
+        this.batchSize = batchSize;
+        this.consumer = new Thread(this::runConsumer, "ReceiptSink consumer");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    /**
+     * Queues the receipt of a {@link Sale}. Never does I/O.
+     *
+     * @param sale completed {@link Sale}
+     * @return false if the receipt was dropped.
+     * @throws IllegalStateException if the sink is closed
+     */
+    public boolean publish(@NonNull Sale sale) {
+        if (closed) {
+            throw new IllegalStateException("Receipt sink is closed");
+        }
+
+        while (!buffer.offer(sale)) {
+            if (overflowPolicy == OverflowPolicy.DROP || closed) {
+                dropped.increment();
+                return false;
+            }
+            wakeConsumer();
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+
+        if (consumerParked) {
+            wakeConsumer();
+        }
+
+        return true;
+    }
+
+    /**
+     * @return number of receipts dropped because the buffer was full.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Writes every queued receipt, then closes the sink and its {@link ReceiptOutput}.
+     * Receipts published concurrently with closing may be dropped.
+     *
+     * @throws IOException if some receipts could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        wakeConsumer();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                consumer.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        output.close();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void wakeConsumer() {
+        LockSupport.unpark(consumer);
+    }
+
+    private void runConsumer() {
+        List<Sale> batch = new ArrayList<>(batchSize);
+        StringBuilder receipts = new StringBuilder();
+
+        while (true) {
+            if (buffer.drainTo(batch, batchSize) == 0) {
+                if (closed && buffer.isEmpty()) {
+                    return;
+                }
+
+                //publishers check the flag after queueing and wake us,
+                //a receipt racing with the check below waits for the timed park at worst
+                consumerParked = true;
+                if (buffer.isEmpty() && !closed) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                consumerParked = false;
+                continue;
+            }
+
+            for (Sale sale : batch) {
+                format(sale, receipts);
+            }
+            write(receipts);
+
+            batch.clear();
+            receipts.setLength(0);
+        }
+    }
+
+    /**
+     * A receipt that cannot be formatted is skipped, the consumer keeps draining for blocked publishers.
+     */
+    private void format(Sale sale, StringBuilder receipts) {
+        int start = receipts.length();
+        try {
+            formatter.format(sale, receipts);
+        } catch (RuntimeException e) {
+            receipts.setLength(start);
+            if (failure == null) {
+                failure = new IOException("Receipt of terminal " + sale.getTerminalId() + " cannot be formatted", e);
+            }
+        }
+    }
+
+    private void write(CharSequence receipts) {
+        if (outputFailed) {
+            return;
+        }
+
+        try {
+            output.write(receipts);
+            output.flush();
+        } catch (IOException e) {
+            outputFailed = true;
+            if (failure == null) {
+                failure = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.eugene.percent.replication;
+
+import com.eugene.percent.factory.ChangeFeed;
+import com.eugene.percent.factory.RegistryChange;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.NonNull;
+
+/**
+ * {@link ChangeFeed} read from a {@link ChangeFeedServer} over TCP.
+ *
+ * The connection is opened on first use. A failed request closes it, so the next request reconnects -
+ * a replica polling through this client survives restarts of the primary.
+ */
+public class ChangeFeedClient implements ChangeFeed, Closeable {
+    public static final int TIMEOUT_MILLIS = 10_000;
+
+    private final InetSocketAddress address;
+    private Socket socket;
+    private DataInputStream input;
+    private DataOutputStream output;
+
+    /**
+     * @param address {@link ChangeFeedServer} address
+     */
+    public ChangeFeedClient(@NonNull InetSocketAddress address) {
+        this.address = address;
+    }
+
+    @Override
+    public synchronized long getEpoch() throws IOException {
+        try {
+            connect().writeByte(ChangeFeedCodec.EPOCH);
+            output.flush();
+
+            return input.readLong();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized long getSequence() throws IOException {
+        try {
+            connect().writeByte(ChangeFeedCodec.SEQUENCE);
+            output.flush();
+
+            return input.readLong();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized List<RegistryChange> changesSince(long sequence, int maxChanges) throws IOException {
+        assert maxChanges > 0;
+
+        try {
+            connect().writeByte(ChangeFeedCodec.CHANGES_SINCE);
+            output.writeLong(sequence);
+            output.writeInt(maxChanges);
+            output.flush();
+
+            int count = input.readInt();
+            if (count < 0) {
+                return null;
+            }
+
+            List<RegistryChange> changes = new ArrayList<>(Math.min(count, maxChanges));
+            for (int i = 0; i < count; ++i) {
+                changes.add(ChangeFeedCodec.readChange(input));
+            }
+
+            return changes;
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized RegistryChange snapshot() throws IOException {
+        try {
+            connect().writeByte(ChangeFeedCodec.SNAPSHOT);
+            output.flush();
+
+            return ChangeFeedCodec.readChange(input);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the connection, if open. The client can still be used; it reconnects.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (socket != null) {
+            Socket closed = socket;
+            socket = null;
+            closed.close();
+        }
+    }
+
+    private DataOutputStream connect() throws IOException {
+        if (socket == null) {
+            Socket connection = new Socket();
+            try {
+                connection.connect(address, TIMEOUT_MILLIS);
+                connection.setSoTimeout(TIMEOUT_MILLIS);
+                connection.setTcpNoDelay(true);
+                input = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+                output = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+            } catch (IOException e) {
+                connection.close();
+                throw e;
+            }
+            socket = connection;
+        }
+
+        return output;
+    }
+}
@@ -0,0 +1,149 @@
+package com.eugene.percent.replication;
+
+import com.eugene.percent.factory.RegistryChange;
+import com.eugene.percent.model.PricingRule;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Wire format of the {@link ChangeFeedServer} protocol, big-endian.
+ *
+ * Request: byte opcode, then for {@link #CHANGES_SINCE}: long sequence, int max changes.
+ * Responses:
+ * <pre>
+ * {@link #EPOCH}: long epoch
+ * {@link #SEQUENCE}: long sequence
+ * {@link #CHANGES_SINCE}: int change count, -1 if the changes are no longer retained, changes
+ * {@link #SNAPSHOT}: change
+ * change: long sequence, long timestamp, byte type, int product count,
+ *         per product: UTF product code, boolean has price, price
+ * price: long price per unit, int rule count, then int units in volume, long price per volume without rules,
+ *        or int promotion limit, per rule: int units, int paid units, long price per volume
+ * </pre>
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class ChangeFeedCodec {
+    static final byte SEQUENCE = 1;
+    static final byte CHANGES_SINCE = 2;
+    static final byte SNAPSHOT = 3;
+    static final byte EPOCH = 4;
+
+    private static final RegistryChange.Type[] TYPES = RegistryChange.Type.values();
+
+    static void writeChanges(DataOutput output, List<RegistryChange> changes) throws IOException {
+        if (changes == null) {
+            output.writeInt(-1);
+            return;
+        }
+
+        output.writeInt(changes.size());
+        for (RegistryChange change : changes) {
+            writeChange(output, change);
+        }
+    }
+
+    static void writeChange(DataOutput output, RegistryChange change) throws IOException {
+        output.writeLong(change.getSequence());
+        output.writeLong(change.getTimestampMillis());
+        output.writeByte(change.getType().ordinal());
+        output.writeInt(change.size());
+        for (Map.Entry<Product, ProductPrice> productPrice : change.getProductPrices().entrySet()) {
+            output.writeUTF(productPrice.getKey().getProductCode());
+            output.writeBoolean(productPrice.getValue() != null);
+            if (productPrice.getValue() != null) {
+                writePrice(output, productPrice.getValue());
+            }
+        }
+    }
+
+    static RegistryChange readChange(DataInput input) throws IOException {
+        long sequence = input.readLong();
+        long timestampMillis = input.readLong();
+        int type = input.readUnsignedByte();
+        int size = input.readInt();
+        if (type >= TYPES.length || size < 0) {
+            throw new ProtocolException("Malformed change " + sequence);
+        }
+
+        Map<Product, ProductPrice> productPrices = new HashMap<>();
+        for (int i = 0; i < size; ++i) {
+            Product product = Product.builder().productCode(input.readUTF()).build();
+            productPrices.put(product, input.readBoolean() ? readPrice(input) : null);
+        }
+
+        return new RegistryChange(sequence, timestampMillis, TYPES[type], Collections.unmodifiableMap(productPrices));
+    }
+
+    private static void writePrice(DataOutput output, ProductPrice productPrice) throws IOException {
+        output.writeLong(productPrice.getPricePerUnit());
+        output.writeInt(productPrice.getRules().size());
+        if (!productPrice.hasRules()) {
+            output.writeInt(productPrice.getNumberOfUnitsInVolume());
+            output.writeLong(productPrice.getPricePerVolume());
+            return;
+        }
+
+        output.writeInt(productPrice.getPromotionLimit());
+        for (PricingRule rule : productPrice.getRules()) {
+            output.writeInt(rule.getNumberOfUnits());
+            output.writeInt(rule.getNumberOfPaidUnits());
+            output.writeLong(rule.getPricePerVolume());
+        }
+    }
+
+    private static ProductPrice readPrice(DataInput input) throws IOException {
+        long pricePerUnit = input.readLong();
+        int ruleCount = input.readInt();
+        if (pricePerUnit <= 0 || ruleCount < 0) {
+            throw new ProtocolException("Malformed price " + pricePerUnit + "/" + ruleCount);
+        }
+
+        if (ruleCount == 0) {
+            int numberOfUnitsInVolume = input.readInt();
+            long pricePerVolume = input.readLong();
+            if (numberOfUnitsInVolume <= 0 || pricePerVolume <= 0) {
+                throw new ProtocolException("Malformed volume price " + numberOfUnitsInVolume + "/" + pricePerVolume);
+            }
+
+            return new ProductPrice(pricePerUnit, numberOfUnitsInVolume, pricePerVolume);
+        }
+
+        int promotionLimit = input.readInt();
+        if (promotionLimit < 0) {
+            throw new ProtocolException("Malformed promotion limit " + promotionLimit);
+        }
+        List<PricingRule> rules = new ArrayList<>(Math.min(ruleCount, 16)); //count is not trusted until read
+        for (int i = 0; i < ruleCount; ++i) {
+            int numberOfUnits = input.readInt();
+            int numberOfPaidUnits = input.readInt();
+            long pricePerVolume = input.readLong();
+            if (numberOfPaidUnits == 0 && numberOfUnits > 0 && pricePerVolume > 0) {
+                rules.add(PricingRule.volume(numberOfUnits, pricePerVolume));
+            } else if (numberOfPaidUnits > 0 && numberOfUnits > numberOfPaidUnits && pricePerVolume == 0) {
+                rules.add(PricingRule.buyGetFree(numberOfPaidUnits, numberOfUnits - numberOfPaidUnits));
+            } else {
+                throw new ProtocolException("Malformed pricing rule " + numberOfUnits + "/"
+                        + numberOfPaidUnits + "/" + pricePerVolume);
+            }
+        }
+
+        try {
+            return ProductPrice.of(pricePerUnit, promotionLimit, rules.toArray(new PricingRule[0]));
+        } catch (IllegalArgumentException e) {
+            throw new ProtocolException("Price rules cannot be compiled: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.eugene.percent.replication;
+
+import com.eugene.percent.factory.ChangeFeed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Serves a {@link ChangeFeed} - the {@link com.eugene.percent.factory.ProductRegistry#getChangeFeed()} of the store's
+ * primary registry - to the {@link ChangeFeedClient}s of replica JVMs over TCP, see {@link ChangeFeedCodec}.
+ *
+ * Replicas are few and poll rarely, so every connection is served by its own thread with blocking I/O.
+ */
+public class ChangeFeedServer implements Closeable {
+    public static final int MAX_CHANGES = 4096;
+
+    private final ChangeFeed feed;
+    private final ServerSocket serverSocket;
+    private final Thread acceptor;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+
+    @Getter private final InetSocketAddress address;
+
+    /**
+     * Binds the server socket and starts accepting replicas.
+     *
+     * @param feed {@link ChangeFeed} to serve
+     * @param address address to listen on, port 0 for any free port
+     * @throws IOException if the socket cannot be bound
+     */
+    public ChangeFeedServer(@NonNull ChangeFeed feed, @NonNull InetSocketAddress address) throws IOException {
+        this.feed = feed;
+        this.serverSocket = new ServerSocket();
+        try {
+            serverSocket.bind(address);
+        } catch (IOException e) {
+            serverSocket.close();
+            throw e;
+        }
+        this.address = (InetSocketAddress) serverSocket.getLocalSocketAddress();
+
+        this.acceptor = new Thread(this::accept, "Change feed acceptor " + this.address.getPort());
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+    }
+
+    /**
+     * Stops accepting replicas and closes their connections.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket socket : connections) {
+            socket.close();
+        }
+
+        try {
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+
+                Thread thread = new Thread(() -> serve(socket), "Change feed " + socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                //closed, or a connection that failed before it was served
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket connection = socket;
+             DataInputStream input = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()))) {
+            while (true) {
+                byte opcode;
+                try {
+                    opcode = input.readByte();
+                } catch (EOFException e) {
+                    return; //replica disconnected
+                }
+
+                switch (opcode) {
+                    case ChangeFeedCodec.EPOCH:
+                        output.writeLong(feed.getEpoch());
+                        break;
+                    case ChangeFeedCodec.SEQUENCE:
+                        output.writeLong(feed.getSequence());
+                        break;
+                    case ChangeFeedCodec.CHANGES_SINCE:
+                        long sequence = input.readLong();
+                        int maxChanges = input.readInt();
+                        if (maxChanges <= 0) {
+                            throw new ProtocolException("Not a positive number of changes: " + maxChanges);
+                        }
+                        ChangeFeedCodec.writeChanges(output,
+                                feed.changesSince(sequence, Math.min(maxChanges, MAX_CHANGES)));
+                        break;
+                    case ChangeFeedCodec.SNAPSHOT:
+                        ChangeFeedCodec.writeChange(output, feed.snapshot());
+                        break;
+                    default:
+                        throw new ProtocolException("Unknown opcode " + opcode);
+                }
+                output.flush();
+            }
+        } catch (IOException e) {
+            //connection dropped or malformed request, the replica reconnects
+        } finally {
+            connections.remove(socket);
+        }
+    }
+}
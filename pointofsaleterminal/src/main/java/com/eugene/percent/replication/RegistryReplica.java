@@ -0,0 +1,227 @@
+package com.eugene.percent.replication;
+
+import com.eugene.percent.factory.ChangeFeed;
+import com.eugene.percent.factory.ProductRegistry;
+import com.eugene.percent.factory.RegistryChange;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import lombok.NonNull;
+
+/**
+ * Keeps a registry in sync with the {@link ChangeFeed} of another one - in a terminal JVM, the local
+ * {@link ProductRegistry} with the store's primary registry, through a {@link ChangeFeedClient}.
+ *
+ * A replica applies the changes after the last one it applied, in order, each as one new version of its registry.
+ * It starts from a compacted snapshot, and goes back to one if it fell behind the tail the feed retains,
+ * if the primary swapped its catalog or if the primary restarted - the feed reports a new epoch, see
+ * {@link ChangeFeed#getEpoch()}, whatever its sequence numbers.
+ *
+ * {@link #poll()} catches up once; {@link #start(long)} polls on a background thread.
+ * Lag is reported as of the last poll, see {@link #getLag()} and {@link #getLagMillis()}.
+ */
+public class RegistryReplica implements Closeable {
+    public static final int DEFAULT_MAX_CHANGES = 1024;
+
+    private final ChangeFeed source;
+    private final Consumer<RegistryChange> target;
+    private final int maxChanges;
+    private ScheduledExecutorService poller;
+
+    //written by polls only
+    private volatile long appliedEpoch;
+    private volatile long appliedSequence = -1;
+    private volatile long sourceSequence = -1;
+    private volatile long syncedMillis = System.currentTimeMillis();
+    private volatile long snapshots;
+    private volatile long changes;
+    private volatile long failures;
+
+    /**
+     * Replica of the local {@link ProductRegistry}.
+     *
+     * @param source {@link ChangeFeed} of the primary registry
+     */
+    public RegistryReplica(@NonNull ChangeFeed source) {
+        this(source, ProductRegistry::apply, DEFAULT_MAX_CHANGES);
+    }
+
+    /**
+     * @param source {@link ChangeFeed} of the primary registry
+     * @param target applies a change to the replicated registry, see {@link ProductRegistry#apply(RegistryChange)}
+     * @param maxChanges changes read per request
+     */
+    public RegistryReplica(@NonNull ChangeFeed source, @NonNull Consumer<RegistryChange> target, int maxChanges) {
+        assert maxChanges > 0;
+
+        this.source = source;
+        this.target = target;
+        this.maxChanges = maxChanges;
+    }
+
+    /**
+     * Applies the changes published since the last poll.
+     *
+     * @return number of changes applied, counting a snapshot as one.
+     * @throws IOException if the feed cannot be read; the changes applied so far stay applied
+     */
+    public synchronized int poll() throws IOException {
+        long epoch = source.getEpoch();
+        long latestSequence = source.getSequence();
+        if (epoch != appliedEpoch) {
+            appliedSequence = -1; //a new primary, with a history of its own
+        }
+        sourceSequence = latestSequence;
+
+        int applied = 0;
+        while (appliedSequence < latestSequence) {
+            List<RegistryChange> tail = appliedSequence < 0 ? null : source.changesSince(appliedSequence, maxChanges);
+            if (tail != null && !tail.isEmpty() && source.getEpoch() != epoch) {
+                epoch = source.getEpoch(); //the primary restarted while the tail was read
+                tail = null;
+            }
+            if (tail == null) {
+                applySnapshot(epoch);
+                ++applied;
+                continue;
+            }
+            if (tail.isEmpty()) {
+                break;
+            }
+
+            for (RegistryChange change : tail) {
+                if (change.getType() == RegistryChange.Type.CATALOG) {
+                    applySnapshot(epoch); //covers the catalog and possibly more of the tail
+                    ++applied;
+                    break;
+                }
+
+                target.accept(change);
+                appliedSequence = change.getSequence();
+                ++changes;
+                ++applied;
+            }
+        }
+
+        sourceSequence = Math.max(sourceSequence, appliedSequence);
+        if (appliedSequence == sourceSequence) {
+            syncedMillis = System.currentTimeMillis();
+        }
+
+        return applied;
+    }
+
+    /**
+     * Polls every intervalMillis on a background thread. Failed polls are counted and retried at the next interval.
+     *
+     * @param intervalMillis delay between polls
+     */
+    public synchronized void start(long intervalMillis) {
+        assert intervalMillis > 0;
+        if (poller != null) {
+            throw new IllegalStateException("Replica is already polling");
+        }
+
+        poller = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "Registry replica");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(() -> {
+            try {
+                poll();
+            } catch (IOException | RuntimeException e) {
+                ++failures;
+            }
+        }, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops background polling, if started.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService stopped;
+        synchronized (this) {
+            stopped = poller;
+            poller = null;
+        }
+
+        if (stopped != null) {
+            stopped.shutdownNow();
+            try {
+                stopped.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * @return sequence number of the last change applied, -1 before the first snapshot.
+     */
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * @return sequence number of the latest change of the source, as of the last poll.
+     */
+    public long getSourceSequence() {
+        return sourceSequence;
+    }
+
+    /**
+     * @return sequence numbers the replica is behind the source, as of the last poll.
+     */
+    public long getLag() {
+        return appliedSequence < 0 ? sourceSequence + 1 : sourceSequence - appliedSequence;
+    }
+
+    /**
+     * @return time since the replica was last in sync with the source, 0 if it was at the last poll.
+     */
+    public long getLagMillis() {
+        return getLag() == 0 ? 0 : System.currentTimeMillis() - syncedMillis;
+    }
+
+    /**
+     * @return number of snapshots applied.
+     */
+    public long getSnapshots() {
+        return snapshots;
+    }
+
+    /**
+     * @return number of changes applied, not counting snapshots.
+     */
+    public long getChanges() {
+        return changes;
+    }
+
+    /**
+     * @return number of background polls that failed.
+     */
+    public long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @param epoch epoch read before the snapshot - if the primary restarts in between, the next poll
+     *              finds a new epoch and takes another snapshot
+     */
+    private void applySnapshot(long epoch) throws IOException {
+        RegistryChange snapshot = source.snapshot();
+
+        target.accept(snapshot);
+        appliedEpoch = epoch;
+        appliedSequence = snapshot.getSequence();
+        ++snapshots;
+    }
+}
@@ -0,0 +1,131 @@
+package com.eugene.percent.report;
+
+import com.eugene.percent.model.Money;
+import com.eugene.percent.model.Sale;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Partial end-of-day aggregate of completed {@link Sale}s - per product and per terminal sums.
+ *
+ * Products are interned to dense indexes into primitive arrays, so adding a line is one map lookup
+ * and a few long additions. Partials of different threads or ranges of sales are combined with {@link #merge}.
+ *
+ * Not thread-safe - a partial belongs to one thread until it is merged.
+ */
+public final class SalesAggregate {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final Map<String, Integer> productIndexes = new HashMap<>();
+    private String[] productCodes = new String[DEFAULT_CAPACITY];
+    private long[] units = new long[DEFAULT_CAPACITY];
+    private long[] revenue = new long[DEFAULT_CAPACITY];
+    private long[] savings = new long[DEFAULT_CAPACITY];
+    private int numberOfProducts;
+
+    private final Map<String, long[]> terminals = new HashMap<>(); //terminal id -> sessions, units, revenue
+    private long sessions;
+    private long totalRevenue;
+    private long lineRevenue;
+
+    /**
+     * Adds a completed {@link Sale}.
+     *
+     * @throws ArithmeticException on overflow
+     */
+    public void add(Sale sale) {
+        long saleUnits = 0;
+
+        for (Sale.Line line : sale.getLines()) {
+            int index = indexOf(line.getProduct().getProductCode());
+            long undiscounted = Money.multiply(line.getProductPrice().getPricePerUnit(), line.getQuantity());
+
+            units[index] += line.getQuantity();
+            revenue[index] = Money.add(revenue[index], line.getPrice());
+            savings[index] = Money.add(savings[index], Money.subtract(undiscounted, line.getPrice()));
+
+            saleUnits += line.getQuantity();
+            lineRevenue = Money.add(lineRevenue, line.getPrice());
+        }
+
+        addTerminal(sale.getTerminalId(), 1, saleUnits, sale.getTotal());
+        ++sessions;
+        totalRevenue = Money.add(totalRevenue, sale.getTotal());
+    }
+
+    /**
+     * Adds another partial to this one. The other partial is not changed.
+     *
+     * @throws ArithmeticException on overflow
+     */
+    public void merge(SalesAggregate other) {
+        for (int i = 0; i < other.numberOfProducts; ++i) {
+            int index = indexOf(other.productCodes[i]);
+
+            units[index] += other.units[i];
+            revenue[index] = Money.add(revenue[index], other.revenue[i]);
+            savings[index] = Money.add(savings[index], other.savings[i]);
+        }
+
+        other.terminals.forEach((terminalId, sums) -> addTerminal(terminalId, sums[0], sums[1], sums[2]));
+        sessions += other.sessions;
+        totalRevenue = Money.add(totalRevenue, other.totalRevenue);
+        lineRevenue = Money.add(lineRevenue, other.lineRevenue);
+    }
+
+    private int indexOf(String productCode) {
+        Integer index = productIndexes.get(productCode);
+        if (index != null) {
+            return index;
+        }
+
+        if (numberOfProducts == productCodes.length) {
+            int capacity = numberOfProducts * 2;
+            productCodes = Arrays.copyOf(productCodes, capacity);
+            units = Arrays.copyOf(units, capacity);
+            revenue = Arrays.copyOf(revenue, capacity);
+            savings = Arrays.copyOf(savings, capacity);
+        }
+        productCodes[numberOfProducts] = productCode;
+        productIndexes.put(productCode, numberOfProducts);
+
+        return numberOfProducts++;
+    }
+
+    private void addTerminal(String terminalId, long terminalSessions, long terminalUnits, long terminalRevenue) {
+        long[] sums = terminals.computeIfAbsent(terminalId, id -> new long[3]);
+
+        sums[0] += terminalSessions;
+        sums[1] += terminalUnits;
+        sums[2] = Money.add(sums[2], terminalRevenue);
+    }
+
+    /**
+     * @return {@link SalesReport} of the sales added so far, products by revenue and terminals by id.
+     */
+    public SalesReport toReport() {
+        List<SalesReport.ProductSales> products = new ArrayList<>(numberOfProducts);
+        long totalUnits = 0;
+        long totalSavings = 0;
+        for (int i = 0; i < numberOfProducts; ++i) {
+            products.add(new SalesReport.ProductSales(productCodes[i], units[i], revenue[i], savings[i]));
+            totalUnits += units[i];
+            totalSavings = Money.add(totalSavings, savings[i]);
+        }
+        products.sort(Comparator.comparingLong(SalesReport.ProductSales::getRevenue).reversed()
+                .thenComparing(SalesReport.ProductSales::getProductCode));
+
+        List<SalesReport.TerminalSales> terminalSales = new ArrayList<>(terminals.size());
+        terminals.forEach((terminalId, sums) ->
+                terminalSales.add(new SalesReport.TerminalSales(terminalId, sums[0], sums[1], sums[2])));
+        terminalSales.sort(Comparator.comparing(SalesReport.TerminalSales::getTerminalId));
+
+        return new SalesReport(sessions, totalUnits, totalRevenue, totalSavings,
+                Money.subtract(lineRevenue, totalRevenue), products, terminalSales);
+    }
+}
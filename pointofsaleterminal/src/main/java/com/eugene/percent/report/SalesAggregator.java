@@ -0,0 +1,153 @@
+package com.eugene.percent.report;
+
+import com.eugene.percent.journal.TransactionJournal;
+import com.eugene.percent.model.Sale;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import lombok.NonNull;
+
+/**
+ * End-of-day aggregation of completed {@link Sale}s into a {@link SalesReport}.
+ *
+ * Live: every recording thread adds to its own {@link SalesAggregate}, so terminals never contend on shared
+ * counters; {@link #report()} merges the partials once the terminals have stopped.
+ *
+ * Batch: {@link #aggregate(List)} and {@link #aggregate(Path)} split the sales into ranges that are aggregated
+ * on the {@link ForkJoinPool#commonPool()} and merged pairwise. A journal is replayed ahead of the aggregation
+ * by at most twice the pool's parallelism in chunks, which are merged as they complete, so replaying a journal
+ * holds a bounded number of its sales in memory however large it is.
+ */
+public class SalesAggregator {
+    static final int THRESHOLD = 4096;              //sales aggregated by one fork-join task
+    static final int JOURNAL_CHUNK_SIZE = 1 << 16;  //sales of a journal submitted as one task
+
+    private final Queue<SalesAggregate> partials = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<SalesAggregate> partial = ThreadLocal.withInitial(() -> {
+        SalesAggregate aggregate = new SalesAggregate();
+        partials.add(aggregate);
+        return aggregate;
+    });
+
+    /**
+     * Adds a completed {@link Sale} to the calling thread's partial. Any thread.
+     */
+    public void record(@NonNull Sale sale) {
+        partial.get().add(sale);
+    }
+
+    /**
+     * Merges the partials of all recording threads.
+     * Call once the recording threads have stopped, e.g. after {@link com.eugene.percent.simulator.LaneSimulator#awaitTermination()}.
+     *
+     * @return {@link SalesReport} of the recorded sales.
+     */
+    public SalesReport report() {
+        SalesAggregate result = new SalesAggregate();
+        for (SalesAggregate aggregate : partials) {
+            result.merge(aggregate);
+        }
+
+        return result.toReport();
+    }
+
+    /**
+     * Aggregates sales in parallel.
+     *
+     * @return {@link SalesReport} of the sales.
+     */
+    public static SalesReport aggregate(@NonNull List<Sale> sales) {
+        return ForkJoinPool.commonPool().invoke(new AggregateTask(sales, 0, sales.size())).toReport();
+    }
+
+    /**
+     * Aggregates a {@link TransactionJournal} in parallel with replaying it.
+     *
+     * @param journal journal file
+     * @return {@link SalesReport} of the journal's sales.
+     * @throws IOException if the journal cannot be read
+     */
+    public static SalesReport aggregate(@NonNull Path journal) throws IOException {
+        return aggregate(journal, JOURNAL_CHUNK_SIZE, 2 * ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * @param chunkSize sales submitted as one task
+     * @param maxChunksInFlight chunks submitted and not merged yet
+     */
+    static SalesReport aggregate(Path journal, int chunkSize, int maxChunksInFlight) throws IOException {
+        assert chunkSize > 0 && maxChunksInFlight > 0;
+
+        Deque<ForkJoinTask<SalesAggregate>> tasks = new ArrayDeque<>(maxChunksInFlight);
+        SalesAggregate result = new SalesAggregate();
+        List<Sale> chunk = new ArrayList<>(chunkSize);
+
+        TransactionJournal.replay(journal, sale -> {
+            chunk.add(sale);
+            if (chunk.size() == chunkSize) {
+                if (tasks.size() == maxChunksInFlight) {
+                    result.merge(tasks.removeFirst().join()); //the oldest chunk is the likeliest to be done
+                }
+                tasks.addLast(submit(new ArrayList<>(chunk)));
+                chunk.clear();
+            }
+        });
+        tasks.addLast(submit(chunk));
+
+        for (ForkJoinTask<SalesAggregate> task : tasks) {
+            result.merge(task.join());
+        }
+
+        return result.toReport();
+    }
+
+    private static ForkJoinTask<SalesAggregate> submit(List<Sale> sales) {
+        return ForkJoinPool.commonPool().submit(new AggregateTask(sales, 0, sales.size()));
+    }
+
+    /**
+     * Aggregates sales [from, to), splitting in halves down to {@value #THRESHOLD} sales.
+     */
+    private static final class AggregateTask extends RecursiveTask<SalesAggregate> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Sale> sales;
+        private final int from;
+        private final int to;
+
+        AggregateTask(List<Sale> sales, int from, int to) {
+            this.sales = sales;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected SalesAggregate compute() {
+            if (to - from <= THRESHOLD) {
+                SalesAggregate aggregate = new SalesAggregate();
+                for (int i = from; i < to; ++i) {
+                    aggregate.add(sales.get(i));
+                }
+                return aggregate;
+            }
+
+            int middle = (from + to) >>> 1;
+            AggregateTask right = new AggregateTask(sales, middle, to);
+            right.fork();
+            SalesAggregate left = new AggregateTask(sales, from, middle).compute();
+            left.merge(right.join());
+
+            return left;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.eugene.percent.report;
+
+import com.eugene.percent.model.Money;
+
+import java.util.Collections;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.Value;
+
+/**
+ * End-of-day sales figures, see {@link SalesAggregator}.
+ *
+ * Amounts are in minor units, see {@link Money}. Product revenue is what the lines were charged,
+ * before cross-product promotions, which are reported separately.
+ */
+@Getter
+public class SalesReport {
+    private static final int TOP_PRODUCTS = 10;
+
+    private final long sessions;
+    private final long units;
+    private final long revenue;            //sum of sale totals
+    private final long volumeSavings;      //units at the unit price less what the lines were charged
+    private final long promotionDiscounts; //lines less sale totals
+    private final List<ProductSales> products;   //by revenue, highest first
+    private final List<TerminalSales> terminals; //by terminal id
+
+    /**
+     * Sales of one product.
+     */
+    @Value
+    public static class ProductSales {
+        String productCode;
+        long units;
+        long revenue;
+        long volumeSavings;
+    }
+
+    /**
+     * Sales of one terminal.
+     */
+    @Value
+    public static class TerminalSales {
+        String terminalId;
+        long sessions;
+        long units;
+        long revenue;
+    }
+
+    SalesReport(long sessions, long units, long revenue, long volumeSavings, long promotionDiscounts,
+                List<ProductSales> products, List<TerminalSales> terminals) {
+        this.sessions = sessions;
+        this.units = units;
+        this.revenue = revenue;
+        this.volumeSavings = volumeSavings;
+        this.promotionDiscounts = promotionDiscounts;
+        this.products = Collections.unmodifiableList(products);
+        this.terminals = Collections.unmodifiableList(terminals);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder(String.format(
+                "Sessions: %d, units: %d, revenue: %s, volume savings: %s, promotion discounts: %s",
+                sessions, units, Money.toString(revenue), Money.toString(volumeSavings),
+                Money.toString(promotionDiscounts)));
+
+        for (TerminalSales terminal : terminals) {
+            result.append(String.format("%nTerminal %s - sessions: %d, units: %d, revenue: %s",
+                    terminal.terminalId, terminal.sessions, terminal.units, Money.toString(terminal.revenue)));
+        }
+        for (ProductSales product : products.subList(0, Math.min(TOP_PRODUCTS, products.size()))) {
+            result.append(String.format("%nProduct %s - units: %d, revenue: %s, volume savings: %s",
+                    product.productCode, product.units, Money.toString(product.revenue),
+                    Money.toString(product.volumeSavings)));
+        }
+
+        return result.toString();
+    }
+}
@@ -0,0 +1,190 @@
+package com.eugene.percent.server;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Pipelining {@link LaneProtocol} client of a {@link LaneServer}, one connection carrying any number of sessions.
+ *
+ * Requests are queued in a send buffer and written when it fills up or a response is received,
+ * so a batch of requests costs one write; {@link #receive()} returns their responses in order.
+ * Up to maxPending requests can be in flight. Their responses fit the server's send buffer when
+ * maxPending * {@value LaneProtocol#RESPONSE_SIZE} is at most {@link LaneServerConfig#getBufferSize()},
+ * so the server keeps reading while this client writes.
+ *
+ * Not thread-safe - a client is used by one thread.
+ */
+public class LaneClient implements Closeable {
+    public static final int DEFAULT_MAX_PENDING = (1 << 16) / LaneProtocol.RESPONSE_SIZE;
+
+    private final SocketChannel channel;
+    private final ByteBuffer out; //queued requests
+    private final ByteBuffer in; //received responses, read from its position
+    private final long[] pendingRequests; //ring of opcode and session of requests in flight
+    private int head;
+    @Getter private int pending;
+
+    /**
+     * @param address {@link LaneServer} address
+     * @throws IOException if the server cannot be connected to
+     */
+    public LaneClient(@NonNull InetSocketAddress address) throws IOException {
+        this(address, DEFAULT_MAX_PENDING);
+    }
+
+    /**
+     * @param address {@link LaneServer} address
+     * @param maxPending requests that can be in flight at once
+     * @throws IOException if the server cannot be connected to
+     */
+    public LaneClient(@NonNull InetSocketAddress address, int maxPending) throws IOException {
+        assert maxPending > 0;
+
+        this.channel = SocketChannel.open(address);
+        this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        this.out = ByteBuffer.allocateDirect(1 << 16);
+        this.in = ByteBuffer.allocateDirect(Math.max(1 << 12, maxPending * LaneProtocol.RESPONSE_SIZE));
+        this.in.limit(0);
+        this.pendingRequests = new long[maxPending];
+    }
+
+    /**
+     * Queues a {@link LaneProtocol#OPEN} request.
+     */
+    public void open(int sessionId) throws IOException {
+        request(LaneProtocol.OPEN, sessionId, LaneProtocol.HEADER_SIZE);
+    }
+
+    /**
+     * Queues a {@link LaneProtocol#SCAN} request.
+     *
+     * @param barcode US-ASCII barcode digits
+     */
+    public void scan(int sessionId, @NonNull byte[] barcode) throws IOException {
+        checkBarcode(barcode);
+
+        request(LaneProtocol.SCAN, sessionId, LaneProtocol.HEADER_SIZE + 1 + barcode.length);
+        out.put((byte) barcode.length).put(barcode);
+    }
+
+    /**
+     * Queues a {@link LaneProtocol#SCAN_QUANTITY} request.
+     *
+     * @param barcode US-ASCII barcode digits
+     * @param quantity number of units
+     */
+    public void scan(int sessionId, @NonNull byte[] barcode, int quantity) throws IOException {
+        checkBarcode(barcode);
+
+        request(LaneProtocol.SCAN_QUANTITY, sessionId, LaneProtocol.HEADER_SIZE + 1 + barcode.length + 4);
+        out.put((byte) barcode.length).put(barcode).putInt(quantity);
+    }
+
+    /**
+     * Queues a {@link LaneProtocol#TOTAL} request.
+     */
+    public void total(int sessionId) throws IOException {
+        request(LaneProtocol.TOTAL, sessionId, LaneProtocol.HEADER_SIZE);
+    }
+
+    /**
+     * Queues a {@link LaneProtocol#CLEAR} request.
+     */
+    public void clear(int sessionId) throws IOException {
+        request(LaneProtocol.CLEAR, sessionId, LaneProtocol.HEADER_SIZE);
+    }
+
+    /**
+     * Queues a {@link LaneProtocol#CLOSE} request.
+     */
+    public void close(int sessionId) throws IOException {
+        request(LaneProtocol.CLOSE, sessionId, LaneProtocol.HEADER_SIZE);
+    }
+
+    /**
+     * Writes the queued requests.
+     *
+     * @throws IOException if the connection fails
+     */
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Flushes the queued requests and waits for the response to the oldest request in flight.
+     *
+     * @return value of the response, see {@link LaneProtocol}.
+     * @throws IllegalStateException if no request is in flight
+     * @throws IOException if the connection fails or the response does not match the request
+     */
+    public long receive() throws IOException {
+        if (pending == 0) {
+            throw new IllegalStateException("No request in flight");
+        }
+        if (out.position() > 0) {
+            flush();
+        }
+
+        while (in.remaining() < LaneProtocol.RESPONSE_SIZE) {
+            in.compact();
+            int read = channel.read(in);
+            in.flip();
+            if (read < 0) {
+                throw new EOFException("Connection closed by the server");
+            }
+        }
+
+        long request = pendingRequests[head];
+        head = (head + 1) % pendingRequests.length;
+        --pending;
+
+        byte opcode = in.get();
+        int sessionId = in.getInt();
+        long value = in.getLong();
+        if (opcode != (byte) (request >>> 32) || sessionId != (int) request) {
+            throw new ProtocolException("Response " + opcode + " of session " + sessionId + " to request "
+                    + (byte) (request >>> 32) + " of session " + (int) request);
+        }
+
+        return value;
+    }
+
+    /**
+     * Closes the connection; the server discards its open sessions.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void request(byte opcode, int sessionId, int size) throws IOException {
+        if (pending == pendingRequests.length) {
+            throw new IllegalStateException(pending + " requests in flight already");
+        }
+        if (out.remaining() < size) {
+            flush();
+        }
+
+        pendingRequests[(head + pending++) % pendingRequests.length] = (long) opcode << 32 | sessionId & 0xFFFFFFFFL;
+        out.put(opcode).putInt(sessionId);
+    }
+
+    private static void checkBarcode(byte[] barcode) {
+        if (barcode.length > LaneProtocol.MAX_BARCODE_LENGTH) {
+            throw new IllegalArgumentException("Barcode longer than " + LaneProtocol.MAX_BARCODE_LENGTH + " bytes");
+        }
+    }
+}
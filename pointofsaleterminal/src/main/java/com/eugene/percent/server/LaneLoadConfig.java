@@ -0,0 +1,42 @@
+package com.eugene.percent.server;
+
+import com.eugene.percent.simulator.SimulationConfig;
+import com.eugene.percent.workload.BasketSize;
+import com.eugene.percent.workload.Workload;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Configuration of a {@link LaneLoadDriver} run.
+ */
+@Value
+@Builder
+public class LaneLoadConfig {
+    /**
+     * Number of connections, each driven by its own thread.
+     */
+    @Builder.Default int connections = 4;
+
+    /**
+     * Sessions of each connection, served round-robin a request at a time.
+     */
+    @Builder.Default int sessionsPerConnection = 256;
+
+    /**
+     * Requests a connection sends before reading their responses.
+     */
+    @Builder.Default int pipelineDepth = 64;
+
+    /**
+     * Baskets scanned by the sessions, a {@link com.eugene.percent.workload.BasketStream} per session.
+     * Product codes are sent as barcodes, so they should be GTINs.
+     */
+    @NonNull @Builder.Default Workload workload = Workload.ofRegistry(1.0, BasketSize.geometric(SimulationConfig.DEFAULT_MEAN_BASKET_SIZE));
+
+    /**
+     * Seed of the sessions' basket streams.
+     */
+    @Builder.Default long seed = System.nanoTime();
+}
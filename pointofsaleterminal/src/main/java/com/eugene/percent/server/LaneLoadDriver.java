@@ -0,0 +1,179 @@
+package com.eugene.percent.server;
+
+import com.eugene.percent.metrics.LatencyHistogram;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.workload.BasketStream;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import lombok.NonNull;
+
+/**
+ * Load generator for a {@link LaneServer} - many sessions scanning baskets over a few pipelined connections,
+ * so a server can be benchmarked against a loopback client on one machine.
+ *
+ * Each connection is driven by a thread with a {@link LaneClient}. It sends batches of
+ * {@link LaneLoadConfig#getPipelineDepth()} requests, a request per session in turn, and then reads their responses.
+ * A session scans its basket an item at a time, then reads its total and clears its cart for the next basket.
+ */
+public final class LaneLoadDriver {
+    private LaneLoadDriver() {
+    }
+
+    /**
+     * Drives a server for a fixed time, then closes the sessions.
+     *
+     * @param address {@link LaneServer} address
+     * @param config {@link LaneLoadConfig}
+     * @param durationMillis time requests keep being sent
+     * @return {@link LaneLoadReport}
+     * @throws IOException if a connection fails
+     * @throws InterruptedException if interrupted while running
+     */
+    public static LaneLoadReport run(@NonNull InetSocketAddress address, @NonNull LaneLoadConfig config,
+                                     long durationMillis) throws IOException, InterruptedException {
+        assert config.getConnections() > 0;
+        assert config.getSessionsPerConnection() > 0;
+        assert config.getPipelineDepth() > 0;
+
+        SplittableRandom seeds = new SplittableRandom(config.getSeed());
+        Connection[] connections = new Connection[config.getConnections()];
+        for (int i = 0; i < connections.length; ++i) {
+            connections[i] = new Connection(address, config, i, seeds.split());
+        }
+
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + durationMillis * 1_000_000;
+        Thread[] threads = new Thread[connections.length];
+        for (int i = 0; i < connections.length; ++i) {
+            Connection connection = connections[i];
+            threads[i] = new Thread(() -> connection.run(deadlineNanos), "Lane load driver " + (i + 1));
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        long requests = 0;
+        long baskets = 0;
+        long scanErrors = 0;
+        LatencyHistogram latency = new LatencyHistogram();
+        for (Connection connection : connections) {
+            if (connection.failure != null) {
+                throw connection.failure;
+            }
+
+            requests += connection.requests;
+            baskets += connection.baskets;
+            scanErrors += connection.scanErrors;
+            latency.add(connection.latency);
+        }
+
+        return new LaneLoadReport(connections.length, connections.length * config.getSessionsPerConnection(),
+                elapsedNanos, requests, baskets, scanErrors, latency);
+    }
+
+    /**
+     * A connection, its sessions and their statistics. Only touched by its thread until it is joined.
+     */
+    private static final class Connection {
+        private final InetSocketAddress address;
+        private final int pipelineDepth;
+        private final BasketStream[] basketStreams;
+        private final int[] itemsLeft; //of the session's basket; -1 once its total was requested
+        private final byte[] opcodes; //of the batch in flight
+        private final Map<Product, byte[]> barcodes = new HashMap<>();
+        private int nextSession;
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private long requests;
+        private long baskets;
+        private long scanErrors;
+        private IOException failure;
+
+        private Connection(InetSocketAddress address, LaneLoadConfig config, int connection, SplittableRandom seeds) {
+            this.address = address;
+            this.pipelineDepth = config.getPipelineDepth();
+            this.basketStreams = new BasketStream[config.getSessionsPerConnection()];
+            for (int i = 0; i < basketStreams.length; ++i) {
+                basketStreams[i] = config.getWorkload().open(connection * basketStreams.length + i, seeds.nextLong());
+            }
+            this.itemsLeft = new int[basketStreams.length];
+            this.opcodes = new byte[pipelineDepth];
+        }
+
+        private void run(long deadlineNanos) {
+            try (LaneClient client = new LaneClient(address, Math.max(pipelineDepth, basketStreams.length))) {
+                for (int i = 0; i < basketStreams.length; ++i) {
+                    client.open(i);
+                    itemsLeft[i] = basketStreams[i].nextBasket();
+                }
+                expectZero(client, basketStreams.length);
+
+                while (System.nanoTime() < deadlineNanos) {
+                    long startNanos = System.nanoTime();
+                    for (int i = 0; i < pipelineDepth; ++i) {
+                        opcodes[i] = sendNext(client);
+                    }
+                    for (int i = 0; i < pipelineDepth; ++i) {
+                        long value = client.receive();
+                        if (opcodes[i] == LaneProtocol.SCAN && value <= 0) {
+                            ++scanErrors;
+                        } else if (opcodes[i] == LaneProtocol.CLEAR) {
+                            ++baskets;
+                        }
+                    }
+                    latency.record(System.nanoTime() - startNanos);
+                    requests += pipelineDepth;
+                }
+
+                for (int i = 0; i < basketStreams.length; ++i) {
+                    client.close(i);
+                }
+                expectZero(client, basketStreams.length);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+
+        /**
+         * Sends the next request of the next session.
+         *
+         * @return opcode of the request.
+         */
+        private byte sendNext(LaneClient client) throws IOException {
+            int session = nextSession;
+            nextSession = (nextSession + 1) % basketStreams.length;
+
+            if (itemsLeft[session] > 0) {
+                --itemsLeft[session];
+                client.scan(session, barcodes.computeIfAbsent(basketStreams[session].nextProduct(),
+                        product -> product.getProductCode().getBytes(StandardCharsets.US_ASCII)));
+                return LaneProtocol.SCAN;
+            } else if (itemsLeft[session] == 0) {
+                itemsLeft[session] = -1;
+                client.total(session);
+                return LaneProtocol.TOTAL;
+            } else {
+                itemsLeft[session] = basketStreams[session].nextBasket();
+                client.clear(session);
+                return LaneProtocol.CLEAR;
+            }
+        }
+
+        private static void expectZero(LaneClient client, int responses) throws IOException {
+            for (int i = 0; i < responses; ++i) {
+                long value = client.receive();
+                if (value != 0) {
+                    throw new IOException("Session request failed with " + value);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.eugene.percent.server;
+
+import com.eugene.percent.metrics.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Aggregated outcome of a {@link LaneLoadDriver} run.
+ *
+ * Latency is the round trip of a pipelined batch of requests, from its first request queued to its last response.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public class LaneLoadReport {
+    private final int connections;
+    private final int sessions;
+    private final long elapsedNanos;
+    private final long requests;
+    private final long baskets;
+    private final long scanErrors;
+    private final LatencyHistogram latency;
+
+    /**
+     * @return requests served per second.
+     */
+    public double getRequestRate() {
+        return perSecond(requests);
+    }
+
+    /**
+     * @return baskets completed per second.
+     */
+    public double getBasketRate() {
+        return perSecond(baskets);
+    }
+
+    private double perSecond(long n) {
+        return elapsedNanos == 0 ? 0 : n * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "Connections: %d, sessions: %d, elapsed: %.3fs%n" +
+                "Requests: %d (%.1f/s), baskets: %d (%.1f/s), scan errors: %d%n" +
+                "Batch latency us - mean: %.1f, p50: %.1f, p99: %.1f, p99.9: %.1f, max: %.1f",
+                connections, sessions, elapsedNanos / 1e9,
+                requests, getRequestRate(), baskets, getBasketRate(), scanErrors,
+                latency.getMean() / 1e3, micros(50), micros(99), micros(99.9), latency.getMax() / 1e3);
+    }
+
+    private double micros(double percentile) {
+        return latency.getValueAtPercentile(percentile) / 1e3;
+    }
+}
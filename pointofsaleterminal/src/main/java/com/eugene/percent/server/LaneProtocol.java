@@ -0,0 +1,114 @@
+package com.eugene.percent.server;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * Binary protocol between thin lane clients and a {@link LaneServer}.
+ *
+ * A connection carries any number of pos sessions, named by ids the client picks. Requests are pipelined -
+ * a client may send many before reading any response - and every request gets exactly one response, in order.
+ * Integers are big-endian.
+ *
+ * Request: opcode (1 byte), session id (4 bytes), then by opcode:
+ * - {@link #OPEN}, {@link #TOTAL}, {@link #CLEAR}, {@link #CLOSE}: nothing
+ * - {@link #SCAN}: barcode length (1 byte), US-ASCII barcode digits
+ * - {@link #SCAN_QUANTITY}: barcode length (1 byte), US-ASCII barcode digits, quantity (4 bytes)
+ *
+ * Response ({@value #RESPONSE_SIZE} bytes): opcode and session id of the request, value (8 bytes) -
+ * the result of {@link com.eugene.percent.pointofsaleterminal.PointOfSaleTerminal#tryScan(ByteBuffer, int)}
+ * for scans, the total in minor units for {@link #TOTAL}, 0 otherwise, or a negative status code of this class.
+ *
+ * An unknown opcode is a protocol error: the requests before it are answered, then the connection is closed.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class LaneProtocol {
+    /**
+     * Starts a session with an empty cart.
+     */
+    public static final byte OPEN = 1;
+
+    /**
+     * Scans one unit of a barcode.
+     */
+    public static final byte SCAN = 2;
+
+    /**
+     * Scans a quantity of a barcode.
+     */
+    public static final byte SCAN_QUANTITY = 3;
+
+    /**
+     * Reads the total of the session.
+     */
+    public static final byte TOTAL = 4;
+
+    /**
+     * Removes all scanned products from the session's cart.
+     */
+    public static final byte CLEAR = 5;
+
+    /**
+     * Ends a session.
+     */
+    public static final byte CLOSE = 6;
+
+    public static final int HEADER_SIZE = 5;
+    public static final int RESPONSE_SIZE = HEADER_SIZE + 8;
+    public static final int MAX_BARCODE_LENGTH = 255;
+    public static final int MAX_REQUEST_SIZE = HEADER_SIZE + 1 + MAX_BARCODE_LENGTH + 4;
+
+    /**
+     * Session id is not open on the connection.
+     */
+    public static final long UNKNOWN_SESSION = -100;
+
+    /**
+     * {@link #OPEN} of a session id that is already open.
+     */
+    public static final long SESSION_EXISTS = -101;
+
+    /**
+     * {@link #OPEN} beyond the sessions a connection may hold.
+     */
+    public static final long TOO_MANY_SESSIONS = -102;
+
+    /**
+     * Request failed on the server; its session is closed, as its state is unknown.
+     */
+    public static final long REQUEST_FAILED = -103;
+
+    /**
+     * @param buffer buffer holding a request from its position
+     * @return size of the request, or -1 if the buffer does not hold all of it yet.
+     * @throws ProtocolException if the opcode is unknown
+     */
+    static int requestSize(ByteBuffer buffer) throws ProtocolException {
+        int available = buffer.remaining();
+        if (available < HEADER_SIZE) {
+            return -1;
+        }
+
+        byte opcode = buffer.get(buffer.position());
+        switch (opcode) {
+            case OPEN:
+            case TOTAL:
+            case CLEAR:
+            case CLOSE:
+                return HEADER_SIZE;
+            case SCAN:
+            case SCAN_QUANTITY:
+                if (available < HEADER_SIZE + 1) {
+                    return -1;
+                }
+                int size = HEADER_SIZE + 1 + (buffer.get(buffer.position() + HEADER_SIZE) & 0xFF)
+                        + (opcode == SCAN_QUANTITY ? 4 : 0);
+                return available < size ? -1 : size;
+            default:
+                throw new ProtocolException("Unknown opcode " + opcode);
+        }
+    }
+}
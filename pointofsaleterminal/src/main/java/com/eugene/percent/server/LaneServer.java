@@ -0,0 +1,458 @@
+package com.eugene.percent.server;
+
+import com.eugene.percent.pointofsaleterminal.PointOfSaleTerminal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Serves {@link PointOfSaleTerminal} sessions to thin lane clients over TCP, see {@link LaneProtocol}.
+ *
+ * Connections are spread round-robin over a few event loop threads, each multiplexing its connections with
+ * a {@link Selector} - a session costs a terminal, not a thread, so a loop serves thousands of them.
+ * A connection, and the terminals of its sessions, are only ever touched by their loop.
+ *
+ * Every connection keeps a direct receive and send buffer for its lifetime. All complete requests of a read
+ * are served into the send buffer and answered with a single write, so a pipelining client gets a batch of
+ * responses per system call, and barcodes are scanned straight from the receive buffer.
+ * A client that stops reading its responses fills the send buffer, and its connection is not read
+ * until the buffer drains (backpressure).
+ *
+ * Terminals of closed sessions are cleared and pooled by their loop for the next sessions.
+ *
+ * A request that fails on the server is answered with {@link LaneProtocol#REQUEST_FAILED} and its session is
+ * discarded; any other failure of a connection closes only that connection, the loop goes on serving the rest.
+ *
+ * Scans are served on the loop thread. A scan of a product priced by a {@link com.eugene.percent.factory.PriceSource}
+ * that misses its cache waits for the fetch on the loop, up to
+ * {@link com.eugene.percent.factory.PriceSourceConfig#getFetchTimeoutMillis()}, and stalls every connection
+ * of the loop meanwhile - use a short timeout, or more event loops, for such products.
+ */
+public class LaneServer implements Closeable {
+    private final LaneServerConfig config;
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop[] eventLoops;
+    private int nextEventLoop; //of the accepting loop
+
+    @Getter private final InetSocketAddress address;
+    private boolean started;
+    private boolean closed;
+
+    /**
+     * Binds the server socket. Connections are accepted once the server is started.
+     *
+     * @param config {@link LaneServerConfig}
+     * @throws IOException if the socket cannot be bound
+     */
+    public LaneServer(@NonNull LaneServerConfig config) throws IOException {
+        assert config.getEventLoops() > 0;
+        assert config.getBufferSize() >= LaneProtocol.MAX_REQUEST_SIZE;
+        assert config.getMaxSessionsPerConnection() > 0;
+
+        this.config = config;
+        this.eventLoops = new EventLoop[config.getEventLoops()];
+        this.serverChannel = ServerSocketChannel.open();
+        try {
+            for (int i = 0; i < eventLoops.length; ++i) {
+                eventLoops[i] = new EventLoop("Lane server event loop " + (i + 1));
+            }
+
+            serverChannel.bind(new InetSocketAddress(config.getHost(), config.getPort()));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(eventLoops[0].selector, SelectionKey.OP_ACCEPT);
+            this.address = (InetSocketAddress) serverChannel.getLocalAddress();
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts the event loops.
+     */
+    public synchronized void start() {
+        if (started || closed) {
+            throw new IllegalStateException("Server is already " + (closed ? "closed" : "started"));
+        }
+
+        started = true;
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.thread.start();
+        }
+    }
+
+    /**
+     * @return number of open connections.
+     */
+    public int getConnections() {
+        int connections = 0;
+        for (EventLoop eventLoop : eventLoops) {
+            connections += eventLoop.connections;
+        }
+
+        return connections;
+    }
+
+    /**
+     * @return number of open sessions.
+     */
+    public int getSessions() {
+        int sessions = 0;
+        for (EventLoop eventLoop : eventLoops) {
+            sessions += eventLoop.sessions;
+        }
+
+        return sessions;
+    }
+
+    /**
+     * Stops the event loops and closes all connections; sessions still open are discarded.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        for (EventLoop eventLoop : eventLoops) {
+            if (eventLoop != null) {
+                eventLoop.running = false;
+                eventLoop.selector.wakeup();
+            }
+        }
+
+        boolean interrupted = false;
+        for (EventLoop eventLoop : eventLoops) {
+            if (eventLoop == null) {
+                continue;
+            }
+            if (!started) {
+                eventLoop.shutdown();
+                continue;
+            }
+            while (true) {
+                try {
+                    eventLoop.thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        closeQuietly(serverChannel);
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            //nothing left to do with it
+        }
+    }
+
+    /**
+     * Selector thread, the connections it multiplexes and a pool of idle terminals.
+     * Counters are only written by the loop thread.
+     */
+    private final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<SocketChannel> accepted = new ConcurrentLinkedQueue<>(); //handed over by the accepting loop
+        private final ArrayDeque<PointOfSaleTerminal> idleTerminals = new ArrayDeque<>();
+        private int terminals;
+
+        private volatile boolean running = true;
+        private volatile int connections;
+        private volatile int sessions;
+
+        private EventLoop(String name) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    registerAccepted();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            serve((Connection) key.attachment(), key);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(thread.getName() + " failed", e);
+            } finally {
+                shutdown();
+            }
+        }
+
+        private void accept() throws IOException {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                EventLoop eventLoop = eventLoops[nextEventLoop];
+                nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
+
+                eventLoop.accepted.add(channel);
+                if (eventLoop != this) {
+                    eventLoop.selector.wakeup();
+                }
+            }
+            registerAccepted();
+        }
+
+        private void registerAccepted() {
+            SocketChannel channel;
+            while ((channel = accepted.poll()) != null) {
+                try {
+                    channel.configureBlocking(false);
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+                    ++connections;
+                } catch (IOException e) {
+                    closeQuietly(channel);
+                }
+            }
+        }
+
+        private void serve(Connection connection, SelectionKey key) {
+            try {
+                if (key.isWritable() && !connection.flush(key)) {
+                    return; //client is still not reading
+                }
+                if (key.isReadable() && connection.channel.read(connection.in) < 0) {
+                    close(connection, key);
+                    return;
+                }
+
+                boolean more;
+                do {
+                    more = connection.serveRequests();
+                } while (connection.flush(key) && more);
+            } catch (ProtocolException e) {
+                //answer the requests before the malformed one, as far as the socket takes them
+                try {
+                    connection.flush(key);
+                } catch (IOException flushFailure) {
+                    //closing anyway
+                }
+                close(connection, key);
+            } catch (IOException | RuntimeException e) {
+                close(connection, key);
+            }
+        }
+
+        private void close(Connection connection, SelectionKey key) {
+            key.cancel();
+            closeQuietly(connection.channel);
+            connection.closeSessions();
+            --connections;
+        }
+
+        private PointOfSaleTerminal openTerminal() {
+            PointOfSaleTerminal terminal = idleTerminals.poll();
+            if (terminal == null) {
+                terminal = new PointOfSaleTerminal(thread.getName() + " terminal " + ++terminals);
+                terminal.setPromotionEngine(config.getPromotionEngine());
+            }
+            ++sessions;
+
+            return terminal;
+        }
+
+        private void closeTerminal(PointOfSaleTerminal terminal) {
+            terminal.clear();
+            idleTerminals.push(terminal);
+            --sessions;
+        }
+
+        private void shutdown() {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) {
+                    close((Connection) key.attachment(), key);
+                }
+            }
+            SocketChannel channel;
+            while ((channel = accepted.poll()) != null) {
+                closeQuietly(channel);
+            }
+            for (PointOfSaleTerminal terminal : idleTerminals) {
+                terminal.close();
+            }
+            idleTerminals.clear();
+            closeQuietly(selector);
+        }
+
+        /**
+         * A client connection and its sessions.
+         */
+        private final class Connection {
+            private final SocketChannel channel;
+            private final ByteBuffer in; //filled from the channel, then read
+            private final ByteBuffer out; //filled with responses, then written
+            private final Map<Integer, PointOfSaleTerminal> sessions = new HashMap<>();
+
+            private Connection(SocketChannel channel) {
+                this.channel = channel;
+                this.in = ByteBuffer.allocateDirect(config.getBufferSize());
+                this.out = ByteBuffer.allocateDirect(config.getBufferSize());
+            }
+
+            /**
+             * Serves the complete requests received, while their responses fit the send buffer.
+             *
+             * @return true if requests are left for lack of room in the send buffer.
+             */
+            private boolean serveRequests() throws IOException {
+                in.flip();
+                try {
+                    int size;
+                    while ((size = LaneProtocol.requestSize(in)) > 0) {
+                        if (out.remaining() < LaneProtocol.RESPONSE_SIZE) {
+                            return true;
+                        }
+
+                        int position = in.position();
+                        serveRequest(position);
+                        in.position(position + size);
+                    }
+
+                    return false;
+                } finally {
+                    in.compact();
+                }
+            }
+
+            private void serveRequest(int position) {
+                byte opcode = in.get(position);
+                int sessionId = in.getInt(position + 1);
+
+                long value;
+                if (opcode == LaneProtocol.OPEN) {
+                    value = open(sessionId);
+                } else {
+                    PointOfSaleTerminal terminal = sessions.get(sessionId);
+                    value = terminal == null
+                            ? LaneProtocol.UNKNOWN_SESSION
+                            : tryServe(terminal, opcode, sessionId, position);
+                }
+
+                out.put(opcode).putInt(sessionId).putLong(value);
+            }
+
+            private long open(int sessionId) {
+                if (sessions.containsKey(sessionId)) {
+                    return LaneProtocol.SESSION_EXISTS;
+                }
+                if (sessions.size() >= config.getMaxSessionsPerConnection()) {
+                    return LaneProtocol.TOO_MANY_SESSIONS;
+                }
+
+                sessions.put(sessionId, openTerminal());
+                return 0;
+            }
+
+            private long tryServe(PointOfSaleTerminal terminal, byte opcode, int sessionId, int position) {
+                try {
+                    return serve(terminal, opcode, sessionId, position);
+                } catch (RuntimeException e) {
+                    //the session may be half-updated, so it is not served any further
+                    if (sessions.remove(sessionId) != null) {
+                        closeTerminal(terminal);
+                    }
+                    return LaneProtocol.REQUEST_FAILED;
+                }
+            }
+
+            private long serve(PointOfSaleTerminal terminal, byte opcode, int sessionId, int position) {
+                switch (opcode) {
+                    case LaneProtocol.SCAN:
+                    case LaneProtocol.SCAN_QUANTITY:
+                        int barcodeOffset = position + LaneProtocol.HEADER_SIZE + 1;
+                        int barcodeEnd = barcodeOffset + (in.get(barcodeOffset - 1) & 0xFF);
+                        int quantity = opcode == LaneProtocol.SCAN ? 1 : in.getInt(barcodeEnd);
+
+                        int limit = in.limit();
+                        in.limit(barcodeEnd).position(barcodeOffset);
+                        try {
+                            return terminal.tryScan(in, quantity);
+                        } finally {
+                            in.limit(limit);
+                        }
+                    case LaneProtocol.TOTAL:
+                        return terminal.calculateTotalInMinorUnits();
+                    case LaneProtocol.CLEAR:
+                        terminal.clear();
+                        return 0;
+                    case LaneProtocol.CLOSE:
+                        sessions.remove(sessionId);
+                        closeTerminal(terminal);
+                        return 0;
+                    default:
+                        throw new AssertionError(opcode);
+                }
+            }
+
+            /**
+             * Writes the responses served so far, and reads the connection only while none are left.
+             *
+             * @return true if all responses were written.
+             */
+            private boolean flush(SelectionKey key) throws IOException {
+                if (out.position() > 0) {
+                    out.flip();
+                    channel.write(out);
+                    out.compact();
+                }
+
+                boolean flushed = out.position() == 0;
+                key.interestOps(flushed ? SelectionKey.OP_READ : SelectionKey.OP_WRITE);
+
+                return flushed;
+            }
+
+            private void closeSessions() {
+                for (PointOfSaleTerminal terminal : sessions.values()) {
+                    closeTerminal(terminal);
+                }
+                sessions.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.eugene.percent.server;
+
+import com.eugene.percent.promotion.PromotionEngine;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Configuration of a {@link LaneServer}.
+ */
+@Value
+@Builder
+public class LaneServerConfig {
+    /**
+     * Address to listen on.
+     */
+    @NonNull @Builder.Default String host = "127.0.0.1";
+
+    /**
+     * Port to listen on, 0 for any free port.
+     */
+    @Builder.Default int port = 0;
+
+    /**
+     * Number of selector threads the connections are spread over.
+     */
+    @Builder.Default int eventLoops = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Size of each connection's receive and send buffers.
+     * A client with more than bufferSize / {@value LaneProtocol#RESPONSE_SIZE} requests in flight may be throttled.
+     */
+    @Builder.Default int bufferSize = 1 << 16;
+
+    /**
+     * Sessions a connection may hold open at once.
+     */
+    @Builder.Default int maxSessionsPerConnection = 1 << 14;
+
+    /**
+     * Promotions applied to every session.
+     */
+    @NonNull @Builder.Default PromotionEngine promotionEngine = PromotionEngine.NONE;
+}
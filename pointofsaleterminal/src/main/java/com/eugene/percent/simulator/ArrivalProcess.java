@@ -0,0 +1,43 @@
+package com.eugene.percent.simulator;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time between two customers arriving at a lane.
+ *
+ * Arrivals are open-loop: a customer arrives on schedule whether or not the lane is still busy,
+ * so a slow lane shows up as queueing latency instead of fewer arrivals.
+ */
+@FunctionalInterface
+public interface ArrivalProcess {
+    /**
+     * @param random random source of the lane
+     * @return nanoseconds until the next customer arrives.
+     */
+    long nextInterarrivalNanos(SplittableRandom random);
+
+    /**
+     * @param customersPerSecond mean arrival rate of a lane
+     * @return exponentially distributed interarrival times (Poisson arrivals).
+     */
+    static ArrivalProcess poisson(double customersPerSecond) {
+        assert customersPerSecond > 0;
+
+        double meanNanos = TimeUnit.SECONDS.toNanos(1) / customersPerSecond;
+
+        return random -> (long) (-Math.log(1 - random.nextDouble()) * meanNanos);
+    }
+
+    /**
+     * @param customersPerSecond arrival rate of a lane
+     * @return constant interarrival times.
+     */
+    static ArrivalProcess fixedRate(double customersPerSecond) {
+        assert customersPerSecond > 0;
+
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / customersPerSecond);
+
+        return random -> intervalNanos;
+    }
+}
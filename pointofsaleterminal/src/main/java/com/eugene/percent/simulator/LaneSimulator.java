@@ -0,0 +1,312 @@
+package com.eugene.percent.simulator;
+
+import com.eugene.percent.metrics.LatencyHistogram;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.Sale;
+import com.eugene.percent.pointofsaleterminal.PointOfSaleTerminal;
+import com.eugene.percent.pointofsaleterminal.ScanStatus;
+import com.eugene.percent.workload.BasketStream;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.NonNull;
+
+/**
+ * Runs many {@link PointOfSaleTerminal} lanes on a few event loop threads, to load-test the registry and carts
+ * at the concurrency of a store host rather than a single store.
+ *
+ * A lane is a state machine driven by timer events - customer arrival, next item scan, checkout -
+ * instead of a thread blocked in sleep, so tens of thousands of lanes cost only their carts.
+ * Every lane is pinned to one event loop, so its terminal is only ever touched by one thread.
+ *
+ * Customers arrive per the configured {@link ArrivalProcess} and queue at their lane; a lane holding
+ * {@link SimulationConfig#getMaxQueuedCustomers()} customers turns new ones away (backpressure).
+ * {@link #stop()} stops arrivals, lanes then serve the customers already queued before {@link #awaitTermination()} returns.
+ *
+ * A lane whose sale does not fit in the journal's queue holds it and offers it again on a later tick, serving
+ * no one meanwhile - the journal slows the lanes down rather than lose completed sales.
+ */
+public class LaneSimulator {
+    private static final long JOURNAL_RETRY_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final SimulationConfig config;
+    private final EventLoop[] eventLoops;
+    private final Lane[] lanes;
+    private final CountDownLatch drained;
+    private final AtomicLong journalErrors = new AtomicLong();
+
+    private long startNanos;
+
+    public LaneSimulator(@NonNull SimulationConfig config) {
+        assert config.getLanes() > 0;
+        assert config.getEventLoops() > 0;
+        assert config.getItemScanNanos() >= 0;
+        assert config.getMaxQueuedCustomers() > 0;
+
+        this.config = config;
+        this.eventLoops = new EventLoop[Math.min(config.getEventLoops(), config.getLanes())];
+        for (int i = 0; i < eventLoops.length; ++i) {
+            eventLoops[i] = new EventLoop("Lane event loop " + (i + 1));
+        }
+
+        SplittableRandom seeds = new SplittableRandom(config.getSeed());
+        this.lanes = new Lane[config.getLanes()];
+        for (int i = 0; i < lanes.length; ++i) {
+            lanes[i] = new Lane(i, "Lane " + (i + 1), eventLoops[i % eventLoops.length], seeds.split());
+        }
+
+        this.drained = new CountDownLatch(lanes.length);
+    }
+
+    /**
+     * Runs a simulation for a fixed time, then drains it.
+     *
+     * @param config {@link SimulationConfig}
+     * @param durationMillis time customers keep arriving
+     * @return {@link SimulationReport}
+     * @throws InterruptedException if interrupted while running
+     */
+    public static SimulationReport run(@NonNull SimulationConfig config, long durationMillis)
+            throws InterruptedException {
+        LaneSimulator simulator = new LaneSimulator(config);
+
+        simulator.start();
+        try {
+            Thread.sleep(durationMillis);
+        } finally {
+            simulator.stop();
+        }
+
+        return simulator.awaitTermination();
+    }
+
+    /**
+     * Opens all lanes.
+     */
+    public void start() {
+        startNanos = System.nanoTime();
+        for (Lane lane : lanes) {
+            lane.eventLoop.executor.execute(lane::open);
+        }
+    }
+
+    /**
+     * Stops customer arrivals. Customers already queued are still served.
+     */
+    public void stop() {
+        for (Lane lane : lanes) {
+            lane.eventLoop.executor.execute(lane::close);
+        }
+    }
+
+    /**
+     * Waits for every lane to serve its queued customers after {@link #stop()}, then shuts the event loops down.
+     *
+     * @return {@link SimulationReport}
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public SimulationReport awaitTermination() throws InterruptedException {
+        drained.await();
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.executor.shutdown();
+        }
+
+        long customersServed = 0;
+        long customersRejected = 0;
+        long unitsScanned = 0;
+        long scanErrors = 0;
+        long journalWaits = 0;
+        LatencyHistogram latency = new LatencyHistogram();
+        for (EventLoop eventLoop : eventLoops) {
+            //termination orders the loop's writes before our reads
+            eventLoop.executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+            customersServed += eventLoop.customersServed;
+            customersRejected += eventLoop.customersRejected;
+            unitsScanned += eventLoop.unitsScanned;
+            scanErrors += eventLoop.scanErrors;
+            journalWaits += eventLoop.journalWaits;
+            latency.add(eventLoop.latency);
+        }
+
+        for (Lane lane : lanes) {
+            lane.terminal.close();
+        }
+
+        return new SimulationReport(lanes.length, elapsedNanos, customersServed, customersRejected,
+                unitsScanned, scanErrors, journalErrors.get(), journalWaits, latency);
+    }
+
+    /**
+     * Single-threaded timer and task queue, and the statistics of the lanes pinned to it.
+     * Statistics are only written by the loop thread.
+     */
+    private static final class EventLoop {
+        private final ScheduledThreadPoolExecutor executor;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private long customersServed;
+        private long customersRejected;
+        private long unitsScanned;
+        private long scanErrors;
+        private long journalWaits;
+
+        private EventLoop(String name) {
+            this.executor = new ScheduledThreadPoolExecutor(1, task -> {
+                Thread thread = new Thread(task, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.executor.setRemoveOnCancelPolicy(true);
+        }
+    }
+
+    /**
+     * A terminal and its queue of customers. Only touched by its event loop.
+     */
+    private final class Lane {
+        private final EventLoop eventLoop;
+        private final PointOfSaleTerminal terminal;
+        private final SplittableRandom random;
+        private final long[] arrivalNanos; //ring of queued customers' arrival times
+        private int head;
+        private int queued;
+
+        private long nextArrivalNanos;
+        private ScheduledFuture<?> pendingArrival;
+        private boolean closed;
+
+        private final BasketStream basketStream;
+        private boolean serving;
+        private int itemsLeft; //of the basket being scanned
+
+        private Lane(int lane, String terminalId, EventLoop eventLoop, SplittableRandom random) {
+            this.eventLoop = eventLoop;
+            this.terminal = new PointOfSaleTerminal(terminalId);
+            this.terminal.setPromotionEngine(config.getPromotionEngine());
+            this.random = random;
+            this.basketStream = config.getWorkload().open(lane, random.nextLong());
+            this.arrivalNanos = new long[config.getMaxQueuedCustomers()];
+        }
+
+        private void open() {
+            nextArrivalNanos = startNanos;
+            scheduleArrival();
+        }
+
+        private void close() {
+            if (closed) {
+                return; //stopped twice
+            }
+            closed = true;
+            if (pendingArrival != null) {
+                pendingArrival.cancel(false);
+            }
+            if (!serving) {
+                drained.countDown();
+            }
+        }
+
+        private void scheduleArrival() {
+            //arrivals follow the schedule, not the time the previous one was handled
+            nextArrivalNanos += config.getArrivalProcess().nextInterarrivalNanos(random);
+            pendingArrival = eventLoop.executor.schedule(
+                    this::arrive, nextArrivalNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        private void arrive() {
+            if (closed) {
+                return;
+            }
+
+            if (queued == arrivalNanos.length) {
+                ++eventLoop.customersRejected;
+            } else {
+                arrivalNanos[(head + queued) % arrivalNanos.length] = nextArrivalNanos;
+                ++queued;
+                if (!serving) {
+                    serveNext();
+                }
+            }
+
+            scheduleArrival();
+        }
+
+        private void serveNext() {
+            if (queued == 0) {
+                serving = false;
+                if (closed) {
+                    drained.countDown();
+                }
+                return;
+            }
+
+            serving = true;
+            itemsLeft = basketStream.nextBasket();
+            scanItems();
+        }
+
+        private void scanItems() {
+            if (config.getItemScanNanos() == 0) {
+                for (; itemsLeft > 0; --itemsLeft) {
+                    scan(basketStream.nextProduct());
+                }
+            } else if (itemsLeft > 0) {
+                --itemsLeft;
+                scan(basketStream.nextProduct());
+                eventLoop.executor.schedule(this::scanItems, config.getItemScanNanos(), TimeUnit.NANOSECONDS);
+                return;
+            }
+
+            checkout();
+        }
+
+        private void scan(Product product) {
+            if (ScanStatus.isScanned(terminal.tryScan(product))) {
+                ++eventLoop.unitsScanned;
+            } else {
+                ++eventLoop.scanErrors;
+            }
+        }
+
+        private void checkout() {
+            complete(terminal.checkout());
+        }
+
+        private void complete(Sale sale) {
+            if (config.getJournal() != null) {
+                CompletableFuture<Void> durable = config.getJournal().tryAppend(sale);
+                if (durable == null) {
+                    //the journal is a queue behind: hold the sale and its customer, never block the loop
+                    ++eventLoop.journalWaits;
+                    eventLoop.executor.schedule(() -> complete(sale), JOURNAL_RETRY_NANOS, TimeUnit.NANOSECONDS);
+                    return;
+                }
+                durable.exceptionally(e -> {
+                    journalErrors.incrementAndGet();
+                    return null;
+                });
+            }
+            if (config.getReceiptSink() != null) {
+                config.getReceiptSink().publish(sale);
+            }
+            if (config.getSalesAggregator() != null) {
+                config.getSalesAggregator().record(sale);
+            }
+
+            ++eventLoop.customersServed;
+            eventLoop.latency.record(System.nanoTime() - arrivalNanos[head]);
+            head = (head + 1) % arrivalNanos.length;
+            --queued;
+
+            serveNext();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.eugene.percent.simulator;
+
+import com.eugene.percent.factory.PriceSource;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.NonNull;
+
+/**
+ * In-memory {@link PriceSource} that behaves like a remote pricing service: every fetch takes
+ * a latency of latencyMillis plus a uniformly random jitter of up to jitterMillis, and fails with an
+ * {@link IOException} with probability failureRate.
+ *
+ * Counts fetches and the most fetches it served at once, so coalescing of callers can be checked.
+ */
+public class SimulatedPriceSource implements PriceSource {
+    private final Map<Product, ProductPrice> productPrices = new ConcurrentHashMap<>();
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double failureRate;
+
+    private final LongAdder fetches = new LongAdder();
+    private final AtomicInteger concurrentFetches = new AtomicInteger();
+    private final AtomicInteger maxConcurrentFetches = new AtomicInteger();
+
+    /**
+     * @param latencyMillis least time a fetch takes
+     * @param jitterMillis most time a fetch takes beyond latencyMillis
+     * @param failureRate probability of a fetch failing, between 0 and 1
+     */
+    public SimulatedPriceSource(long latencyMillis, long jitterMillis, double failureRate) {
+        assert latencyMillis >= 0 && jitterMillis >= 0;
+        assert failureRate >= 0 && failureRate <= 1;
+
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * Prices a {@link Product} in the simulated service, or re-prices it.
+     *
+     * @param product {@link Product}
+     * @param productPrice {@link ProductPrice}
+     */
+    public void put(@NonNull Product product, @NonNull ProductPrice productPrice) {
+        productPrices.put(product, productPrice);
+    }
+
+    /**
+     * Stops pricing a {@link Product} in the simulated service.
+     *
+     * @param product {@link Product}
+     */
+    public void remove(@NonNull Product product) {
+        productPrices.remove(product);
+    }
+
+    @Override
+    public ProductPrice fetchPrice(@NonNull Product product) throws IOException {
+        fetches.increment();
+        maxConcurrentFetches.accumulateAndGet(concurrentFetches.incrementAndGet(), Math::max);
+        try {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long delayMillis = latencyMillis + (jitterMillis == 0 ? 0 : random.nextLong(jitterMillis + 1));
+            if (delayMillis > 0) {
+                TimeUnit.MILLISECONDS.sleep(delayMillis);
+            }
+            if (failureRate > 0 && random.nextDouble() < failureRate) {
+                throw new IOException("Simulated failure fetching " + product.getProductCode());
+            }
+
+            return productPrices.get(product);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted fetching " + product.getProductCode());
+        } finally {
+            concurrentFetches.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return number of fetches served, including failed ones.
+     */
+    public long getFetches() {
+        return fetches.sum();
+    }
+
+    /**
+     * @return most fetches served at once.
+     */
+    public int getMaxConcurrentFetches() {
+        return maxConcurrentFetches.get();
+    }
+}
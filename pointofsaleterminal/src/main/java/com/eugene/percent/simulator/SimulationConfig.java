@@ -0,0 +1,79 @@
+package com.eugene.percent.simulator;
+
+import com.eugene.percent.journal.TransactionJournal;
+import com.eugene.percent.promotion.PromotionEngine;
+import com.eugene.percent.receipt.ReceiptSink;
+import com.eugene.percent.report.SalesAggregator;
+import com.eugene.percent.workload.BasketSize;
+import com.eugene.percent.workload.Workload;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Configuration of a {@link LaneSimulator} run.
+ */
+@Value
+@Builder
+public class SimulationConfig {
+    public static final int DEFAULT_MEAN_BASKET_SIZE = 12;
+
+    /**
+     * Number of lanes, each with its own {@link com.eugene.percent.pointofsaleterminal.PointOfSaleTerminal}.
+     */
+    @Builder.Default int lanes = 5;
+
+    /**
+     * Number of event loop threads the lanes are spread over.
+     */
+    @Builder.Default int eventLoops = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Customer arrivals at each lane.
+     */
+    @NonNull @Builder.Default ArrivalProcess arrivalProcess = ArrivalProcess.poisson(25);
+
+    /**
+     * Time the cashier takes per item, 0 to scan a whole basket at once.
+     */
+    @Builder.Default long itemScanNanos = 0;
+
+    /**
+     * Customers that can wait at a lane, including the one being served.
+     * Customers arriving at a full lane leave and are reported as rejected.
+     */
+    @Builder.Default int maxQueuedCustomers = 8;
+
+    /**
+     * Baskets of the customers, streamed to every lane from a seed drawn from the lane's random source.
+     * Zipf demand over the registry, {@value #DEFAULT_MEAN_BASKET_SIZE} items per basket on average, by default.
+     */
+    @NonNull @Builder.Default Workload workload =
+            Workload.ofRegistry(1.0, BasketSize.geometric(DEFAULT_MEAN_BASKET_SIZE));
+
+    /**
+     * Promotions applied at every lane.
+     */
+    @NonNull @Builder.Default PromotionEngine promotionEngine = PromotionEngine.NONE;
+
+    /**
+     * {@link TransactionJournal} for completed sales, null for none.
+     */
+    TransactionJournal journal;
+
+    /**
+     * {@link ReceiptSink} receipts of completed sales are published to, null for none.
+     */
+    ReceiptSink receiptSink;
+
+    /**
+     * {@link SalesAggregator} completed sales are recorded with, null for none.
+     */
+    SalesAggregator salesAggregator;
+
+    /**
+     * Seed of the lanes' random sources.
+     */
+    @Builder.Default long seed = System.nanoTime();
+}
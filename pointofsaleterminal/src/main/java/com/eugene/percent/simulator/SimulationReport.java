@@ -0,0 +1,63 @@
+package com.eugene.percent.simulator;
+
+import com.eugene.percent.metrics.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Aggregated outcome of a {@link LaneSimulator} run.
+ *
+ * Latency is measured from a customer's scheduled arrival to the end of their checkout, so it includes queueing.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public class SimulationReport {
+    private final int lanes;
+    private final long elapsedNanos;
+    private final long customersServed;
+    private final long customersRejected;
+    private final long unitsScanned;
+    private final long scanErrors;
+    private final long journalErrors;
+    private final long journalWaits;
+    private final LatencyHistogram latency;
+
+    /**
+     * @return customers served per second.
+     */
+    public double getThroughput() {
+        return perSecond(customersServed);
+    }
+
+    /**
+     * @return units scanned per second.
+     */
+    public double getScanRate() {
+        return perSecond(unitsScanned);
+    }
+
+    private double perSecond(long n) {
+        return elapsedNanos == 0 ? 0 : n * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "Lanes: %d, elapsed: %.3fs%n" +
+                "Customers served: %d (%.1f/s), rejected: %d%n" +
+                "Units scanned: %d (%.1f/s), scan errors: %d, journal errors: %d, journal waits: %d%n" +
+                "Latency ms - mean: %.3f, p50: %.3f, p99: %.3f, p99.9: %.3f, max: %.3f",
+                lanes, elapsedNanos / 1e9,
+                customersServed, getThroughput(), customersRejected,
+                unitsScanned, getScanRate(), scanErrors, journalErrors, journalWaits,
+                latency.getMean() / 1e6, millis(50), millis(99), millis(99.9), latency.getMax() / 1e6);
+    }
+
+    private double millis(double percentile) {
+        return latency.getValueAtPercentile(percentile) / 1e6;
+    }
+}
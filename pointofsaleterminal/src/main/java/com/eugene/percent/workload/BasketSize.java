@@ -0,0 +1,53 @@
+package com.eugene.percent.workload;
+
+import java.util.SplittableRandom;
+
+/**
+ * Number of items in a customer's basket.
+ */
+@FunctionalInterface
+public interface BasketSize {
+    /**
+     * @param random random source of the basket stream
+     * @return number of items in the next basket, not negative.
+     */
+    int nextBasketSize(SplittableRandom random);
+
+    /**
+     * @param numberOfItems items in every basket, not negative
+     * @return constant basket size.
+     */
+    static BasketSize fixed(int numberOfItems) {
+        assert numberOfItems >= 0;
+
+        return random -> numberOfItems;
+    }
+
+    /**
+     * @param min smallest basket, not negative
+     * @param max largest basket, at least min
+     * @return basket sizes uniformly distributed from min to max.
+     */
+    static BasketSize uniform(int min, int max) {
+        assert min >= 0 && max >= min;
+
+        return random -> min + random.nextInt(max - min + 1);
+    }
+
+    /**
+     * Many small baskets and a long tail of weekly shops.
+     *
+     * @param mean mean basket size, at least 1
+     * @return geometrically distributed basket sizes, at least 1.
+     */
+    static BasketSize geometric(double mean) {
+        assert mean >= 1;
+
+        if (mean == 1) {
+            return fixed(1);
+        }
+        double logQ = Math.log(1 - 1 / mean);
+
+        return random -> 1 + (int) Math.min(Integer.MAX_VALUE - 1, Math.log(1 - random.nextDouble()) / logQ);
+    }
+}
@@ -0,0 +1,22 @@
+package com.eugene.percent.workload;
+
+import com.eugene.percent.model.Product;
+
+/**
+ * Baskets of successive customers at one lane, streamed a product at a time - nothing is materialized per basket.
+ *
+ * Not thread-safe - a stream belongs to one lane.
+ */
+public interface BasketStream {
+    /**
+     * Starts the next customer's basket.
+     *
+     * @return number of items in the basket, to be read with {@link #nextProduct()}.
+     */
+    int nextBasket();
+
+    /**
+     * @return next item of the current basket.
+     */
+    Product nextProduct();
+}
@@ -0,0 +1,37 @@
+package com.eugene.percent.workload;
+
+import com.eugene.percent.model.Product;
+
+import java.util.SplittableRandom;
+
+/**
+ * {@link Workload} drawing basket sizes and products from distributions over a fixed catalog.
+ */
+final class GeneratedWorkload implements Workload {
+    private final Product[] products;
+    private final ProductDemand demand;
+    private final BasketSize basketSize;
+
+    GeneratedWorkload(Product[] products, ProductDemand demand, BasketSize basketSize) {
+        this.products = products;
+        this.demand = demand;
+        this.basketSize = basketSize;
+    }
+
+    @Override
+    public BasketStream open(int lane, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+
+        return new BasketStream() {
+            @Override
+            public int nextBasket() {
+                return products.length == 0 ? 0 : basketSize.nextBasketSize(random);
+            }
+
+            @Override
+            public Product nextProduct() {
+                return products[demand.nextProduct(random)];
+            }
+        };
+    }
+}
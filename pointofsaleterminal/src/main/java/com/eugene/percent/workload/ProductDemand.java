@@ -0,0 +1,62 @@
+package com.eugene.percent.workload;
+
+import java.util.SplittableRandom;
+
+/**
+ * Popularity of the products of a catalog - which product a customer picks next.
+ * Products are identified by their popularity rank, 0 for the most popular.
+ *
+ * Sampling is O(1) and allocation-free whatever the catalog size.
+ */
+@FunctionalInterface
+public interface ProductDemand {
+    /**
+     * @param random random source of the basket stream
+     * @return popularity rank of the next product, from 0 to the catalog size - 1.
+     */
+    int nextProduct(SplittableRandom random);
+
+    /**
+     * @param numberOfProducts catalog size, positive
+     * @return every product equally popular.
+     */
+    static ProductDemand uniform(int numberOfProducts) {
+        assert numberOfProducts > 0;
+
+        return random -> random.nextInt(numberOfProducts);
+    }
+
+    /**
+     * Zipf's law - the k-th most popular product is picked with probability proportional to 1 / k^exponent,
+     * the long tail of real sales. Sampled by rejection-inversion, without per-product tables.
+     *
+     * @param numberOfProducts catalog size, positive
+     * @param exponent skew, positive - 1.0 is the classic Zipf distribution
+     * @return Zipf-distributed popularity.
+     */
+    static ProductDemand zipf(int numberOfProducts, double exponent) {
+        assert numberOfProducts > 0;
+        assert exponent > 0;
+
+        return new ZipfDemand(numberOfProducts, exponent);
+    }
+
+    /**
+     * @param numberOfProducts catalog size, positive
+     * @param hotProducts number of most popular products that make up the hot set, from 1 to numberOfProducts
+     * @param hotProbability probability that a pick is from the hot set, from 0 to 1
+     * @return products of the hot set and of the rest of the catalog each uniformly popular.
+     */
+    static ProductDemand hotSet(int numberOfProducts, int hotProducts, double hotProbability) {
+        assert hotProducts > 0 && hotProducts <= numberOfProducts;
+        assert hotProbability >= 0 && hotProbability <= 1;
+
+        if (hotProducts == numberOfProducts) {
+            return uniform(numberOfProducts);
+        }
+
+        return random -> random.nextDouble() < hotProbability
+                ? random.nextInt(hotProducts)
+                : random.nextInt(hotProducts, numberOfProducts);
+    }
+}
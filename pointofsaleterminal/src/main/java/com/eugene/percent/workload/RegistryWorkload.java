@@ -0,0 +1,57 @@
+package com.eugene.percent.workload;
+
+import com.eugene.percent.factory.PriceBook;
+import com.eugene.percent.factory.ProductRegistry;
+import com.eugene.percent.model.Product;
+
+/**
+ * {@link GeneratedWorkload} over the products of the {@link ProductRegistry}, rebuilt when the registry changes.
+ */
+final class RegistryWorkload implements Workload {
+    private final double exponent;
+    private final BasketSize basketSize;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Workload over the products of one registry version.
+     */
+    private static final class Snapshot {
+        private final long version;
+        private final GeneratedWorkload workload;
+
+        private Snapshot(long version, GeneratedWorkload workload) {
+            this.version = version;
+            this.workload = workload;
+        }
+    }
+
+    RegistryWorkload(double exponent, BasketSize basketSize) {
+        assert exponent > 0;
+
+        this.exponent = exponent;
+        this.basketSize = basketSize;
+    }
+
+    @Override
+    public BasketStream open(int lane, long seed) {
+        return snapshot().open(lane, seed);
+    }
+
+    private GeneratedWorkload snapshot() {
+        PriceBook priceBook = ProductRegistry.getPriceBook();
+        Snapshot current = snapshot;
+        if (current != null && current.version == priceBook.getVersion()) {
+            return current.workload;
+        }
+
+        //lanes racing here build equal snapshots, the last one is kept
+        Product[] products = priceBook.getProducts().toArray(new Product[0]);
+        GeneratedWorkload workload = new GeneratedWorkload(products,
+                products.length == 0 ? ProductDemand.uniform(1) : ProductDemand.zipf(products.length, exponent),
+                basketSize);
+        snapshot = new Snapshot(priceBook.getVersion(), workload);
+
+        return workload;
+    }
+}
@@ -0,0 +1,69 @@
+package com.eugene.percent.workload;
+
+import com.eugene.percent.factory.ProductRegistry;
+import com.eugene.percent.model.Product;
+
+import java.util.List;
+
+import lombok.NonNull;
+
+/**
+ * Customers' baskets for a simulated store - a {@link BasketStream} per lane.
+ *
+ * Generated workloads cost O(basket) per basket and are deterministic: a lane's stream only depends on its seed.
+ * A workload can be recorded and replayed exactly, see {@link WorkloadLog}.
+ */
+@FunctionalInterface
+public interface Workload {
+    /**
+     * @param lane index of the lane, from 0
+     * @param seed seed of the lane's stream
+     * @return {@link BasketStream} of the lane.
+     */
+    BasketStream open(int lane, long seed);
+
+    /**
+     * @param products catalog, most popular first
+     * @param demand popularity of the products, over products.length ranks
+     * @param basketSize number of items per basket
+     * @return generated workload over a fixed catalog.
+     */
+    static Workload of(@NonNull Product[] products, @NonNull ProductDemand demand, @NonNull BasketSize basketSize) {
+        return new GeneratedWorkload(products.clone(), demand, basketSize);
+    }
+
+    /**
+     * Generated workload over the {@link ProductRegistry} - Zipf demand over its {@link Product}s, in registry order.
+     * The products are snapshot once per registry version, when a stream is opened, not per basket.
+     *
+     * @param exponent skew of the demand, see {@link ProductDemand#zipf(int, double)}
+     * @param basketSize number of items per basket
+     * @return generated workload, with empty baskets while the registry is empty.
+     */
+    static Workload ofRegistry(double exponent, @NonNull BasketSize basketSize) {
+        return new RegistryWorkload(exponent, basketSize);
+    }
+
+    /**
+     * @param basket items of every basket
+     * @return every customer buys the same basket.
+     */
+    static Workload fixed(@NonNull List<Product> basket) {
+        Product[] items = basket.toArray(new Product[0]);
+
+        return (lane, seed) -> new BasketStream() {
+            private int nextItem;
+
+            @Override
+            public int nextBasket() {
+                nextItem = 0;
+                return items.length;
+            }
+
+            @Override
+            public Product nextProduct() {
+                return items[nextItem++];
+            }
+        };
+    }
+}
@@ -0,0 +1,177 @@
+package com.eugene.percent.workload;
+
+import com.eugene.percent.model.Product;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.NonNull;
+
+/**
+ * Recorded {@link Workload} - baskets of every lane, written to a file and replayed exactly,
+ * e.g. to compare two builds under the same load.
+ *
+ * File format, big-endian:
+ * <pre>
+ * int magic, int product count, per product: UTF product code,
+ * int lane count, per lane: int basket count, int item count, int basket sizes[basket count], int products[item count]
+ * </pre>
+ * Items are indexes into the product table.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class WorkloadLog {
+    static final int MAGIC = 0x574B4C31; //WKL1
+
+    /**
+     * Records baskets of a workload. Lane streams are opened with seeds drawn from the given seed.
+     *
+     * @param workload {@link Workload} to record
+     * @param lanes number of lanes, positive
+     * @param basketsPerLane baskets recorded per lane
+     * @param seed seed of the lane seeds
+     * @param path file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void record(@NonNull Workload workload, int lanes, int basketsPerLane, long seed, @NonNull Path path)
+            throws IOException {
+        assert lanes > 0;
+        assert basketsPerLane >= 0;
+
+        Map<Product, Integer> productIndexes = new HashMap<>();
+        Product[] products = new Product[16];
+        int[][] basketSizes = new int[lanes][];
+        int[][] items = new int[lanes][];
+        int[] itemCounts = new int[lanes];
+
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (int lane = 0; lane < lanes; ++lane) {
+            BasketStream stream = workload.open(lane, seeds.nextLong());
+            basketSizes[lane] = new int[basketsPerLane];
+            items[lane] = new int[16];
+
+            for (int basket = 0; basket < basketsPerLane; ++basket) {
+                int basketSize = stream.nextBasket();
+                basketSizes[lane][basket] = basketSize;
+
+                for (int item = 0; item < basketSize; ++item) {
+                    Product product = stream.nextProduct();
+                    Integer index = productIndexes.get(product);
+                    if (index == null) {
+                        index = productIndexes.size();
+                        productIndexes.put(product, index);
+                        if (index == products.length) {
+                            products = Arrays.copyOf(products, index * 2);
+                        }
+                        products[index] = product;
+                    }
+
+                    if (itemCounts[lane] == items[lane].length) {
+                        items[lane] = Arrays.copyOf(items[lane], itemCounts[lane] * 2);
+                    }
+                    items[lane][itemCounts[lane]++] = index;
+                }
+            }
+        }
+
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(productIndexes.size());
+            for (int i = 0; i < productIndexes.size(); ++i) {
+                output.writeUTF(products[i].getProductCode());
+            }
+
+            output.writeInt(lanes);
+            for (int lane = 0; lane < lanes; ++lane) {
+                output.writeInt(basketsPerLane);
+                output.writeInt(itemCounts[lane]);
+                for (int basketSize : basketSizes[lane]) {
+                    output.writeInt(basketSize);
+                }
+                for (int item = 0; item < itemCounts[lane]; ++item) {
+                    output.writeInt(items[lane][item]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads a recorded workload. Lane i of a replay streams the baskets recorded for lane i modulo the recorded lanes,
+     * whatever its seed; once they are exhausted its customers have empty baskets.
+     *
+     * @param path file written by {@link #record(Workload, int, int, long, Path)}
+     * @return {@link Workload} replaying the recording.
+     * @throws IOException if the file cannot be read or is not a recorded workload
+     */
+    public static Workload replay(@NonNull Path path) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a recorded workload: " + path);
+            }
+
+            Product[] products = new Product[input.readInt()];
+            for (int i = 0; i < products.length; ++i) {
+                products[i] = Product.builder().productCode(input.readUTF()).build();
+            }
+
+            int lanes = input.readInt();
+            if (lanes <= 0) {
+                throw new IOException("Recorded workload without lanes: " + path);
+            }
+            int[][] basketSizes = new int[lanes][];
+            int[][] items = new int[lanes][];
+            for (int lane = 0; lane < lanes; ++lane) {
+                basketSizes[lane] = new int[input.readInt()];
+                items[lane] = new int[input.readInt()];
+                for (int basket = 0; basket < basketSizes[lane].length; ++basket) {
+                    basketSizes[lane][basket] = input.readInt();
+                }
+                for (int item = 0; item < items[lane].length; ++item) {
+                    items[lane][item] = input.readInt();
+                    if (items[lane][item] < 0 || items[lane][item] >= products.length) {
+                        throw new IOException("Product index " + items[lane][item] + " out of range in " + path);
+                    }
+                }
+            }
+
+            return (lane, seed) -> new ReplayStream(products, basketSizes[lane % lanes], items[lane % lanes]);
+        }
+    }
+
+    /**
+     * Recorded baskets of one lane.
+     */
+    private static final class ReplayStream implements BasketStream {
+        private final Product[] products;
+        private final int[] basketSizes;
+        private final int[] items;
+        private int nextBasket;
+        private int nextItem;
+
+        private ReplayStream(Product[] products, int[] basketSizes, int[] items) {
+            this.products = products;
+            this.basketSizes = basketSizes;
+            this.items = items;
+        }
+
+        @Override
+        public int nextBasket() {
+            return nextBasket < basketSizes.length ? basketSizes[nextBasket++] : 0;
+        }
+
+        @Override
+        public Product nextProduct() {
+            return products[items[nextItem++]];
+        }
+    }
+}
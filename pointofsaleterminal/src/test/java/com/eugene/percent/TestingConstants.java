@@ -1,7 +0,0 @@
-package com.eugene.percent;
-
-public class TestingConstants {
-    public static final double DOUBLE_DELTA = 0.000001;
-
-    public final static int MAX_SCANS_PER_PRODUCT = 3;
-}
@@ -0,0 +1,90 @@
+package com.eugene.percent.catalog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+public class FrozenCatalogTest {
+    @Test
+    public void test_build() {
+        int n = 50000;
+        Map<Product, ProductPrice> productPrices = new HashMap<>();
+        for (int i = 0; i < n; ++i) {
+            productPrices.put(Product.builder().productCode(String.format("%013d", i * 7919L)).build(),
+                    new ProductPrice(i + 1, i % 5 + 1, i + 2));
+        }
+
+        FrozenCatalog catalog = FrozenCatalog.build(productPrices);
+        assertEquals(n, catalog.size());
+
+        Set<Integer> indexes = new HashSet<>();
+        for (Map.Entry<Product, ProductPrice> productPrice : productPrices.entrySet()) {
+            int index = catalog.indexOf(productPrice.getKey());
+            assertTrue(index >= 0 && index < n);
+            assertTrue(indexes.add(index));
+            assertEquals(productPrice.getValue(), catalog.priceAt(index));
+            assertEquals(productPrice.getKey(), catalog.productAt(index));
+        }
+
+        for (int i = 0; i < 1000; ++i) {
+            assertEquals(-1, catalog.indexOf(String.format("%013d", i * 7919L + 1)));
+        }
+        assertEquals(-1, catalog.indexOf(""));
+    }
+
+    @Test
+    public void test_small() {
+        for (int n = 0; n < 20; ++n) {
+            Map<Product, ProductPrice> productPrices = new HashMap<>();
+            for (int i = 0; i < n; ++i) {
+                productPrices.put(Product.builder().productCode("P" + i).build(), new ProductPrice(i + 1, 1, i + 1));
+            }
+
+            FrozenCatalog catalog = FrozenCatalog.build(productPrices);
+            assertEquals(n, catalog.size());
+            for (int i = 0; i < n; ++i) {
+                assertEquals(i + 1, catalog.pricePerUnitAt(catalog.indexOf("P" + i)));
+            }
+            assertEquals(-1, catalog.indexOf("P" + n));
+        }
+    }
+
+    @Test
+    public void test_colliding_hash_codes() {
+        //"Aa" and "BB" have the same String hash code, so do all their concatenations
+        String[] codes = {"AaAa", "AaBB", "BBAa", "BBBB", "Aa", "BB", "C"};
+        Map<Product, ProductPrice> productPrices = new HashMap<>();
+        for (int i = 0; i < codes.length; ++i) {
+            productPrices.put(Product.builder().productCode(codes[i]).build(), new ProductPrice(i + 1, 1, i + 1));
+        }
+
+        FrozenCatalog catalog = FrozenCatalog.build(productPrices);
+        for (int i = 0; i < codes.length; ++i) {
+            assertEquals(i + 1, catalog.pricePerUnitAt(catalog.indexOf(codes[i])));
+            assertEquals(i + 1, catalog.pricePerUnitAt(catalog.indexOf(new StringBuilder(codes[i]))));
+        }
+        assertEquals(-1, catalog.indexOf("AaAaAa"));
+        assertEquals(-1, catalog.indexOf(new StringBuilder("AaAaBB")));
+        //shares the hash code of "Aa" and "BB" without being either
+        assertEquals(-1, catalog.indexOf(new StringBuilder("C#")));
+        assertEquals(-1, catalog.indexOf("D"));
+    }
+
+    @Test
+    public void test_empty() {
+        FrozenCatalog catalog = FrozenCatalog.build(Collections.emptyMap());
+
+        assertEquals(0, catalog.size());
+        assertEquals(-1, catalog.indexOf("A"));
+    }
+}
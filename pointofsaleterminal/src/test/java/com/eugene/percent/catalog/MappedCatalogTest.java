@@ -0,0 +1,82 @@
+package com.eugene.percent.catalog;
+
+import static org.junit.Assert.assertEquals;
+
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class MappedCatalogTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void test_writeAndOpen() throws Exception {
+        int n = 10000;
+        Map<Product, ProductPrice> productPrices = new HashMap<>();
+        for (int i = 0; i < n; ++i) {
+            productPrices.put(Product.builder().productCode("P" + i).build(), new ProductPrice(i + 1, i % 5 + 1, i + 2));
+        }
+
+        Path path = temporaryFolder.newFile().toPath();
+        CatalogFile.write(path, productPrices);
+        MappedCatalog catalog = MappedCatalog.open(path);
+
+        assertEquals(n, catalog.size());
+        for (Map.Entry<Product, ProductPrice> productPrice : productPrices.entrySet()) {
+            int index = catalog.indexOf(productPrice.getKey());
+            assertEquals(productPrice.getValue(), catalog.priceAt(index));
+            assertEquals(productPrice.getKey(), catalog.productAt(index));
+        }
+
+        assertEquals(-1, catalog.indexOf("P" + n));
+        assertEquals(-1, catalog.indexOf("P"));
+        assertEquals(-1, catalog.indexOf(""));
+    }
+
+    @Test
+    public void test_empty() throws Exception {
+        Path path = temporaryFolder.newFile().toPath();
+        CatalogFile.write(path, Collections.emptyMap());
+        MappedCatalog catalog = MappedCatalog.open(path);
+
+        assertEquals(0, catalog.size());
+        assertEquals(-1, catalog.indexOf("A"));
+    }
+
+    @Test(expected = IOException.class)
+    public void test_open_notCatalog() throws Exception {
+        Path path = temporaryFolder.newFile().toPath();
+        Files.write(path, new byte[64]);
+
+        MappedCatalog.open(path);
+    }
+
+    @Test(expected = IOException.class)
+    public void test_open_truncated() throws Exception {
+        Path path = temporaryFolder.newFile().toPath();
+        CatalogFile.write(path,
+                Collections.singletonMap(Product.builder().productCode("A").build(), new ProductPrice(1, 1, 1)));
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+
+        MappedCatalog.open(path);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_write_nonAsciiCode() throws Exception {
+        CatalogFile.write(temporaryFolder.newFile().toPath(),
+                Collections.singletonMap(Product.builder().productCode("\u00e9").build(), new ProductPrice(1, 1, 1)));
+    }
+}
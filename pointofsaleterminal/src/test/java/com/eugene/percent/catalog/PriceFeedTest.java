@@ -0,0 +1,120 @@
+package com.eugene.percent.catalog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.eugene.percent.exceptions.PriceFeedException;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class PriceFeedTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void test_read() throws Exception {
+        PriceFeed feed = PriceFeed.read(feed(PriceFeed.HEADER + "\r\nA,1.25,3,3.00\r\n\r\nB,4.25,1,4.25\nC,1,6,5"));
+
+        assertEquals(3, feed.size());
+        assertEquals(Product.builder().productCode("A").build(), feed.productAt(0));
+        assertEquals(new ProductPrice(125, 3, 300), feed.priceAt(0));
+        assertEquals(new ProductPrice(425, 1, 425), feed.priceAt(1));
+        assertEquals(new ProductPrice(100, 6, 500), feed.priceAt(2));
+    }
+
+    @Test
+    public void test_read_empty() throws Exception {
+        assertEquals(0, PriceFeed.read(feed("")).size());
+    }
+
+    @Test
+    public void test_read_chunks() throws Exception {
+        int n = 1000;
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < n; ++i) {
+            csv.append("P").append(i).append(',').append(i + 1).append(".5,").append(i % 7 + 1).append(",9\n");
+        }
+        Path path = feed(csv.toString());
+
+        //chunks that split lines anywhere
+        for (int chunkSize : new int[] {1, 7, 64, 1000}) {
+            PriceFeed feed = PriceFeed.read(path, chunkSize);
+
+            assertEquals(n, feed.size());
+            for (int i = 0; i < n; ++i) {
+                assertEquals("P" + i, feed.productAt(i).getProductCode());
+                assertEquals(new ProductPrice(i * 100 + 150, i % 7 + 1, 900), feed.priceAt(i));
+            }
+        }
+    }
+
+    @Test
+    public void test_read_invalid() throws Exception {
+        Path path = feed("A,1.25,3,3.00\nB,0,1,1\nC,1,x,1\nD,1.234,1,1\nE,1,1\n,1,1,1\nA,1,1,1\n");
+
+        for (int chunkSize : new int[] {5, PriceFeed.CHUNK_SIZE}) {
+            try {
+                PriceFeed.read(path, chunkSize);
+                fail();
+            } catch (PriceFeedException e) {
+                assertEquals(6, e.getErrors().size());
+                assertTrue(e.getErrors().get(0), e.getErrors().get(0).startsWith("line 2: pricePerUnit of B"));
+                assertTrue(e.getErrors().get(1), e.getErrors().get(1).startsWith("line 3: numberOfUnitsInVolume"));
+                assertTrue(e.getErrors().get(2), e.getErrors().get(2).startsWith("line 4: pricePerUnit of D"));
+                assertTrue(e.getErrors().get(3), e.getErrors().get(3).startsWith("line 5: expected 4 fields"));
+                assertTrue(e.getErrors().get(4), e.getErrors().get(4).startsWith("line 6: productCode is empty"));
+                assertTrue(e.getErrors().get(5), e.getErrors().get(5).startsWith("line 7: product A is listed more"));
+            }
+        }
+    }
+
+    @Test
+    public void test_read_collidingCodes() throws Exception {
+        //"Aa" and "BB" have the same String hash
+        assertEquals(2, PriceFeed.read(feed("Aa,1,1,1\nBB,2,1,2\n")).size());
+
+        try {
+            PriceFeed.read(feed("Aa,1,1,1\nBB,2,1,2\nBB,3,1,3\n"));
+            fail();
+        } catch (PriceFeedException e) {
+            assertEquals(1, e.getErrors().size());
+            assertTrue(e.getErrors().get(0), e.getErrors().get(0).startsWith("line 3: product BB is listed more"));
+        }
+    }
+
+    @Test
+    public void test_parseAmount() {
+        assertEquals(125, parseAmount("1.25"));
+        assertEquals(300, parseAmount("3"));
+        assertEquals(350, parseAmount("3.5"));
+        assertEquals(0, parseAmount("0.00"));
+        assertEquals(-1, parseAmount("1.234"));
+        assertEquals(-1, parseAmount(".5"));
+        assertEquals(-1, parseAmount("5."));
+        assertEquals(-1, parseAmount("-1"));
+        assertEquals(-1, parseAmount(""));
+        assertEquals(-1, parseAmount("92233720368547758.08"));
+    }
+
+    private static long parseAmount(String amount) {
+        byte[] bytes = amount.getBytes(StandardCharsets.US_ASCII);
+
+        return PriceFeed.parseAmount(bytes, 0, bytes.length);
+    }
+
+    private Path feed(String csv) throws Exception {
+        Path path = temporaryFolder.newFile().toPath();
+        Files.write(path, csv.getBytes(StandardCharsets.UTF_8));
+
+        return path;
+    }
+}
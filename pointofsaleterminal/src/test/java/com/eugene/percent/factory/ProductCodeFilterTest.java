@@ -0,0 +1,52 @@
+package com.eugene.percent.factory;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ProductCodeFilterTest {
+    @Test
+    public void test_noFalseNegatives() {
+        int n = 100000;
+        ProductCodeFilter filter = new ProductCodeFilter(n);
+        for (int i = 0; i < n; ++i) {
+            assertTrue(filter.add(String.format("%013d", i)));
+        }
+
+        for (int i = 0; i < n; ++i) {
+            assertTrue(filter.mightContain(String.format("%013d", i)));
+        }
+
+        int falsePositives = 0;
+        for (int i = n; i < 2 * n; ++i) {
+            if (filter.mightContain(String.format("%013d", i))) {
+                ++falsePositives;
+            }
+        }
+        assertTrue("false positives: " + falsePositives, falsePositives < n / 50);
+    }
+
+    @Test
+    public void test_empty() {
+        ProductCodeFilter filter = new ProductCodeFilter(0);
+
+        assertFalse(filter.mightContain("A"));
+        assertFalse(filter.mightContain(""));
+    }
+
+    @Test
+    public void test_add_full() {
+        ProductCodeFilter filter = new ProductCodeFilter(0);
+
+        int added = 0;
+        while (filter.add("P" + added)) {
+            ++added;
+        }
+
+        assertTrue(added > 0);
+        for (int i = 0; i < added; ++i) {
+            assertTrue(filter.mightContain("P" + i));
+        }
+    }
+}
@@ -1,17 +1,42 @@
 package com.eugene.percent.factory;
 
-import static com.eugene.percent.TestingConstants.MAX_SCANS_PER_PRODUCT;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import com.eugene.percent.exceptions.PriceFeedException;
+import com.eugene.percent.metrics.Metrics;
+import com.eugene.percent.model.PricingRule;
 import com.eugene.percent.model.Product;
 import com.eugene.percent.model.ProductPrice;
+import com.eugene.percent.simulator.SimulatedPriceSource;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 public class ProductRegistryTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     private Product productA;
     private Product productB;
     private ProductPrice productPriceNoVolumeDiscount;
@@ -81,15 +106,470 @@ public class ProductRegistryTest {
     }
 
     @Test
-    public void test_generateRandomProductScan() {
-        assertTrue(ProductRegistry.generateRandomProductScan().isEmpty());
+    public void test_registry_registerAll() {
+        long version = ProductRegistry.getVersion();
+        Map<Product, ProductPrice> productPrices = new HashMap<>();
+        productPrices.put(productA, productPriceNoVolumeDiscount);
+        productPrices.put(productB, productPriceVolumeDiscount);
+
+        ProductRegistry.registerAll(productPrices);
+
+        assertEquals(version + 1, ProductRegistry.getVersion());
+        assertEquals(2, ProductRegistry.getProducts().size());
+        assertEquals(productPriceNoVolumeDiscount, ProductRegistry.getPrice(productA));
+        assertEquals(productPriceVolumeDiscount, ProductRegistry.getPrice(productB));
+    }
+
+    @Test
+    public void test_registry_load() throws Exception {
+        Product productC = Product.builder().productCode("C").build();
+        ProductRegistry.register(productA, productPriceNoVolumeDiscount);
+        ProductRegistry.register(productB, productPriceVolumeDiscount);
+
+        Path catalogFile = temporaryFolder.newFile().toPath();
+        ProductRegistry.save(catalogFile);
+        ProductRegistry.reset();
+        ProductRegistry.register(productC, productPriceNoVolumeDiscount);
+
+        long version = ProductRegistry.getVersion();
+        ProductRegistry.load(catalogFile);
+        assertEquals(version + 1, ProductRegistry.getVersion());
+
+        assertEquals(2, ProductRegistry.getProducts().size());
+        assertTrue(ProductRegistry.getProducts().contains(productA));
+        assertFalse(ProductRegistry.getProducts().contains(productC));
+        assertEquals(productPriceNoVolumeDiscount, ProductRegistry.getPrice(productA));
+        assertEquals(productPriceVolumeDiscount, ProductRegistry.getPrice(productB));
+        assertNull(ProductRegistry.getPrice(productC));
+
+        int productIdA = ProductRegistry.getPriceBook().getEntry(productA).getProductId();
+        assertEquals(productPriceNoVolumeDiscount, ProductRegistry.getPrice(productIdA));
+
+        //intra-day changes overlay the catalog
+        ProductRegistry.register(productA, productPriceVolumeDiscount);
+        ProductRegistry.register(productC, productPriceVolumeDiscount);
+        ProductRegistry.deregister(productB);
+
+        assertEquals(productPriceVolumeDiscount, ProductRegistry.getPrice(productA));
+        assertEquals(productIdA, ProductRegistry.getPriceBook().getEntry(productA).getProductId());
+        assertEquals(productPriceVolumeDiscount, ProductRegistry.getPrice(productC));
+        assertNull(ProductRegistry.getPrice(productB));
+        assertEquals(2, ProductRegistry.getProducts().size());
+        assertEquals(2, new ArrayList<>(ProductRegistry.getProducts()).size());
+
+        ProductRegistry.register(productB, productPriceNoVolumeDiscount);
+        assertEquals(productPriceNoVolumeDiscount, ProductRegistry.getPrice(productB));
+        assertEquals(3, ProductRegistry.getProducts().size());
+    }
+
+    @Test
+    public void test_registry_freeze() {
+        Product productC = Product.builder().productCode("C").build();
+        ProductRegistry.register(productA, productPriceNoVolumeDiscount);
+        ProductRegistry.register(productB, productPriceVolumeDiscount);
+
+        long version = ProductRegistry.getVersion();
+        ProductRegistry.freeze();
+        assertEquals(version + 1, ProductRegistry.getVersion());
+
+        assertEquals(2, ProductRegistry.getProducts().size());
+        assertEquals(productPriceNoVolumeDiscount, ProductRegistry.getPrice(productA));
+        assertEquals(productPriceVolumeDiscount, ProductRegistry.getPrice(productB));
+
+        //intra-day changes overlay the frozen catalog
+        ProductRegistry.register(productC, productPriceNoVolumeDiscount);
+        ProductRegistry.deregister(productA);
+        assertEquals(productPriceNoVolumeDiscount, ProductRegistry.getPrice(productC));
+        assertNull(ProductRegistry.getPrice(productA));
+        assertEquals(2, ProductRegistry.getProducts().size());
+
+        //freezing again folds the overlay in
+        ProductRegistry.freeze();
+        assertEquals(productPriceNoVolumeDiscount, ProductRegistry.getPrice(productC));
+        assertNull(ProductRegistry.getPrice(productA));
+        assertEquals(2, ProductRegistry.getProducts().size());
+    }
+
+    @Test
+    public void test_registry_keepsIds() throws Exception {
+        Product productC = Product.builder().productCode("C").build();
+        ProductRegistry.register(productA, productPriceNoVolumeDiscount);
+        ProductRegistry.register(productB, productPriceVolumeDiscount);
+        int productIdA = ProductRegistry.getPriceBook().getEntry(productA).getProductId();
+        int productIdB = ProductRegistry.getPriceBook().getEntry(productB).getProductId();
+
+        ProductRegistry.freeze();
+        assertEquals(productIdA, ProductRegistry.getPriceBook().getEntry(productA).getProductId());
+        assertEquals(productIdB, ProductRegistry.getPriceBook().getEntry(productB).getProductId());
+        assertEquals(productPriceNoVolumeDiscount, ProductRegistry.getPrice(productIdA));
+
+        //a catalog product de-registered and frozen out keeps its interned id
+        ProductRegistry.register(productC, productPriceNoVolumeDiscount);
+        ProductRegistry.deregister(productA);
+        ProductRegistry.freeze();
+        int productIdC = ProductRegistry.getPriceBook().getEntry(productC).getProductId();
+        assertNull(ProductRegistry.getPrice(productIdA));
+        ProductRegistry.register(productA, productPriceVolumeDiscount);
+        assertEquals(productIdA, ProductRegistry.getPriceBook().getEntry(productA).getProductId());
+
+        Path feed = temporaryFolder.newFile().toPath();
+        Files.write(feed, ("A,1.50,1,1.50\nC,2,3,5\nD,1,1,1\n").getBytes(StandardCharsets.US_ASCII));
+        ProductRegistry.importPrices(feed, ProductRegistry.ImportMode.REPLACE);
+        PriceBook priceBook = ProductRegistry.getPriceBook();
+        assertEquals(productIdA, priceBook.getEntry(productA).getProductId());
+        assertEquals(productIdC, priceBook.getEntry(productC).getProductId());
+        int productIdD = priceBook.getEntry("D").getProductId();
+        assertNotEquals(productIdA, productIdD);
+        assertNotEquals(productIdB, productIdD);
+        assertNotEquals(productIdC, productIdD);
+        assertEquals(new ProductPrice(100, 1, 100), ProductRegistry.getPrice(productIdD));
+
+        Path catalogFile = temporaryFolder.newFile().toPath();
+        ProductRegistry.save(catalogFile);
+        ProductRegistry.load(catalogFile);
+        assertEquals(productIdA, ProductRegistry.getPriceBook().getEntry(productA).getProductId());
+        assertEquals(productIdD, ProductRegistry.getPriceBook().getEntry("D").getProductId());
+        assertNull(ProductRegistry.getPrice(productIdB));
+    }
+
+    @Test
+    public void test_priceBook_getEntryByCode() {
+        Product productC = Product.builder().productCode("C").build();
+        ProductRegistry.register(productA, productPriceNoVolumeDiscount);
+        ProductRegistry.register(productB, productPriceVolumeDiscount);
+        assertEquals(productA, ProductRegistry.getPriceBook().getEntry(new StringBuilder("A")).getProduct());
+        assertNull(ProductRegistry.getPriceBook().getEntry("C"));
 
+        //frozen catalog under an overlay with a registration and a tombstone
+        ProductRegistry.freeze();
+        ProductRegistry.register(productC, productPriceNoVolumeDiscount);
+        ProductRegistry.deregister(productA);
+
+        PriceBook priceBook = ProductRegistry.getPriceBook();
+        assertNull(priceBook.getEntry(new StringBuilder("A")));
+        assertEquals(productB, priceBook.getEntry(new StringBuilder("B")).getProduct());
+        assertEquals(productPriceVolumeDiscount, priceBook.getEntry(new StringBuilder("B")).getProductPrice());
+        assertEquals(productC, priceBook.getEntry(new StringBuilder("C")).getProduct());
+        assertEquals(priceBook.getEntry(productC).getProductId(), priceBook.getEntry("C").getProductId());
+        assertNull(priceBook.getEntry("D"));
+    }
+
+    @Test
+    public void test_priceBook_getEntryById() {
+        Product productC = Product.builder().productCode("C").build();
         ProductRegistry.register(productA, productPriceNoVolumeDiscount);
-        int n = 100;
-        int numProducts = 0;
+        ProductRegistry.freeze();
+        int productIdA = ProductRegistry.getPriceBook().getEntry(productA).getProductId();
+
+        //overlay re-pricing, registration and de-registration on top of the catalog
+        ProductRegistry.register(productA, productPriceVolumeDiscount);
+        ProductRegistry.register(productB, productPriceVolumeDiscount);
+        ProductRegistry.register(productC, productPriceNoVolumeDiscount);
+        int productIdB = ProductRegistry.getPriceBook().getEntry(productB).getProductId();
+        int productIdC = ProductRegistry.getPriceBook().getEntry(productC).getProductId();
+        ProductRegistry.deregister(productB);
+
+        PriceBook priceBook = ProductRegistry.getPriceBook();
+        assertEquals(productPriceVolumeDiscount, priceBook.getPrice(productIdA));
+        assertNull(priceBook.getEntry(productIdB));
+        assertEquals(productC, priceBook.getEntry(productIdC).getProduct());
+        assertNull(priceBook.getEntry(Integer.MAX_VALUE));
+
+        ProductRegistry.deregister(productA);
+        assertNull(ProductRegistry.getPriceBook().getEntry(productIdA));
+    }
+
+    @Test
+    public void test_priceBook_overlayChurn() {
+        Product[] products = new Product[64];
+        for (int i = 0; i < products.length; ++i) {
+            products[i] = Product.builder().productCode("churn-" + i).build();
+            if (i % 2 == 0) {
+                ProductRegistry.register(products[i], i + 1);
+            }
+        }
+        ProductRegistry.freeze();
+
+        //the overlay's indexes are updated in place of being rebuilt, removals shift probe runs back
+        Map<Product, Long> prices = new HashMap<>();
+        for (int i = 0; i < products.length; i += 2) {
+            prices.put(products[i], (long) i + 1);
+        }
+        Random random = new Random(42);
+        for (int step = 0; step < 2000; ++step) {
+            Product product = products[random.nextInt(products.length)];
+            if (random.nextBoolean()) {
+                ProductRegistry.register(product, step + 1);
+                prices.put(product, (long) step + 1);
+            } else {
+                ProductRegistry.deregister(product);
+                prices.remove(product);
+            }
+
+            PriceBook priceBook = ProductRegistry.getPriceBook();
+            assertEquals(prices.size(), priceBook.size());
+            for (Product p : products) {
+                Long price = prices.get(p);
+                PriceBook.Entry entry = priceBook.getEntry(new StringBuilder(p.getProductCode()));
+                assertEquals(price, entry == null ? null : entry.getProductPrice().getPricePerUnit());
+                entry = priceBook.getEntry(ProductRegistry.productId(p));
+                assertEquals(price == null ? null : p, entry == null ? null : entry.getProduct());
+            }
+        }
+    }
+
+    @Test
+    public void test_registry_version() {
+        long version = ProductRegistry.getVersion();
+
+        ProductRegistry.register(productA, productPriceNoVolumeDiscount);
+        assertEquals(version + 1, ProductRegistry.getVersion());
+
+        ProductRegistry.deregister(productB);
+        assertEquals(version + 1, ProductRegistry.getVersion());
+
+        ProductRegistry.deregister(productA);
+        assertEquals(version + 2, ProductRegistry.getVersion());
+
+        ProductRegistry.reset();
+        assertEquals(version + 3, ProductRegistry.getVersion());
+    }
+
+    @Test
+    public void test_registry_snapshotIsolation() {
+        ProductRegistry.register(productA, productPriceNoVolumeDiscount);
+        PriceBook priceBook = ProductRegistry.getPriceBook();
+
+        ProductRegistry.register(productA, productPriceVolumeDiscount);
+        ProductRegistry.register(productB, productPriceVolumeDiscount);
+
+        assertEquals(productPriceNoVolumeDiscount, priceBook.getPrice(productA));
+        assertNull(priceBook.getPrice(productB));
+        assertEquals(1, priceBook.size());
+        assertEquals(priceBook.getVersion() + 2, ProductRegistry.getVersion());
+    }
+
+    @Test
+    public void test_registry_productId() {
+        ProductRegistry.register(productA, productPriceNoVolumeDiscount);
+        ProductRegistry.register(productB, productPriceNoVolumeDiscount);
+
+        int productIdA = ProductRegistry.getPriceBook().getEntry(productA).getProductId();
+        int productIdB = ProductRegistry.getPriceBook().getEntry(productB).getProductId();
+        assertNotEquals(productIdA, productIdB);
+        assertEquals(productPriceNoVolumeDiscount, ProductRegistry.getPrice(productIdA));
+
+        ProductRegistry.deregister(productA);
+        assertNull(ProductRegistry.getPrice(productIdA));
+
+        ProductRegistry.register(productA, productPriceVolumeDiscount);
+        assertEquals(productIdA, ProductRegistry.getPriceBook().getEntry(productA).getProductId());
+        assertEquals(productPriceVolumeDiscount, ProductRegistry.getPrice(productIdA));
+    }
+
+    @Test
+    public void test_registry_concurrentRegister() throws Exception {
+        int numThreads = 4;
+        int numProductsPerThread = 250;
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < numThreads; ++t) {
+            final int threadId = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < numProductsPerThread; ++i) {
+                    Product product = Product.builder().productCode(threadId + "-" + i).build();
+                    ProductRegistry.register(product, productPriceNoVolumeDiscount);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(numThreads * numProductsPerThread, ProductRegistry.getProducts().size());
+    }
+
+    @Test
+    public void test_registerMBean() throws Exception {
+        ProductRegistry.registerMBean();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(Metrics.DOMAIN + ":type=ProductRegistry");
+
+        ProductRegistry.register(productA, productPriceNoVolumeDiscount);
+        assertEquals(1, server.getAttribute(name, "Size"));
+        assertEquals(ProductRegistry.getVersion(), server.getAttribute(name, "Version"));
+
+        Metrics.reset();
+        Metrics.setEnabled(true);
+        try {
+            ProductRegistry.getPrice(productA);
+            ProductRegistry.getPrice(productB);
+        } finally {
+            Metrics.setEnabled(false);
+        }
+        assertEquals(2L, server.getAttribute(name, "Lookups"));
+        assertEquals(1L, server.getAttribute(name, "Misses"));
+        assertEquals(0.5, (Double) server.getAttribute(name, "MissRatio"), 0);
+    }
+
+    @Test
+    public void test_register_oneByOne() {
+        //outgrows the overlay's code filter several times
+        int n = 2000;
         for (int i = 0; i < n; ++i) {
-            numProducts += ProductRegistry.generateRandomProductScan().size();
+            ProductRegistry.register(Product.builder().productCode("P" + i).build(), i + 1);
         }
-        assertTrue(numProducts/n < MAX_SCANS_PER_PRODUCT);
+
+        for (int i = 0; i < n; ++i) {
+            assertEquals(i + 1, ProductRegistry.getPrice(Product.builder().productCode("P" + i).build()).getPricePerUnit());
+        }
+        assertNull(ProductRegistry.getPrice(Product.builder().productCode("P" + n).build()));
+    }
+
+    @Test
+    public void test_registry_freeze_rules() {
+        ProductPrice productPriceRules = ProductPrice.of(125, PricingRule.volume(3, 300), PricingRule.buyGetFree(2, 1));
+        ProductRegistry.register(productA, productPriceRules);
+        ProductRegistry.register(productB, productPriceVolumeDiscount);
+
+        long version = ProductRegistry.getVersion();
+        ProductRegistry.freeze();
+        assertEquals(version + 1, ProductRegistry.getVersion());
+
+        //priced with rules, so kept in the overlay
+        assertEquals(2, ProductRegistry.getProducts().size());
+        assertEquals(productPriceRules, ProductRegistry.getPrice(productA));
+        assertEquals(productPriceVolumeDiscount, ProductRegistry.getPrice(productB));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_registry_save_rules() throws Exception {
+        ProductRegistry.register(productA, ProductPrice.of(125, PricingRule.volume(3, 300)));
+
+        ProductRegistry.save(temporaryFolder.getRoot().toPath().resolve("catalog.bin"));
+    }
+
+    @Test
+    public void test_importPrices() throws Exception {
+        Product productC = Product.builder().productCode("C").build();
+        ProductRegistry.register(productA, productPriceNoVolumeDiscount);
+        ProductRegistry.register(productB, productPriceVolumeDiscount);
+
+        Path feed = temporaryFolder.newFile().toPath();
+        Files.write(feed, ("A,1.50,1,1.50\nC,2,3,5\n").getBytes(StandardCharsets.US_ASCII));
+
+        long version = ProductRegistry.getVersion();
+        ImportReport report = ProductRegistry.importPrices(feed, ProductRegistry.ImportMode.MERGE);
+
+        assertEquals(version + 1, ProductRegistry.getVersion());
+        assertEquals(version + 1, report.getVersion());
+        assertEquals(1, report.getAdded());
+        assertEquals(1, report.getChanged());
+        assertEquals(0, report.getUnchanged());
+        assertEquals(0, report.getRemoved());
+        assertEquals(3, ProductRegistry.getProducts().size());
+        assertEquals(new ProductPrice(150, 1, 150), ProductRegistry.getPrice(productA));
+        assertEquals(productPriceVolumeDiscount, ProductRegistry.getPrice(productB));
+        assertEquals(new ProductPrice(200, 3, 500), ProductRegistry.getPrice(productC));
+
+        report = ProductRegistry.importPrices(feed, ProductRegistry.ImportMode.REPLACE);
+
+        assertEquals(0, report.getAdded());
+        assertEquals(2, report.getUnchanged());
+        assertEquals(1, report.getRemoved());
+        assertEquals(2, ProductRegistry.getProducts().size());
+        assertNull(ProductRegistry.getPrice(productB));
+    }
+
+    @Test
+    public void test_importPrices_mergeOverCatalog() throws Exception {
+        Product productC = Product.builder().productCode("C").build();
+        Product productD = Product.builder().productCode("D").build();
+        Product productR = Product.builder().productCode("R").build();
+        ProductPrice rulePrice = ProductPrice.of(125, PricingRule.volume(3, 300));
+        ProductRegistry.register(productA, productPriceNoVolumeDiscount);
+        ProductRegistry.register(productB, productPriceNoVolumeDiscount);
+        ProductRegistry.register(productC, productPriceNoVolumeDiscount);
+        ProductRegistry.register(productR, rulePrice);
+        ProductRegistry.freeze();
+        //on top of the catalog: a de-registration and a registration
+        ProductRegistry.deregister(productB);
+        ProductRegistry.register(productD, productPriceVolumeDiscount);
+        int productIdA = ProductRegistry.getPriceBook().getEntry(productA).getProductId();
+        int productIdD = ProductRegistry.getPriceBook().getEntry(productD).getProductId();
+
+        Path feed = temporaryFolder.newFile().toPath();
+        Files.write(feed, ("A,1.50,1,1.50\nB,0.10,1,0.10\nR,2,1,2\n").getBytes(StandardCharsets.US_ASCII));
+        ImportReport report = ProductRegistry.importPrices(feed, ProductRegistry.ImportMode.MERGE);
+
+        assertEquals(1, report.getAdded());
+        assertEquals(2, report.getChanged());
+        assertEquals(0, report.getUnchanged());
+        assertEquals(5, ProductRegistry.getProducts().size());
+        assertEquals(new ProductPrice(150, 1, 150), ProductRegistry.getPrice(productA));
+        assertEquals(productPriceNoVolumeDiscount, ProductRegistry.getPrice(productB));
+        assertEquals(productPriceNoVolumeDiscount, ProductRegistry.getPrice(productC));
+        assertEquals(productPriceVolumeDiscount, ProductRegistry.getPrice(productD));
+        assertEquals(new ProductPrice(200, 1, 200), ProductRegistry.getPrice(productR));
+        assertEquals(productIdA, ProductRegistry.getPriceBook().getEntry(productA).getProductId());
+        assertEquals(productIdD, ProductRegistry.getPriceBook().getEntry(productD).getProductId());
+
+        //a product priced with rules that the feed does not list stays in the overlay as it was
+        ProductRegistry.register(productR, rulePrice);
+        PriceBook.Entry ruleEntry = ProductRegistry.getPriceBook().getEntry(productR);
+        Files.write(feed, "A,1.50,1,1.50\n".getBytes(StandardCharsets.US_ASCII));
+        report = ProductRegistry.importPrices(feed, ProductRegistry.ImportMode.MERGE);
+
+        assertEquals(1, report.getUnchanged());
+        assertSame(ruleEntry, ProductRegistry.getPriceBook().getEntry(productR));
+        assertEquals(5, ProductRegistry.getProducts().size());
+    }
+
+    @Test
+    public void test_importPrices_rejected() throws Exception {
+        ProductRegistry.register(productA, productPriceNoVolumeDiscount);
+
+        Path feed = temporaryFolder.newFile().toPath();
+        Files.write(feed, ("A,1.50,1,1.50\nB,1.50,0,1.50\n").getBytes(StandardCharsets.US_ASCII));
+
+        long version = ProductRegistry.getVersion();
+        try {
+            ProductRegistry.importPrices(feed, ProductRegistry.ImportMode.REPLACE);
+            fail();
+        } catch (PriceFeedException e) {
+            assertEquals(1, e.getErrors().size());
+        }
+
+        assertEquals(version, ProductRegistry.getVersion());
+        assertEquals(productPriceNoVolumeDiscount, ProductRegistry.getPrice(productA));
+    }
+
+    @Test
+    public void test_setPriceSource() {
+        SimulatedPriceSource source = new SimulatedPriceSource(0, 0, 0);
+        source.put(productA, productPriceVolumeDiscount);
+        source.put(productB, productPriceVolumeDiscount);
+        ProductRegistry.register(productA, productPriceNoVolumeDiscount);
+        assertNull(ProductRegistry.getPrice(productB));
+
+        SourcedPriceCache cache = ProductRegistry.setPriceSource(source, PriceSourceConfig.builder().build());
+        assertSame(cache, ProductRegistry.getPriceSourceCache());
+
+        //registered prices take precedence
+        assertEquals(productPriceNoVolumeDiscount, ProductRegistry.getPrice(productA));
+        assertEquals(productPriceVolumeDiscount, ProductRegistry.getPrice(productB));
+        assertEquals(productPriceVolumeDiscount, ProductRegistry.getSourcedEntry("B").getProductPrice());
+        assertFalse(ProductRegistry.getProducts().contains(productB));
+        assertEquals(1, source.getFetches());
+
+        ProductRegistry.removePriceSource();
+        assertNull(ProductRegistry.getPriceSourceCache());
+        assertNull(ProductRegistry.getPrice(productB));
+        assertNull(ProductRegistry.getSourcedEntry(productB));
+
+        ProductRegistry.setPriceSource(source, PriceSourceConfig.builder().build());
+        ProductRegistry.reset();
+        assertNull(ProductRegistry.getPriceSourceCache());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,160 @@
+package com.eugene.percent.factory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.eugene.percent.model.PricingRule;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RegistryChangeLogTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Product productA;
+    private Product productB;
+    private ProductPrice productPriceA;
+    private ProductPrice productPriceB;
+
+    @Before
+    public void setUp() {
+        ProductRegistry.reset();
+
+        productA = Product.builder().productCode("A").build();
+        productB = Product.builder().productCode("B").build();
+        productPriceA = new ProductPrice(10, 1, 10);
+        productPriceB = ProductPrice.of(20, PricingRule.buyGetFree(2, 1));
+    }
+
+    @After
+    public void tearDown() {
+        ProductRegistry.reset();
+    }
+
+    @Test
+    public void test_changeFeed() throws Exception {
+        ChangeFeed feed = ProductRegistry.getChangeFeed();
+        long sequence = feed.getSequence();
+        assertEquals(ProductRegistry.getVersion(), sequence);
+        assertTrue(feed.changesSince(sequence, 10).isEmpty());
+
+        ProductRegistry.register(productA, productPriceA);
+        ProductRegistry.register(productB, productPriceB);
+        ProductRegistry.deregister(productA);
+        ProductRegistry.deregister(productA); //not registered, nothing published
+
+        List<RegistryChange> changes = feed.changesSince(sequence, 10);
+        assertEquals(3, changes.size());
+        assertEquals(ProductRegistry.getVersion(), feed.getSequence());
+        assertEquals(ProductRegistry.getVersion(), changes.get(2).getSequence());
+        assertEquals(Collections.singletonMap(productA, productPriceA), changes.get(0).getProductPrices());
+        assertEquals(Collections.singletonMap(productB, productPriceB), changes.get(1).getProductPrices());
+        assertEquals(Collections.singletonMap(productA, null), changes.get(2).getProductPrices());
+        for (RegistryChange change : changes) {
+            assertEquals(RegistryChange.Type.DELTA, change.getType());
+        }
+
+        assertEquals(changes.subList(0, 2), feed.changesSince(sequence, 2));
+        assertEquals(changes.subList(1, 3), feed.changesSince(changes.get(0).getSequence(), 10));
+        assertNull(feed.changesSince(feed.getSequence() + 1, 10));
+
+        //catalogs are not shipped as deltas
+        Path catalogFile = temporaryFolder.getRoot().toPath().resolve("catalog.bin");
+        ProductRegistry.register(productA, productPriceA);
+        ProductRegistry.deregister(productB);
+        ProductRegistry.save(catalogFile);
+        sequence = feed.getSequence();
+        ProductRegistry.freeze();
+        ProductRegistry.load(catalogFile);
+        ProductRegistry.reset();
+
+        changes = feed.changesSince(sequence, 10);
+        assertEquals(3, changes.size());
+        assertEquals(RegistryChange.Type.DELTA, changes.get(0).getType());
+        assertEquals(0, changes.get(0).size());
+        assertEquals(RegistryChange.Type.CATALOG, changes.get(1).getType());
+        assertEquals(RegistryChange.Type.SNAPSHOT, changes.get(2).getType());
+        assertEquals(0, changes.get(2).size());
+    }
+
+    @Test
+    public void test_snapshot() throws Exception {
+        ProductRegistry.register(productA, productPriceA);
+        ProductRegistry.register(productB, productPriceB);
+        ProductRegistry.freeze();
+        ProductRegistry.deregister(productA);
+
+        RegistryChange snapshot = ProductRegistry.getChangeFeed().snapshot();
+        assertEquals(RegistryChange.Type.SNAPSHOT, snapshot.getType());
+        assertEquals(ProductRegistry.getVersion(), snapshot.getSequence());
+        assertEquals(Collections.singletonMap(productB, productPriceB), snapshot.getProductPrices());
+    }
+
+    @Test
+    public void test_truncation() {
+        PriceBook[] book = {PriceBook.EMPTY};
+        RegistryChangeLog log = new RegistryChangeLog(3, () -> book[0]);
+        assertTrue(log.changesSince(0, 10).isEmpty());
+
+        for (int version = 1; version <= 4; ++version) {
+            Map<Product, ProductPrice> productPrices = new HashMap<>();
+            productPrices.put(Product.builder().productCode("A" + version).build(), productPriceA);
+            productPrices.put(Product.builder().productCode("B" + version).build(), null);
+            log.append(new RegistryChange(version, 0, RegistryChange.Type.DELTA, productPrices));
+        }
+
+        //only the latest change fits
+        assertEquals(4, log.getSequence());
+        assertNull(log.changesSince(0, 10));
+        assertNull(log.changesSince(2, 10));
+        assertEquals(1, log.changesSince(3, 10).size());
+        assertTrue(log.changesSince(4, 10).isEmpty());
+    }
+
+    @Test
+    public void test_apply() throws Exception {
+        Map<Product, ProductPrice> productPrices = new HashMap<>();
+        productPrices.put(productA, productPriceA);
+        productPrices.put(productB, productPriceB);
+        ProductRegistry.apply(new RegistryChange(7, 0, RegistryChange.Type.SNAPSHOT, productPrices));
+        assertEquals(productPriceA, ProductRegistry.getPrice(productA));
+        assertEquals(productPriceB, ProductRegistry.getPrice(productB));
+
+        Product productC = Product.builder().productCode("C").build();
+        Map<Product, ProductPrice> delta = new HashMap<>();
+        delta.put(productA, null);
+        delta.put(productC, productPriceA);
+        long version = ProductRegistry.getVersion();
+        ProductRegistry.apply(new RegistryChange(8, 0, RegistryChange.Type.DELTA, delta));
+        assertNull(ProductRegistry.getPrice(productA));
+        assertEquals(productPriceA, ProductRegistry.getPrice(productC));
+        assertEquals(2, ProductRegistry.getProducts().size());
+
+        //the replica's own feed publishes the change as one change
+        assertEquals(delta, ProductRegistry.getChangeFeed().changesSince(version, 10).get(0).getProductPrices());
+
+        ProductRegistry.apply(new RegistryChange(9, 0, RegistryChange.Type.SNAPSHOT, Collections.emptyMap()));
+        assertEquals(0, ProductRegistry.getProducts().size());
+
+        try {
+            ProductRegistry.apply(new RegistryChange(10, 0, RegistryChange.Type.CATALOG, Collections.emptyMap()));
+            fail();
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.eugene.percent.factory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+import com.eugene.percent.simulator.SimulatedPriceSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SourcedPriceCacheTest {
+    private final AtomicLong nanoClock = new AtomicLong();
+
+    private Product productA;
+    private Product productB;
+    private ProductPrice productPriceA;
+    private SimulatedPriceSource source;
+    private SourcedPriceCache cache;
+
+    @Before
+    public void setUp() {
+        ProductRegistry.reset();
+
+        productA = Product.builder().productCode("A").build();
+        productB = Product.builder().productCode("B").build();
+        productPriceA = new ProductPrice(10, 1, 10);
+        source = new SimulatedPriceSource(0, 0, 0);
+        source.put(productA, productPriceA);
+    }
+
+    @After
+    public void tearDown() {
+        if (cache != null) {
+            cache.close();
+        }
+        ProductRegistry.reset();
+    }
+
+    @Test
+    public void test_getEntry() {
+        cache = cache(source, PriceSourceConfig.builder().build());
+
+        PriceBook.Entry entry = cache.getEntry(productA);
+        assertSame(productPriceA, entry.getProductPrice());
+        assertEquals(productA, entry.getProduct());
+        assertSame(entry, cache.getEntry(productA));
+        assertSame(entry, cache.getEntry(new StringBuilder("A")));
+        assertEquals(1, source.getFetches());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+
+        //id is kept when the product is registered
+        ProductRegistry.register(productA, productPriceA);
+        assertEquals(entry.getProductId(), ProductRegistry.getPriceBook().getEntry(productA).getProductId());
+
+        //unknown products are remembered for the negative ttl
+        assertNull(cache.getEntry(productB));
+        assertNull(cache.getEntry(productB));
+        assertEquals(2, source.getFetches());
+        nanoClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(PriceSourceConfig.builder().build().getNegativeTtlMillis()));
+        assertNull(cache.getEntry(productB));
+        assertEquals(3, source.getFetches());
+    }
+
+    @Test
+    public void test_getEntry_expires() {
+        cache = cache(source, PriceSourceConfig.builder().ttlMillis(1000).refreshAheadMillis(0).build());
+
+        assertSame(productPriceA, cache.getEntry(productA).getProductPrice());
+        ProductPrice repricedA = new ProductPrice(12, 1, 12);
+        source.put(productA, repricedA);
+
+        nanoClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        assertSame(productPriceA, cache.getEntry(productA).getProductPrice());
+        nanoClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertSame(repricedA, cache.getEntry(productA).getProductPrice());
+        assertEquals(2, source.getFetches());
+        assertEquals(0, cache.getRefreshes());
+
+        cache.invalidate(productA);
+        source.remove(productA);
+        assertNull(cache.getEntry(productA));
+    }
+
+    @Test
+    public void test_getEntry_refreshesAhead() throws Exception {
+        cache = cache(source, PriceSourceConfig.builder().ttlMillis(1000).refreshAheadMillis(200).build());
+
+        assertSame(productPriceA, cache.getEntry(productA).getProductPrice());
+        ProductPrice repricedA = new ProductPrice(12, 1, 12);
+        source.put(productA, repricedA);
+
+        nanoClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(799));
+        assertSame(productPriceA, cache.getEntry(productA).getProductPrice());
+        assertEquals(0, cache.getRefreshes());
+
+        //served the cached price while it is refreshed
+        nanoClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        assertSame(productPriceA, cache.getEntry(productA).getProductPrice());
+        assertEquals(1, cache.getRefreshes());
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (cache.getEntry(productA).getProductPrice() != repricedA) {
+            assertTrue("Price not refreshed", System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+
+        //the refreshed price is served for a whole ttl
+        nanoClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(700));
+        assertSame(repricedA, cache.getEntry(productA).getProductPrice());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, source.getFetches());
+    }
+
+    @Test
+    public void test_getEntry_coalescesMisses() throws Exception {
+        SimulatedPriceSource slowSource = new SimulatedPriceSource(200, 0, 0);
+        slowSource.put(productA, productPriceA);
+        cache = new SourcedPriceCache(slowSource, PriceSourceConfig.builder().build());
+
+        int lanes = 200;
+        CountDownLatch start = new CountDownLatch(1);
+        PriceBook.Entry[] entries = new PriceBook.Entry[lanes];
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < lanes; ++i) {
+            int lane = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    entries[lane] = cache.getEntry(productA);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (PriceBook.Entry entry : entries) {
+            assertSame(entries[0], entry);
+        }
+        assertSame(productPriceA, entries[0].getProductPrice());
+        assertEquals(1, slowSource.getFetches());
+        assertEquals(1, cache.getFetches());
+        assertEquals(lanes, cache.getMisses() + cache.getHits());
+        assertTrue(cache.getCoalesced() > 0 && cache.getCoalesced() < cache.getMisses());
+    }
+
+    @Test
+    public void test_getEntry_failedFetch() {
+        SimulatedPriceSource failingSource = new SimulatedPriceSource(0, 0, 1);
+        failingSource.put(productA, productPriceA);
+        cache = cache(failingSource, PriceSourceConfig.builder().build());
+
+        assertNull(cache.getEntry(productA));
+        assertNull(cache.getEntry(productA));
+        assertEquals(2, failingSource.getFetches());
+        assertEquals(2, cache.getFailures());
+        assertEquals(0, cache.size());
+
+        SimulatedPriceSource slowSource = new SimulatedPriceSource(500, 0, 0);
+        slowSource.put(productA, productPriceA);
+        cache.close();
+        cache = new SourcedPriceCache(slowSource, PriceSourceConfig.builder().fetchTimeoutMillis(20).build());
+
+        assertNull(cache.getEntry(productA));
+        assertEquals(1, cache.getTimeouts());
+    }
+
+    @Test
+    public void test_evict() {
+        int maximumSize = 16;
+        for (int i = 0; i < 4 * maximumSize; ++i) {
+            source.put(Product.builder().productCode("P" + i).build(), new ProductPrice(i + 1, 1, i + 1));
+        }
+        cache = cache(source, PriceSourceConfig.builder().maximumSize(maximumSize).build());
+
+        Product hot = Product.builder().productCode("P0").build();
+        for (int i = 0; i < 4 * maximumSize; ++i) {
+            nanoClock.incrementAndGet();
+            assertEquals(1, cache.getEntry(hot).getProductPrice().getPricePerUnit());
+            nanoClock.incrementAndGet();
+            assertEquals(i + 1, cache.getEntry(Product.builder().productCode("P" + i).build())
+                    .getProductPrice().getPricePerUnit());
+            assertTrue(cache.size() <= maximumSize);
+        }
+
+        //the hot product was never evicted
+        assertEquals(4 * maximumSize, source.getFetches());
+        assertEquals(4 * maximumSize - cache.size(), cache.getEvictions());
+    }
+
+    @Test
+    public void test_getEntry_ids() {
+        Product productE = Product.builder().productCode("sourced-E").build(); //never registered
+        source.put(productE, productPriceA);
+        cache = cache(source, PriceSourceConfig.builder().ttlMillis(1000).refreshAheadMillis(0).build());
+
+        int productId = cache.getEntry(productE).getProductId();
+        assertEquals(productId, cache.productIdOf(productE));
+
+        //kept while cached, across refetches of the expired price
+        nanoClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        assertEquals(productId, cache.getEntry(productE).getProductId());
+        assertEquals(2, source.getFetches());
+
+        //not interned - once the price is dropped, the product gets a new id
+        cache.invalidate(productE);
+        assertEquals(-1, cache.productIdOf(productE));
+        int refetchedProductId = cache.getEntry(productE).getProductId();
+        assertNotEquals(productId, refetchedProductId);
+
+        //registered products are fetched with their registered id
+        ProductRegistry.register(productB, productPriceA);
+        int productIdB = ProductRegistry.getPriceBook().getEntry(productB).getProductId();
+        ProductRegistry.deregister(productB);
+        source.put(productB, productPriceA);
+        assertEquals(productIdB, cache.getEntry(productB).getProductId());
+    }
+
+    private SourcedPriceCache cache(PriceSource priceSource, PriceSourceConfig config) {
+        return new SourcedPriceCache(priceSource, config, nanoClock::get);
+    }
+}
@@ -0,0 +1,193 @@
+package com.eugene.percent.journal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+import com.eugene.percent.model.Sale;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+public class TransactionJournalTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static Sale sale(String terminalId, int i) {
+        ProductPrice productPrice = new ProductPrice(125, 3, 300);
+        List<Sale.Line> lines = Arrays.asList(
+                new Sale.Line(Product.builder().productCode("A" + i).build(), i + 1, productPrice,
+                        productPrice.calculatePrice(i + 1)),
+                new Sale.Line(Product.builder().productCode("\u00e9" + i).build(), 1, productPrice, 125));
+
+        return new Sale(terminalId, 1000L + i, lines, productPrice.calculatePrice(i + 1) + 125);
+    }
+
+    @Test
+    public void test_appendAndReplay() throws Exception {
+        Path path = temporaryFolder.newFile().toPath();
+        int n = 1000;
+
+        List<Sale> expected = new ArrayList<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try (TransactionJournal journal = TransactionJournal.open(path)) {
+            for (int i = 0; i < n; ++i) {
+                Sale sale = sale("T" + (i % 3), i);
+                expected.add(sale);
+                futures.add(journal.append(sale));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get();
+        }
+
+        List<Sale> replayed = new ArrayList<>();
+        assertEquals(n, TransactionJournal.replay(path, replayed::add));
+        assertEquals(expected, replayed);
+    }
+
+    @Test
+    public void test_concurrentAppend() throws Exception {
+        Path path = temporaryFolder.newFile().toPath();
+        int numThreads = 4;
+        int salesPerThread = 250;
+
+        try (TransactionJournal journal = TransactionJournal.open(path, 16)) {
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < numThreads; ++t) {
+                final String terminalId = "T" + t;
+                threads.add(new Thread(() -> {
+                    for (int i = 0; i < salesPerThread; ++i) {
+                        journal.append(sale(terminalId, i));
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+
+        assertEquals(numThreads * salesPerThread, TransactionJournal.replay(path, sale -> { }));
+    }
+
+    @Test
+    public void test_recoverTornRecord() throws Exception {
+        Path path = temporaryFolder.newFile().toPath();
+        try (TransactionJournal journal = TransactionJournal.open(path)) {
+            journal.append(sale("T", 1));
+            journal.append(sale("T", 2)).get();
+        }
+        long completeSize = Files.size(path);
+
+        //crash in the middle of writing the third record
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {100, 0, 0, 0, 1, 2, 3}));
+        }
+        assertEquals(2, TransactionJournal.replay(path, sale -> { }));
+
+        try (TransactionJournal journal = TransactionJournal.open(path)) {
+            assertEquals(completeSize, Files.size(path));
+            journal.append(sale("T", 3)).get();
+        }
+
+        List<Sale> replayed = new ArrayList<>();
+        TransactionJournal.replay(path, replayed::add);
+        assertEquals(Arrays.asList(sale("T", 1), sale("T", 2), sale("T", 3)), replayed);
+    }
+
+    @Test
+    public void test_largeSale() throws Exception {
+        Path path = temporaryFolder.newFile().toPath();
+        ProductPrice productPrice = new ProductPrice(1, 1, 1);
+        List<Sale.Line> lines = new ArrayList<>();
+        for (int i = 0; i < 20000; ++i) {
+            lines.add(new Sale.Line(Product.builder().productCode("P" + i).build(), 1, productPrice, 1));
+        }
+        Sale sale = new Sale("T", 1, Collections.unmodifiableList(lines), lines.size());
+
+        try (TransactionJournal journal = TransactionJournal.open(path)) {
+            journal.append(sale).get();
+        }
+
+        List<Sale> replayed = new ArrayList<>();
+        TransactionJournal.replay(path, replayed::add);
+        assertEquals(Collections.singletonList(sale), replayed);
+    }
+
+    @Test
+    public void test_tryAppend() throws Exception {
+        Path path = temporaryFolder.newFile().toPath();
+        int n = 10000;
+
+        int notQueued = 0;
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try (TransactionJournal journal = TransactionJournal.open(path, 1)) {
+            for (int i = 0; i < n; ++i) {
+                CompletableFuture<Void> durable = journal.tryAppend(sale("T", i));
+                if (durable == null) {
+                    ++notQueued;
+                } else {
+                    futures.add(durable);
+                }
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get();
+        }
+
+        //the writer cannot keep a queue of one free for a burst
+        assertTrue(notQueued > 0);
+        assertEquals(n - notQueued, TransactionJournal.replay(path, sale -> { }));
+    }
+
+    @Test
+    public void test_failedEncoding() throws Exception {
+        Path path = temporaryFolder.newFile().toPath();
+        Sale.Line line = sale("T", 1).getLines().get(0);
+        //sized fine, then fails halfway through encoding
+        List<Sale.Line> lines = new AbstractList<Sale.Line>() {
+            private int reads;
+
+            @Override
+            public Sale.Line get(int index) {
+                if (++reads > 2) {
+                    throw new IllegalStateException("Lines changed");
+                }
+                return line;
+            }
+
+            @Override
+            public int size() {
+                return 2;
+            }
+        };
+
+        try (TransactionJournal journal = TransactionJournal.open(path)) {
+            journal.append(sale("T", 1)).get();
+            try {
+                journal.append(new Sale("T", 2, lines, 0)).get();
+                fail();
+            } catch (ExecutionException e) {
+                assertEquals(IllegalStateException.class, e.getCause().getClass());
+            }
+            journal.append(sale("T", 3)).get();
+        }
+
+        List<Sale> replayed = new ArrayList<>();
+        TransactionJournal.replay(path, replayed::add);
+        assertEquals(Arrays.asList(sale("T", 1), sale("T", 3)), replayed);
+    }
+}
@@ -0,0 +1,64 @@
+package com.eugene.percent.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+    @Test
+    public void test_empty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(99), 0);
+        assertEquals(0, histogram.getMean(), 0);
+    }
+
+    @Test
+    public void test_percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 100000; ++i) {
+            histogram.record(i * 1000);
+        }
+
+        assertEquals(100000, histogram.getCount());
+        assertEquals(100000000, histogram.getMax());
+        assertEquals(50000500, histogram.getMean(), 1);
+        assertWithin(50000000, histogram.getValueAtPercentile(50));
+        assertWithin(99000000, histogram.getValueAtPercentile(99));
+        assertEquals(100000000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void test_smallValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 32; ++i) {
+            histogram.record(i);
+        }
+        histogram.record(-5);
+
+        assertEquals(0, histogram.getValueAtPercentile(0));
+        assertEquals(15, histogram.getValueAtPercentile(50));
+        assertEquals(31, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void test_add() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.record(10);
+        b.record(Long.MAX_VALUE);
+
+        a.add(b);
+
+        assertEquals(2, a.getCount());
+        assertEquals(Long.MAX_VALUE, a.getMax());
+        assertEquals(10, a.getValueAtPercentile(50));
+        assertEquals(Long.MAX_VALUE, a.getValueAtPercentile(100));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual + " not within 4% of " + expected, Math.abs(actual - expected) <= expected * 0.04);
+    }
+}
@@ -0,0 +1,87 @@
+package com.eugene.percent.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class MetricsTest {
+    @Before
+    public void setUp() {
+        Metrics.reset();
+    }
+
+    @After
+    public void tearDown() {
+        Metrics.setEnabled(false);
+        Metrics.reset();
+    }
+
+    @Test
+    public void test_recordRegistryLookup_onlyWhenEnabled() {
+        Metrics.setEnabled(false);
+        Metrics.recordRegistryLookup(false);
+        assertEquals(0, Metrics.getRegistryLookups());
+
+        Metrics.setEnabled(true);
+        Metrics.recordRegistryLookup(true);
+        Metrics.recordRegistryLookup(false);
+        assertEquals(2, Metrics.getRegistryLookups());
+        assertEquals(1, Metrics.getRegistryMisses());
+    }
+
+    @Test
+    public void test_counters_concurrent() throws Exception {
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; ++i) {
+                    Metrics.recordScan(i % 10 != 0);
+                }
+                Metrics.recordSession();
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40000, Metrics.getScans());
+        assertEquals(4000, Metrics.getScanErrors());
+        assertEquals(4, Metrics.getSessions());
+    }
+
+    @Test
+    public void test_mbean() throws Exception {
+        Metrics.registerMBean();
+        Metrics.registerMBean(); //already registered, no-op
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+
+        server.setAttribute(name, new Attribute("Enabled", true));
+        assertTrue(Metrics.isEnabled());
+
+        Metrics.recordScan(false);
+        assertEquals(1L, server.getAttribute(name, "Scans"));
+        assertEquals(1L, server.getAttribute(name, "ScanErrors"));
+
+        server.invoke(name, "reset", null, null);
+        assertEquals(0L, server.getAttribute(name, "Scans"));
+
+        server.setAttribute(name, new Attribute("Enabled", false));
+        assertFalse(Metrics.isEnabled());
+
+        Metrics.unregisterMBean(Metrics.OBJECT_NAME);
+        assertFalse(server.isRegistered(name));
+    }
+}
@@ -0,0 +1,44 @@
+package com.eugene.percent.model;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+public class MoneyTest {
+    @Test
+    public void test_of() {
+        assertEquals(125, Money.of("1.25"));
+        assertEquals(300, Money.of("3"));
+        assertEquals(10, Money.of("0.1"));
+        assertEquals(-5, Money.of(new BigDecimal("-0.05")));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void test_of_tooManyDecimals() {
+        Money.of("0.125");
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void test_add_overflow() {
+        Money.add(Long.MAX_VALUE, 1);
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void test_multiply_overflow() {
+        Money.multiply(Long.MAX_VALUE / 2, 3);
+    }
+
+    @Test
+    public void test_exactSum() {
+        long tenCents = Money.of("0.10");
+        long total = Money.ZERO;
+        for (int i = 0; i < 1_000_000; ++i) {
+            total = Money.add(total, tenCents);
+        }
+
+        assertEquals(new BigDecimal("100000.00"), Money.toBigDecimal(total));
+        assertEquals("100000.00", Money.toString(total));
+    }
+}
@@ -1,7 +1,9 @@
 package com.eugene.percent.model;
 
-import static com.eugene.percent.TestingConstants.DOUBLE_DELTA;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
@@ -25,11 +27,11 @@ public class ProductPriceTest {
     public void test_calculatePrice_nonPositiveQuantity() {
         ProductPrice productPrice = new ProductPrice(1, 1, 1);
 
-        double price = productPrice.calculatePrice(0);
-        assertEquals(0.0, price, DOUBLE_DELTA);
+        long price = productPrice.calculatePrice(0);
+        assertEquals(0, price);
 
         price = productPrice.calculatePrice(-1);
-        assertEquals(0.0, price, DOUBLE_DELTA);
+        assertEquals(0, price);
     }
 
     @Test
@@ -37,17 +39,87 @@ public class ProductPriceTest {
         ProductPrice productPrice = new ProductPrice(10, 5, 45);
 
         //non-volume discount
-        double price = productPrice.calculatePrice(1);
-        assertEquals(10.0, price, DOUBLE_DELTA);
+        long price = productPrice.calculatePrice(1);
+        assertEquals(10, price);
 
         price = productPrice.calculatePrice(4);
-        assertEquals(40.0, price, DOUBLE_DELTA);
+        assertEquals(40, price);
 
         //volume discount
         price = productPrice.calculatePrice(5);
-        assertEquals(45.0, price, DOUBLE_DELTA);
+        assertEquals(45, price);
 
         price = productPrice.calculatePrice(11);
-        assertEquals(100.0, price, DOUBLE_DELTA);
+        assertEquals(100, price);
     }
-}
\ No newline at end of file
+
+    @Test(expected = ArithmeticException.class)
+    public void test_calculatePrice_overflow() {
+        new ProductPrice(Long.MAX_VALUE / 2, 1, Long.MAX_VALUE / 2).calculatePrice(3);
+    }
+
+    @Test
+    public void test_calculatePriceDelta() {
+        ProductPrice productPrice = new ProductPrice(10, 5, 45);
+
+        for (int numberOfUnits = 0; numberOfUnits < 12; ++numberOfUnits) {
+            for (int additionalUnits = 1; additionalUnits < 7; ++additionalUnits) {
+                assertEquals(
+                        productPrice.calculatePrice(numberOfUnits + additionalUnits)
+                                - productPrice.calculatePrice(numberOfUnits),
+                        productPrice.calculatePriceDelta(numberOfUnits, additionalUnits));
+            }
+        }
+    }
+
+    @Test
+    public void test_of_rules() {
+        //1.25 each, 3 for 3.00, 10 for 9.00, buy 2 get 1 free
+        ProductPrice productPrice = ProductPrice.of(125,
+                PricingRule.volume(3, 300), PricingRule.volume(10, 900), PricingRule.buyGetFree(2, 1));
+
+        assertTrue(productPrice.hasRules());
+        assertFalse(new ProductPrice(125, 3, 300).hasRules());
+
+        //headline tier is the one with the lowest price per unit
+        assertEquals(3, productPrice.getNumberOfUnitsInVolume());
+        assertEquals(250, productPrice.getPricePerVolume());
+
+        assertEquals(0, productPrice.calculatePrice(0));
+        assertEquals(125, productPrice.calculatePrice(1));
+        assertEquals(250, productPrice.calculatePrice(3));
+        assertEquals(750, productPrice.calculatePrice(9));
+        assertEquals(875, productPrice.calculatePrice(10));
+        assertEquals(250 * 1000 + 125, productPrice.calculatePrice(3001));
+    }
+
+    @Test
+    public void test_of_promotionLimit() {
+        ProductPrice productPrice = ProductPrice.of(100, 6, PricingRule.volume(3, 250));
+
+        assertEquals(500, productPrice.calculatePrice(6));
+        assertEquals(600, productPrice.calculatePrice(7));
+        assertEquals(500 + 100 * 94, productPrice.calculatePrice(100));
+    }
+
+    @Test
+    public void test_of_equals() {
+        assertEquals(ProductPrice.of(100, PricingRule.volume(3, 250)), ProductPrice.of(100, PricingRule.volume(3, 250)));
+        assertNotEquals(ProductPrice.of(100, PricingRule.volume(3, 250)), ProductPrice.of(100, PricingRule.volume(3, 240)));
+        assertNotEquals(ProductPrice.of(100, PricingRule.volume(3, 250)), new ProductPrice(100, 3, 250));
+    }
+
+    @Test
+    public void test_calculatePriceDelta_rules() {
+        ProductPrice productPrice = ProductPrice.of(10, PricingRule.volume(4, 30), PricingRule.volume(7, 45));
+
+        for (int numberOfUnits = 0; numberOfUnits < 40; ++numberOfUnits) {
+            for (int additionalUnits = 1; additionalUnits < 9; ++additionalUnits) {
+                assertEquals(
+                        productPrice.calculatePrice(numberOfUnits + additionalUnits)
+                                - productPrice.calculatePrice(numberOfUnits),
+                        productPrice.calculatePriceDelta(numberOfUnits, additionalUnits));
+            }
+        }
+    }
+}
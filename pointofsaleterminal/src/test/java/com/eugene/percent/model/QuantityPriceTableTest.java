@@ -0,0 +1,79 @@
+package com.eugene.percent.model;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class QuantityPriceTableTest {
+    @Test
+    public void test_price_matchesDynamicProgramming() {
+        Random random = new Random(42);
+
+        for (int round = 0; round < 200; ++round) {
+            long pricePerUnit = 1 + random.nextInt(100);
+            List<PricingRule> rules = new ArrayList<>();
+            for (int i = random.nextInt(4); i >= 0; --i) {
+                rules.add(random.nextBoolean()
+                        ? PricingRule.volume(1 + random.nextInt(12), 1 + random.nextInt(1000))
+                        : PricingRule.buyGetFree(1 + random.nextInt(5), 1 + random.nextInt(3)));
+            }
+            int promotionLimit = random.nextBoolean() ? ProductPrice.NO_LIMIT : random.nextInt(50);
+
+            QuantityPriceTable table = new QuantityPriceTable(pricePerUnit, rules, promotionLimit);
+            long[] expected = cheapestPrices(pricePerUnit, rules, promotionLimit, 1000);
+            for (int n = 0; n < expected.length; ++n) {
+                assertEquals(rules + " limit " + promotionLimit + " x" + n, expected[n], table.price(n));
+            }
+        }
+    }
+
+    @Test
+    public void test_price_noRules() {
+        QuantityPriceTable table = new QuantityPriceTable(7, Collections.emptyList(), ProductPrice.NO_LIMIT);
+
+        assertEquals(0, table.price(-1));
+        assertEquals(7, table.price(1));
+        assertEquals(7L * Integer.MAX_VALUE, table.price(Integer.MAX_VALUE));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void test_price_overflow() {
+        new QuantityPriceTable(Long.MAX_VALUE / 2, Arrays.asList(PricingRule.volume(2, Long.MAX_VALUE / 2)),
+                ProductPrice.NO_LIMIT).price(5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_tooLarge() {
+        new QuantityPriceTable(100, Arrays.asList(PricingRule.volume(1000, 1), PricingRule.volume(999, 1)),
+                ProductPrice.NO_LIMIT);
+    }
+
+    /**
+     * Unbounded knapsack over every quantity, without the periodic shortcut.
+     */
+    private static long[] cheapestPrices(long pricePerUnit, List<PricingRule> rules, int promotionLimit, int length) {
+        long[] prices = new long[length];
+        for (int n = 1; n < length; ++n) {
+            if (n > promotionLimit) {
+                prices[n] = prices[n - 1] + pricePerUnit;
+                continue;
+            }
+
+            prices[n] = prices[n - 1] + pricePerUnit;
+            for (PricingRule rule : rules) {
+                if (rule.getNumberOfUnits() <= n) {
+                    prices[n] = Math.min(prices[n],
+                            prices[n - rule.getNumberOfUnits()] + rule.priceOfVolume(pricePerUnit));
+                }
+            }
+        }
+
+        return prices;
+    }
+}
@@ -0,0 +1,58 @@
+package com.eugene.percent.pointofsaleterminal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.eugene.percent.model.Product;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class BarcodeViewTest {
+    @Test
+    public void test_isValidGtin() {
+        assertTrue(BarcodeView.isValidGtin("73513537"));        //EAN-8
+        assertTrue(BarcodeView.isValidGtin("036000291452"));    //UPC-A
+        assertTrue(BarcodeView.isValidGtin("4006381333931"));   //EAN-13
+        assertTrue(BarcodeView.isValidGtin("10012345678902"));  //GTIN-14
+
+        assertFalse(BarcodeView.isValidGtin("4006381333932"));  //wrong check digit
+        assertFalse(BarcodeView.isValidGtin("4006381333391"));  //transposed digits
+        assertFalse(BarcodeView.isValidGtin("400638133393"));   //truncated
+        assertFalse(BarcodeView.isValidGtin("40063813339A1"));
+        assertFalse(BarcodeView.isValidGtin(""));
+    }
+
+    @Test
+    public void test_wrap() {
+        byte[] bytes = "xx4006381333931yy".getBytes(StandardCharsets.US_ASCII);
+        BarcodeView view = new BarcodeView();
+
+        view.wrap(bytes, 2, 13);
+        assertEquals("4006381333931", view.toString());
+        assertEquals("4006381333931".hashCode(), Product.codeHashCode(view));
+        assertTrue(view.isValidGtin());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes).position(2).limit(15);
+        view.wrap(direct);
+        assertEquals("4006381333931", view.toString());
+        assertEquals(2, direct.position());
+
+        ByteBuffer slice = ByteBuffer.wrap(bytes, 1, 15).slice();
+        slice.position(1);
+        view.wrap(slice);
+        assertEquals("4006381333931y", view.toString());
+
+        view.release();
+        assertEquals(0, view.length());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void test_wrap_outOfBounds() {
+        new BarcodeView().wrap(new byte[13], 1, 13);
+    }
+}
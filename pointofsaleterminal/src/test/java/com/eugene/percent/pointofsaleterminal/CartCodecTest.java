@@ -0,0 +1,118 @@
+package com.eugene.percent.pointofsaleterminal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.eugene.percent.factory.PriceBook;
+import com.eugene.percent.factory.ProductRegistry;
+import com.eugene.percent.model.PricingRule;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class CartCodecTest {
+    @After
+    public void tearDown() {
+        ProductRegistry.reset();
+    }
+
+    @Test
+    public void test_varint() {
+        long[] values = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, 1L << 32, Long.MAX_VALUE};
+        ByteBuffer buffer = ByteBuffer.allocate(128);
+
+        for (long value : values) {
+            buffer.clear();
+            CartCodec.putVarint(buffer, value);
+            assertEquals(CartCodec.varintSize(value), buffer.position());
+
+            buffer.flip();
+            assertEquals(value, CartCodec.getVarint(buffer));
+        }
+    }
+
+    @Test
+    public void test_encodeAndDecode() {
+        Product productA = Product.builder().productCode("codec-A").build();
+        Product productB = Product.builder().productCode("codec-\u00e9").build();
+        ProductPrice productPriceA = new ProductPrice(125, 3, 300);
+        ProductPrice productPriceB = ProductPrice.of(99, 6, PricingRule.volume(4, 300), PricingRule.buyGetFree(2, 1));
+        ProductRegistry.register(productA, productPriceA);
+        ProductRegistry.register(productB, productPriceB);
+
+        PriceBook priceBook = ProductRegistry.getPriceBook();
+        PriceBook.Entry entryA = priceBook.getEntry(productA);
+        PriceBook.Entry entryB = priceBook.getEntry(productB);
+
+        Cart cart = new Cart();
+        cart.add(entryA, 1000);
+        cart.add(entryB, 7);
+
+        ByteBuffer buffer = ByteBuffer.allocate(CartCodec.encodedSize(cart));
+        CartCodec.encode(cart, priceBook, buffer);
+        assertEquals(0, buffer.remaining());
+
+        //A is re-priced, B de-registered after the snapshot
+        ProductRegistry.register(productA, new ProductPrice(200, 1, 200));
+        ProductRegistry.deregister(productB);
+
+        Cart decoded = new Cart();
+        buffer.flip();
+        CartCodec.decode(buffer, priceBook, decoded);
+        assertEquals(2, decoded.size());
+        assertSame(entryA.getProductPrice(), decoded.priceAt(0));
+        assertEquals(1000, decoded.quantityAt(0));
+        assertSame(entryB.getProductPrice(), decoded.priceAt(1));
+        assertEquals(7, decoded.quantityAt(1));
+
+        //prices that are not in the price book are decoded, not shared
+        PriceBook currentBook = ProductRegistry.getPriceBook();
+        buffer = ByteBuffer.allocate(CartCodec.encodedSize(cart));
+        CartCodec.encode(cart, currentBook, buffer);
+        decoded.clear();
+        CartCodec.decode(buffer.flip(), currentBook, decoded);
+        assertEquals(productA, decoded.productAt(0));
+        assertNotSame(entryA.getProductPrice(), decoded.priceAt(0));
+        assertEquals(productPriceA, decoded.priceAt(0));
+        assertEquals(productB, decoded.productAt(1));
+        assertEquals(productPriceB, decoded.priceAt(1));
+        assertEquals(productPriceB.calculatePrice(7), decoded.priceAt(1).calculatePrice(7));
+    }
+
+    @Test
+    public void test_decode_acrossFreeze() {
+        Product productA = Product.builder().productCode("codec-A").build();
+        Product productB = Product.builder().productCode("codec-B").build();
+        ProductPrice productPriceA = new ProductPrice(125, 3, 300);
+        ProductRegistry.register(productA, productPriceA);
+        ProductRegistry.register(productB, new ProductPrice(50, 1, 50));
+
+        //lines bound to ids another registry gave the products
+        Cart cart = new Cart();
+        cart.add(new PriceBook.Entry(1 << 20, productB, new ProductPrice(50, 1, 50)), 2);
+        cart.add(new PriceBook.Entry((1 << 20) + 1, productA, productPriceA), 1);
+
+        PriceBook priceBook = ProductRegistry.getPriceBook();
+        ByteBuffer buffer = ByteBuffer.allocate(CartCodec.encodedSize(cart));
+        CartCodec.encode(cart, priceBook, buffer);
+
+        ProductRegistry.freeze();
+        PriceBook frozenBook = ProductRegistry.getPriceBook();
+
+        Cart decoded = new Cart();
+        CartCodec.decode(buffer.flip(), frozenBook, decoded);
+        assertEquals(2, decoded.size());
+        assertEquals(productB, decoded.productAt(0));
+        assertEquals(frozenBook.getEntry(productB).getProductId(), decoded.productIdAt(0));
+        assertEquals(2, decoded.quantityAt(0));
+        assertEquals(productA, decoded.productAt(1));
+        assertEquals(frozenBook.getEntry(productA).getProductId(), decoded.productIdAt(1));
+        //catalog records' entries are not held, a lookup makes a new one
+        assertEquals(frozenBook.getEntry(productA).getProductPrice(), decoded.priceAt(1));
+    }
+}
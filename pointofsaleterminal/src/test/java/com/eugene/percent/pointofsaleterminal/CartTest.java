@@ -0,0 +1,92 @@
+package com.eugene.percent.pointofsaleterminal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.eugene.percent.factory.PriceBook;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import org.junit.Test;
+
+public class CartTest {
+    private static final ProductPrice PRICE = new ProductPrice(10, 1, 10);
+
+    @Test
+    public void test_add() {
+        Cart cart = new Cart();
+
+        assertEquals(1, cart.add(entry(7, PRICE), 1));
+        assertEquals(2, cart.add(entry(7, PRICE), 1));
+        assertEquals(5, cart.add(entry(3, PRICE), 5));
+
+        assertEquals(2, cart.size());
+        assertEquals(2, cart.getQuantity(7));
+        assertEquals(5, cart.getQuantity(3));
+        assertEquals(0, cart.getQuantity(4));
+    }
+
+    @Test
+    public void test_insertionOrder() {
+        Cart cart = new Cart();
+        cart.add(entry(42, PRICE), 1);
+        cart.add(entry(0, PRICE), 2);
+        cart.add(entry(42, PRICE), 1);
+
+        assertEquals(42, cart.productIdAt(0));
+        assertEquals(2, cart.quantityAt(0));
+        assertEquals(0, cart.productIdAt(1));
+        assertEquals(2, cart.quantityAt(1));
+    }
+
+    @Test
+    public void test_grow() {
+        Cart cart = new Cart(1);
+        int n = 1000;
+
+        for (int i = 0; i < n; ++i) {
+            cart.add(entry(i * 31, PRICE), i + 1);
+        }
+
+        assertEquals(n, cart.size());
+        for (int i = 0; i < n; ++i) {
+            assertEquals(i + 1, cart.getQuantity(i * 31));
+            assertEquals(i * 31, cart.productIdAt(i));
+        }
+    }
+
+    @Test
+    public void test_clear() {
+        Cart cart = new Cart();
+        for (int i = 0; i < 100; ++i) {
+            cart.add(entry(i, PRICE), 1);
+        }
+
+        cart.clear();
+        assertEquals(0, cart.size());
+        for (int i = 0; i < 100; ++i) {
+            assertEquals(0, cart.getQuantity(i));
+        }
+
+        assertEquals(1, cart.add(entry(50, PRICE), 1));
+        assertEquals(1, cart.size());
+    }
+
+    @Test
+    public void test_boundPrice() {
+        ProductPrice otherPrice = new ProductPrice(20, 1, 20);
+        Cart cart = new Cart();
+
+        cart.add(entry(1, PRICE), 1);
+        cart.add(entry(1, otherPrice), 1);
+        cart.add(entry(2, otherPrice), 1);
+
+        assertSame(PRICE, cart.priceAt(cart.lineOf(1)));
+        assertSame(otherPrice, cart.priceAt(cart.lineOf(2)));
+        assertEquals(-1, cart.lineOf(3));
+    }
+
+    private static PriceBook.Entry entry(int productId, ProductPrice productPrice) {
+        return new PriceBook.Entry(productId, Product.builder().productCode("P" + productId).build(), productPrice);
+    }
+}
\ No newline at end of file
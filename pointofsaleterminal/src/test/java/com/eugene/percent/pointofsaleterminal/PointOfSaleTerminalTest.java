@@ -1,19 +1,37 @@
 package com.eugene.percent.pointofsaleterminal;
 
-import static com.eugene.percent.TestingConstants.DOUBLE_DELTA;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import com.eugene.percent.exceptions.ScanProductException;
+import com.eugene.percent.factory.PriceSourceConfig;
 import com.eugene.percent.factory.ProductRegistry;
+import com.eugene.percent.metrics.Metrics;
+import com.eugene.percent.model.Money;
+import com.eugene.percent.model.PricingRule;
 import com.eugene.percent.model.Product;
 import com.eugene.percent.model.ProductPrice;
+import com.eugene.percent.model.Sale;
+import com.eugene.percent.promotion.MixedBundle;
+import com.eugene.percent.promotion.PromotionEngine;
+import com.eugene.percent.simulator.SimulatedPriceSource;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 public class PointOfSaleTerminalTest {
     private PointOfSaleTerminal pointOfSaleTerminal;
@@ -34,10 +52,10 @@ public class PointOfSaleTerminalTest {
         productC = Product.builder().productCode("C").build();
         productD = Product.builder().productCode("D").build();
 
-        productPriceA = new ProductPrice(1.25, 3, 3);
-        productPriceB = new ProductPrice(4.25, 1, 4.25);
-        productPriceC = new ProductPrice(1, 6, 5);
-        productPriceD = new ProductPrice(0.75, 1, 0.75);
+        productPriceA = new ProductPrice(Money.of("1.25"), 3, Money.of("3"));
+        productPriceB = new ProductPrice(Money.of("4.25"), 1, Money.of("4.25"));
+        productPriceC = new ProductPrice(Money.of("1"), 6, Money.of("5"));
+        productPriceD = new ProductPrice(Money.of("0.75"), 1, Money.of("0.75"));
 
         setPricing();
 
@@ -98,19 +116,18 @@ public class PointOfSaleTerminalTest {
     @Test
     public void test_calculateTotal() throws Exception {
         pointOfSaleTerminal.scan(productA);
-        BigDecimal price = pointOfSaleTerminal.calculateTotal();
-        assertEquals(productPriceA.getPricePerUnit(), price.doubleValue(), DOUBLE_DELTA);
+        long price = pointOfSaleTerminal.calculateTotalInMinorUnits();
+        assertEquals(productPriceA.getPricePerUnit(), price);
 
         int numScans = pointOfSaleTerminal.scan(productA);
         assertEquals(2, numScans);
-        price = pointOfSaleTerminal.calculateTotal();
-        assertEquals(numScans*productPriceA.getPricePerUnit(), price.doubleValue(), DOUBLE_DELTA);
+        price = pointOfSaleTerminal.calculateTotalInMinorUnits();
+        assertEquals(numScans*productPriceA.getPricePerUnit(), price);
 
         numScans = pointOfSaleTerminal.scan(productB);
         assertEquals(1, numScans);
-        price = pointOfSaleTerminal.calculateTotal();
-        assertEquals(2*productPriceA.getPricePerUnit() + productPriceB.getPricePerUnit(),
-                price.doubleValue(), DOUBLE_DELTA);
+        price = pointOfSaleTerminal.calculateTotalInMinorUnits();
+        assertEquals(2*productPriceA.getPricePerUnit() + productPriceB.getPricePerUnit(), price);
 
         pointOfSaleTerminal.clear();
 
@@ -118,8 +135,8 @@ public class PointOfSaleTerminalTest {
             numScans = pointOfSaleTerminal.scan(productA);
         }
         assertEquals(productPriceA.getNumberOfUnitsInVolume(), numScans);
-        price = pointOfSaleTerminal.calculateTotal();
-        assertEquals(productPriceA.getPricePerVolume(), price.doubleValue(), DOUBLE_DELTA);
+        price = pointOfSaleTerminal.calculateTotalInMinorUnits();
+        assertEquals(productPriceA.getPricePerVolume(), price);
     }
 
     @Test
@@ -133,7 +150,7 @@ public class PointOfSaleTerminalTest {
         pointOfSaleTerminal.scan(productA);
 
         BigDecimal price = pointOfSaleTerminal.calculateTotal();
-        assertEquals(13.25, price.doubleValue(), DOUBLE_DELTA);
+        assertEquals(new BigDecimal("13.25"), price);
     }
 
     @Test
@@ -147,7 +164,7 @@ public class PointOfSaleTerminalTest {
         pointOfSaleTerminal.scan(productC);
 
         BigDecimal price = pointOfSaleTerminal.calculateTotal();
-        assertEquals(6.0, price.doubleValue(), DOUBLE_DELTA);
+        assertEquals(new BigDecimal("6.00"), price);
     }
 
     @Test
@@ -158,6 +175,451 @@ public class PointOfSaleTerminalTest {
         pointOfSaleTerminal.scan(productD);
 
         BigDecimal price = pointOfSaleTerminal.calculateTotal();
-        assertEquals(7.25, price.doubleValue(), DOUBLE_DELTA);
+        assertEquals(new BigDecimal("7.25"), price);
+    }
+
+    @Test
+    public void test_calculateTotal_verifyTotal() throws Exception {
+        pointOfSaleTerminal.setVerifyTotal(true);
+        Product[] products = {productA, productB, productC, productD};
+
+        for (int i = 0; i < 1000; ++i) {
+            pointOfSaleTerminal.scan(products[(i * 7) % products.length]);
+            assertEquals(pointOfSaleTerminal.recalculateTotal(), pointOfSaleTerminal.calculateTotalInMinorUnits());
+        }
+
+        pointOfSaleTerminal.clear();
+        assertEquals(Money.ZERO, pointOfSaleTerminal.calculateTotalInMinorUnits());
+    }
+
+    @Test
+    public void test_scan_quantity() throws Exception {
+        assertEquals(2, pointOfSaleTerminal.scan(productC, 2));
+        assertEquals(7, pointOfSaleTerminal.scan(productC, 5));
+
+        assertEquals(new BigDecimal("6.00"), pointOfSaleTerminal.calculateTotal());
+        assertEquals(pointOfSaleTerminal.recalculateTotal(), pointOfSaleTerminal.calculateTotalInMinorUnits());
+    }
+
+    @Test(expected = ScanProductException.class)
+    public void test_scan_nonPositiveQuantity() throws Exception {
+        pointOfSaleTerminal.scan(productA, 0);
+    }
+
+    @Test
+    public void test_scanAll() throws Exception {
+        pointOfSaleTerminal.scan(productA);
+
+        BatchScanResult result = pointOfSaleTerminal.scanAll(
+                Arrays.asList(productB, productC, productD, productA, productB, productA));
+        assertTrue(result.isSuccess());
+        assertEquals(6, result.getNumberOfUnitsScanned());
+
+        assertEquals(new BigDecimal("13.25"), pointOfSaleTerminal.calculateTotal());
+        assertEquals(pointOfSaleTerminal.recalculateTotal(), pointOfSaleTerminal.calculateTotalInMinorUnits());
+    }
+
+    @Test
+    public void test_scanAll_unknownProducts() throws Exception {
+        Product unregisteredProduct1 = Product.builder().productCode("unregisteredProduct1").build();
+        Product unregisteredProduct2 = Product.builder().productCode("unregisteredProduct2").build();
+
+        pointOfSaleTerminal.scan(productA);
+
+        BatchScanResult result = pointOfSaleTerminal.scanAll(
+                Arrays.asList(productB, unregisteredProduct1, productC, unregisteredProduct2, unregisteredProduct1));
+        assertFalse(result.isSuccess());
+        assertEquals(0, result.getNumberOfUnitsScanned());
+        assertEquals(2, result.getUnknownProducts().size());
+        assertTrue(result.getUnknownProducts().contains(unregisteredProduct1));
+        assertTrue(result.getUnknownProducts().contains(unregisteredProduct2));
+
+        //cart is untouched
+        assertEquals(productPriceA.getPricePerUnit(), pointOfSaleTerminal.calculateTotalInMinorUnits());
+        assertEquals(2, pointOfSaleTerminal.scan(productA));
+    }
+
+    @Test
+    public void test_scanAll_empty() {
+        BatchScanResult result = pointOfSaleTerminal.scanAll(Collections.emptyList());
+        assertTrue(result.isSuccess());
+        assertEquals(0, result.getNumberOfUnitsScanned());
+    }
+
+    @Test
+    public void test_calculateTotal_boundPrice() throws Exception {
+        pointOfSaleTerminal.setVerifyTotal(true);
+
+        pointOfSaleTerminal.scan(productA);
+        pointOfSaleTerminal.scan(productB);
+
+        //manager re-prices A and sells out B mid-session
+        ProductRegistry.register(productA, new ProductPrice(Money.of("2"), 1, Money.of("2")));
+        ProductRegistry.deregister(productB);
+
+        assertEquals(new BigDecimal("5.50"), pointOfSaleTerminal.calculateTotal());
+
+        //the line keeps its volume price
+        pointOfSaleTerminal.scan(productA);
+        pointOfSaleTerminal.scan(productA);
+        assertEquals(new BigDecimal("7.25"), pointOfSaleTerminal.calculateTotal());
+    }
+
+    @Test
+    public void test_calculateTotal_freezeMidSession() throws Exception {
+        pointOfSaleTerminal.setVerifyTotal(true);
+
+        pointOfSaleTerminal.scan(productA);
+        pointOfSaleTerminal.scan(productA);
+
+        //store compiles the registry mid-session, A keeps its id and line
+        ProductRegistry.freeze();
+
+        pointOfSaleTerminal.scan(productA);
+        assertEquals(new BigDecimal("3.00"), pointOfSaleTerminal.calculateTotal());
+    }
+
+    @Test
+    public void test_checkout() throws Exception {
+        pointOfSaleTerminal = new PointOfSaleTerminal("T1");
+        pointOfSaleTerminal.scan(productA, 4);
+        pointOfSaleTerminal.scan(productB);
+
+        Sale sale = pointOfSaleTerminal.checkout();
+        assertEquals("T1", sale.getTerminalId());
+        assertEquals(Money.of("8.50"), sale.getTotal());
+        assertEquals(2, sale.getLines().size());
+
+        Sale.Line line = sale.getLines().get(0);
+        assertEquals(productA, line.getProduct());
+        assertEquals(4, line.getQuantity());
+        assertEquals(productPriceA, line.getProductPrice());
+        assertEquals(Money.of("4.25"), line.getPrice());
+
+        //cart is empty for the next customer
+        assertEquals(Money.ZERO, pointOfSaleTerminal.calculateTotalInMinorUnits());
+        assertEquals(1, pointOfSaleTerminal.scan(productA));
+    }
+
+    @Test
+    public void test_metrics() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(Metrics.DOMAIN + ":type=PointOfSaleTerminal,name=\"T-metrics\"");
+        pointOfSaleTerminal = new PointOfSaleTerminal("T-metrics");
+
+        //off - nothing is recorded or published
+        pointOfSaleTerminal.scan(productA);
+        assertFalse(server.isRegistered(name));
+
+        Metrics.setEnabled(true);
+        try {
+            pointOfSaleTerminal.scan(productA);
+            pointOfSaleTerminal.scan(productB, 2);
+            try {
+                pointOfSaleTerminal.scan(Product.builder().productCode("UNKNOWN").build());
+            } catch (ScanProductException e) {
+                //counted
+            }
+            pointOfSaleTerminal.calculateTotal();
+            pointOfSaleTerminal.checkout();
+        } finally {
+            Metrics.setEnabled(false);
+        }
+
+        assertEquals(3L, server.getAttribute(name, "Scans"));
+        assertEquals(1L, server.getAttribute(name, "ScanErrors"));
+        assertEquals(1L, server.getAttribute(name, "Sessions"));
+        assertTrue((Long) server.getAttribute(name, "ScanLatencyP99") > 0);
+        assertTrue((Long) server.getAttribute(name, "ScanLatencyMax")
+                >= (Long) server.getAttribute(name, "ScanLatencyP50"));
+        assertTrue((Long) server.getAttribute(name, "CalculateTotalLatencyMax") > 0);
+
+        //terminals with the same id get their own MBeans
+        PointOfSaleTerminal sameId = new PointOfSaleTerminal("T-metrics");
+        PointOfSaleTerminal thirdSameId = new PointOfSaleTerminal("T-metrics");
+        Metrics.setEnabled(true);
+        try {
+            sameId.scan(productA);
+            thirdSameId.scan(productA);
+        } finally {
+            Metrics.setEnabled(false);
+        }
+        assertEquals(3L, server.getAttribute(name, "Scans"));
+        assertEquals(3, server.queryNames(
+                new ObjectName(Metrics.DOMAIN + ":type=PointOfSaleTerminal,name=\"T-metrics\",*"), null).size());
+
+        pointOfSaleTerminal.close();
+        sameId.close();
+        thirdSameId.close();
+        assertFalse(server.isRegistered(name));
+        assertTrue(server.queryNames(new ObjectName(Metrics.DOMAIN + ":type=PointOfSaleTerminal,*"), null).isEmpty());
+    }
+
+    @Test
+    public void test_tryScan() {
+        Product unknownProduct = Product.builder().productCode("UNKNOWN").build();
+
+        assertEquals(1, pointOfSaleTerminal.tryScan(productA));
+        assertEquals(3, pointOfSaleTerminal.tryScan(productA, 2));
+        assertEquals(ScanStatus.UNKNOWN_PRODUCT, pointOfSaleTerminal.tryScan(unknownProduct));
+        assertEquals(ScanStatus.INVALID_QUANTITY, pointOfSaleTerminal.tryScan(productB, 0));
+        assertFalse(ScanStatus.isScanned(ScanStatus.UNKNOWN_PRODUCT));
+
+        //failed scans leave the cart unchanged
+        assertEquals(Money.of("3"), pointOfSaleTerminal.calculateTotalInMinorUnits());
+    }
+
+    @Test
+    public void test_tryScan_overflow() {
+        Product expensiveProduct = Product.builder().productCode("E").build();
+        ProductRegistry.register(expensiveProduct, Long.MAX_VALUE / 2);
+        try {
+            assertEquals(Integer.MAX_VALUE, pointOfSaleTerminal.tryScan(productA, Integer.MAX_VALUE));
+            long total = pointOfSaleTerminal.calculateTotalInMinorUnits();
+            assertEquals(ScanStatus.INVALID_QUANTITY, pointOfSaleTerminal.tryScan(productA, Integer.MAX_VALUE));
+            assertEquals(ScanStatus.INVALID_QUANTITY, pointOfSaleTerminal.tryScan(productA));
+            assertEquals(ScanStatus.INVALID_QUANTITY, pointOfSaleTerminal.tryScan(expensiveProduct, 3));
+            assertEquals(1, pointOfSaleTerminal.tryScan(expensiveProduct));
+            assertEquals(ScanStatus.INVALID_QUANTITY, pointOfSaleTerminal.tryScan(expensiveProduct));
+
+            //failed scans leave the cart unchanged
+            assertEquals(Money.add(total, Long.MAX_VALUE / 2), pointOfSaleTerminal.calculateTotalInMinorUnits());
+            assertEquals(2, pointOfSaleTerminal.checkout().getLines().size());
+        } finally {
+            ProductRegistry.deregister(expensiveProduct);
+        }
+    }
+
+    @Test
+    public void test_calculateTotal_pricingRules() throws Exception {
+        //1.25 each, 3 for 3.00, 10 for 9.00
+        ProductRegistry.register(productA, ProductPrice.of(Money.of("1.25"),
+                PricingRule.volume(3, Money.of("3")), PricingRule.volume(10, Money.of("9"))));
+        pointOfSaleTerminal.setVerifyTotal(true);
+
+        long[] expectedTotals = {125, 250, 300, 425, 550, 600, 725, 850, 900, 900, 1025, 1150, 1200};
+        for (long expectedTotal : expectedTotals) {
+            pointOfSaleTerminal.scan(productA);
+            assertEquals(expectedTotal, pointOfSaleTerminal.calculateTotalInMinorUnits());
+        }
+    }
+
+    @Test
+    public void test_calculateTotal_promotions() throws Exception {
+        //any 3 of B, C, D for 5.00
+        pointOfSaleTerminal.setPromotionEngine(
+                PromotionEngine.of(MixedBundle.anyOf("3 for 5.00", 3, Money.of("5"), productB, productC, productD)));
+        pointOfSaleTerminal.setVerifyTotal(true);
+
+        pointOfSaleTerminal.scan(productB);
+        pointOfSaleTerminal.scan(productB);
+        assertEquals(Money.of("8.50"), pointOfSaleTerminal.calculateTotalInMinorUnits());
+
+        //4.25 + 4.25 + 1.00 -> 5.00
+        pointOfSaleTerminal.scan(productC);
+        assertEquals(Money.of("5"), pointOfSaleTerminal.calculateTotalInMinorUnits());
+
+        //not part of the promotion
+        pointOfSaleTerminal.scan(productA);
+        assertEquals(Money.of("6.25"), pointOfSaleTerminal.calculateTotalInMinorUnits());
+
+        //a second bundle of 1.00 + 0.75 + 0.75 would not save money
+        pointOfSaleTerminal.scanAll(Arrays.asList(productD, productD, productC));
+        assertEquals(Money.of("8.75"), pointOfSaleTerminal.calculateTotalInMinorUnits());
+
+        Sale sale = pointOfSaleTerminal.checkout();
+        assertEquals(Money.of("8.75"), sale.getTotal());
+        assertEquals(0, pointOfSaleTerminal.calculateTotalInMinorUnits());
+
+        //next customer starts without bundles
+        pointOfSaleTerminal.scan(productC);
+        assertEquals(Money.of("1"), pointOfSaleTerminal.calculateTotalInMinorUnits());
+    }
+
+    @Test
+    public void test_setPromotionEngine_midSession() throws Exception {
+        pointOfSaleTerminal.scan(productB);
+        pointOfSaleTerminal.scan(productB);
+        pointOfSaleTerminal.scan(productD);
+        assertEquals(Money.of("9.25"), pointOfSaleTerminal.calculateTotalInMinorUnits());
+
+        pointOfSaleTerminal.setPromotionEngine(
+                PromotionEngine.of(MixedBundle.anyOf("3 for 5.00", 3, Money.of("5"), productB, productD)));
+        assertEquals(Money.of("5"), pointOfSaleTerminal.calculateTotalInMinorUnits());
+
+        pointOfSaleTerminal.setPromotionEngine(PromotionEngine.NONE);
+        assertEquals(Money.of("9.25"), pointOfSaleTerminal.calculateTotalInMinorUnits());
+    }
+
+    @Test
+    public void test_suspendAndResume() throws Exception {
+        ProductRegistry.register(productC, ProductPrice.of(Money.of("1"), 4, PricingRule.buyGetFree(2, 1)));
+        pointOfSaleTerminal.setVerifyTotal(true);
+        pointOfSaleTerminal.scan(productA, 4);
+        pointOfSaleTerminal.scan(productB);
+        pointOfSaleTerminal.scan(productC, 6);
+        pointOfSaleTerminal.scan(productD);
+        long total = pointOfSaleTerminal.calculateTotalInMinorUnits();
+
+        //manager re-prices A and sells out B mid-session
+        ProductRegistry.register(productA, new ProductPrice(Money.of("2"), 1, Money.of("2")));
+        ProductRegistry.deregister(productB);
+
+        byte[] snapshot = pointOfSaleTerminal.suspend();
+        assertEquals(0, pointOfSaleTerminal.calculateTotalInMinorUnits());
+
+        //customer moves to a lane with a promotion
+        PointOfSaleTerminal otherTerminal = new PointOfSaleTerminal("T2");
+        otherTerminal.setVerifyTotal(true);
+        otherTerminal.setPromotionEngine(
+                PromotionEngine.of(MixedBundle.anyOf("2 for 4.00", 2, Money.of("4"), productB, productD)));
+        otherTerminal.resume(snapshot);
+        assertEquals(total - Money.of("1"), otherTerminal.calculateTotalInMinorUnits());
+
+        //lines keep their bound prices
+        otherTerminal.scan(productA, 2);
+        Sale sale = otherTerminal.checkout();
+        assertEquals(4, sale.getLines().size());
+        assertEquals(productA, sale.getLines().get(0).getProduct());
+        assertEquals(productPriceA, sale.getLines().get(0).getProductPrice());
+        assertEquals(Money.of("6"), sale.getLines().get(0).getPrice());
+        assertEquals(productB, sale.getLines().get(1).getProduct());
+        assertEquals(Money.of("5"), sale.getLines().get(2).getPrice());
+        assertEquals(total - Money.of("1") + Money.of("1.75"), sale.getTotal());
+    }
+
+    @Test
+    public void test_checkpoint() throws Exception {
+        pointOfSaleTerminal.scan(productA, 2);
+        pointOfSaleTerminal.scan(productC);
+
+        ByteBuffer buffer = ByteBuffer.allocate(pointOfSaleTerminal.snapshotSize());
+        pointOfSaleTerminal.checkpoint(buffer);
+        assertEquals(0, buffer.remaining());
+
+        //the session goes on
+        pointOfSaleTerminal.scan(productA);
+        assertEquals(Money.of("4"), pointOfSaleTerminal.calculateTotalInMinorUnits());
+
+        //the lane fails, a spare terminal picks up the last checkpoint
+        PointOfSaleTerminal spareTerminal = new PointOfSaleTerminal();
+        buffer.flip();
+        spareTerminal.resume(buffer);
+        assertEquals(Money.of("3.50"), spareTerminal.calculateTotalInMinorUnits());
+
+        try {
+            buffer.flip();
+            spareTerminal.resume(buffer);
+            fail();
+        } catch (IllegalStateException e) {
+            //session in progress
+        }
+    }
+
+    @Test
+    public void test_resume_malformedOrDeregistered() throws Exception {
+        pointOfSaleTerminal.scan(productA, 2);
+        pointOfSaleTerminal.scan(productB);
+        long total = pointOfSaleTerminal.calculateTotalInMinorUnits();
+        byte[] snapshot = pointOfSaleTerminal.suspend();
+
+        for (int length = 0; length < snapshot.length; ++length) {
+            try {
+                pointOfSaleTerminal.resume(Arrays.copyOf(snapshot, length));
+                fail();
+            } catch (IllegalArgumentException e) {
+                //the session is left empty
+                assertEquals(0, pointOfSaleTerminal.calculateTotalInMinorUnits());
+            }
+        }
+
+        //B is de-registered after the snapshot was taken, its line keeps the bound price
+        ProductRegistry.deregister(productB);
+        pointOfSaleTerminal.resume(snapshot);
+        assertEquals(total, pointOfSaleTerminal.calculateTotalInMinorUnits());
+        assertEquals(productB, pointOfSaleTerminal.checkout().getLines().get(1).getProduct());
+    }
+
+    @Test
+    public void test_scan_repricedBetweenSessions() throws Exception {
+        pointOfSaleTerminal.scan(productB);
+        pointOfSaleTerminal.checkout();
+
+        //the near-cache sees the change
+        ProductRegistry.register(productB, new ProductPrice(Money.of("3.99"), 1, Money.of("3.99")));
+        pointOfSaleTerminal.scan(productB);
+        assertEquals(Money.of("3.99"), pointOfSaleTerminal.checkout().getTotal());
+
+        ProductRegistry.deregister(productB);
+        assertEquals(ScanStatus.UNKNOWN_PRODUCT, pointOfSaleTerminal.tryScan(productB));
+    }
+
+    @Test
+    public void test_tryScan_barcode() {
+        Product product = Product.builder().productCode("4006381333931").build();
+        ProductRegistry.register(product, new ProductPrice(Money.of("1.25"), 3, Money.of("3")));
+        byte[] scannerBuffer = "]E04006381333931\r".getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals(1, pointOfSaleTerminal.tryScan(scannerBuffer, 3, 13));
+        assertEquals(2, pointOfSaleTerminal.tryScan(ByteBuffer.wrap(scannerBuffer, 3, 13)));
+        ByteBuffer direct = ByteBuffer.allocateDirect(13).put(scannerBuffer, 3, 13);
+        direct.flip();
+        assertEquals(3, pointOfSaleTerminal.tryScan(direct));
+        assertEquals(6, pointOfSaleTerminal.tryScan(direct, 3));
+        assertEquals(ScanStatus.INVALID_QUANTITY, pointOfSaleTerminal.tryScan(direct, 0));
+        assertEquals(product, pointOfSaleTerminal.checkout().getLines().get(0).getProduct());
+
+        assertEquals(ScanStatus.INVALID_BARCODE, pointOfSaleTerminal.tryScan(scannerBuffer, 3, 12));
+        assertEquals(ScanStatus.INVALID_BARCODE, pointOfSaleTerminal.tryScan(scannerBuffer, 2, 13));
+        assertEquals(ScanStatus.UNKNOWN_PRODUCT,
+                pointOfSaleTerminal.tryScan("5901234123457".getBytes(StandardCharsets.US_ASCII), 0, 13));
+
+        ProductRegistry.deregister(product);
+        assertEquals(ScanStatus.UNKNOWN_PRODUCT, pointOfSaleTerminal.tryScan(scannerBuffer, 3, 13));
+    }
+
+    @Test
+    public void test_scan_pricedBySource() throws ScanProductException {
+        Product sourcedProduct = Product.builder().productCode("5901234123457").build();
+        SimulatedPriceSource source = new SimulatedPriceSource(5, 5, 0);
+        source.put(sourcedProduct, productPriceA);
+        ProductRegistry.setPriceSource(source, PriceSourceConfig.builder().build());
+        try {
+            assertEquals(1, pointOfSaleTerminal.scan(sourcedProduct));
+            assertEquals(4, pointOfSaleTerminal.tryScan(
+                    ByteBuffer.wrap("5901234123457".getBytes(StandardCharsets.US_ASCII)), 3));
+            assertTrue(pointOfSaleTerminal.scanAll(Arrays.asList(sourcedProduct, productB)).isSuccess());
+            assertEquals(ScanStatus.UNKNOWN_PRODUCT,
+                    pointOfSaleTerminal.tryScan("4006381333931".getBytes(StandardCharsets.US_ASCII), 0, 13));
+            assertEquals(new BigDecimal("9.75"), pointOfSaleTerminal.calculateTotal());
+            assertEquals(2, source.getFetches());
+        } finally {
+            ProductRegistry.removePriceSource();
+        }
+    }
+
+    @Test
+    public void test_tryScan_barcode_doesNotAllocate() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threadMXBean;
+
+        ProductRegistry.register(Product.builder().productCode("4006381333931").build(), Money.of("1.25"));
+        byte[] barcode = "4006381333931".getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < 10000; ++i) {
+            pointOfSaleTerminal.tryScan(barcode, 0, barcode.length);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBytes = allocations.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10000; ++i) {
+            pointOfSaleTerminal.tryScan(barcode, 0, barcode.length);
+        }
+        allocatedBytes = allocations.getThreadAllocatedBytes(threadId) - allocatedBytes;
+
+        assertTrue("allocated " + allocatedBytes + " bytes", allocatedBytes < 1024);
+        assertEquals(20001, pointOfSaleTerminal.tryScan(barcode, 0, barcode.length));
     }
-}
\ No newline at end of file
+}
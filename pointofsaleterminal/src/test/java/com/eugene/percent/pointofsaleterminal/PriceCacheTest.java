@@ -0,0 +1,78 @@
+package com.eugene.percent.pointofsaleterminal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.eugene.percent.factory.PriceBook;
+import com.eugene.percent.factory.ProductRegistry;
+import com.eugene.percent.model.Product;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class PriceCacheTest {
+    @After
+    public void tearDown() {
+        ProductRegistry.reset();
+    }
+
+    private static Product product(int i) {
+        return Product.builder().productCode("PC-" + i).build();
+    }
+
+    @Test
+    public void test_getEntry() {
+        ProductRegistry.register(product(1), 100);
+        PriceCache priceCache = new PriceCache(16);
+
+        PriceBook priceBook = ProductRegistry.getPriceBook();
+        PriceBook.Entry entry = priceCache.getEntry(priceBook, product(1));
+        assertSame(priceBook.getEntry(product(1)), entry);
+        assertSame(entry, priceCache.getEntry(priceBook, product(1)));
+        assertEquals(1, priceCache.getHits());
+        assertEquals(1, priceCache.getMisses());
+
+        //unknown products are not cached
+        assertNull(priceCache.getEntry(priceBook, product(2)));
+        assertNull(priceCache.getEntry(priceBook, product(2)));
+        assertEquals(3, priceCache.getMisses());
+    }
+
+    @Test
+    public void test_getEntry_invalidatedByRegistryChange() {
+        ProductRegistry.register(product(1), 100);
+        PriceCache priceCache = new PriceCache(16);
+        priceCache.getEntry(ProductRegistry.getPriceBook(), product(1));
+
+        ProductRegistry.register(product(1), 200);
+        assertEquals(200, priceCache.getEntry(ProductRegistry.getPriceBook(), product(1))
+                .getProductPrice().getPricePerUnit());
+        assertEquals(2, priceCache.getMisses());
+
+        ProductRegistry.deregister(product(1));
+        assertNull(priceCache.getEntry(ProductRegistry.getPriceBook(), product(1)));
+    }
+
+    @Test
+    public void test_getEntry_evictsLeastRecentlyUsed() {
+        for (int i = 0; i < 100; ++i) {
+            ProductRegistry.register(product(i), 100 + i);
+        }
+        PriceBook priceBook = ProductRegistry.getPriceBook();
+
+        //a single set of two ways
+        PriceCache priceCache = new PriceCache(2);
+        priceCache.getEntry(priceBook, product(1));
+        priceCache.getEntry(priceBook, product(2));
+        priceCache.getEntry(priceBook, product(1));
+        priceCache.getEntry(priceBook, product(3)); //evicts 2
+        assertEquals(3, priceCache.getMisses());
+
+        priceCache.getEntry(priceBook, product(1));
+        priceCache.getEntry(priceBook, product(3));
+        assertEquals(2, priceCache.getHits() - 1);
+        priceCache.getEntry(priceBook, product(2));
+        assertEquals(4, priceCache.getMisses());
+    }
+}
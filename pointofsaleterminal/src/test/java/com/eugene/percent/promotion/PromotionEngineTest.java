@@ -0,0 +1,153 @@
+package com.eugene.percent.promotion;
+
+import static org.junit.Assert.assertEquals;
+
+import com.eugene.percent.model.Money;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class PromotionEngineTest {
+    private final Product productA = Product.builder().productCode("A").build();
+    private final Product productB = Product.builder().productCode("B").build();
+    private final Product productC = Product.builder().productCode("C").build();
+    private final Product productD = Product.builder().productCode("D").build();
+
+    @Test
+    public void test_anyOf() {
+        //any 3 of A, C, D for 3.50
+        PromotionEngine engine = PromotionEngine.of(MixedBundle.anyOf("3 for 3.50", 3, 350, productA, productC, productD));
+        int[] groups = {0, 0, 0};
+        ProductPrice[] prices = {new ProductPrice(200, 1, 200), new ProductPrice(125, 1, 125), new ProductPrice(100, 1, 100)};
+
+        //2 x 2.00 + 1.25 = 5.25 -> 3.50
+        assertEquals(-175, engine.calculateAdjustment(0, 3, groups, prices, new int[] {2, 1, 0}));
+        //most expensive units first: 3 x 2.00 -> 3.50, 1.25 + 1.00 left
+        assertEquals(-250, engine.calculateAdjustment(0, 3, groups, prices, new int[] {3, 1, 1}));
+        //a bundle of 1.00 units would not save money
+        assertEquals(-250, engine.calculateAdjustment(0, 3, groups, prices, new int[] {3, 0, 5}));
+        //too few units
+        assertEquals(0, engine.calculateAdjustment(0, 2, groups, prices, new int[] {1, 1}));
+    }
+
+    @Test
+    public void test_mealDeal() {
+        PromotionEngine engine = PromotionEngine.of(MixedBundle.of("Meal deal", 500,
+                MixedBundle.group(1, productA, productB), MixedBundle.group(2, productD)));
+        int[] groups = {0, 0, 1};
+        ProductPrice[] prices = {new ProductPrice(400, 1, 400), new ProductPrice(300, 1, 300), new ProductPrice(100, 1, 100)};
+
+        assertEquals(1, engine.groupOf(productD));
+        assertEquals(-1, engine.bundleOf(productC));
+
+        //no drinks
+        assertEquals(0, engine.calculateAdjustment(0, 2, groups, prices, new int[] {1, 1}));
+        //4.00 + 2 x 1.00 -> 5.00, 3.00 + 1.00 left
+        assertEquals(-100, engine.calculateAdjustment(0, 3, groups, prices, new int[] {1, 1, 3}));
+        //second meal 3.00 + 2 x 1.00 does not save money
+        assertEquals(-100, engine.calculateAdjustment(0, 3, groups, prices, new int[] {1, 1, 4}));
+    }
+
+    @Test
+    public void test_volumePricedLine() {
+        //3 A are 3.00 as a volume, bundling them at 3.50 would raise the total
+        PromotionEngine engine = PromotionEngine.of(MixedBundle.anyOf("3 for 3.50", 3, 350, productA));
+        ProductPrice[] prices = {new ProductPrice(Money.of("1.25"), 3, Money.of("3"))};
+
+        assertEquals(0, engine.calculateAdjustment(0, 1, new int[] {0}, prices, new int[] {3}));
+    }
+
+    @Test
+    public void test_volumePricedLine_bundlesByLineSavings() {
+        //any 3 of A, C for 2.50, with A priced 3 for 2.00
+        PromotionEngine engine = PromotionEngine.of(MixedBundle.anyOf("3 for 2.50", 3, 250, productA, productC));
+        ProductPrice[] prices = {new ProductPrice(100, 3, 200), new ProductPrice(100, 1, 100)};
+
+        //3 A + 3 C are 5.00; bundling the 3 C alone makes it 4.50, bundling A too would save nothing more
+        assertEquals(-50, engine.calculateAdjustment(0, 2, new int[] {0, 0}, prices, new int[] {3, 3}));
+        //4 A + 2 C are 5.00; the loose A bundles with the 2 C for 2.00 + 2.50, the volume of A is kept
+        assertEquals(-50, engine.calculateAdjustment(0, 2, new int[] {0, 0}, prices, new int[] {4, 2}));
+    }
+
+    @Test
+    public void test_volumePricedLines_matchExhaustiveSearch() {
+        PromotionEngine engine = PromotionEngine.of(MixedBundle.anyOf("4 for 3.00", 4, 300, productA, productB, productC));
+        int[] groups = {0, 0, 0};
+        Random random = new Random(7);
+
+        for (int round = 0; round < 500; ++round) {
+            ProductPrice[] prices = new ProductPrice[3];
+            long unitPrice = 250;
+            for (int i = 0; i < 3; ++i) {
+                unitPrice = 1 + random.nextInt((int) unitPrice);
+                int numberOfUnitsInVolume = 1 + random.nextInt(4);
+                long pricePerVolume = Math.max(1, unitPrice * numberOfUnitsInVolume - random.nextInt(100));
+                prices[i] = new ProductPrice(unitPrice, numberOfUnitsInVolume, pricePerVolume);
+            }
+            int[] quantities = {random.nextInt(9), random.nextInt(9), random.nextInt(9)};
+
+            assertEquals(Arrays.toString(prices) + Arrays.toString(quantities),
+                    cheapestAdjustment(prices, quantities, 4, 300),
+                    engine.calculateAdjustment(0, 3, groups, prices, quantities));
+        }
+    }
+
+    @Test
+    public void test_anyOf_matchesExhaustiveSearch() {
+        PromotionEngine engine = PromotionEngine.of(MixedBundle.anyOf("4 for 3.00", 4, 300, productA, productB, productC));
+        int[] groups = {0, 0, 0};
+        Random random = new Random(42);
+
+        for (int round = 0; round < 500; ++round) {
+            long[] unitPrices = {1 + random.nextInt(200), 1 + random.nextInt(200), 1 + random.nextInt(200)};
+            Arrays.sort(unitPrices);
+            ProductPrice[] prices = new ProductPrice[3];
+            for (int i = 0; i < 3; ++i) {
+                prices[i] = new ProductPrice(unitPrices[2 - i], 1, unitPrices[2 - i]);
+            }
+            int[] quantities = {random.nextInt(9), random.nextInt(9), random.nextInt(9)};
+
+            assertEquals(cheapestAdjustment(prices, quantities, 4, 300),
+                    engine.calculateAdjustment(0, 3, groups, prices, quantities));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_of_overlap() {
+        PromotionEngine.of(MixedBundle.anyOf("3 for 3.50", 3, 350, productA, productC),
+                MixedBundle.anyOf("2 for 2.00", 2, 200, productC, productD));
+    }
+
+    /**
+     * Tries every number of bundled units of every line.
+     */
+    private static long cheapestAdjustment(ProductPrice[] prices, int[] quantities, int numberOfUnits, long price) {
+        long full = 0;
+        for (int i = 0; i < prices.length; ++i) {
+            full += prices[i].calculatePrice(quantities[i]);
+        }
+
+        long best = 0;
+        for (int u0 = 0; u0 <= quantities[0]; ++u0) {
+            for (int u1 = 0; u1 <= quantities[1]; ++u1) {
+                for (int u2 = 0; u2 <= quantities[2]; ++u2) {
+                    int bundled = u0 + u1 + u2;
+                    if (bundled % numberOfUnits != 0) {
+                        continue;
+                    }
+                    long total = bundled / numberOfUnits * price
+                            + prices[0].calculatePrice(quantities[0] - u0)
+                            + prices[1].calculatePrice(quantities[1] - u1)
+                            + prices[2].calculatePrice(quantities[2] - u2);
+                    best = Math.min(best, total - full);
+                }
+            }
+        }
+
+        return best;
+    }
+}
@@ -0,0 +1,74 @@
+package com.eugene.percent.receipt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MpscRingBufferTest {
+    @Test
+    public void test_offerAndPoll() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(3);
+        assertEquals(4, buffer.capacity());
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+
+        for (int i = 0; i < 4; ++i) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+
+        assertEquals(0, (int) buffer.poll());
+        assertTrue(buffer.offer(4));
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(3, buffer.drainTo(drained, 3));
+        assertEquals(4, (int) buffer.poll());
+        assertEquals(List.of(1, 2, 3), drained);
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void test_concurrentProducers() throws Exception {
+        int numProducers = 4;
+        int perProducer = 100000;
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(64);
+
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < numProducers; ++p) {
+            int producer = p;
+            producers.add(new Thread(() -> {
+                for (int i = 0; i < perProducer; ++i) {
+                    while (!buffer.offer(producer * perProducer + i)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            }));
+        }
+        producers.forEach(Thread::start);
+
+        //every producer's elements come out in the order it offered them
+        int[] next = new int[numProducers];
+        for (int received = 0; received < numProducers * perProducer; ) {
+            Integer element = buffer.poll();
+            if (element == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            int producer = element / perProducer;
+            assertEquals(next[producer]++, element % perProducer);
+            ++received;
+        }
+
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertTrue(buffer.isEmpty());
+    }
+}
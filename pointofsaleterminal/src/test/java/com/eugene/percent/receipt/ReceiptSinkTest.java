@@ -0,0 +1,168 @@
+package com.eugene.percent.receipt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+import com.eugene.percent.model.Sale;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class ReceiptSinkTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static Sale sale(String terminalId, int quantity) {
+        ProductPrice productPrice = new ProductPrice(125, 3, 300);
+        Sale.Line line = new Sale.Line(Product.builder().productCode("A").build(), quantity, productPrice,
+                productPrice.calculatePrice(quantity));
+
+        return new Sale(terminalId, 1000L, Collections.singletonList(line), line.getPrice());
+    }
+
+    @Test
+    public void test_format() {
+        StringBuilder receipt = new StringBuilder();
+        ReceiptFormatter.DEFAULT.format(sale("T1", 4), receipt);
+
+        assertEquals("Terminal: T1, Total Price: 4.25, Products: [A x4 4.25]" + System.lineSeparator(),
+                receipt.toString());
+    }
+
+    @Test
+    public void test_publish_concurrentTerminals() throws Exception {
+        int numTerminals = 4;
+        int perTerminal = 5000;
+        InMemoryReceiptOutput output = new InMemoryReceiptOutput();
+        ReceiptSink sink = new ReceiptSink(output, ReceiptFormatter.DEFAULT, ReceiptSink.OverflowPolicy.BLOCK, 64, 16);
+
+        List<Thread> terminals = new ArrayList<>();
+        for (int t = 0; t < numTerminals; ++t) {
+            String terminalId = "T" + t;
+            terminals.add(new Thread(() -> {
+                for (int i = 1; i <= perTerminal; ++i) {
+                    assertTrue(sink.publish(sale(terminalId, i % 3 + 1)));
+                }
+            }));
+        }
+        terminals.forEach(Thread::start);
+        for (Thread terminal : terminals) {
+            terminal.join();
+        }
+        sink.close();
+
+        String[] receipts = output.getText().split(System.lineSeparator());
+        assertEquals(numTerminals * perTerminal, receipts.length);
+        assertEquals(0, sink.getDropped());
+    }
+
+    @Test
+    public void test_publish_drop() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        InMemoryReceiptOutput output = new InMemoryReceiptOutput() {
+            @Override
+            public void write(CharSequence receipts) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.write(receipts);
+            }
+        };
+        ReceiptSink sink = new ReceiptSink(output, ReceiptFormatter.DEFAULT, ReceiptSink.OverflowPolicy.DROP, 4, 1);
+
+        //the consumer is stuck writing the first receipt, the buffer holds 4 more
+        int published = 0;
+        for (int i = 0; i < 10; ++i) {
+            if (sink.publish(sale("T1", 1))) {
+                ++published;
+            }
+        }
+        assertTrue(published >= 4 && published <= 5);
+        assertEquals(10 - published, sink.getDropped());
+
+        release.countDown();
+        sink.close();
+        assertEquals(published, output.getText().split(System.lineSeparator()).length);
+    }
+
+    @Test
+    public void test_fileOutput() throws Exception {
+        Path path = temporaryFolder.newFile().toPath();
+        ReceiptSink sink = new ReceiptSink(new FileReceiptOutput(path));
+        for (int i = 0; i < 100; ++i) {
+            sink.publish(sale("T1", 1));
+        }
+        sink.close();
+
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        assertEquals(100, lines.size());
+        assertEquals("Terminal: T1, Total Price: 1.25, Products: [A x1 1.25]", lines.get(0));
+    }
+
+    @Test
+    public void test_close_reportsOutputFailure() throws Exception {
+        ReceiptSink sink = new ReceiptSink(receipts -> {
+            throw new IOException("disk full");
+        });
+        sink.publish(sale("T1", 1));
+
+        try {
+            sink.close();
+            fail("close should fail");
+        } catch (IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+    }
+
+    @Test
+    public void test_close_reportsFormatFailure() throws Exception {
+        InMemoryReceiptOutput output = new InMemoryReceiptOutput();
+        ReceiptFormatter formatter = (sale, receipt) -> {
+            ReceiptFormatter.DEFAULT.format(sale, receipt);
+            if (sale.getTerminalId().equals("BAD")) {
+                throw new IllegalStateException("no template");
+            }
+        };
+        ReceiptSink sink = new ReceiptSink(output, formatter, ReceiptSink.OverflowPolicy.BLOCK, 4, 2);
+
+        //more receipts than the buffer holds: the consumer keeps draining past the failures
+        for (int i = 0; i < 100; ++i) {
+            assertTrue(sink.publish(sale(i % 10 == 0 ? "BAD" : "T1", 1)));
+        }
+
+        try {
+            sink.close();
+            fail("close should fail");
+        } catch (IOException e) {
+            assertEquals("no template", e.getCause().getMessage());
+        }
+        String[] receipts = output.getText().split(System.lineSeparator());
+        assertEquals(90, receipts.length);
+        for (String receipt : receipts) {
+            assertTrue(receipt, receipt.startsWith("Terminal: T1"));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void test_publish_closed() throws Exception {
+        ReceiptSink sink = new ReceiptSink(new InMemoryReceiptOutput());
+        sink.close();
+
+        sink.publish(sale("T1", 1));
+    }
+}
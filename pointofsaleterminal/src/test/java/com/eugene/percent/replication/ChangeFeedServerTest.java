@@ -0,0 +1,86 @@
+package com.eugene.percent.replication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.eugene.percent.factory.ProductRegistry;
+import com.eugene.percent.factory.RegistryChange;
+import com.eugene.percent.model.PricingRule;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+
+public class ChangeFeedServerTest {
+    private ChangeFeedServer server;
+    private ChangeFeedClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        ProductRegistry.reset();
+        server = new ChangeFeedServer(ProductRegistry.getChangeFeed(), new InetSocketAddress("127.0.0.1", 0));
+        client = new ChangeFeedClient(server.getAddress());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+        ProductRegistry.reset();
+    }
+
+    @Test
+    public void test_changesSince() throws IOException {
+        Product productA = Product.builder().productCode("A").build();
+        Product productB = Product.builder().productCode("B\u00e9").build();
+        ProductPrice productPriceA = new ProductPrice(125, 3, 300);
+        ProductPrice productPriceB = ProductPrice.of(100, 6, PricingRule.volume(3, 250), PricingRule.buyGetFree(4, 1));
+
+        assertEquals(ProductRegistry.getChangeFeed().getEpoch(), client.getEpoch());
+        long sequence = client.getSequence();
+        ProductRegistry.register(productA, productPriceA);
+        ProductRegistry.register(productB, productPriceB);
+        ProductRegistry.deregister(productA);
+
+        assertEquals(ProductRegistry.getVersion(), client.getSequence());
+        List<RegistryChange> changes = client.changesSince(sequence, 10);
+        assertEquals(ProductRegistry.getChangeFeed().changesSince(sequence, 10), changes);
+        assertEquals(Collections.singletonMap(productB, productPriceB), changes.get(1).getProductPrices());
+        assertNull(client.changesSince(client.getSequence() + 1, 10));
+
+        RegistryChange snapshot = client.snapshot();
+        assertEquals(RegistryChange.Type.SNAPSHOT, snapshot.getType());
+        assertEquals(Collections.singletonMap(productB, productPriceB), snapshot.getProductPrices());
+    }
+
+    @Test
+    public void test_replica_reconnects() throws IOException {
+        ProductRegistry.register(Product.builder().productCode("A").build(), 10);
+
+        RegistryReplica replica = new RegistryReplica(client, change -> { }, 10);
+        replica.poll();
+        assertEquals(ProductRegistry.getVersion(), replica.getAppliedSequence());
+
+        //primary restarts on the same port
+        InetSocketAddress address = server.getAddress();
+        server.close();
+        server = new ChangeFeedServer(ProductRegistry.getChangeFeed(), address);
+
+        ProductRegistry.register(Product.builder().productCode("B").build(), 20);
+        try {
+            replica.poll(); //finds the connection closed
+        } catch (IOException e) {
+            //expected
+        }
+        replica.poll();
+        assertEquals(ProductRegistry.getVersion(), replica.getAppliedSequence());
+        assertEquals(0, replica.getLag());
+    }
+}
@@ -0,0 +1,265 @@
+package com.eugene.percent.replication;
+
+import static org.junit.Assert.assertEquals;
+
+import com.eugene.percent.factory.ChangeFeed;
+import com.eugene.percent.factory.ProductRegistry;
+import com.eugene.percent.factory.RegistryChange;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RegistryReplicaTest {
+    private final Map<Product, ProductPrice> replicated = new HashMap<>();
+
+    @Before
+    public void setUp() {
+        ProductRegistry.reset();
+    }
+
+    @After
+    public void tearDown() {
+        ProductRegistry.reset();
+    }
+
+    @Test
+    public void test_poll() throws IOException {
+        register("A", 10);
+        register("B", 20);
+
+        RegistryReplica replica = new RegistryReplica(ProductRegistry.getChangeFeed(), this::apply, 2);
+        assertEquals(1, replica.poll());
+        assertEquals(1, replica.getSnapshots());
+        assertEquals(primary(), replicated);
+        assertEquals(0, replica.getLag());
+
+        //deltas, more than a request reads
+        register("C", 30);
+        register("A", 11);
+        ProductRegistry.deregister(Product.builder().productCode("B").build());
+        ProductRegistry.freeze();
+        assertEquals(4, replica.poll());
+        assertEquals(1, replica.getSnapshots());
+        assertEquals(4, replica.getChanges());
+        assertEquals(primary(), replicated);
+        assertEquals(ProductRegistry.getVersion(), replica.getAppliedSequence());
+        assertEquals(0, replica.getLag());
+        assertEquals(0, replica.getLagMillis());
+
+        assertEquals(0, replica.poll());
+    }
+
+    @Test
+    public void test_poll_reset() throws IOException {
+        register("A", 10);
+        RegistryReplica replica = new RegistryReplica(ProductRegistry.getChangeFeed(), this::apply, 10);
+        replica.poll();
+
+        ProductRegistry.reset();
+        register("B", 20);
+        assertEquals(2, replica.poll());
+        assertEquals(primary(), replicated);
+        assertEquals(1, replicated.size());
+    }
+
+    @Test
+    public void test_poll_lag() throws IOException {
+        register("A", 10);
+        LaggingFeed feed = new LaggingFeed(ProductRegistry.getChangeFeed());
+        RegistryReplica replica = new RegistryReplica(feed, this::apply, 10);
+        replica.poll();
+
+        feed.failing = true;
+        register("B", 20);
+        register("C", 30);
+        try {
+            replica.poll();
+        } catch (IOException e) {
+            //expected
+        }
+        assertEquals(ProductRegistry.getVersion(), replica.getSourceSequence());
+        assertEquals(2, replica.getLag());
+
+        feed.failing = false;
+        assertEquals(2, replica.poll());
+        assertEquals(0, replica.getLag());
+        assertEquals(primary(), replicated);
+    }
+
+    @Test
+    public void test_poll_newPrimary() throws IOException {
+        register("A", 10);
+        register("B", 10);
+        LaggingFeed feed = new LaggingFeed(ProductRegistry.getChangeFeed());
+        RegistryReplica replica = new RegistryReplica(feed, this::apply, 10);
+        replica.poll();
+
+        //a primary that restarted has a shorter history
+        Product productC = Product.builder().productCode("C").build();
+        RegistryChange snapshot = new RegistryChange(1, 0, RegistryChange.Type.SNAPSHOT,
+                Collections.singletonMap(productC, new ProductPrice(30, 1, 30)));
+        feed.feed = new ChangeFeed() {
+            @Override
+            public long getEpoch() {
+                return 1;
+            }
+
+            @Override
+            public long getSequence() {
+                return 1;
+            }
+
+            @Override
+            public List<RegistryChange> changesSince(long sequence, int maxChanges) {
+                return sequence == 1 ? Collections.emptyList() : null;
+            }
+
+            @Override
+            public RegistryChange snapshot() {
+                return snapshot;
+            }
+        };
+
+        assertEquals(1, replica.poll());
+        assertEquals(2, replica.getSnapshots());
+        assertEquals(1, replica.getAppliedSequence());
+        assertEquals(snapshot.getProductPrices(), replicated);
+        assertEquals(0, replica.poll());
+    }
+
+    @Test
+    public void test_poll_restartedPrimary() throws IOException {
+        register("A", 10);
+        LaggingFeed feed = new LaggingFeed(ProductRegistry.getChangeFeed());
+        RegistryReplica replica = new RegistryReplica(feed, this::apply, 10);
+        replica.poll();
+        long appliedSequence = replica.getAppliedSequence();
+
+        //a primary that restarted and already published more versions than the replica applied
+        Product productC = Product.builder().productCode("C").build();
+        RegistryChange delta = new RegistryChange(appliedSequence + 1, 0, RegistryChange.Type.DELTA,
+                Collections.singletonMap(Product.builder().productCode("D").build(), new ProductPrice(40, 1, 40)));
+        RegistryChange snapshot = new RegistryChange(appliedSequence + 1, 0, RegistryChange.Type.SNAPSHOT,
+                Collections.singletonMap(productC, new ProductPrice(30, 1, 30)));
+        feed.feed = new ChangeFeed() {
+            @Override
+            public long getEpoch() throws IOException {
+                return ProductRegistry.getChangeFeed().getEpoch() + 1;
+            }
+
+            @Override
+            public long getSequence() {
+                return appliedSequence + 1;
+            }
+
+            @Override
+            public List<RegistryChange> changesSince(long sequence, int maxChanges) {
+                return sequence == appliedSequence ? Collections.singletonList(delta) : null;
+            }
+
+            @Override
+            public RegistryChange snapshot() {
+                return snapshot;
+            }
+        };
+
+        //the tail of the new history is not applied on top of the old one
+        assertEquals(1, replica.poll());
+        assertEquals(2, replica.getSnapshots());
+        assertEquals(0, replica.getChanges());
+        assertEquals(snapshot.getProductPrices(), replicated);
+        assertEquals(0, replica.poll());
+    }
+
+    @Test
+    public void test_background() throws Exception {
+        try (RegistryReplica replica = new RegistryReplica(ProductRegistry.getChangeFeed(), this::applySynchronized, 10)) {
+            replica.start(1);
+            register("A", 10);
+
+            for (int i = 0; i < 500 && replica.getAppliedSequence() < ProductRegistry.getVersion(); ++i) {
+                Thread.sleep(10);
+            }
+            synchronized (replicated) {
+                assertEquals(primary(), replicated);
+            }
+        }
+    }
+
+    private static void register(String productCode, long pricePerUnit) {
+        ProductRegistry.register(Product.builder().productCode(productCode).build(), pricePerUnit);
+    }
+
+    private static Map<Product, ProductPrice> primary() {
+        Map<Product, ProductPrice> productPrices = new HashMap<>();
+        for (Product product : ProductRegistry.getProducts()) {
+            productPrices.put(product, ProductRegistry.getPrice(product));
+        }
+
+        return productPrices;
+    }
+
+    private void apply(RegistryChange change) {
+        if (change.getType() == RegistryChange.Type.SNAPSHOT) {
+            replicated.clear();
+        }
+        change.getProductPrices().forEach((product, productPrice) -> {
+            if (productPrice == null) {
+                replicated.remove(product);
+            } else {
+                replicated.put(product, productPrice);
+            }
+        });
+    }
+
+    private void applySynchronized(RegistryChange change) {
+        synchronized (replicated) {
+            apply(change);
+        }
+    }
+
+    /**
+     * Feed that reports the latest sequence, but fails to deliver the changes while failing is set.
+     * The feed it delegates to can be swapped, like a primary that is replaced.
+     */
+    private static class LaggingFeed implements ChangeFeed {
+        private volatile ChangeFeed feed;
+        private volatile boolean failing;
+
+        private LaggingFeed(ChangeFeed feed) {
+            this.feed = feed;
+        }
+
+        @Override
+        public long getEpoch() throws IOException {
+            return feed.getEpoch();
+        }
+
+        @Override
+        public long getSequence() throws IOException {
+            return feed.getSequence();
+        }
+
+        @Override
+        public List<RegistryChange> changesSince(long sequence, int maxChanges) throws IOException {
+            if (failing) {
+                throw new IOException("Connection reset");
+            }
+            return feed.changesSince(sequence, maxChanges);
+        }
+
+        @Override
+        public RegistryChange snapshot() throws IOException {
+            return feed.snapshot();
+        }
+    }
+}
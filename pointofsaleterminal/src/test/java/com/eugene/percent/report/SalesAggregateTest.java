@@ -0,0 +1,63 @@
+package com.eugene.percent.report;
+
+import static org.junit.Assert.assertEquals;
+
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+import com.eugene.percent.model.Sale;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class SalesAggregateTest {
+    private static final ProductPrice A_PRICE = new ProductPrice(125, 3, 300);
+    private static final ProductPrice B_PRICE = ProductPrice.of(425);
+
+    private static Sale.Line line(String productCode, ProductPrice productPrice, int quantity) {
+        return new Sale.Line(Product.builder().productCode(productCode).build(), quantity, productPrice,
+                productPrice.calculatePrice(quantity));
+    }
+
+    @Test
+    public void test_add() {
+        SalesAggregate aggregate = new SalesAggregate();
+        aggregate.add(new Sale("T1", 0, Arrays.asList(line("A", A_PRICE, 4), line("B", B_PRICE, 1)), 825));
+        aggregate.add(new Sale("T2", 0, Collections.singletonList(line("A", A_PRICE, 1)), 125));
+        aggregate.add(new Sale("T1", 0, Collections.singletonList(line("B", B_PRICE, 2)), 800)); //promotion
+
+        SalesReport report = aggregate.toReport();
+        assertEquals(3, report.getSessions());
+        assertEquals(8, report.getUnits());
+        assertEquals(1750, report.getRevenue());
+        assertEquals(75, report.getVolumeSavings());
+        assertEquals(75, report.getPromotionDiscounts());
+
+        assertEquals(Arrays.asList(
+                new SalesReport.ProductSales("B", 3, 1275, 0),
+                new SalesReport.ProductSales("A", 5, 550, 75)), report.getProducts());
+        assertEquals(Arrays.asList(
+                new SalesReport.TerminalSales("T1", 2, 7, 1625),
+                new SalesReport.TerminalSales("T2", 1, 1, 125)), report.getTerminals());
+    }
+
+    @Test
+    public void test_merge() {
+        SalesAggregate expected = new SalesAggregate();
+        SalesAggregate left = new SalesAggregate();
+        SalesAggregate right = new SalesAggregate();
+        for (int i = 0; i < 1000; ++i) {
+            //more products than the initial capacity
+            Sale sale = new Sale("T" + i % 7, i, Arrays.asList(line("A" + i % 100, A_PRICE, i % 5 + 1),
+                    line("B" + i % 300, B_PRICE, 1)), A_PRICE.calculatePrice(i % 5 + 1) + 425);
+            expected.add(sale);
+            (i % 3 == 0 ? left : right).add(sale);
+        }
+
+        left.merge(right);
+        assertEquals(expected.toReport().toString(), left.toReport().toString());
+        assertEquals(expected.toReport().getProducts(), left.toReport().getProducts());
+        assertEquals(expected.toReport().getTerminals(), left.toReport().getTerminals());
+    }
+}
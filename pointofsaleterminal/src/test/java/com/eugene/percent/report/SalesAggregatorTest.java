@@ -0,0 +1,98 @@
+package com.eugene.percent.report;
+
+import static org.junit.Assert.assertEquals;
+
+import com.eugene.percent.journal.TransactionJournal;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+import com.eugene.percent.model.Sale;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class SalesAggregatorTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static List<Sale> sales(int n) {
+        ProductPrice productPrice = new ProductPrice(125, 3, 300);
+        List<Sale> sales = new ArrayList<>(n);
+        for (int i = 0; i < n; ++i) {
+            int quantity = i % 7 + 1;
+            List<Sale.Line> lines = Arrays.asList(
+                    new Sale.Line(Product.builder().productCode("A" + i % 500).build(), quantity, productPrice,
+                            productPrice.calculatePrice(quantity)),
+                    new Sale.Line(Product.builder().productCode("B").build(), 1, productPrice, 125));
+            sales.add(new Sale("T" + i % 5, i, lines, productPrice.calculatePrice(quantity) + 125 - i % 2));
+        }
+
+        return sales;
+    }
+
+    private static SalesReport sequential(List<Sale> sales) {
+        SalesAggregate aggregate = new SalesAggregate();
+        sales.forEach(aggregate::add);
+
+        return aggregate.toReport();
+    }
+
+    private static void assertReportEquals(SalesReport expected, SalesReport actual) {
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(expected.getProducts(), actual.getProducts());
+        assertEquals(expected.getTerminals(), actual.getTerminals());
+    }
+
+    @Test
+    public void test_aggregateList() {
+        List<Sale> sales = sales(SalesAggregator.THRESHOLD * 5 + 3);
+
+        assertReportEquals(sequential(sales), SalesAggregator.aggregate(sales));
+        assertEquals(0, SalesAggregator.aggregate(new ArrayList<>()).getSessions());
+    }
+
+    @Test
+    public void test_aggregateJournal() throws Exception {
+        Path path = temporaryFolder.newFile().toPath();
+        List<Sale> sales = sales(SalesAggregator.JOURNAL_CHUNK_SIZE + 100);
+
+        try (TransactionJournal journal = TransactionJournal.open(path)) {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            sales.forEach(sale -> futures.add(journal.append(sale)));
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get();
+        }
+
+        assertReportEquals(sequential(sales), SalesAggregator.aggregate(path));
+        //more chunks than are kept in flight
+        assertReportEquals(sequential(sales), SalesAggregator.aggregate(path, 1000, 2));
+    }
+
+    @Test
+    public void test_record() throws Exception {
+        List<Sale> sales = sales(10000);
+        int numThreads = 4;
+        SalesAggregator aggregator = new SalesAggregator();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < numThreads; ++t) {
+            final int first = t;
+            threads.add(new Thread(() -> {
+                for (int i = first; i < sales.size(); i += numThreads) {
+                    aggregator.record(sales.get(i));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertReportEquals(sequential(sales), aggregator.report());
+    }
+}
@@ -0,0 +1,52 @@
+package com.eugene.percent.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.eugene.percent.factory.ProductRegistry;
+import com.eugene.percent.model.Money;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.workload.Workload;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class LaneLoadDriverTest {
+    @After
+    public void tearDown() {
+        ProductRegistry.reset();
+    }
+
+    @Test
+    public void test_run() throws Exception {
+        Product productA = Product.builder().productCode("4006381333931").build();
+        Product productB = Product.builder().productCode("73513537").build();
+        Product productUnknown = Product.builder().productCode("5901234123457").build();
+        ProductRegistry.register(productA, Money.of("1.25"));
+        ProductRegistry.register(productB, Money.of("4.25"));
+
+        LaneLoadConfig config = LaneLoadConfig.builder()
+                .connections(2)
+                .sessionsPerConnection(10)
+                .pipelineDepth(16)
+                .workload(Workload.fixed(Arrays.asList(productA, productB, productUnknown)))
+                .seed(42)
+                .build();
+
+        try (LaneServer server = new LaneServer(LaneServerConfig.builder().eventLoops(2).build())) {
+            server.start();
+            LaneLoadReport report = LaneLoadDriver.run(server.getAddress(), config, 200);
+
+            assertEquals(20, report.getSessions());
+            assertTrue(report.getRequests() > 0);
+            assertEquals(0, report.getRequests() % 16);
+            assertEquals(report.getRequests() / 16, report.getLatency().getCount());
+            //5 requests per basket, one of its 3 scans fails
+            assertTrue(report.getBaskets() > 0);
+            assertTrue(Math.abs(report.getScanErrors() - report.getBaskets()) <= 20);
+            assertEquals(0, server.getSessions());
+        }
+    }
+}
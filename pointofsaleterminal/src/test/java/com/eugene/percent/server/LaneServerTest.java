@@ -0,0 +1,226 @@
+package com.eugene.percent.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.eugene.percent.factory.ProductRegistry;
+import com.eugene.percent.model.Money;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+import com.eugene.percent.pointofsaleterminal.ScanStatus;
+import com.eugene.percent.promotion.MixedBundle;
+import com.eugene.percent.promotion.PromotionEngine;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+public class LaneServerTest {
+    private static final byte[] BARCODE_A = "4006381333931".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BARCODE_B = "73513537".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BARCODE_UNKNOWN = "5901234123457".getBytes(StandardCharsets.US_ASCII);
+
+    private LaneServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        ProductRegistry.reset();
+        ProductRegistry.register(Product.builder().productCode("4006381333931").build(),
+                new ProductPrice(Money.of("1.25"), 3, Money.of("3")));
+        ProductRegistry.register(Product.builder().productCode("73513537").build(), Money.of("4.25"));
+
+        server = new LaneServer(LaneServerConfig.builder().eventLoops(2).maxSessionsPerConnection(3).build());
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+        ProductRegistry.reset();
+    }
+
+    @Test
+    public void test_session() throws IOException {
+        try (LaneClient client = new LaneClient(server.getAddress())) {
+            client.open(7);
+            assertEquals(0, client.receive());
+
+            client.scan(7, BARCODE_A);
+            assertEquals(1, client.receive());
+            client.scan(7, BARCODE_A, 2);
+            assertEquals(3, client.receive());
+            client.scan(7, BARCODE_B);
+            assertEquals(1, client.receive());
+            client.total(7);
+            assertEquals(Money.of("7.25"), client.receive());
+
+            client.clear(7);
+            assertEquals(0, client.receive());
+            client.total(7);
+            assertEquals(0, client.receive());
+
+            client.close(7);
+            assertEquals(0, client.receive());
+            client.total(7);
+            assertEquals(LaneProtocol.UNKNOWN_SESSION, client.receive());
+        }
+    }
+
+    @Test
+    public void test_session_errors() throws IOException {
+        try (LaneClient client = new LaneClient(server.getAddress())) {
+            client.scan(1, BARCODE_A);
+            client.open(1);
+            client.open(1);
+            client.scan(1, BARCODE_UNKNOWN);
+            client.scan(1, "4006381333932".getBytes(StandardCharsets.US_ASCII));
+            client.scan(1, BARCODE_A, 0);
+            client.open(2);
+            client.open(3);
+            client.open(4);
+
+            assertEquals(LaneProtocol.UNKNOWN_SESSION, client.receive());
+            assertEquals(0, client.receive());
+            assertEquals(LaneProtocol.SESSION_EXISTS, client.receive());
+            assertEquals(ScanStatus.UNKNOWN_PRODUCT, client.receive());
+            assertEquals(ScanStatus.INVALID_BARCODE, client.receive());
+            assertEquals(ScanStatus.INVALID_QUANTITY, client.receive());
+            assertEquals(0, client.receive());
+            assertEquals(0, client.receive());
+            assertEquals(LaneProtocol.TOO_MANY_SESSIONS, client.receive());
+        }
+    }
+
+    @Test
+    public void test_pipelined_sessions() throws IOException {
+        int sessions = 3;
+        int baskets = 1000;
+        try (LaneClient first = new LaneClient(server.getAddress());
+             LaneClient second = new LaneClient(server.getAddress())) {
+            for (LaneClient client : new LaneClient[] {first, second}) {
+                for (int session = 0; session < sessions; ++session) {
+                    client.open(session);
+                }
+                for (int session = 0; session < sessions; ++session) {
+                    assertEquals(0, client.receive());
+                }
+            }
+
+            //requests of many baskets in flight, interleaved over the sessions
+            for (int basket = 0; basket < baskets; ++basket) {
+                int session = basket % sessions;
+                first.scan(session, BARCODE_A);
+                first.scan(session, BARCODE_B);
+                first.total(session);
+                first.clear(session);
+            }
+            second.scan(0, BARCODE_B);
+            assertEquals(1, second.receive());
+
+            for (int basket = 0; basket < baskets; ++basket) {
+                assertEquals(1, first.receive());
+                assertEquals(1, first.receive());
+                assertEquals(Money.of("5.5"), first.receive());
+                assertEquals(0, first.receive());
+            }
+            assertEquals(2 * sessions, server.getSessions());
+        }
+    }
+
+    @Test
+    public void test_scan_overflow() throws Exception {
+        try (LaneClient client = new LaneClient(server.getAddress())) {
+            client.open(1);
+            client.scan(1, BARCODE_A, Integer.MAX_VALUE);
+            client.scan(1, BARCODE_A, Integer.MAX_VALUE);
+            client.scan(1, BARCODE_B);
+            client.total(1);
+
+            assertEquals(0, client.receive());
+            assertEquals(Integer.MAX_VALUE, client.receive());
+            assertEquals(ScanStatus.INVALID_QUANTITY, client.receive());
+            assertEquals(1, client.receive());
+            long total = client.receive();
+            assertTrue(total > 0);
+        }
+
+        //the loop goes on serving, and accepting
+        try (LaneClient client = new LaneClient(server.getAddress())) {
+            client.open(1);
+            assertEquals(0, client.receive());
+            assertEquals(1, server.getSessions());
+        }
+    }
+
+    @Test
+    public void test_failedRequest_closesSession() throws Exception {
+        //overflows while solving the promotion: 3 units could make 3 bundles at the largest price
+        Product product = Product.builder().productCode("0000000000017").build();
+        ProductRegistry.register(product, new ProductPrice(Money.of("1.25"), 3, Money.of("3")));
+        LaneServerConfig config = LaneServerConfig.builder().eventLoops(1)
+                .promotionEngine(PromotionEngine.of(MixedBundle.anyOf("1 for a fortune", 1, Long.MAX_VALUE, product)))
+                .build();
+
+        try (LaneServer promotionServer = new LaneServer(config)) {
+            promotionServer.start();
+            try (LaneClient client = new LaneClient(promotionServer.getAddress())) {
+                client.open(1);
+                client.open(2);
+                client.scan(1, "0000000000017".getBytes(StandardCharsets.US_ASCII), 3);
+                client.total(1);
+                client.scan(2, BARCODE_B);
+
+                assertEquals(0, client.receive());
+                assertEquals(0, client.receive());
+                assertEquals(LaneProtocol.REQUEST_FAILED, client.receive());
+                assertEquals(LaneProtocol.UNKNOWN_SESSION, client.receive());
+                assertEquals(1, client.receive());
+                assertEquals(1, promotionServer.getSessions());
+                assertEquals(1, promotionServer.getConnections());
+            }
+        }
+    }
+
+    @Test
+    public void test_closedConnection_releasesSessions() throws Exception {
+        try (LaneClient client = new LaneClient(server.getAddress())) {
+            client.open(1);
+            client.open(2);
+            client.receive();
+            client.receive();
+            assertEquals(2, server.getSessions());
+        }
+
+        awaitSessions(0);
+    }
+
+    @Test
+    public void test_unknownOpcode_closesConnection() throws Exception {
+        try (SocketChannel channel = SocketChannel.open(server.getAddress())) {
+            channel.write(ByteBuffer.wrap(new byte[] {LaneProtocol.OPEN, 0, 0, 0, 1, 42, 0, 0, 0, 1}));
+
+            ByteBuffer response = ByteBuffer.allocate(2 * LaneProtocol.RESPONSE_SIZE);
+            while (channel.read(response) >= 0) {
+                if (!response.hasRemaining()) {
+                    fail("Connection was not closed");
+                }
+            }
+            assertEquals(LaneProtocol.RESPONSE_SIZE, response.position());
+        }
+
+        awaitSessions(0);
+    }
+
+    private void awaitSessions(int sessions) throws InterruptedException {
+        for (int i = 0; i < 500 && server.getSessions() != sessions; ++i) {
+            Thread.sleep(10);
+        }
+        assertEquals(sessions, server.getSessions());
+    }
+}
@@ -0,0 +1,148 @@
+package com.eugene.percent.simulator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.eugene.percent.factory.ProductRegistry;
+import com.eugene.percent.journal.TransactionJournal;
+import com.eugene.percent.model.Money;
+import com.eugene.percent.model.Product;
+import com.eugene.percent.model.ProductPrice;
+import com.eugene.percent.workload.Workload;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class LaneSimulatorTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Product productA;
+    private Product productB;
+
+    @Before
+    public void setUp() {
+        productA = Product.builder().productCode("SIM-A").build();
+        productB = Product.builder().productCode("SIM-B").build();
+
+        ProductRegistry.register(productA, new ProductPrice(Money.of("1.25"), 3, Money.of("3")));
+        ProductRegistry.register(productB, new ProductPrice(Money.of("4.25"), 1, Money.of("4.25")));
+    }
+
+    @Test
+    public void test_run_manyLanes() throws Exception {
+        List<Product> basket = Arrays.asList(productA, productB, productA);
+
+        SimulationReport report = LaneSimulator.run(SimulationConfig.builder()
+                .lanes(2000)
+                .eventLoops(2)
+                .arrivalProcess(ArrivalProcess.poisson(20))
+                .workload(Workload.fixed(basket))
+                .seed(42)
+                .build(), 300);
+
+        assertEquals(2000, report.getLanes());
+        assertTrue(report.getCustomersServed() > 0);
+        assertEquals(report.getCustomersServed() * basket.size(), report.getUnitsScanned());
+        assertEquals(0, report.getScanErrors());
+        assertEquals(report.getCustomersServed(), report.getLatency().getCount());
+        assertTrue(report.getThroughput() > 0);
+    }
+
+    @Test
+    public void test_run_backpressure() throws Exception {
+        //a lane serves one customer per 30ms at best, customers arrive every 1ms
+        SimulationReport report = LaneSimulator.run(SimulationConfig.builder()
+                .lanes(4)
+                .eventLoops(1)
+                .arrivalProcess(ArrivalProcess.fixedRate(1000))
+                .itemScanNanos(TimeUnit.MILLISECONDS.toNanos(10))
+                .maxQueuedCustomers(2)
+                .workload(Workload.fixed(Arrays.asList(productA, productB, productB)))
+                .build(), 200);
+
+        assertTrue(report.getCustomersRejected() > 0);
+        //queued customers are served after stop, none is lost
+        assertEquals(report.getCustomersServed() * 3, report.getUnitsScanned());
+        assertTrue(report.getLatency().getMax() >= TimeUnit.MILLISECONDS.toNanos(30));
+    }
+
+    @Test
+    public void test_run_unknownProduct() throws Exception {
+        Product unknownProduct = Product.builder().productCode("SIM-UNKNOWN").build();
+
+        SimulationReport report = LaneSimulator.run(SimulationConfig.builder()
+                .lanes(10)
+                .arrivalProcess(ArrivalProcess.fixedRate(100))
+                .workload(Workload.fixed(Arrays.asList(productA, unknownProduct)))
+                .build(), 100);
+
+        assertTrue(report.getCustomersServed() > 0);
+        assertEquals(report.getCustomersServed(), report.getScanErrors());
+        assertEquals(report.getCustomersServed(), report.getUnitsScanned());
+    }
+
+    @Test
+    public void test_stop_beforeArrivals() throws Exception {
+        LaneSimulator simulator = new LaneSimulator(SimulationConfig.builder()
+                .lanes(100)
+                .arrivalProcess(ArrivalProcess.fixedRate(0.001))
+                .build());
+
+        simulator.start();
+        simulator.stop();
+        SimulationReport report = simulator.awaitTermination();
+
+        assertEquals(0, report.getCustomersServed());
+        assertEquals(0, report.getLatency().getCount());
+    }
+
+    @Test
+    public void test_stop_twice() throws Exception {
+        LaneSimulator simulator = new LaneSimulator(SimulationConfig.builder()
+                .lanes(4)
+                .eventLoops(1)
+                .arrivalProcess(ArrivalProcess.fixedRate(1000))
+                .itemScanNanos(TimeUnit.MILLISECONDS.toNanos(5))
+                .workload(Workload.fixed(Arrays.asList(productA, productB, productB)))
+                .build());
+
+        simulator.start();
+        Thread.sleep(50);
+        simulator.stop();
+        simulator.stop();
+        SimulationReport report = simulator.awaitTermination();
+
+        //every lane drained before the report, none was counted twice
+        assertEquals(report.getCustomersServed() * 3, report.getUnitsScanned());
+        assertEquals(report.getCustomersServed(), report.getLatency().getCount());
+    }
+
+    @Test
+    public void test_run_journalBackpressure() throws Exception {
+        Path path = temporaryFolder.newFile().toPath();
+
+        //a queue of one cannot take the sales of 50 lanes as they complete
+        SimulationReport report;
+        try (TransactionJournal journal = TransactionJournal.open(path, 1)) {
+            report = LaneSimulator.run(SimulationConfig.builder()
+                    .lanes(50)
+                    .arrivalProcess(ArrivalProcess.fixedRate(1000))
+                    .workload(Workload.fixed(Arrays.asList(productA, productB)))
+                    .journal(journal)
+                    .build(), 200);
+        }
+
+        assertTrue(report.getJournalWaits() > 0);
+        assertEquals(0, report.getJournalErrors());
+        //no completed sale was lost
+        assertEquals(report.getCustomersServed(), TransactionJournal.replay(path, sale -> { }));
+    }
+}
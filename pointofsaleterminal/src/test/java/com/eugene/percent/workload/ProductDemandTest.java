@@ -0,0 +1,79 @@
+package com.eugene.percent.workload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+public class ProductDemandTest {
+    private static final int SAMPLES = 1_000_000;
+
+    private static double[] frequencies(ProductDemand demand, int numberOfProducts) {
+        SplittableRandom random = new SplittableRandom(42);
+        double[] frequencies = new double[numberOfProducts];
+        for (int i = 0; i < SAMPLES; ++i) {
+            frequencies[demand.nextProduct(random)] += 1.0 / SAMPLES;
+        }
+
+        return frequencies;
+    }
+
+    @Test
+    public void test_zipf() {
+        for (double exponent : new double[] {0.5, 1.0, 1.5}) {
+            int numberOfProducts = 1000;
+            double[] frequencies = frequencies(ProductDemand.zipf(numberOfProducts, exponent), numberOfProducts);
+
+            double sum = 0;
+            for (int k = 1; k <= numberOfProducts; ++k) {
+                sum += Math.pow(k, -exponent);
+            }
+            for (int k = 1; k <= 10; ++k) {
+                assertEquals(Math.pow(k, -exponent) / sum, frequencies[k - 1], 0.003);
+            }
+        }
+    }
+
+    @Test
+    public void test_zipf_singleProduct() {
+        SplittableRandom random = new SplittableRandom(1);
+        ProductDemand demand = ProductDemand.zipf(1, 1.0);
+        for (int i = 0; i < 1000; ++i) {
+            assertEquals(0, demand.nextProduct(random));
+        }
+    }
+
+    @Test
+    public void test_hotSet() {
+        //80% of the picks from 10% of the catalog
+        double[] frequencies = frequencies(ProductDemand.hotSet(100, 10, 0.8), 100);
+
+        double hot = 0;
+        for (int i = 0; i < 10; ++i) {
+            hot += frequencies[i];
+        }
+        assertEquals(0.8, hot, 0.005);
+        assertTrue(frequencies[99] > 0);
+    }
+
+    @Test
+    public void test_basketSize() {
+        SplittableRandom random = new SplittableRandom(7);
+        BasketSize geometric = BasketSize.geometric(12);
+        BasketSize uniform = BasketSize.uniform(2, 4);
+
+        long sum = 0;
+        for (int i = 0; i < SAMPLES; ++i) {
+            int size = geometric.nextBasketSize(random);
+            assertTrue(size >= 1);
+            sum += size;
+
+            size = uniform.nextBasketSize(random);
+            assertTrue(size >= 2 && size <= 4);
+        }
+        assertEquals(12, (double) sum / SAMPLES, 0.1);
+        assertEquals(5, BasketSize.fixed(5).nextBasketSize(random));
+    }
+}
@@ -0,0 +1,61 @@
+package com.eugene.percent.workload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.eugene.percent.model.Product;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class WorkloadLogTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void test_recordAndReplay() throws Exception {
+        Product[] products = new Product[500];
+        for (int i = 0; i < products.length; ++i) {
+            products[i] = Product.builder().productCode("L" + i + (i % 7 == 0 ? "\u00e9" : "")).build();
+        }
+        Workload workload = Workload.of(products, ProductDemand.zipf(products.length, 1.2), BasketSize.geometric(8));
+        Path path = temporaryFolder.newFile().toPath();
+
+        WorkloadLog.record(workload, 3, 200, 42, path);
+        Workload replay = WorkloadLog.replay(path);
+
+        SplittableRandom seeds = new SplittableRandom(42);
+        for (int lane = 0; lane < 3; ++lane) {
+            List<List<Product>> expected = WorkloadTest.baskets(workload.open(lane, seeds.nextLong()), 200);
+            BasketStream stream = replay.open(lane, 0);
+            assertEquals(expected, WorkloadTest.baskets(stream, 200));
+
+            //exhausted
+            assertEquals(0, stream.nextBasket());
+        }
+
+        //lanes beyond the recording wrap around
+        assertEquals(WorkloadTest.baskets(replay.open(1, 0), 200), WorkloadTest.baskets(replay.open(4, 0), 200));
+    }
+
+    @Test
+    public void test_replay_notRecorded() throws Exception {
+        Path path = temporaryFolder.newFile().toPath();
+        Files.write(path, new byte[] {1, 2, 3, 4});
+
+        try {
+            WorkloadLog.replay(path);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Not a recorded workload"));
+        }
+    }
+}
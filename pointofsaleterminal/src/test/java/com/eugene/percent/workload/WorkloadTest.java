@@ -0,0 +1,72 @@
+package com.eugene.percent.workload;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import com.eugene.percent.factory.ProductRegistry;
+import com.eugene.percent.model.Product;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class WorkloadTest {
+    private static Product[] catalog(int size) {
+        Product[] products = new Product[size];
+        for (int i = 0; i < size; ++i) {
+            products[i] = Product.builder().productCode("W" + i).build();
+        }
+
+        return products;
+    }
+
+    static List<List<Product>> baskets(BasketStream stream, int numberOfBaskets) {
+        List<List<Product>> baskets = new ArrayList<>();
+        for (int i = 0; i < numberOfBaskets; ++i) {
+            List<Product> basket = new ArrayList<>();
+            for (int size = stream.nextBasket(); size > 0; --size) {
+                basket.add(stream.nextProduct());
+            }
+            baskets.add(basket);
+        }
+
+        return baskets;
+    }
+
+    @Before
+    @After
+    public void resetRegistry() {
+        ProductRegistry.reset();
+    }
+
+    @Test
+    public void test_of_deterministic() {
+        Workload workload = Workload.of(catalog(1000), ProductDemand.zipf(1000, 1.0), BasketSize.geometric(10));
+
+        List<List<Product>> baskets = baskets(workload.open(0, 42), 100);
+        assertEquals(baskets, baskets(workload.open(3, 42), 100));
+        assertNotEquals(baskets, baskets(workload.open(0, 43), 100));
+    }
+
+    @Test
+    public void test_ofRegistry() {
+        Workload workload = Workload.ofRegistry(1.0, BasketSize.fixed(3));
+        assertEquals(Arrays.asList(Arrays.asList(), Arrays.asList()), baskets(workload.open(0, 1), 2));
+
+        Product product = Product.builder().productCode("W-registry").build();
+        ProductRegistry.register(product, 100);
+        assertEquals(Arrays.asList(Arrays.asList(product, product, product)), baskets(workload.open(0, 1), 1));
+    }
+
+    @Test
+    public void test_fixed() {
+        Product[] products = catalog(2);
+        Workload workload = Workload.fixed(Arrays.asList(products));
+
+        assertEquals(Arrays.asList(Arrays.asList(products), Arrays.asList(products)), baskets(workload.open(0, 1), 2));
+    }
+}